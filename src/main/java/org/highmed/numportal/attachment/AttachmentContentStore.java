@@ -0,0 +1,33 @@
+package org.highmed.numportal.attachment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Storage of the content of attachments. Content is stored from and copied to streams in chunks of a fixed size, so
+ * the memory used by a transfer does not grow with the size of the attachment. Content stored within a transaction
+ * is only kept if the transaction commits.
+ */
+public interface AttachmentContentStore {
+
+  /**
+   * Stores the content until the end of the stream
+   *
+   * @return The reference and the size of the stored content
+   */
+  StoredContent store(InputStream content) throws IOException;
+
+  /**
+   * Copies a range of stored content to the target
+   *
+   * @param reference The reference returned when the content was stored
+   * @param offset    The first byte of the range
+   * @param length    The number of bytes of the range
+   */
+  void copy(long reference, long offset, long length, OutputStream target) throws IOException;
+
+  record StoredContent(long reference, long size) {
+
+  }
+}
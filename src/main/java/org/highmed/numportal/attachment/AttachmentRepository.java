@@ -3,6 +3,9 @@ package org.highmed.numportal.attachment;
 import org.highmed.numportal.attachment.domain.dto.AttachmentDto;
 import org.highmed.numportal.attachment.domain.model.Attachment;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Optional;
 
@@ -10,7 +13,15 @@ public interface AttachmentRepository {
 
   List<Attachment> getAttachments();
 
-  void saveAttachment(AttachmentDto model);
+  /**
+   * Saves the attachment with its content, the content is stored while it is read from the stream
+   */
+  void saveAttachment(AttachmentDto model, InputStream content) throws IOException;
+
+  /**
+   * Writes a range of the content of an attachment to the target
+   */
+  void writeContent(Attachment attachment, long offset, long length, OutputStream target) throws IOException;
 
   void deleteAttachment(Long id);
 
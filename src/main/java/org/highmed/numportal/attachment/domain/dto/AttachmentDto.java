@@ -25,8 +25,6 @@ public class AttachmentDto {
 
   private String type;
 
-  private byte[] content;
-
   private Long projectId;
 
   @Schema(accessMode = Schema.AccessMode.READ_ONLY)
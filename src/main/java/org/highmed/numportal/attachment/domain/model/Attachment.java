@@ -33,7 +33,14 @@ public class Attachment implements Serializable {
 
   private String type;
 
-  private byte[] content;
+  /**
+   * Reference of the content in the {@link org.highmed.numportal.attachment.AttachmentContentStore}
+   */
+  @Column(name = "content_oid")
+  private Long contentOid;
+
+  @Column(name = "content_size")
+  private Long contentSize;
 
   @Column(name = "author_id")
   private String authorId;
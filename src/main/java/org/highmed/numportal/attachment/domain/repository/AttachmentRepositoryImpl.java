@@ -1,5 +1,6 @@
 package org.highmed.numportal.attachment.domain.repository;
 
+import org.highmed.numportal.attachment.AttachmentContentStore;
 import org.highmed.numportal.attachment.AttachmentRepository;
 import org.highmed.numportal.attachment.domain.dto.AttachmentDto;
 import org.highmed.numportal.attachment.domain.model.Attachment;
@@ -10,6 +11,9 @@ import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Component;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.OffsetDateTime;
 import java.util.List;
 import java.util.Optional;
@@ -22,13 +26,16 @@ public class AttachmentRepositoryImpl implements AttachmentRepository {
 
   private final AttachmentRepositoryJpa attachmentRepositoryJpa;
 
+  private final AttachmentContentStore attachmentContentStore;
+
   @Override
   public List<Attachment> getAttachments() {
     return attachmentRepositoryJpa.getAttachments();
   }
 
   @Override
-  public void saveAttachment(AttachmentDto model) {
+  public void saveAttachment(AttachmentDto model, InputStream content) throws IOException {
+    AttachmentContentStore.StoredContent storedContent = attachmentContentStore.store(content);
     Attachment entity = Attachment.builder()
                                   .name(model.getName())
                                   .description(model.getDescription())
@@ -36,13 +43,21 @@ public class AttachmentRepositoryImpl implements AttachmentRepository {
                                   .projectId(model.getProjectId())
                                   .uploadDate(OffsetDateTime.now())
                                   .type(model.getType())
-                                  .content(model.getContent())
+                                  .contentOid(storedContent.reference())
+                                  .contentSize(storedContent.size())
                                   .projectId(model.getProjectId())
                                   .build();
     entity = attachmentRepositoryJpa.save(entity);
     log.info("New attachment with id {} and name {} saved by {} ", entity.getId(), entity.getName(), entity.getAuthorId());
   }
 
+  @Override
+  public void writeContent(Attachment attachment, long offset, long length, OutputStream target) throws IOException {
+    if (attachment.getContentOid() != null && length > 0) {
+      attachmentContentStore.copy(attachment.getContentOid(), offset, length, target);
+    }
+  }
+
   @Override
   public void deleteAttachment(Long id) {
     attachmentRepositoryJpa.deleteById(id);
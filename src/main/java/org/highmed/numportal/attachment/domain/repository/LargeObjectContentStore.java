@@ -0,0 +1,98 @@
+package org.highmed.numportal.attachment.domain.repository;
+
+import org.highmed.numportal.attachment.AttachmentContentStore;
+
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import javax.sql.DataSource;
+
+/**
+ * Stores the content of attachments as postgres large objects of the attachment database. Chunks are written and read
+ * with the server side large object functions on the connection of the current attachment transaction, the large
+ * object of an attachment is removed by a trigger together with its row.
+ */
+@Component
+@ConditionalOnProperty(prefix = "num", name = "enableAttachmentDatabase", havingValue = "true")
+public class LargeObjectContentStore implements AttachmentContentStore {
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+  private static final String CREATE = "SELECT lo_create(0)";
+  private static final String PUT = "SELECT lo_put(CAST(? AS oid), ?, ?)";
+  private static final String GET = "SELECT lo_get(CAST(? AS oid), ?, ?)";
+
+  private final DataSource dataSource;
+
+  public LargeObjectContentStore(@Qualifier("numAttachmentDatasource") DataSource dataSource) {
+    this.dataSource = dataSource;
+  }
+
+  @Override
+  public StoredContent store(InputStream content) throws IOException {
+    Connection connection = DataSourceUtils.getConnection(dataSource);
+    try {
+      long reference = create(connection);
+      long size = 0;
+      byte[] buffer = new byte[CHUNK_SIZE];
+      try (PreparedStatement put = connection.prepareStatement(PUT)) {
+        int read;
+        while ((read = content.readNBytes(buffer, 0, CHUNK_SIZE)) > 0) {
+          put.setLong(1, reference);
+          put.setLong(2, size);
+          put.setBytes(3, read == CHUNK_SIZE ? buffer : Arrays.copyOf(buffer, read));
+          put.execute();
+          size += read;
+        }
+      }
+      return new StoredContent(reference, size);
+    } catch (SQLException e) {
+      throw new IOException("Cannot store attachment content", e);
+    } finally {
+      DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+  }
+
+  @Override
+  public void copy(long reference, long offset, long length, OutputStream target) throws IOException {
+    Connection connection = DataSourceUtils.getConnection(dataSource);
+    try (PreparedStatement get = connection.prepareStatement(GET)) {
+      long position = offset;
+      long remaining = length;
+      while (remaining > 0) {
+        get.setLong(1, reference);
+        get.setLong(2, position);
+        get.setInt(3, (int) Math.min(CHUNK_SIZE, remaining));
+        try (ResultSet chunk = get.executeQuery()) {
+          byte[] bytes = chunk.next() ? chunk.getBytes(1) : null;
+          if (bytes == null || bytes.length == 0) {
+            return;
+          }
+          target.write(bytes);
+          position += bytes.length;
+          remaining -= bytes.length;
+        }
+      }
+    } catch (SQLException e) {
+      throw new IOException("Cannot read attachment content " + reference, e);
+    } finally {
+      DataSourceUtils.releaseConnection(connection, dataSource);
+    }
+  }
+
+  private static long create(Connection connection) throws SQLException {
+    try (PreparedStatement create = connection.prepareStatement(CREATE); ResultSet created = create.executeQuery()) {
+      created.next();
+      return created.getLong(1);
+    }
+  }
+}
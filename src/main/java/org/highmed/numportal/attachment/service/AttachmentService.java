@@ -25,6 +25,8 @@ import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
@@ -49,6 +51,8 @@ import static org.highmed.numportal.domain.templates.ExceptionsTemplate.WRONG_PR
 @ConditionalOnProperty(prefix = "num", name = "enableAttachmentDatabase", havingValue = "true")
 public class AttachmentService {
 
+  private static final int PDF_HEADER_LENGTH = 7;
+
   private final AttachmentRepository attachmentRepository;
   private final ProjectService projectService;
   private final FileScanService fileScanService;
@@ -77,14 +81,20 @@ public class AttachmentService {
             String.format(ExceptionsTemplate.ATTACHMENT_NOT_FOUND, id)));
   }
 
-  private AttachmentDto buildModel(MultipartFile file, String description, String loggedInUserId, Long projectId) throws IOException {
+  /**
+   * Writes a range of the content of an attachment to the target, the content is copied in chunks
+   */
+  public void writeContent(Attachment attachment, long offset, long length, OutputStream target) throws IOException {
+    attachmentRepository.writeContent(attachment, offset, length, target);
+  }
+
+  private AttachmentDto buildModel(MultipartFile file, String description, String loggedInUserId, Long projectId) {
     return AttachmentDto.builder()
                         .name(file.getOriginalFilename())
                         .description(description)
                         .authorId(loggedInUserId)
                         .projectId(projectId)
                         .type(file.getContentType())
-                        .content(file.getBytes())
                         .build();
   }
 
@@ -99,7 +109,7 @@ public class AttachmentService {
       log.warn("File scan for virus/malware is not enabled");
     }
 
-    if (!Objects.requireNonNull(file.getOriginalFilename()).toLowerCase().endsWith(".pdf") || !checkIsPdfContent(file.getBytes())) {
+    if (!Objects.requireNonNull(file.getOriginalFilename()).toLowerCase().endsWith(".pdf") || !checkIsPdfContent(readHeader(file))) {
       log.error("Invalid document type received for {}", file.getOriginalFilename());
       throw new BadRequestException(NumAttachmentController.class, DOCUMENT_TYPE_MISMATCH);
     }
@@ -110,8 +120,14 @@ public class AttachmentService {
     }
   }
 
+  private byte[] readHeader(MultipartFile file) throws IOException {
+    try (InputStream content = file.getInputStream()) {
+      return content.readNBytes(PDF_HEADER_LENGTH);
+    }
+  }
+
   private boolean checkIsPdfContent(byte[] data) {
-    if (data.length < 5) {
+    if (data.length < PDF_HEADER_LENGTH) {
       return false;
     }
 
@@ -235,7 +251,9 @@ public class AttachmentService {
   public void saveAttachment(MultipartFile file, String description, String loggedInUserId, Long projectId) throws IOException {
     validate(file);
     AttachmentDto model = buildModel(file, description, loggedInUserId, projectId);
-    attachmentRepository.saveAttachment(model);
+    try (InputStream content = file.getInputStream()) {
+      attachmentRepository.saveAttachment(model, content);
+    }
   }
 
 }
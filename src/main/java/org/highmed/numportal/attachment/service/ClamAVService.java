@@ -2,6 +2,7 @@ package org.highmed.numportal.attachment.service;
 
 import org.highmed.numportal.properties.ClamAVProperties;
 import org.highmed.numportal.service.exception.SystemException;
+import org.highmed.numportal.service.metric.IntegrationMetrics;
 
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -27,6 +28,7 @@ public class ClamAVService {
   private static final String INSTREAM = "zINSTREAM\0";
   private static final String INSTREAM_SIZE_LIMIT_RESPONSE = "INSTREAM size limit exceeded.";
   private final ClamAVProperties clamAVProperties;
+  private final IntegrationMetrics integrationMetrics;
 
   public boolean ping() {
     try (Socket s = new Socket()) {
@@ -40,6 +42,10 @@ public class ClamAVService {
   }
 
   public String scan(InputStream fileContent) {
+    return integrationMetrics.record(IntegrationMetrics.CLAMAV, "scan", () -> scanStream(fileContent));
+  }
+
+  private String scanStream(InputStream fileContent) {
     try (Socket socket = new Socket(clamAVProperties.getHost(), clamAVProperties.getPort())) {
       socket.setSoTimeout(clamAVProperties.getReadTimeout());
 
@@ -9,8 +9,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
 
 @Service
 @AllArgsConstructor
@@ -22,8 +22,8 @@ public class FileScanService {
   public void virusScan(MultipartFile file) {
     log.info("Start scanning file {}", file.getOriginalFilename());
     if (clamAvService.ping()) {
-      try {
-        String scanResult = clamAvService.scan(new ByteArrayInputStream(file.getBytes()));
+      try (InputStream content = file.getInputStream()) {
+        String scanResult = clamAvService.scan(content);
         if (!clamAvService.isScannedFileSafe(scanResult)) {
           log.error("File {} rejected by ClamAV", file.getOriginalFilename());
           throw new BadRequestException(FileScanService.class, "File rejected", "File rejected");
@@ -1,20 +1,28 @@
 package org.highmed.numportal.config;
 
 import org.highmed.numportal.properties.EhrBaseProperties;
+import org.highmed.numportal.service.metric.IntegrationMetrics;
 
 import lombok.RequiredArgsConstructor;
+import org.apache.commons.io.input.CountingInputStream;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpResponseInterceptor;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
+import org.apache.http.entity.HttpEntityWrapper;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.protocol.HttpCoreContext;
 import org.ehrbase.openehr.sdk.client.openehrclient.OpenEhrClientConfig;
 import org.ehrbase.openehr.sdk.client.openehrclient.defaultrestclient.DefaultRestClient;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Primary;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 
@@ -22,7 +30,10 @@ import java.net.URISyntaxException;
 @RequiredArgsConstructor
 public class EhrBaseConfig {
 
+  private static final String AQL_PATH = "/query/aql";
+
   private final EhrBaseProperties ehrBaseProperties;
+  private final IntegrationMetrics integrationMetrics;
 
   @Bean
   @Primary
@@ -34,9 +45,44 @@ public class EhrBaseConfig {
             ehrBaseProperties.getUsername(), ehrBaseProperties.getPassword()));
 
     CloseableHttpClient httpClient =
-        HttpClientBuilder.create().setDefaultCredentialsProvider(provider).build();
+        HttpClientBuilder.create()
+                         .setDefaultCredentialsProvider(provider)
+                         .setMaxConnTotal(ehrBaseProperties.getMaxConnections())
+                         .setMaxConnPerRoute(ehrBaseProperties.getMaxConnections())
+                         .addInterceptorLast(countAqlResponseBytes())
+                         .build();
 
     return new DefaultRestClient(
         new OpenEhrClientConfig(new URI(ehrBaseProperties.getRestApiUrl())), null, httpClient);
   }
+
+  /**
+   * Counts the bytes of aql responses while the rest client reads them, the content length is not known for chunked
+   * responses
+   */
+  private HttpResponseInterceptor countAqlResponseBytes() {
+    return (response, context) -> {
+      HttpEntity entity = response.getEntity();
+      String uri = HttpCoreContext.adapt(context).getRequest().getRequestLine().getUri();
+      if (entity != null && uri.contains(AQL_PATH)) {
+        response.setEntity(new HttpEntityWrapper(entity) {
+          @Override
+          public InputStream getContent() throws IOException {
+            return new CountingInputStream(super.getContent()) {
+              private boolean closed;
+
+              @Override
+              public void close() throws IOException {
+                if (!closed) {
+                  closed = true;
+                  integrationMetrics.aqlBytes(getByteCount());
+                }
+                super.close();
+              }
+            };
+          }
+        });
+      }
+    };
+  }
 }
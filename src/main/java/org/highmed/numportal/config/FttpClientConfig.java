@@ -1,6 +1,7 @@
 package org.highmed.numportal.config;
 
 import org.highmed.numportal.properties.FttpProperties;
+import org.highmed.numportal.properties.PseudonymityProperties;
 
 import ca.uhn.fhir.context.FhirContext;
 import lombok.RequiredArgsConstructor;
@@ -11,6 +12,7 @@ import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
 import org.apache.http.impl.client.HttpClients;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.springframework.context.annotation.Bean;
@@ -29,6 +31,8 @@ public class FttpClientConfig {
 
   private final FttpProperties fttpProperties;
 
+  private final PseudonymityProperties pseudonymityProperties;
+
   @Bean
   public FhirContext fhirContext() {
     return FhirContext.forR4();
@@ -50,7 +54,13 @@ public class FttpClientConfig {
       SSLConnectionSocketFactory sslFactory =
           new SSLConnectionSocketFactory(sslContext, hostnameVerifier);
 
-      CloseableHttpClient client;
+      // pseudonym chunks are requested concurrently, one pooled connection each
+      int maxConnections = Math.max(1, pseudonymityProperties.getParallelism());
+      HttpClientBuilder builder =
+          HttpClients.custom()
+                     .setSSLSocketFactory(sslFactory)
+                     .setMaxConnTotal(maxConnections)
+                     .setMaxConnPerRoute(maxConnections);
 
       if (fttpProperties.isUseBasicAuth()) {
         var provider = new BasicCredentialsProvider();
@@ -59,12 +69,10 @@ public class FttpClientConfig {
             new UsernamePasswordCredentials(fttpProperties.getUsername(), fttpProperties.getPassword())
         );
 
-        client = HttpClients.custom().setSSLSocketFactory(sslFactory).setDefaultCredentialsProvider(provider).build();
-      } else {
-        client = HttpClients.custom().setSSLSocketFactory(sslFactory).build();
+        builder.setDefaultCredentialsProvider(provider);
       }
 
-      return client;
+      return builder.build();
     } catch (Exception e) {
       log.error("Failed to create http client for fttp communication with cause [{}]", e.getLocalizedMessage());
     }
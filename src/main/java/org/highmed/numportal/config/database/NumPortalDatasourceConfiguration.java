@@ -77,6 +77,8 @@ public class NumPortalDatasourceConfiguration {
     localContainerEntityManagerFactoryBean.getJpaPropertyMap()
                                           .put(AvailableSettings.PHYSICAL_NAMING_STRATEGY, new CamelCaseToUnderscoresNamingStrategy());
     localContainerEntityManagerFactoryBean.getJpaPropertyMap().put("hibernate.order_by.default_null_ordering", "last");
+    localContainerEntityManagerFactoryBean.getJpaPropertyMap().put(AvailableSettings.STATEMENT_BATCH_SIZE, 50);
+    localContainerEntityManagerFactoryBean.getJpaPropertyMap().put(AvailableSettings.ORDER_UPDATES, true);
     HibernateJpaVendorAdapter hibernateJpaVendorAdapter = new HibernateJpaVendorAdapter();
     hibernateJpaVendorAdapter.setGenerateDdl(false);
     hibernateJpaVendorAdapter.setShowSql(showSql);
@@ -0,0 +1,38 @@
+package org.highmed.numportal.domain.dto;
+
+import org.highmed.numportal.domain.model.ExportJobStatus;
+import org.highmed.numportal.domain.model.ExportType;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import lombok.Builder;
+import lombok.Data;
+
+import java.time.OffsetDateTime;
+
+@Schema
+@Data
+@Builder
+public class ExportJobDto {
+
+  @Schema(description = "Id of the export job, used to poll its status and download its result.")
+  private String id;
+
+  private Long projectId;
+
+  private ExportType format;
+
+  private ExportJobStatus status;
+
+  @Schema(description = "Bytes of the result written so far.")
+  private long bytesWritten;
+
+  @Schema(description = "Size of the result in bytes, once the job is completed.")
+  private Long size;
+
+  private OffsetDateTime createDate;
+
+  private OffsetDateTime completedDate;
+
+  @Schema(description = "Time after which the job and its result are removed.")
+  private OffsetDateTime expiryDate;
+}
@@ -0,0 +1,113 @@
+package org.highmed.numportal.domain.model;
+
+import org.highmed.numportal.domain.dto.ExportJobDto;
+
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.Id;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.OffsetDateTime;
+
+/**
+ * Export of a user built in the background. Jobs are stored, so every instance of the portal can report their status
+ * and serve their result. The state is only changed by the worker building the result and read while the job is
+ * polled.
+ */
+@Entity
+@Getter
+@NoArgsConstructor(access = AccessLevel.PROTECTED)
+public class ExportJob implements Serializable {
+
+  @Id
+  private String id;
+
+  private String userId;
+
+  private Long projectId;
+
+  @Enumerated(EnumType.STRING)
+  private ExportType format;
+
+  private OffsetDateTime createDate;
+
+  /**
+   * Name of the result file in the export job directory
+   */
+  private String fileName;
+
+  @Enumerated(EnumType.STRING)
+  private volatile ExportJobStatus status = ExportJobStatus.QUEUED;
+
+  private volatile long bytesWritten;
+
+  private volatile Long size;
+
+  private volatile OffsetDateTime modifiedDate;
+
+  private volatile OffsetDateTime completedDate;
+
+  private volatile OffsetDateTime expiryDate;
+
+  public ExportJob(String id, String userId, Long projectId, ExportType format, OffsetDateTime createDate, String fileName) {
+    this.id = id;
+    this.userId = userId;
+    this.projectId = projectId;
+    this.format = format;
+    this.createDate = createDate;
+    this.modifiedDate = createDate;
+    this.fileName = fileName;
+  }
+
+  public boolean isExpired(OffsetDateTime now) {
+    return expiryDate != null && expiryDate.isBefore(now);
+  }
+
+  public ExportJobDto toDto() {
+    return ExportJobDto.builder()
+                       .id(id)
+                       .projectId(projectId)
+                       .format(format)
+                       .status(status)
+                       .bytesWritten(bytesWritten)
+                       .size(size)
+                       .createDate(createDate)
+                       .completedDate(completedDate)
+                       .expiryDate(expiryDate)
+                       .build();
+  }
+
+  public void start() {
+    status = ExportJobStatus.RUNNING;
+  }
+
+  /**
+   * Only called by the worker building the result, so the count is not updated concurrently
+   */
+  public void written(int bytes) {
+    bytesWritten += bytes;
+  }
+
+  public void modified(OffsetDateTime now) {
+    modifiedDate = now;
+  }
+
+  public void complete(long resultSize, OffsetDateTime now, OffsetDateTime expiry) {
+    size = resultSize;
+    finish(ExportJobStatus.COMPLETED, now, expiry);
+  }
+
+  public void fail(OffsetDateTime now, OffsetDateTime expiry) {
+    finish(ExportJobStatus.FAILED, now, expiry);
+  }
+
+  private void finish(ExportJobStatus finalStatus, OffsetDateTime now, OffsetDateTime expiry) {
+    completedDate = now;
+    expiryDate = expiry;
+    status = finalStatus;
+  }
+}
@@ -0,0 +1,8 @@
+package org.highmed.numportal.domain.model;
+
+public enum ExportJobStatus {
+  QUEUED,
+  RUNNING,
+  COMPLETED,
+  FAILED
+}
@@ -123,6 +123,20 @@ public class Project implements Serializable {
     this.coordinator = coordinator;
   }
 
+  /**
+   * Project of the project list with only the listed columns and the id of the coordinator, without any associations
+   */
+  public Project(Long id, String name, ProjectStatus status, LocalDate startDate, LocalDate endDate, OffsetDateTime createDate,
+      String coordinatorId) {
+    this.id = id;
+    this.name = name;
+    this.status = status;
+    this.startDate = startDate;
+    this.endDate = endDate;
+    this.createDate = createDate;
+    this.coordinator = UserDetails.builder().userId(coordinatorId).build();
+  }
+
   public boolean hasEmptyOrDifferentOwner(String userId) {
     return ObjectUtils.isEmpty(coordinator) || !coordinator.getUserId().equals(userId);
   }
@@ -35,6 +35,13 @@ public class UserDetails implements Serializable {
 
   private LocalDateTime createdDate;
 
+  /**
+   * Display name of the user as known in keycloak, kept to sort projects and aql queries by author in the database.
+   * Names are only known once the users cache is loaded, until then authors without name are sorted last in both
+   * directions, see hibernate.order_by.default_null_ordering.
+   */
+  private String fullName;
+
   public UserDetails(String userId, Organization organization, boolean approved) {
     this.userId = userId;
     this.organization = organization;
@@ -0,0 +1,24 @@
+package org.highmed.numportal.domain.repository;
+
+import org.highmed.numportal.domain.model.ExportJob;
+import org.highmed.numportal.domain.model.ExportJobStatus;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.List;
+
+public interface ExportJobRepository extends JpaRepository<ExportJob, String> {
+
+  long countByUserIdAndStatusIn(String userId, Collection<ExportJobStatus> statuses);
+
+  /**
+   * Finished jobs past their expiry and unfinished jobs not modified since the given time, their instance stopped
+   * before finishing them
+   */
+  @Query("SELECT j FROM ExportJob j WHERE j.expiryDate < :now OR (j.expiryDate IS NULL AND j.modifiedDate < :abandonedBefore)")
+  List<ExportJob> findExpired(@Param("now") OffsetDateTime now, @Param("abandonedBefore") OffsetDateTime abandonedBefore);
+}
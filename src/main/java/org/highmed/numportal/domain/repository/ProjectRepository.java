@@ -4,11 +4,13 @@ import org.highmed.numportal.domain.model.Project;
 import org.highmed.numportal.domain.model.ProjectStatus;
 
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ProjectRepository extends JpaRepository<Project, Long>, CustomProjectRepository {
@@ -26,4 +28,11 @@ public interface ProjectRepository extends JpaRepository<Project, Long>, CustomP
   List<Project> findByStatusInOrderByCreateDateDesc(List<ProjectStatus> statuses, Pageable pageable);
 
   long countByStatus(ProjectStatus projectStatus);
+
+  /**
+   * Project with everything shown on the project details, loaded in one statement
+   */
+  @EntityGraph(attributePaths = {
+      "coordinator", "coordinator.organization", "researchers", "researchers.organization", "cohort", "cohort.cohortGroup"})
+  Optional<Project> findDetailById(Long id);
 }
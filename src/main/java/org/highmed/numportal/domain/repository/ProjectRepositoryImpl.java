@@ -11,7 +11,6 @@ import jakarta.persistence.PersistenceContext;
 import jakarta.persistence.criteria.CriteriaBuilder;
 import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Expression;
-import jakarta.persistence.criteria.Fetch;
 import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Predicate;
@@ -32,6 +31,10 @@ public class ProjectRepositoryImpl implements CustomProjectRepository {
   @PersistenceContext
   private EntityManager entityManager;
 
+  /**
+   * Page of the project list, the projects only contain the listed columns and are selected with the count in two
+   * statements, without loading researchers, cohort or transitions of any project
+   */
   @Override
   public Page<Project> findProjects(ProjectSpecification projectSpecification, Pageable pageable) {
     CriteriaBuilder cb = entityManager.getCriteriaBuilder();
@@ -53,10 +56,8 @@ public class ProjectRepositoryImpl implements CustomProjectRepository {
       Sort.Order sortOrder = projectSpecification.getSortOrder();
       Expression<?> orderByExpression = null;
       if (ProjectSpecification.COORDINATOR_ORGANIZATION.equals(projectSpecification.getSortOrder().getProperty())) {
-        Fetch<Project, UserDetails> coordinator = root.fetch("coordinator");
-        Fetch<UserDetails, Organization> organization = coordinator.fetch("organization", JoinType.LEFT);
-        Join<Project, UserDetails> coordinatorJoin = (Join<Project, UserDetails>) coordinator;
-        Join<UserDetails, Organization> organizationJoin = (Join<UserDetails, Organization>) organization;
+        Join<Project, UserDetails> coordinatorJoin = root.join("coordinator");
+        Join<UserDetails, Organization> organizationJoin = coordinatorJoin.join("organization", JoinType.LEFT);
         groupByExpressions.add(coordinatorJoin.get("userId"));
         groupByExpressions.add(organizationJoin.get("id"));
         orderByExpression = organizationJoin.get("name");
@@ -70,7 +71,12 @@ public class ProjectRepositoryImpl implements CustomProjectRepository {
           ));
           groupByExpressions.add(translationJoin.get("value"));
           orderByExpression = translationJoin.get("value");
-        } else if (!"author".equals(sortOrder.getProperty())) {
+        } else if (ProjectSpecification.COORDINATOR_NAME.equals(sortOrder.getProperty())) {
+          Join<Project, UserDetails> coordinatorJoin = root.join("coordinator");
+          groupByExpressions.add(coordinatorJoin.get("userId"));
+          groupByExpressions.add(coordinatorJoin.get("fullName"));
+          orderByExpression = cb.upper(coordinatorJoin.get("fullName"));
+        } else {
           orderByExpression = root.get(sortOrder.getProperty());
         }
       }
@@ -82,7 +88,14 @@ public class ProjectRepositoryImpl implements CustomProjectRepository {
         }
       }
     }
-    selectProjectQuery.select(root)
+    selectProjectQuery.select(cb.construct(Project.class,
+                          root.get("id"),
+                          root.get("name"),
+                          root.get(ProjectSpecification.COLUMN_PROJECT_STATUS),
+                          root.get("startDate"),
+                          root.get("endDate"),
+                          root.get("createDate"),
+                          root.get("coordinator").get("userId")))
                       .where(selectProjectPredicate)
                       .groupBy(groupByExpressions);
     List<Project> result = entityManager.createQuery(selectProjectQuery)
@@ -15,6 +15,7 @@ import jakarta.persistence.criteria.Join;
 import jakarta.persistence.criteria.JoinType;
 import jakarta.persistence.criteria.Predicate;
 import jakarta.persistence.criteria.Root;
+import jakarta.persistence.criteria.Subquery;
 import lombok.Getter;
 import lombok.experimental.SuperBuilder;
 import org.apache.commons.collections.CollectionUtils;
@@ -24,6 +25,8 @@ import org.springframework.data.jpa.domain.Specification;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
 
 @SuperBuilder
 @Getter
@@ -31,6 +34,14 @@ public class AqlSpecification extends BaseSpecification implements Specification
 
   private static final String AQL_CATEGORY = "category";
 
+  private static final String AQL_AUTHOR = "author";
+
+  private static final String SEARCH_MATCHES_FUNCTION = "aql_search_matches_";
+
+  private static final String SEARCH_RANK_FUNCTION = "aql_search_rank_";
+
+  private static final Pattern SEARCH_TERM_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
   @Override
   public Predicate toPredicate(Root<Aql> root, CriteriaQuery<?> query, CriteriaBuilder criteriaBuilder) {
 
@@ -48,23 +59,30 @@ public class AqlSpecification extends BaseSpecification implements Specification
         query.orderBy(criteriaBuilder.desc(aqlCategoryName));
       }
     }
+    if (sortOrder != null && sortOrder.getProperty().equals(AQL_AUTHOR)) {
+      Expression<String> ownerName = criteriaBuilder.upper(owner.get("fullName"));
+      if (sortOrder.getDirection().isAscending()) {
+        query.orderBy(criteriaBuilder.asc(ownerName));
+      } else {
+        query.orderBy(criteriaBuilder.desc(ownerName));
+      }
+    }
 
     if (Objects.nonNull(filter)) {
       List<Predicate> predicates = new ArrayList<>();
       List<Predicate> nameLikePredicates = new ArrayList<>();
       if (StringUtils.isNotEmpty((String) filter.get(SearchCriteria.FILTER_SEARCH_BY_KEY))) {
-        String searchInput = "%" + ((String) filter.get(SearchCriteria.FILTER_SEARCH_BY_KEY)).toUpperCase() + "%";
-        Predicate alqNameLike = Language.de.equals(language) ? criteriaBuilder.like(criteriaBuilder.upper(root.get("name")), searchInput)
-            : criteriaBuilder.like(criteriaBuilder.upper(root.get("nameTranslated")), searchInput);
-        nameLikePredicates.add(alqNameLike);
-
-        Join<Aql, AqlCategory> aqlCategory = root.join(AQL_CATEGORY, JoinType.LEFT);
-        Predicate aqlCategoryNameLike = criteriaBuilder.like(
-            criteriaBuilder.upper(
-                criteriaBuilder.function("json_extract_path_text", String.class, aqlCategory.get("name"), criteriaBuilder.literal(language.name()))),
-            searchInput);
-
-        nameLikePredicates.add(aqlCategoryNameLike);
+        String search = (String) filter.get(SearchCriteria.FILTER_SEARCH_BY_KEY);
+        String searchInput = "%" + search.toUpperCase() + "%";
+        String textQuery = toPrefixTextQuery(search);
+        nameLikePredicates.add(root.get("id").in(textMatches(searchInput, textQuery, query, criteriaBuilder)));
+        if (textQuery != null && sortOrder == null) {
+          query.orderBy(
+              criteriaBuilder.desc(criteriaBuilder.function(SEARCH_RANK_FUNCTION + searchLanguage(), Float.class,
+                  searchArguments(textQuery, root, criteriaBuilder))),
+              criteriaBuilder.desc(root.get("createDate")));
+        }
+        nameLikePredicates.add(root.get(AQL_CATEGORY).get("id").in(categoryMatches(searchInput, query, criteriaBuilder)));
         if (CollectionUtils.isNotEmpty(ownersUUID)) {
           Predicate ownerNameLike = owner.get("userId").in(ownersUUID);
           nameLikePredicates.add(ownerNameLike);
@@ -97,4 +115,65 @@ public class AqlSpecification extends BaseSpecification implements Specification
       return ownedOrPublic;
     }
   }
+
+  /**
+   * Ids of the aql criteria whose name contains the search input or whose name, use or purpose match the full text
+   * query. Both conditions only refer to the aql table, so postgres answers them from the trigram and full text
+   * indexes, which it can not do while they are or'ed with conditions on the joined tables.
+   */
+  private Subquery<Long> textMatches(String searchInput, String textQuery, CriteriaQuery<?> query,
+      CriteriaBuilder criteriaBuilder) {
+    Subquery<Long> matches = query.subquery(Long.class);
+    Root<Aql> aql = matches.from(Aql.class);
+    Predicate nameLike = criteriaBuilder.like(
+        criteriaBuilder.upper(aql.get(Language.de.equals(language) ? "name" : "nameTranslated")), searchInput);
+    Predicate textMatch = textQuery == null
+        ? nameLike
+        : criteriaBuilder.or(nameLike, criteriaBuilder.isTrue(criteriaBuilder.function(
+            SEARCH_MATCHES_FUNCTION + searchLanguage(), Boolean.class, searchArguments(textQuery, aql, criteriaBuilder))));
+    return matches.select(aql.get("id")).where(textMatch);
+  }
+
+  /**
+   * Ids of the categories whose name in the language contains the search input
+   */
+  private Subquery<Long> categoryMatches(String searchInput, CriteriaQuery<?> query, CriteriaBuilder criteriaBuilder) {
+    Subquery<Long> matches = query.subquery(Long.class);
+    Root<AqlCategory> category = matches.from(AqlCategory.class);
+    return matches.select(category.get("id"))
+                  .where(criteriaBuilder.like(
+                      criteriaBuilder.upper(criteriaBuilder.function("json_extract_path_text", String.class, category.get("name"),
+                          criteriaBuilder.literal(language.name()))),
+                      searchInput));
+  }
+
+  private String searchLanguage() {
+    return Language.de.equals(language) ? Language.de.name() : Language.en.name();
+  }
+
+  /**
+   * Full text query matching all words of the search input as prefixes, null if the input contains no words
+   */
+  public static String toPrefixTextQuery(String search) {
+    if (StringUtils.isBlank(search)) {
+      return null;
+    }
+    String textQuery = SEARCH_TERM_SEPARATOR.splitAsStream(search)
+                                            .filter(StringUtils::isNotEmpty)
+                                            .map(term -> term + ":*")
+                                            .collect(Collectors.joining(" & "));
+    return textQuery.isEmpty() ? null : textQuery;
+  }
+
+  /**
+   * Arguments of the full text search functions of the aql table (see the search index migration), the german functions
+   * search the original and the english functions the translated name, use and purpose
+   */
+  private Expression<?>[] searchArguments(String textQuery, Root<Aql> root, CriteriaBuilder criteriaBuilder) {
+    if (Language.de.equals(language)) {
+      return new Expression<?>[] {root.get("name"), root.get("use"), root.get("purpose"), criteriaBuilder.literal(textQuery)};
+    }
+    return new Expression<?>[] {
+        root.get("nameTranslated"), root.get("useTranslated"), root.get("purposeTranslated"), criteriaBuilder.literal(textQuery)};
+  }
 }
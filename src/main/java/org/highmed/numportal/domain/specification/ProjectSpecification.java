@@ -33,6 +33,8 @@ public class ProjectSpecification extends BaseSpecification {
 
   public static final String COORDINATOR_ORGANIZATION = "organization";
 
+  public static final String COORDINATOR_NAME = "author";
+
   private static final String WILDCARD_PERCENTAGE_SIGN = "%";
 
   private List<String> roles;
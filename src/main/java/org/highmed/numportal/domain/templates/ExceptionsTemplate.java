@@ -174,6 +174,13 @@ public class ExceptionsTemplate {
   public static final String CLAMAV_PING_FAILED = "Could not ping ClamAV service";
   public static final String CLAMAV_SCAN_FAILED = "Could not scan file %s";
 
+  //ExportJobService
+  public static final String EXPORT_JOB_NOT_FOUND = "Export job not found: %s";
+  public static final String EXPORT_JOB_NOT_COMPLETED = "Export job %s is not completed";
+  public static final String CANNOT_CREATE_EXPORT_JOB_DIRECTORY = "Cannot create the export job directory: %s";
+  public static final String EXPORT_JOB_LIMIT_REACHED = "Export job limit reached, at most %d export jobs per user can be queued or running";
+  public static final String EXPORT_JOB_QUEUE_FULL = "Export job queue is full, try again later";
+
   public static final Map<String, ExceptionDto> errorMap = new HashMap<>();
 
   static {
@@ -343,6 +350,12 @@ public class ExceptionsTemplate {
     errorMap.put(ATTACHMENT_LIMIT_REACHED, new ExceptionDto(111, new ArrayList<>()));
     errorMap.put(WRONG_PROJECT_STATUS, new ExceptionDto(112, new ArrayList<>()));
     errorMap.put(DESCRIPTION_TOO_LONG, new ExceptionDto(113, new ArrayList<>())); //1 parameter
+    //ExportJobService
+    errorMap.put(EXPORT_JOB_NOT_FOUND, new ExceptionDto(114, new ArrayList<>())); //1 parameter
+    errorMap.put(EXPORT_JOB_NOT_COMPLETED, new ExceptionDto(115, new ArrayList<>())); //1 parameter
+    errorMap.put(CANNOT_CREATE_EXPORT_JOB_DIRECTORY, new ExceptionDto(116, new ArrayList<>())); //1 parameter
+    errorMap.put(EXPORT_JOB_LIMIT_REACHED, new ExceptionDto(117, new ArrayList<>())); //1 parameter
+    errorMap.put(EXPORT_JOB_QUEUE_FULL, new ExceptionDto(118, new ArrayList<>()));
   }
 
   private ExceptionsTemplate() {
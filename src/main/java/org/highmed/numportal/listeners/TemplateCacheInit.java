@@ -0,0 +1,45 @@
+package org.highmed.numportal.listeners;
+
+import org.highmed.numportal.properties.TemplateCacheProperties;
+import org.highmed.numportal.service.ehrbase.CompositionFlattener;
+import org.highmed.numportal.service.ehrbase.EhrBaseService;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.ehrbase.openehr.sdk.response.dto.ehrscape.TemplateMetaDataDto;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.annotation.Async;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Slf4j
+@RequiredArgsConstructor
+@Component
+public class TemplateCacheInit implements ApplicationListener<ApplicationReadyEvent> {
+
+  private final EhrBaseService ehrBaseService;
+
+  private final CompositionFlattener compositionFlattener;
+
+  private final TemplateCacheProperties properties;
+
+  @Async
+  @Override
+  public void onApplicationEvent(ApplicationReadyEvent event) {
+    if (!properties.isWarmUp()) {
+      return;
+    }
+    log.info("---- start load web templates into cache ----- ");
+    try {
+      List<String> templateIds = ehrBaseService.getAllTemplatesMetadata().stream()
+                                               .map(TemplateMetaDataDto::getTemplateId)
+                                               .toList();
+      int built = compositionFlattener.warmUp(templateIds);
+      log.info("---- end load {} of {} web templates into cache ----- ", built, templateIds.size());
+    } catch (Exception e) {
+      log.warn("Could not load web templates into cache, they are built on first use", e);
+    }
+  }
+}
@@ -6,6 +6,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.scheduling.annotation.Async;
 import org.springframework.stereotype.Component;
 
 @Slf4j
@@ -15,11 +16,16 @@ public class UserCacheInit implements ApplicationListener<ApplicationReadyEvent>
 
   private final UserService userService;
 
+  @Async
   @Override
   public void onApplicationEvent(ApplicationReadyEvent event) {
-    log.info("---- start load existing users into cache ----- ");
-    userService.initializeUsersCache();
-    log.info("---- end load existing users into cache ----- ");
     userService.initializeTranslationCache();
+    log.info("---- start load existing users into cache ----- ");
+    try {
+      userService.initializeUsersCache();
+      log.info("---- end load existing users into cache ----- ");
+    } catch (Exception e) {
+      log.warn("Could not load existing users into cache, they are loaded on demand", e);
+    }
   }
 }
@@ -0,0 +1,25 @@
+package org.highmed.numportal.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "cohort.cache")
+public class CohortCacheProperties {
+
+  private boolean enabled = true;
+
+  /**
+   * Time after which a cached cohort result is executed against EhrBase again
+   */
+  private Duration timeToLive = Duration.ofMinutes(10);
+
+  /**
+   * Maximum number of cached cohort results, the least recently used are evicted first
+   */
+  private int maxEntries = 50;
+}
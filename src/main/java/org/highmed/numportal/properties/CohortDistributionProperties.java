@@ -0,0 +1,19 @@
+package org.highmed.numportal.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.List;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "cohort.distribution")
+public class CohortDistributionProperties {
+
+  /**
+   * Ascending bucket boundaries in years of the age distribution of a cohort, each pair of neighbouring boundaries
+   * forms a bucket including its lower and excluding its upper boundary
+   */
+  private List<Integer> ageBuckets = List.of(0, 10, 20, 30, 40, 50, 60, 70, 80, 90, 100, 110, 120, 130);
+}
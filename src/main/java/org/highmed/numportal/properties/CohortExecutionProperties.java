@@ -0,0 +1,43 @@
+package org.highmed.numportal.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "cohort.execution")
+public class CohortExecutionProperties {
+
+  /**
+   * Maximum number of cohort criteria (aql leaves) sent to EhrBase at the same time
+   */
+  private int parallelism = 8;
+
+  /**
+   * Maximum time to wait for all criteria of a cohort to be executed
+   */
+  private Duration timeout = Duration.ofMinutes(5);
+
+  /**
+   * Cohort criteria taking at least this long are logged with their aql id
+   */
+  private Duration slowCriterionThreshold = Duration.ofSeconds(10);
+
+  /**
+   * Whether AND/OR subtrees of a cohort that can be expressed as one aql are sent to EhrBase as a single query
+   */
+  private boolean pushDown = true;
+
+  /**
+   * Age after which the snapshot of all ehr ids (universe for NOT groups) is refreshed in the background
+   */
+  private Duration allEhrIdsRefreshAfter = Duration.ofMinutes(10);
+
+  /**
+   * Maximum age of the snapshot of all ehr ids, older snapshots are reloaded before being used
+   */
+  private Duration allEhrIdsMaxAge = Duration.ofMinutes(30);
+}
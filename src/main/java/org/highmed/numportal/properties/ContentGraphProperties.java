@@ -0,0 +1,28 @@
+package org.highmed.numportal.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "content.graph")
+public class ContentGraphProperties {
+
+  /**
+   * Age after which the precomputed clinic graphs of the dashboard are computed again in the background
+   */
+  private Duration refreshAfter = Duration.ofMinutes(15);
+
+  /**
+   * Maximum number of clinic graph queries sent to EhrBase at the same time while computing the graphs
+   */
+  private int parallelism = 4;
+
+  /**
+   * Maximum time to wait for all clinic graph queries of one computation
+   */
+  private Duration timeout = Duration.ofMinutes(5);
+}
@@ -20,4 +20,19 @@ public class EhrBaseProperties {
   private String adminPassword;
 
   private String idPath = "ehr_status/subject/external_ref/id/value";
+
+  /**
+   * Size of the connection pool to EhrBase, bounds the number of concurrent queries
+   */
+  private int maxConnections = 20;
+
+  /**
+   * Maximum number of cohort ehr ids inlined into a single data query, larger cohorts are queried in batches
+   */
+  private int ehrIdBatchSize = 5000;
+
+  /**
+   * Maximum number of batches of a query sent to EhrBase at the same time
+   */
+  private int batchParallelism = 4;
 }
@@ -0,0 +1,51 @@
+package org.highmed.numportal.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "export")
+public class ExportProperties {
+
+  /**
+   * Maximum number of templates of an export retrieved from EhrBase at the same time
+   */
+  private int parallelism = 4;
+
+  /**
+   * Maximum time to wait for the data of a single template, an empty result is exported for templates exceeding it
+   */
+  private Duration templateTimeout = Duration.ofMinutes(10);
+
+  /**
+   * Maximum number of export jobs built at the same time, further jobs wait in the queue
+   */
+  private int jobParallelism = 2;
+
+  /**
+   * Maximum number of export jobs waiting for a worker, further jobs are rejected
+   */
+  private int jobQueueCapacity = 20;
+
+  /**
+   * Maximum number of export jobs of a user queued or running at the same time, further jobs are rejected
+   */
+  private int jobMaxActivePerUser = 2;
+
+  /**
+   * Directory the results of export jobs are written to, with several instances of the portal it has to be shared by
+   * all of them
+   */
+  private Path jobDirectory = Path.of(System.getProperty("java.io.tmpdir"), "num-portal-exports");
+
+  /**
+   * Time after which an export job and its result are removed, counted from the completion of the job. Jobs not
+   * modified for this time without being completed are removed as well.
+   */
+  private Duration jobTimeToLive = Duration.ofHours(24);
+}
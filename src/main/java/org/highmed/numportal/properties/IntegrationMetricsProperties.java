@@ -0,0 +1,18 @@
+package org.highmed.numportal.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "integration.metrics")
+public class IntegrationMetricsProperties {
+
+  /**
+   * Duration after which a call to an outbound integration is logged as slow, together with the hash of its query
+   */
+  private Duration slowCallThreshold = Duration.ofSeconds(5);
+}
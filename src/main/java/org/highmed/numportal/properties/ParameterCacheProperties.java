@@ -0,0 +1,23 @@
+package org.highmed.numportal.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "parameter.cache")
+public class ParameterCacheProperties {
+
+  /**
+   * Age after which cached parameter options are served once more and loaded again from EhrBase in the background
+   */
+  private Duration refreshAfter = Duration.ofHours(1);
+
+  /**
+   * Time after which cached parameter options are no longer served and removed, if they were not refreshed
+   */
+  private Duration timeToLive = Duration.ofDays(1);
+}
@@ -0,0 +1,34 @@
+package org.highmed.numportal.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "pseudonymity")
+public class PseudonymityProperties {
+
+  /**
+   * Maximum number of pseudonym chunks requested from the trusted third party at the same time, also the size of the
+   * connection pool to it
+   */
+  private int parallelism = 4;
+
+  /**
+   * Whether resolved third level pseudonyms are cached per project
+   */
+  private boolean cacheEnabled = true;
+
+  /**
+   * Time after which a cached pseudonym is requested from the trusted third party again
+   */
+  private Duration cacheTimeToLive = Duration.ofHours(1);
+
+  /**
+   * Maximum number of cached pseudonyms over all projects
+   */
+  private int cacheMaxEntries = 100000;
+}
@@ -0,0 +1,29 @@
+package org.highmed.numportal.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "template.cache")
+public class TemplateCacheProperties {
+
+  /**
+   * Builds the web templates of all templates known to EhrBase once the application is ready, instead of on the first
+   * composition of each template
+   */
+  private boolean warmUp = true;
+
+  /**
+   * Time after which a cached web template expires
+   */
+  private Duration timeToLive = Duration.ofDays(1);
+
+  /**
+   * Age after which a cached web template is built again in the background, before it expires
+   */
+  private Duration refreshAfter = Duration.ofHours(20);
+}
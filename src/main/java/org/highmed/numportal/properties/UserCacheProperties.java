@@ -0,0 +1,21 @@
+package org.highmed.numportal.properties;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+@Data
+@Configuration
+@ConfigurationProperties(prefix = "user.cache")
+public class UserCacheProperties {
+
+  /**
+   * Number of users requested from keycloak per page while loading the users cache
+   */
+  private int pageSize = 100;
+
+  /**
+   * Maximum number of role mapping requests sent to keycloak at the same time while loading the users cache
+   */
+  private int parallelism = 8;
+}
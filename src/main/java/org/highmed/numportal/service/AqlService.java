@@ -6,7 +6,6 @@ import org.highmed.numportal.domain.dto.SlimAqlDto;
 import org.highmed.numportal.domain.model.Aql;
 import org.highmed.numportal.domain.model.AqlCategory;
 import org.highmed.numportal.domain.model.Roles;
-import org.highmed.numportal.domain.model.admin.User;
 import org.highmed.numportal.domain.model.admin.UserDetails;
 import org.highmed.numportal.domain.repository.AqlCategoryRepository;
 import org.highmed.numportal.domain.repository.AqlRepository;
@@ -40,12 +39,10 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.OffsetDateTime;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Comparator;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.stream.Collectors;
 
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.AQL_EDIT_FOR_AQL_WITH_ID_IS_NOT_ALLOWED_AQL_HAS_DIFFERENT_OWNER;
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.AQL_NOT_FOUND;
@@ -121,17 +118,11 @@ public class AqlService {
     Pageable pageRequest;
     Page<Aql> aqlPage;
     List<Aql> aqlQueries;
-    if (!searchCriteria.isSortByAuthor()) {
-      if (AQL_CATEGORY.equals(searchCriteria.getSortBy())) {
-        // sort send on page request messes up the generated query for order by and ignores what is inside aql specification
-        pageRequest = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
-      } else {
-        pageRequest = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
-      }
+    if (AQL_CATEGORY.equals(searchCriteria.getSortBy()) || searchCriteria.isSortByAuthor() || isRankedSearch(searchCriteria)) {
+      // sort send on page request messes up the generated query for order by and ignores what is inside aql specification
+      pageRequest = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize());
     } else {
-      long count = aqlRepository.count();
-      // load all aql criterias because sort by author is done in memory
-      pageRequest = PageRequest.of(0, count != 0 ? (int) count : 1);
+      pageRequest = PageRequest.of(pageable.getPageNumber(), pageable.getPageSize(), sort);
     }
     Set<String> usersUUID = null;
     if (searchCriteria.getFilter() != null && searchCriteria.getFilter().containsKey(SearchCriteria.FILTER_SEARCH_BY_KEY)) {
@@ -150,35 +141,9 @@ public class AqlService {
                                                         .build();
     aqlPage = aqlRepository.findAll(aqlSpecification, pageRequest);
     aqlQueries = new ArrayList<>(aqlPage.getContent());
-
-    if (searchCriteria.isSortByAuthor()) {
-      sortAqlQueries(aqlQueries, sort);
-      aqlQueries = aqlQueries.stream()
-                             .skip((long) pageable.getPageNumber() * pageable.getPageSize())
-                             .limit(pageable.getPageSize())
-                             .collect(Collectors.toList());
-    }
     return new PageImpl<>(aqlQueries, pageable, aqlPage.getTotalElements());
   }
 
-  private void sortAqlQueries(List<Aql> aqlQueries, Sort sort) {
-    if (sort != null) {
-      Sort.Order authorOrder = sort.getOrderFor(AUTHOR_NAME);
-      if (authorOrder != null) {
-        Comparator<Aql> byAuthorName = Comparator.comparing(aql -> {
-          User owner = userService.getOwner(aql.getOwner().getUserId());
-          return owner.getFullName().toUpperCase();
-        });
-        Sort.Direction sortOrder = authorOrder.getDirection();
-        if (sortOrder.isAscending()) {
-          aqlQueries.sort(Comparator.nullsLast(byAuthorName));
-        } else {
-          aqlQueries.sort(Comparator.nullsLast(byAuthorName.reversed()));
-        }
-      }
-    }
-  }
-
   public Aql createAql(Aql aql, String loggedInUserId, Long aqlCategoryId) {
     var userDetails = userDetailsService.checkIsUserApproved(loggedInUserId);
 
@@ -355,6 +320,15 @@ public class AqlService {
     return Optional.of(JpaSort.unsafe(Sort.Direction.ASC, "name->>'de'"));
   }
 
+  /**
+   * Searches without an explicit sort field are ordered by the full text rank of the aql criteria
+   */
+  private boolean isRankedSearch(SearchCriteria searchCriteria) {
+    return StringUtils.isEmpty(searchCriteria.getSortBy())
+        && searchCriteria.getFilter() != null
+        && StringUtils.isNotBlank((String) searchCriteria.getFilter().get(SearchCriteria.FILTER_SEARCH_BY_KEY));
+  }
+
   private Sort validateAndGetSortForAqlQuery(SearchCriteria searchCriteria) {
     if (searchCriteria.isValid() && StringUtils.isNotEmpty(searchCriteria.getSortBy())) {
       if (!AQL_QUERY_SORT_FIELDS.contains(searchCriteria.getSortBy())) {
@@ -10,6 +10,7 @@ import org.highmed.numportal.domain.model.Project;
 import org.highmed.numportal.domain.model.ProjectStatus;
 import org.highmed.numportal.domain.repository.CohortRepository;
 import org.highmed.numportal.domain.repository.ProjectRepository;
+import org.highmed.numportal.properties.CohortDistributionProperties;
 import org.highmed.numportal.properties.PrivacyProperties;
 import org.highmed.numportal.service.ehrbase.EhrBaseService;
 import org.highmed.numportal.service.exception.BadRequestException;
@@ -35,10 +36,11 @@ import org.ehrbase.openehr.sdk.aql.dto.operand.Operand;
 import org.ehrbase.openehr.sdk.aql.dto.operand.QueryParameter;
 import org.ehrbase.openehr.sdk.aql.parser.AqlQueryParser;
 import org.ehrbase.openehr.sdk.aql.render.AqlRenderer;
-import org.ehrbase.openehr.sdk.response.dto.QueryResponseData;
 import org.modelmapper.ModelMapper;
 import org.springframework.stereotype.Service;
 
+import java.time.Period;
+import java.time.format.DateTimeParseException;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedHashMap;
@@ -66,20 +68,16 @@ import static org.highmed.numportal.domain.templates.ExceptionsTemplate.RESULTS_
 @AllArgsConstructor
 public class CohortService {
 
-  public static final String GET_PATIENTS_PER_CLINIC =
-      "SELECT e/ehr_id/value as patient_id "
+  public static final String GET_COMPOSITION_FACILITIES =
+      "SELECT c/context/health_care_facility/name "
           + "FROM EHR e CONTAINS COMPOSITION c "
-          + "WHERE c/context/health_care_facility/name = '%s'"
-          + "AND e/ehr_id/value MATCHES {%s} ";
-  public static final String GET_PATIENTS_PER_AGE_INTERVAL =
-      "SELECT count(e/ehr_id/value) "
+          + "WHERE e/ehr_id/value MATCHES {%s} ";
+  public static final String GET_PATIENT_AGES =
+      "SELECT o0/data[at0001]/events[at0002]/data[at0003]/items[at0004]/value/value "
           + "FROM EHR e contains OBSERVATION o0[openEHR-EHR-OBSERVATION.age.v0] "
-          + "WHERE o0/data[at0001]/events[at0002]/data[at0003]/items[at0004]/value/value >= 'P%dY' "
-          + "AND o0/data[at0001]/events[at0002]/data[at0003]/items[at0004]/value/value < 'P%dY'"
-          + "AND e/ehr_id/value MATCHES {%s} ";
+          + "WHERE e/ehr_id/value MATCHES {%s} ";
   private static final String AGE_INTERVAL_LABEL = "%d-%d";
-  private static final int MAX_AGE = 122;
-  private static final int AGE_INTERVAL = 10;
+  private static final int MONTHS_PER_YEAR = 12;
   private final CohortRepository cohortRepository;
   private final CohortExecutor cohortExecutor;
   private final UserDetailsService userDetailsService;
@@ -91,6 +89,7 @@ public class CohortService {
   private final EhrBaseService ehrBaseService;
   private final ContentService contentService;
   private final TemplateService templateService;
+  private final CohortDistributionProperties distributionProperties;
 
   public Cohort getCohort(Long cohortId, String userId) {
     userDetailsService.checkIsUserApproved(userId);
@@ -339,38 +338,84 @@ public class CohortService {
     return ehrIds;
   }
 
+  /**
+   * Fetches the ages of the cohort with a single query and counts them per configured age bucket. Like the comparison of
+   * durations in aql, an age belongs to a bucket when it is at least the lower and less than the upper boundary.
+   */
   private Map<String, Integer> getSizesPerAgeGroup(String idsString) {
+    List<Integer> boundaries = distributionProperties.getAgeBuckets();
     Map<String, Integer> sizes = new LinkedHashMap<>();
-    for (int age = 0; age < MAX_AGE; age += AGE_INTERVAL) {
-      QueryResponseData queryResponseData =
-          ehrBaseService.executePlainQuery(
-              String.format(GET_PATIENTS_PER_AGE_INTERVAL, age, age + AGE_INTERVAL, idsString));
-      List<List<Object>> rows = queryResponseData.getRows();
-      String range = String.format(AGE_INTERVAL_LABEL, age, age + AGE_INTERVAL);
-      if (rows == null || rows.get(0) == null || rows.get(0).get(0) == null) {
-        sizes.put(range, 0);
-      } else {
-        sizes.put(range, (Integer) rows.get(0).get(0));
+    if (CollectionUtils.isEmpty(boundaries) || boundaries.size() < 2) {
+      return sizes;
+    }
+    int[] counts = new int[boundaries.size() - 1];
+
+    List<List<Object>> rows = ehrBaseService.executePlainQuery(String.format(GET_PATIENT_AGES, idsString)).getRows();
+    if (rows != null) {
+      for (List<Object> row : rows) {
+        Integer months = row == null || row.isEmpty() ? null : toMonths(row.get(0));
+        if (months != null) {
+          int bucket = findAgeBucket(boundaries, months);
+          if (bucket >= 0) {
+            counts[bucket]++;
+          }
+        }
       }
     }
+
+    for (int i = 0; i < counts.length; i++) {
+      sizes.put(String.format(AGE_INTERVAL_LABEL, boundaries.get(i), boundaries.get(i + 1)), counts[i]);
+    }
     return sizes;
   }
 
+  private int findAgeBucket(List<Integer> boundaries, int months) {
+    for (int i = 0; i < boundaries.size() - 1; i++) {
+      if (months >= boundaries.get(i) * MONTHS_PER_YEAR && months < boundaries.get(i + 1) * MONTHS_PER_YEAR) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Converts an iso 8601 age like P45Y or P45Y6M12D to whole months, the time part is not relevant for age buckets
+   */
+  private Integer toMonths(Object age) {
+    if (!(age instanceof String value) || StringUtils.isBlank(value)) {
+      return null;
+    }
+    int timeStart = value.indexOf('T');
+    String datePart = timeStart < 0 ? value : value.substring(0, timeStart);
+    try {
+      return (int) Period.parse(datePart).toTotalMonths();
+    } catch (DateTimeParseException e) {
+      log.debug("Ignoring age {} that is not an iso 8601 period", value);
+      return null;
+    }
+  }
+
+  /**
+   * Fetches the health care facility of every composition of the cohort with a single query and counts them per clinic
+   */
   private Map<String, Integer> getSizesPerHospital(String loggedInUserId, String idsString) {
 
     Map<String, Integer> sizes = new LinkedHashMap<>();
     List<String> clinics = contentService.getClinics(loggedInUserId);
     if (CollectionUtils.isNotEmpty(clinics)) {
+      Map<String, Integer> compositionsPerFacility = new HashMap<>();
+      List<List<Object>> rows =
+          ehrBaseService.executePlainQuery(String.format(GET_COMPOSITION_FACILITIES, idsString)).getRows();
+      if (rows != null) {
+        for (List<Object> row : rows) {
+          if (row != null && !row.isEmpty() && row.get(0) instanceof String facility) {
+            compositionsPerFacility.merge(facility, 1, Integer::sum);
+          }
+        }
+      }
       for (String clinic : clinics) {
         if (Objects.nonNull(clinic)) {
-          QueryResponseData queryResponseData =
-              ehrBaseService.executePlainQuery(String.format(GET_PATIENTS_PER_CLINIC, clinic, idsString));
-          List<List<Object>> rows = queryResponseData.getRows();
-          if (rows == null) {
-            sizes.put(clinic, 0);
-          } else {
-            sizes.put(clinic, rows.size());
-          }
+          sizes.put(clinic, compositionsPerFacility.getOrDefault(clinic, 0));
         }
       }
     }
@@ -1,6 +1,7 @@
 package org.highmed.numportal.service;
 
 import org.highmed.numportal.domain.dto.CohortDto;
+import org.highmed.numportal.domain.model.ExportJob;
 import org.highmed.numportal.domain.model.ExportType;
 import org.highmed.numportal.domain.model.Organization;
 import org.highmed.numportal.domain.model.Project;
@@ -8,6 +9,7 @@ import org.highmed.numportal.domain.model.ProjectStatus;
 import org.highmed.numportal.domain.model.admin.UserDetails;
 import org.highmed.numportal.service.atna.AtnaService;
 import org.highmed.numportal.service.exception.SystemException;
+import org.highmed.numportal.service.export.ExportJobService;
 import org.highmed.numportal.service.util.ExportUtil;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
@@ -26,6 +28,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.ERROR_WHILE_RETRIEVING_DATA;
 
@@ -45,6 +48,8 @@ public class ManagerService {
 
   private final ObjectMapper mapper;
 
+  private final ExportJobService exportJobService;
+
 
   public String executeManagerProject(CohortDto cohortDto, List<String> templates, String userId) {
     var queryResponse = StringUtils.EMPTY;
@@ -72,8 +77,8 @@ public class ManagerService {
 
     var templateMap = templates.stream().collect(Collectors.toMap(k -> k, v -> v));
 
-    List<QueryResponseData> response =
-        exportUtil.executeDefaultConfiguration(
+    Stream<QueryResponseData> response =
+        exportUtil.streamDefaultConfiguration(
             project.getId(), cohortService.toCohort(cohortDto), templateMap);
 
     if (format == ExportType.json) {
@@ -83,6 +88,15 @@ public class ManagerService {
     }
   }
 
+  /**
+   * Queues the export of a manager data retrieval as export job
+   */
+  public ExportJob submitManagerExport(CohortDto cohortDto, List<String> templates, String userId, ExportType format) {
+    userDetailsService.checkIsUserApproved(userId);
+    return exportJobService.submit(userId, createManagerProject(), format,
+        () -> getManagerExportResponseBody(cohortDto, templates, userId, format));
+  }
+
   private Project createManagerProject() {
     var undef = "undef";
     return Project.builder()
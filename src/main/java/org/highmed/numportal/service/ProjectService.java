@@ -9,6 +9,7 @@ import org.highmed.numportal.domain.dto.SearchCriteria;
 import org.highmed.numportal.domain.dto.TemplateInfoDto;
 import org.highmed.numportal.domain.dto.UserDetailsDto;
 import org.highmed.numportal.domain.dto.ZarsInfoDto;
+import org.highmed.numportal.domain.model.ExportJob;
 import org.highmed.numportal.domain.model.ExportType;
 import org.highmed.numportal.domain.model.Organization;
 import org.highmed.numportal.domain.model.Project;
@@ -30,6 +31,7 @@ import org.highmed.numportal.service.exception.ForbiddenException;
 import org.highmed.numportal.service.exception.ResourceNotFound;
 import org.highmed.numportal.service.exception.SystemException;
 import org.highmed.numportal.service.executors.CohortQueryLister;
+import org.highmed.numportal.service.export.ExportJobService;
 import org.highmed.numportal.service.metric.ProjectsMetrics;
 import org.highmed.numportal.service.notification.NotificationService;
 import org.highmed.numportal.service.notification.dto.Notification;
@@ -71,7 +73,6 @@ import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Comparator;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
@@ -81,6 +82,7 @@ import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static java.util.Objects.nonNull;
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.AN_ISSUE_HAS_OCCURRED_CANNOT_EXECUTE_AQL;
@@ -155,6 +157,8 @@ public class ProjectService {
 
   private final ProjectsMetrics projectsMetrics;
 
+  private final ExportJobService exportJobService;
+
 
   @Transactional
   public boolean deleteProject(Long projectId, String userId, List<String> roles) throws ForbiddenException {
@@ -251,12 +255,23 @@ public class ProjectService {
   }
 
   private List<QueryResponseData> executeCustomConfiguration(String query, Long projectId, String userId) {
-    List<QueryResponseData> response = executeAql(query, projectId, userId);
+    return executeCustomConfiguration(query, projectId, userId, true);
+  }
+
+  private List<QueryResponseData> executeCustomConfiguration(String query, Long projectId, String userId, boolean audit) {
+    List<QueryResponseData> response = executeAql(query, projectId, userId, audit);
     return responseFilter.filterResponse(response);
   }
 
 
   public List<QueryResponseData> executeAql(String query, Long projectId, String userId) {
+    return executeAql(query, projectId, userId, true);
+  }
+
+  /**
+   * @param audit Whether the data export is logged, export jobs log it themselves once the job is finished
+   */
+  private List<QueryResponseData> executeAql(String query, Long projectId, String userId, boolean audit) {
     List<QueryResponseData> queryResponseData;
     Project project = null;
     try {
@@ -269,17 +284,26 @@ public class ProjectService {
 
       AqlQuery aql = AqlQueryParser.parse(query);
 
-      List<Policy> policies =
-          exportUtil.collectProjectPolicies(ehrIds, project.getTemplates(), project.isUsedOutsideEu());
-      projectPolicyService.apply(aql, policies);
+      if (exportUtil.requiresBatches(aql, ehrIds)) {
+        queryResponseData =
+            exportUtil.executeInBatches(aql, ehrIds, project.getTemplates(), project.isUsedOutsideEu(), projectId);
+      } else {
+        List<Policy> policies =
+            exportUtil.collectProjectPolicies(ehrIds, project.getTemplates(), project.isUsedOutsideEu());
+        projectPolicyService.apply(aql, policies);
 
-      queryResponseData = ehrBaseService.executeRawQuery(aql, projectId);
+        queryResponseData = ehrBaseService.executeRawQuery(aql, projectId);
+      }
 
     } catch (Exception e) {
-      atnaService.logDataExport(userId, projectId, project, false);
+      if (audit) {
+        atnaService.logDataExport(userId, projectId, project, false);
+      }
       throw e;
     }
-    atnaService.logDataExport(userId, projectId, project, true);
+    if (audit) {
+      atnaService.logDataExport(userId, projectId, project, true);
+    }
     return queryResponseData;
   }
 
@@ -289,16 +313,26 @@ public class ProjectService {
       String userId,
       ExportType format,
       Boolean defaultConfiguration) {
+    return getExportResponseBody(query, projectId, userId, format, defaultConfiguration, true);
+  }
+
+  private StreamingResponseBody getExportResponseBody(
+      String query,
+      Long projectId,
+      String userId,
+      ExportType format,
+      Boolean defaultConfiguration,
+      boolean audit) {
 
     userDetailsService.checkIsUserApproved(userId);
     Project project = validateAndRetrieveProject(projectId, userId);
-    List<QueryResponseData> response;
+    Stream<QueryResponseData> response;
 
     if (BooleanUtils.isTrue(defaultConfiguration)) {
       response =
-          exportUtil.executeDefaultConfiguration(projectId, project.getCohort(), project.getTemplates());
+          exportUtil.streamDefaultConfiguration(projectId, project.getCohort(), project.getTemplates());
     } else {
-      response = executeCustomConfiguration(query, projectId, userId);
+      response = executeCustomConfiguration(query, projectId, userId, audit).stream();
     }
 
     if (format == ExportType.json) {
@@ -308,9 +342,25 @@ public class ProjectService {
     }
   }
 
+  /**
+   * Queues the export of a project as export job, access to the project is checked before the job is queued
+   */
+  public ExportJob submitExport(
+      String query,
+      Long projectId,
+      String userId,
+      ExportType format,
+      Boolean defaultConfiguration) {
+
+    userDetailsService.checkIsUserApproved(userId);
+    Project project = validateAndRetrieveProject(projectId, userId);
+    return exportJobService.submit(userId, project, format,
+        () -> getExportResponseBody(query, projectId, userId, format, defaultConfiguration, false));
+  }
+
   public Optional<Project> getProjectById(String loggedInUserId, Long projectId) {
     userDetailsService.checkIsUserApproved(loggedInUserId);
-    return projectRepository.findById(projectId);
+    return projectRepository.findDetailById(projectId);
   }
 
   public boolean exists(Long id) {
@@ -774,12 +824,6 @@ public class ProjectService {
       String searchValue = (String) searchCriteria.getFilter().get(SearchCriteria.FILTER_SEARCH_BY_KEY);
       usersUUID = userService.findUsersUUID(searchValue);
     }
-    boolean sortByAuthor = searchCriteria.isSortByAuthor();
-    if (sortByAuthor) {
-      long count = projectRepository.count();
-      // load all projects because sort by author should be done in memory
-      pageRequest = PageRequest.of(0, count != 0 ? (int) count : 1);
-    }
     String sortByField = searchCriteria.isValid() && StringUtils.isNotEmpty(searchCriteria.getSortBy()) ? searchCriteria.getSortBy() : "modifiedDate";
     Language language = Objects.nonNull(searchCriteria.getLanguage()) ? searchCriteria.getLanguage() : Language.de;
     ProjectSpecification projectSpecification = ProjectSpecification.builder()
@@ -795,13 +839,6 @@ public class ProjectService {
                                                                     .build();
     projectPage = projectRepository.findProjects(projectSpecification, pageRequest);
     projects = new ArrayList<>(projectPage.getContent());
-    if (sortByAuthor) {
-      sortProjects(projects, sortBy);
-      projects = projects.stream()
-                         .skip((long) pageable.getPageNumber() * pageable.getPageSize())
-                         .limit(pageable.getPageSize())
-                         .collect(Collectors.toList());
-    }
     return new PageImpl<>(projects, pageable, projectPage.getTotalElements());
   }
 
@@ -817,24 +854,6 @@ public class ProjectService {
     return Sort.by(Sort.Direction.DESC, "modifiedDate");
   }
 
-  private void sortProjects(List<Project> projects, Sort sortBy) {
-    if (sortBy != null) {
-      Sort.Order authorOrder = sortBy.getOrderFor(AUTHOR_NAME);
-      if (authorOrder != null) {
-        Comparator<Project> byAuthorName = Comparator.comparing(project -> {
-          User coordinator = userService.getOwner(project.getCoordinator().getUserId());
-          return Objects.requireNonNull(coordinator).getFullName().toUpperCase();
-        });
-        Sort.Direction sortOrder = authorOrder.getDirection();
-        if (sortOrder.isAscending()) {
-          projects.sort(Comparator.nullsLast(byAuthorName));
-        } else {
-          projects.sort(Comparator.nullsLast(byAuthorName.reversed()));
-        }
-      }
-    }
-  }
-
   private void setTemplates(Project project, ProjectDto projectDto) {
     if (projectDto.getTemplates() != null) {
       Map<String, String> map =
@@ -0,0 +1,27 @@
+package org.highmed.numportal.service;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reports the progress of loading the users cache on the readiness probe. The instance stays ready while the cache is
+ * loaded, users not cached yet are fetched from keycloak on demand.
+ */
+@Component
+@RequiredArgsConstructor
+public class UserCacheHealthIndicator implements HealthIndicator {
+
+  private final UserCacheLoader userCacheLoader;
+
+  @Override
+  public Health health() {
+    UserCacheLoader.Progress progress = userCacheLoader.getProgress();
+    return Health.up()
+                 .withDetail("state", progress.state())
+                 .withDetail("loaded", progress.loaded())
+                 .withDetail("total", progress.total())
+                 .build();
+  }
+}
@@ -0,0 +1,190 @@
+package org.highmed.numportal.service;
+
+import org.highmed.numportal.domain.dto.OrganizationDto;
+import org.highmed.numportal.domain.model.admin.Role;
+import org.highmed.numportal.domain.model.admin.User;
+import org.highmed.numportal.domain.model.admin.UserDetails;
+import org.highmed.numportal.mapper.OrganizationMapper;
+import org.highmed.numportal.properties.UserCacheProperties;
+import org.highmed.numportal.web.feign.KeycloakFeign;
+
+import feign.FeignException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+import static org.highmed.numportal.service.UserService.USERS_CACHE;
+
+/**
+ * Loads all portal users with their roles into the users cache. The users are listed from keycloak page by page and
+ * their role mappings are requested concurrently on a bounded pool, instead of two requests per user one after the
+ * other. Users not loaded yet are fetched from keycloak on demand, the progress is reported on the readiness probe.
+ * Names changed directly in keycloak are set on the loaded user details and stored together once all pages are loaded.
+ */
+@Slf4j
+@Component
+public class UserCacheLoader {
+
+  private final KeycloakFeign keycloakFeign;
+
+  private final UserDetailsService userDetailsService;
+
+  private final OrganizationMapper organizationMapper;
+
+  private final CacheManager cacheManager;
+
+  private final UserCacheProperties properties;
+
+  private final UserSearchIndex userSearchIndex;
+
+  private final ExecutorService executorService;
+
+  private volatile Progress progress = new Progress(State.PENDING, 0, 0);
+
+  @Autowired
+  public UserCacheLoader(KeycloakFeign keycloakFeign, UserDetailsService userDetailsService,
+      OrganizationMapper organizationMapper, CacheManager cacheManager, UserCacheProperties properties,
+      UserSearchIndex userSearchIndex) {
+    this.keycloakFeign = keycloakFeign;
+    this.userDetailsService = userDetailsService;
+    this.organizationMapper = organizationMapper;
+    this.cacheManager = cacheManager;
+    this.properties = properties;
+    this.userSearchIndex = userSearchIndex;
+    this.executorService =
+        Executors.newFixedThreadPool(Math.max(1, properties.getParallelism()), new CustomizableThreadFactory("user-cache-"));
+  }
+
+  public Progress getProgress() {
+    return progress;
+  }
+
+  /**
+   * Loads all portal users into the users cache and removes cached users that no longer exist in keycloak
+   *
+   * @return number of users loaded
+   */
+  @Transactional
+  public synchronized int load() {
+    Cache usersCache = cacheManager.getCache(USERS_CACHE);
+    if (usersCache == null) {
+      return 0;
+    }
+    Map<String, UserDetails> portalUsers = new HashMap<>();
+    userDetailsService.getAllUserDetails().forEach(userDetails -> portalUsers.putIfAbsent(userDetails.getUserId(), userDetails));
+    progress = new Progress(State.LOADING, 0, portalUsers.size());
+    try {
+      Map<String, User> loaded = loadUsers(usersCache, portalUsers);
+      if (usersCache.getNativeCache() instanceof ConcurrentMap<?, ?> cachedUsers) {
+        cachedUsers.keySet().removeIf(userId -> !loaded.containsKey(userId));
+      }
+      userSearchIndex.replaceAll(loaded.values());
+      progress = new Progress(State.COMPLETED, loaded.size(), portalUsers.size());
+      log.info("Loaded {} of {} portal users into the users cache", loaded.size(), portalUsers.size());
+      return loaded.size();
+    } catch (RuntimeException e) {
+      progress = new Progress(State.FAILED, progress.loaded(), portalUsers.size());
+      throw e;
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executorService.shutdownNow();
+  }
+
+  private Map<String, User> loadUsers(Cache usersCache, Map<String, UserDetails> portalUsers) {
+    Map<Long, OrganizationDto> organizations = new HashMap<>();
+    Map<String, User> loaded = new ConcurrentHashMap<>();
+    List<UserDetails> renamed = new ArrayList<>();
+    int pageSize = Math.max(1, properties.getPageSize());
+    int first = 0;
+    List<User> page;
+    do {
+      page = keycloakFeign.getUsers(first, pageSize);
+      List<CompletableFuture<Void>> roleRequests = new ArrayList<>(page.size());
+      for (User user : page) {
+        UserDetails userDetails = portalUsers.get(user.getId());
+        if (userDetails == null) {
+          continue;
+        }
+        if (addUserDetails(user, userDetails, organizations)) {
+          renamed.add(userDetails);
+        }
+        roleRequests.add(CompletableFuture.runAsync(() -> {
+          if (addRoles(user)) {
+            usersCache.put(user.getId(), user);
+            loaded.put(user.getId(), user);
+          }
+        }, executorService));
+      }
+      CompletableFuture.allOf(roleRequests.toArray(CompletableFuture[]::new)).join();
+      progress = new Progress(State.LOADING, loaded.size(), portalUsers.size());
+      first += page.size();
+    } while (page.size() == pageSize);
+    if (!renamed.isEmpty()) {
+      userDetailsService.saveFullNames(renamed);
+      log.info("Stored the changed names of {} portal users", renamed.size());
+    }
+    return loaded;
+  }
+
+  /**
+   * Adds approval and organization of the user details to the user and takes over a name changed in keycloak
+   *
+   * @return Whether the name of the user details changed and has to be stored
+   */
+  private boolean addUserDetails(User user, UserDetails userDetails, Map<Long, OrganizationDto> organizations) {
+    user.setApproved(userDetails.isApproved());
+    if (userDetails.getOrganization() != null) {
+      user.setOrganization(organizations.computeIfAbsent(userDetails.getOrganization().getId(),
+          id -> organizationMapper.convertToDto(userDetails.getOrganization())));
+    }
+    if (Objects.equals(userDetails.getFullName(), user.getFullName())) {
+      return false;
+    }
+    userDetails.setFullName(user.getFullName());
+    return true;
+  }
+
+  private boolean addRoles(User user) {
+    try {
+      Set<Role> roles = keycloakFeign.getRolesOfUser(user.getId());
+      user.setRoles(roles.stream().map(Role::getName).collect(Collectors.toCollection(HashSet::new)));
+      return true;
+    } catch (FeignException e) {
+      log.warn("skip cache user {} because roles could not be retrieved from keycloak, status {}", user.getId(), e.status());
+      return false;
+    }
+  }
+
+  public enum State {
+    PENDING, LOADING, COMPLETED, FAILED
+  }
+
+  /**
+   * Portal users loaded into the cache so far, out of all portal users
+   */
+  public record Progress(State state, int loaded, int total) {
+
+  }
+}
@@ -33,6 +33,7 @@ import java.time.ZoneOffset;
 import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
 
@@ -156,6 +157,8 @@ public class UserDetailsService {
             .orElseThrow(() -> new ResourceNotFound(UserDetailsService.class, USER_NOT_FOUND, String.format(USER_NOT_FOUND, userId)));
     userDetails.setApproved(true);
     UserDetails saved = userDetailsRepository.save(userDetails);
+    //trigger cache update, approval is filtered in the user search
+    userService.addUserToCache(userId);
 
     notificationService.send(collectAccountApprovalNotification(userId, loggedInUserId));
     usersMetrics.approveUser();
@@ -184,6 +187,29 @@ public class UserDetailsService {
     return userDetailsRepository.count();
   }
 
+  public List<UserDetails> getAllUserDetails() {
+    return userDetailsRepository.findAll();
+  }
+
+  /**
+   * Stores the display name of a user if it changed in keycloak
+   */
+  public void updateFullName(String userId, String fullName) {
+    userDetailsRepository.findByUserId(userId)
+                         .filter(userDetails -> !Objects.equals(userDetails.getFullName(), fullName))
+                         .ifPresent(userDetails -> {
+                           userDetails.setFullName(fullName);
+                           userDetailsRepository.save(userDetails);
+                         });
+  }
+
+  /**
+   * Stores the user details whose display names were updated while loading the users cache, in one batch
+   */
+  public void saveFullNames(List<UserDetails> userDetails) {
+    userDetailsRepository.saveAll(userDetails);
+  }
+
   public List<String> getAllUsersUUID() {
     return userDetailsRepository.getAllUsersId();
   }
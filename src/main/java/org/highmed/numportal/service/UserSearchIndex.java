@@ -0,0 +1,213 @@
+package org.highmed.numportal.service;
+
+import org.highmed.numportal.domain.model.Roles;
+import org.highmed.numportal.domain.model.admin.User;
+
+import lombok.Builder;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Search index of the portal users listed in the user administration, kept next to the users cache. Names, email and
+ * sort keys are normalized once per user, a search scans the entries and only keeps the requested page in a bounded
+ * heap, so neither all user details nor all matching users are loaded and sorted. The index is filled with the users
+ * cache and updated with every change of a cached user, searches fall back to the database until it is complete.
+ */
+@Component
+public class UserSearchIndex {
+
+  private static final String FIRST_NAME = "firstName";
+  private static final String LAST_NAME = "lastName";
+  private static final String ORGANIZATION_NAME = "organization";
+  private static final String REGISTRATION_DATE = "registrationDate";
+  private static final String MAIL = "email";
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private volatile boolean complete;
+
+  public boolean isComplete() {
+    return complete;
+  }
+
+  /**
+   * Replaces the indexed users with the users of a complete load of the users cache
+   */
+  public synchronized void replaceAll(Collection<User> users) {
+    Map<String, Entry> loaded = new ConcurrentHashMap<>();
+    users.stream().filter(user -> user != null && user.getId() != null)
+         .forEach(user -> loaded.put(user.getId(), new Entry(user)));
+    entries.keySet().retainAll(loaded.keySet());
+    entries.putAll(loaded);
+    complete = true;
+  }
+
+  public void put(User user) {
+    if (user != null && user.getId() != null) {
+      entries.put(user.getId(), new Entry(user));
+    }
+  }
+
+  public void remove(String userId) {
+    if (userId != null) {
+      entries.remove(userId);
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  public Page<User> search(Query query, Pageable pageable) {
+    Comparator<Entry> order = comparator(query.sortBy(), query.direction());
+    long limit = pageable.isPaged() ? (long) (pageable.getPageNumber() + 1) * pageable.getPageSize() : Long.MAX_VALUE;
+    PriorityQueue<Entry> page = new PriorityQueue<>(order.reversed());
+    long total = 0;
+    for (Entry entry : entries.values()) {
+      if (!query.matches(entry)) {
+        continue;
+      }
+      total++;
+      page.add(entry);
+      if (page.size() > limit) {
+        page.poll();
+      }
+    }
+
+    List<Entry> sorted = new ArrayList<>(page);
+    sorted.sort(order);
+    long offset = pageable.isPaged() ? pageable.getOffset() : 0;
+    List<User> users = sorted.stream().skip(offset).map(Entry::user).toList();
+    return new PageImpl<>(new ArrayList<>(users), pageable, total);
+  }
+
+  private static Comparator<Entry> comparator(String sortBy, Sort.Direction direction) {
+    Comparator<Entry> byKey = switch (sortBy != null ? sortBy : REGISTRATION_DATE) {
+      case FIRST_NAME -> byKey(Entry::firstNameKey, direction);
+      case LAST_NAME -> byKey(Entry::lastNameKey, direction);
+      case ORGANIZATION_NAME -> byKey(Entry::organizationKey, direction);
+      case MAIL -> byKey(Entry::emailKey, direction);
+      default -> byKey(Entry::createdTimestamp, direction);
+    };
+    return byKey.thenComparing(Entry::userId);
+  }
+
+  private static <T extends Comparable<T>> Comparator<Entry> byKey(Function<Entry, T> key, Sort.Direction direction) {
+    Comparator<T> keyOrder = direction == null || direction.isDescending()
+        ? Comparator.<T>naturalOrder().reversed()
+        : Comparator.naturalOrder();
+    return Comparator.comparing(key, Comparator.nullsLast(keyOrder));
+  }
+
+  private static String normalize(String value) {
+    return value != null ? value.toUpperCase(Locale.ROOT) : null;
+  }
+
+  /**
+   * Filters of a user search. Users match the name search by a substring of their full name or email, or by one of
+   * their roles in searchRoles, the roles whose translation contains the search. Name, role and active filters are
+   * only applied together with filtered, without any of them a filtered search matches no user.
+   */
+  @Builder
+  public record Query(
+      boolean filtered,
+      String search,
+      Set<String> searchRoles,
+      Collection<String> roles,
+      Boolean enabled,
+      Boolean approved,
+      Long organizationId,
+      boolean researchersOnly,
+      String sortBy,
+      Sort.Direction direction) {
+
+    boolean matches(Entry entry) {
+      User user = entry.user();
+      if (approved != null && approved != user.isApproved()) {
+        return false;
+      }
+      if (organizationId != null
+          && (user.getOrganization() == null || !organizationId.equals(user.getOrganization().getId()))) {
+        return false;
+      }
+      if (!filtered) {
+        return true;
+      }
+      if (researchersOnly && !entry.roles().contains(Roles.RESEARCHER)) {
+        return false;
+      }
+      return matchesFilters(entry);
+    }
+
+    private boolean matchesFilters(Entry entry) {
+      boolean filterByName = search != null && !search.isEmpty();
+      boolean filterByRole = roles != null && !roles.isEmpty();
+      boolean enabledMatches = enabled == null || enabled.equals(entry.user().getEnabled());
+      if (!enabledMatches || (!filterByName && !filterByRole && enabled == null)) {
+        return false;
+      }
+      if (filterByName && !matchesName(entry)) {
+        return false;
+      }
+      return !filterByRole || containsAny(entry.roles(), roles);
+    }
+
+    private boolean matchesName(Entry entry) {
+      String normalizedSearch = normalize(search);
+      return entry.fullNameKey().contains(normalizedSearch)
+          || (entry.emailKey() != null && entry.emailKey().contains(normalizedSearch))
+          || (searchRoles != null && containsAny(entry.roles(), searchRoles));
+    }
+
+    private static boolean containsAny(Set<String> userRoles, Collection<String> candidates) {
+      for (String candidate : candidates) {
+        if (userRoles.contains(candidate)) {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+
+  private record Entry(
+      User user,
+      String userId,
+      Set<String> roles,
+      String fullNameKey,
+      String firstNameKey,
+      String lastNameKey,
+      String emailKey,
+      String organizationKey,
+      Long createdTimestamp) {
+
+    Entry(User user) {
+      this(
+          user,
+          user.getId(),
+          user.getRoles() != null ? Set.copyOf(user.getRoles()) : Collections.emptySet(),
+          normalize(user.getFullName()),
+          normalize(user.getFirstName()),
+          normalize(user.getLastName()),
+          normalize(user.getEmail()),
+          user.getOrganization() != null && user.getOrganization().getName() != null
+              ? normalize(user.getOrganization().getName())
+              : "",
+          user.getCreatedTimestamp());
+    }
+  }
+}
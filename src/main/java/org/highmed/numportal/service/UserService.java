@@ -111,23 +111,13 @@ public class UserService {
   private final NotificationService notificationService;
   private final CacheManager cacheManager;
   private final TranslationRepository translationRepository;
+  private final UserCacheLoader userCacheLoader;
+  private final UserSearchIndex userSearchIndex;
   private final List<String> availableSortFields = Arrays.asList(FIRST_NAME, LAST_NAME, ORGANIZATION_NAME, REGISTRATION_DATE, MAIL);
   private UsersMetrics usersMetrics;
 
-  @Transactional
   public void initializeUsersCache() {
-    List<String> usersUUID = userDetailsService.getAllUsersUUID();
-    ConcurrentMapCache usersCache = (ConcurrentMapCache) cacheManager.getCache(USERS_CACHE);
-    if (usersCache != null) {
-      for (String uuid : usersUUID) {
-        try {
-          User user = getUserById(uuid, true);
-          usersCache.put(uuid, user);
-        } catch (ResourceNotFound fe) {
-          log.warn("skip cache user {} because not found in keycloak", uuid);
-        }
-      }
-    }
+    userCacheLoader.load();
   }
 
   @Transactional
@@ -143,7 +133,10 @@ public class UserService {
   @Transactional
   @CachePut(value = USERS_CACHE, key = "#uuid")
   public User addUserToCache(String uuid) {
-    return getUserById(uuid, true);
+    User user = getUserById(uuid, true);
+    userDetailsService.updateFullName(uuid, user.getFullName());
+    userSearchIndex.put(user);
+    return user;
   }
 
   @Transactional
@@ -163,6 +156,7 @@ public class UserService {
             String.format(CANNOT_DELETE_APPROVED_USER, userId));
       }
     }
+    userSearchIndex.remove(userId);
     log.info("Logged in user {} deleted user with id {} ", loggedInUserId, userId);
   }
 
@@ -344,6 +338,9 @@ public class UserService {
       Pageable pageable) {
     UserDetails loggedInUser = userDetailsService.checkIsUserApproved(loggedInUserId);
     validateSort(searchCriteria);
+    if (userSearchIndex.isComplete()) {
+      return userSearchIndex.search(buildUserSearchQuery(loggedInUser, callerRoles, searchCriteria), pageable);
+    }
 
     Set<String> usersUUID = new HashSet<>();
     List<String> requestedRoles = Collections.emptyList();
@@ -404,6 +401,35 @@ public class UserService {
     return null;
   }
 
+  /**
+   * Same filters as the database search of the user details combined with the users cache
+   */
+  private UserSearchIndex.Query buildUserSearchQuery(UserDetails loggedInUser, List<String> callerRoles, SearchCriteria searchCriteria) {
+    Map<String, ?> filter = searchCriteria.getFilter() != null ? searchCriteria.getFilter() : Collections.emptyMap();
+    String search = retrieveSearchField(searchCriteria, SearchCriteria.FILTER_SEARCH_BY_KEY);
+    List<String> requestedRoles = filter.containsKey(SearchCriteria.FILTER_BY_ROLES)
+        ? getRequestedRoles(retrieveSearchField(searchCriteria, SearchCriteria.FILTER_BY_ROLES))
+        : Collections.emptyList();
+    Boolean enabled = filter.containsKey(SearchCriteria.FILTER_BY_ACTIVE)
+        ? Boolean.valueOf(retrieveSearchField(searchCriteria, SearchCriteria.FILTER_BY_ACTIVE))
+        : null;
+    boolean filtered = filter.containsKey(SearchCriteria.FILTER_SEARCH_BY_KEY) || CollectionUtils.isNotEmpty(requestedRoles) || enabled != null;
+
+    UserDetailsSpecification specification = buildUserSpecification(loggedInUser, callerRoles, searchCriteria, new HashSet<>());
+    return UserSearchIndex.Query.builder()
+                                .filtered(filtered)
+                                .search(search)
+                                .searchRoles(StringUtils.isNotEmpty(search) ? getRolesTranslatedMatching(search, searchCriteria.getLanguage()) : Set.of())
+                                .roles(requestedRoles)
+                                .enabled(enabled)
+                                .approved(specification.getApproved())
+                                .organizationId(specification.getLoggedInUserOrganizationId())
+                                .researchersOnly(!Roles.isSuperAdmin(callerRoles) && Roles.isProjectLead(callerRoles))
+                                .sortBy(isSortActive(searchCriteria) ? searchCriteria.getSortBy() : null)
+                                .direction(isSortActive(searchCriteria) ? Sort.Direction.valueOf(searchCriteria.getSort().toUpperCase()) : Sort.Direction.DESC)
+                                .build();
+  }
+
   private UserDetailsSpecification buildUserSpecification(UserDetails loggedInUser, List<String> callerRoles, SearchCriteria searchCriteria,
       Set<String> usersUUID) {
     Boolean approved = null;
@@ -543,17 +569,12 @@ public class UserService {
   }
 
   /**
-   * Refresh users cache every 8 hours
+   * Refresh users cache every 8 hours, cached users stay available until they are replaced
    */
   @Scheduled(fixedRate = 28800000)
-  @Transactional
   public void refreshUsersCache() {
-    var cache = cacheManager.getCache(USERS_CACHE);
-    if (cache != null) {
-      log.trace("---- Refreshing users cache ----");
-      cache.clear();
-      initializeUsersCache();
-    }
+    log.trace("---- Refreshing users cache ----");
+    initializeUsersCache();
   }
 
   private void deleteNotApprovedUser(UserDetails userDetails) {
@@ -580,6 +601,7 @@ public class UserService {
           log.debug(LOG_KEYCLOAK_DELETE_USER, userId);
           keycloakFeign.deleteUser(userId);
           userDetailsService.deleteUserDetails(userId);
+          userSearchIndex.remove(userId);
           log.info("- deleteUnapprovedUsersAfter30Days - userID: {} isApproved: {} deletedUser: {}", userId, userDetails.isApproved(), userDetails);
         }
       }
@@ -624,7 +646,10 @@ public class UserService {
     }
 
     notificationService.send(collectUserNameUpdateNotification(userIdToChange, loggedInUserId));
-    return getUserById(userIdToChange, true);
+    User user = getUserById(userIdToChange, true);
+    userDetailsService.updateFullName(userIdToChange, user.getFullName());
+    userSearchIndex.put(user);
+    return user;
   }
 
   /**
@@ -658,7 +683,9 @@ public class UserService {
       userDetailsService.sendAccountStatusChangedNotification(userId, loggedInUserId, active);
       usersMetrics.updateCountStatus(active);
     }
-    return getUserById(userId, true);
+    User user = getUserById(userId, true);
+    userSearchIndex.put(user);
+    return user;
   }
 
   private void validateUserRolesAndOrganization(String loggedInUserId, String userId, List<String> callerRoles) {
@@ -701,11 +728,7 @@ public class UserService {
       Set<String> userUuids, Map.Entry<Object, Object> entry, Language language) {
     boolean filterByNameEnabled = StringUtils.isNotEmpty(search);
     boolean filterByRoleEnabled = CollectionUtils.isNotEmpty(roles);
-    Set<Translation> translations = getTranslated(EntityGroup.ROLE_NAME, language);
-    List<String> rolesTranslated =
-        search != null
-            ? translations.stream().filter(t -> t.getValue().toUpperCase().contains(search.toUpperCase())).map(Translation::getProperty).toList()
-            : new ArrayList<>();
+    Set<String> rolesTranslated = search != null ? getRolesTranslatedMatching(search, language) : Collections.emptySet();
 
     if (entry.getValue() instanceof User user) {
       boolean enabledFilter = enabledFlag.isEmpty() || enabledFlag.get().equals(user.getEnabled());
@@ -728,6 +751,13 @@ public class UserService {
     }
   }
 
+  private Set<String> getRolesTranslatedMatching(String search, Language language) {
+    return getTranslated(EntityGroup.ROLE_NAME, language).stream()
+                                                         .filter(t -> t.getValue().toUpperCase().contains(search.toUpperCase()))
+                                                         .map(Translation::getProperty)
+                                                         .collect(Collectors.toSet());
+  }
+
   private Set<Translation> getTranslated(EntityGroup entityGroup, Language language) {
     ConcurrentMap<Long, Translation> cm = cacheManager.getCache(TRANSLATION_CACHE) != null
         ? (ConcurrentMap<Long, Translation>) Objects.requireNonNull(cacheManager.getCache(TRANSLATION_CACHE)).getNativeCache()
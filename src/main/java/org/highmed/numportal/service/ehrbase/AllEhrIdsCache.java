@@ -0,0 +1,77 @@
+package org.highmed.numportal.service.ehrbase;
+
+import org.highmed.numportal.properties.CohortExecutionProperties;
+import org.highmed.numportal.service.executors.EhrIdSet;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Shared snapshot of all ehr ids known to EhrBase, used as universe for the complement (NOT) of cohort groups. The
+ * snapshot is loaded on first use, refreshed in the background once it is older than the configured refresh interval
+ * and never served older than the configured maximum age.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class AllEhrIdsCache {
+
+  private final EhrBaseService ehrBaseService;
+
+  private final CohortExecutionProperties properties;
+
+  private volatile Snapshot snapshot;
+
+  private volatile Instant lastAccess = Instant.EPOCH;
+
+  public Set<String> get() {
+    lastAccess = Instant.now();
+    Snapshot current = snapshot;
+    if (current == null || current.isOlderThan(properties.getAllEhrIdsMaxAge())) {
+      return reload(current).ehrIds();
+    }
+    return current.ehrIds();
+  }
+
+  @Scheduled(fixedDelay = 60000)
+  public void refreshIfStale() {
+    Snapshot current = snapshot;
+    if (current == null || !current.isOlderThan(properties.getAllEhrIdsRefreshAfter())) {
+      return;
+    }
+    if (Duration.between(lastAccess, Instant.now()).compareTo(properties.getAllEhrIdsMaxAge()) > 0) {
+      log.debug("All ehr ids snapshot not used recently, dropping it instead of refreshing");
+      snapshot = null;
+      return;
+    }
+    try {
+      reload(current);
+    } catch (Exception e) {
+      log.warn("Could not refresh all ehr ids snapshot, keeping snapshot from {}", current.loadedAt(), e);
+    }
+  }
+
+  private synchronized Snapshot reload(Snapshot seen) {
+    if (snapshot != seen && snapshot != null) {
+      return snapshot;
+    }
+    long start = System.currentTimeMillis();
+    Set<String> ehrIds = EhrIdSet.copyOf(ehrBaseService.getAllPatientIds());
+    snapshot = new Snapshot(ehrIds, Instant.now());
+    log.info("Loaded snapshot of {} ehr ids in {} ms", ehrIds.size(), System.currentTimeMillis() - start);
+    return snapshot;
+  }
+
+  private record Snapshot(Set<String> ehrIds, Instant loadedAt) {
+
+    boolean isOlderThan(Duration age) {
+      return Duration.between(loadedAt, Instant.now()).compareTo(age) >= 0;
+    }
+  }
+}
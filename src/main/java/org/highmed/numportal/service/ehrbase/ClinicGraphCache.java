@@ -0,0 +1,220 @@
+package org.highmed.numportal.service.ehrbase;
+
+import org.highmed.numportal.properties.ContentGraphProperties;
+import org.highmed.numportal.service.exception.SystemException;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import static org.highmed.numportal.domain.templates.ExceptionsTemplate.AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL;
+
+/**
+ * Snapshot of the clinic graphs shown on the dashboard (participating clinics, sofa averages and sofa distributions per
+ * clinic). The graphs are computed with concurrent queries on a bounded pool, on first use and in the background once
+ * the snapshot is older than the configured refresh interval, and are served from memory in between. A failed refresh
+ * keeps the previous snapshot.
+ */
+@Slf4j
+@Component
+public class ClinicGraphCache {
+
+  public static final String LIST_CLINICS =
+      "SELECT distinct c/context/health_care_facility/name as health_care_facility FROM EHR e CONTAINS COMPOSITION c";
+  private static final int SOFA_MIN = 0;
+  private static final int SOFA_MAX = 24;
+  private static final int SOFA_INTERVAL_LEN = 5;
+  private static final String GET_CLINIC_SOFA_AVG =
+      "SELECT avg(r/data[at0001]/events[at0002]/data[at0003]/items[at0041]/value/magnitude) as sofa_avg "
+          + "FROM EHR e CONTAINS COMPOSITION c CONTAINS OBSERVATION r[openEHR-EHR-OBSERVATION.sofa_score.v0] "
+          + "WHERE c/context/health_care_facility/name = '%s'";
+  private static final String GET_CLINIC_SOFA_COUNT_IN_INTERVAL =
+      "SELECT count(r/data[at0001]/events[at0002]/data[at0003]/items[at0041]/value/magnitude) as sofa_score "
+          + "FROM EHR e CONTAINS COMPOSITION c CONTAINS OBSERVATION r[openEHR-EHR-OBSERVATION.sofa_score.v0] "
+          + "WHERE r/data[at0001]/events[at0002]/data[at0003]/items[at0041]/value/magnitude >= %d "
+          + "AND r/data[at0001]/events[at0002]/data[at0003]/items[at0041]/value/magnitude <= %d "
+          + "AND c/context/health_care_facility/name = '%s'";
+
+  private final EhrBaseService ehrBaseService;
+
+  private final ContentGraphProperties properties;
+
+  private final ExecutorService executorService;
+
+  private volatile Snapshot snapshot;
+
+  @Autowired
+  public ClinicGraphCache(EhrBaseService ehrBaseService, ContentGraphProperties properties) {
+    this.ehrBaseService = ehrBaseService;
+    this.properties = properties;
+    this.executorService =
+        Executors.newFixedThreadPool(Math.max(1, properties.getParallelism()), new CustomizableThreadFactory("clinic-graph-"));
+  }
+
+  public Snapshot get() {
+    Snapshot current = snapshot;
+    return current != null ? current : reload(null);
+  }
+
+  /**
+   * Sofa distribution of a clinic without any sofa scores, served for clinics not contained in the snapshot
+   */
+  public static Map<String, Integer> emptyDistribution() {
+    Map<String, Integer> distribution = new LinkedHashMap<>();
+    for (int i = SOFA_MIN; i < SOFA_MAX; i += SOFA_INTERVAL_LEN) {
+      distribution.put(i + "-" + (i + SOFA_INTERVAL_LEN - 1), 0);
+    }
+    return distribution;
+  }
+
+  @Scheduled(fixedDelay = 60000)
+  public void refreshIfStale() {
+    Snapshot current = snapshot;
+    if (current != null && !current.isOlderThan(properties.getRefreshAfter())) {
+      return;
+    }
+    try {
+      reload(current);
+    } catch (Exception e) {
+      log.warn("Could not compute clinic graphs, keeping snapshot from {}", current != null ? current.computedAt() : null, e);
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executorService.shutdownNow();
+  }
+
+  private synchronized Snapshot reload(Snapshot seen) {
+    if (snapshot != seen && snapshot != null) {
+      return snapshot;
+    }
+    long start = System.currentTimeMillis();
+    snapshot = compute();
+    log.info("Computed clinic graphs of {} clinics in {} ms", snapshot.clinics().size(), System.currentTimeMillis() - start);
+    return snapshot;
+  }
+
+  private Snapshot compute() {
+    List<String> clinics = ehrBaseService.executePlainQuery(LIST_CLINICS).getRows().stream()
+                                         .map(row -> (String) row.get(0))
+                                         .toList();
+
+    List<CompletableFuture<?>> queries = new ArrayList<>();
+    Map<String, CompletableFuture<Double>> averages = new LinkedHashMap<>();
+    Map<String, Map<String, CompletableFuture<Integer>>> distributions = new LinkedHashMap<>();
+    try {
+      clinics.stream().filter(Objects::nonNull).distinct().forEach(clinic -> {
+        averages.put(clinic, submit(queries, () -> queryAverage(clinic)));
+        Map<String, CompletableFuture<Integer>> intervals = new LinkedHashMap<>();
+        for (int i = SOFA_MIN; i < SOFA_MAX; i += SOFA_INTERVAL_LEN) {
+          int begin = i;
+          int end = i + SOFA_INTERVAL_LEN - 1;
+          intervals.put(begin + "-" + end, submit(queries, () -> queryIntervalCount(clinic, begin, end)));
+        }
+        distributions.put(clinic, intervals);
+      });
+
+      await(CompletableFuture.allOf(queries.toArray(CompletableFuture[]::new)));
+    } finally {
+      queries.forEach(query -> query.cancel(true));
+    }
+
+    Map<String, Double> averageValues = new LinkedHashMap<>();
+    averages.forEach((clinic, average) -> averageValues.put(clinic, average.join()));
+    Map<String, Map<String, Integer>> distributionValues = new LinkedHashMap<>();
+    distributions.forEach((clinic, intervals) -> {
+      Map<String, Integer> counts = new LinkedHashMap<>();
+      intervals.forEach((interval, count) -> counts.put(interval, count.join()));
+      distributionValues.put(clinic, Collections.unmodifiableMap(counts));
+    });
+
+    return new Snapshot(
+        Collections.unmodifiableList(new ArrayList<>(clinics)),
+        Collections.unmodifiableMap(averageValues),
+        Collections.unmodifiableMap(distributionValues),
+        Instant.now());
+  }
+
+  private <T> CompletableFuture<T> submit(List<CompletableFuture<?>> queries, Supplier<T> query) {
+    CompletableFuture<T> future = CompletableFuture.supplyAsync(query, executorService);
+    queries.add(future);
+    return future;
+  }
+
+  private Double queryAverage(String clinic) {
+    List<List<Object>> rows = ehrBaseService.executePlainQuery(String.format(GET_CLINIC_SOFA_AVG, clinic)).getRows();
+    if (rows.size() == 1 && rows.get(0).size() == 1 && rows.get(0).get(0) != null) {
+      return (Double) rows.get(0).get(0);
+    }
+    return 0.0;
+  }
+
+  private Integer queryIntervalCount(String clinic, int begin, int end) {
+    List<List<Object>> rows =
+        ehrBaseService.executePlainQuery(String.format(GET_CLINIC_SOFA_COUNT_IN_INTERVAL, begin, end, clinic)).getRows();
+    if (rows.size() == 1 && rows.get(0).size() == 1 && rows.get(0).get(0) != null) {
+      return (Integer) rows.get(0).get(0);
+    }
+    return 0;
+  }
+
+  private void await(CompletableFuture<Void> queries) {
+    try {
+      queries.get(properties.getTimeout().toNanos(), TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new SystemException(ClinicGraphCache.class, AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL,
+          String.format(AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL, e.getCause().getMessage()));
+    } catch (TimeoutException e) {
+      throw new SystemException(ClinicGraphCache.class, AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL,
+          String.format(AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL, "clinic graphs timed out"));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SystemException(ClinicGraphCache.class, AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL,
+          String.format(AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL, "clinic graphs interrupted"));
+    }
+  }
+
+  /**
+   * Clinic graphs computed at the same point in time
+   */
+  public record Snapshot(
+      List<String> clinics,
+      Map<String, Double> averages,
+      Map<String, Map<String, Integer>> distributions,
+      Instant computedAt) {
+
+    /**
+     * Sofa distribution of a clinic, empty for clinics not contained in the snapshot
+     */
+    public Map<String, Integer> distribution(String clinic) {
+      return distributions.getOrDefault(clinic, emptyDistribution());
+    }
+
+    boolean isOlderThan(Duration age) {
+      return Duration.between(computedAt, Instant.now()).compareTo(age) >= 0;
+    }
+  }
+}
@@ -1,56 +1,83 @@
 package org.highmed.numportal.service.ehrbase;
 
+import org.highmed.numportal.properties.TemplateCacheProperties;
 import org.highmed.numportal.service.exception.SystemException;
+import org.highmed.numportal.service.metric.TemplateCacheMetrics;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nedap.archie.rm.composition.Composition;
-import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.ehrbase.openehr.sdk.client.templateprovider.ClientTemplateProvider;
-import org.ehrbase.openehr.sdk.serialisation.flatencoding.FlatFormat;
-import org.ehrbase.openehr.sdk.serialisation.flatencoding.FlatJasonProvider;
-import org.ehrbase.openehr.sdk.serialisation.flatencoding.FlatJson;
+import org.ehrbase.openehr.sdk.serialisation.flatencoding.std.marshal.StdFromCompositionWalker;
+import org.ehrbase.openehr.sdk.serialisation.jsonencoding.ArchieObjectMapperProvider;
 import org.ehrbase.openehr.sdk.util.exception.SdkException;
 import org.ehrbase.openehr.sdk.webtemplate.model.WebTemplate;
-import org.ehrbase.openehr.sdk.webtemplate.templateprovider.CachedTemplateProvider;
+import org.ehrbase.openehr.sdk.webtemplate.parser.OPTParser;
 import org.openehr.schemas.v1.OPERATIONALTEMPLATE;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.Map;
-import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import javax.cache.Cache;
 import javax.cache.CacheManager;
 import javax.cache.Caching;
 import javax.cache.configuration.MutableConfiguration;
-import javax.cache.expiry.CreatedExpiryPolicy;
 import javax.cache.expiry.Duration;
+import javax.cache.expiry.ModifiedExpiryPolicy;
 import javax.cache.spi.CachingProvider;
 
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.CANNOT_PARSE_RESULTS;
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.CANNOT_PARSE_RESULTS_COMPOSITION_MISSING_TEMPLATE_ID;
 
+/**
+ * Flattens compositions along the web templates of their templates. The web templates are cached, built for all
+ * templates of EhrBase once the application is ready and built again in the background before they expire, so
+ * flattening only waits for EhrBase on templates added in the meantime.
+ */
+@Slf4j
 @Component
-@RequiredArgsConstructor
 public class CompositionFlattener {
 
-  private static final String FLAT_JSON_CACHE = "flatJsonCache";
-  private static final String OPERATIONAL_TEMPLATE_CACHE = "operationalTemplateCache";
   private static final String WEB_TEMPLATE_CACHE = "webTemplateCache";
-  private final ObjectMapper objectMapper = new ObjectMapper();
+  private static final String TEMPLATE_NOT_FOUND = "Can not find Template: %s";
+  private static final ObjectMapper FLAT_JSON_MAPPER = ArchieObjectMapperProvider.getObjectMapper();
   private final ClientTemplateProvider clientTemplateProvider;
-  private CachedTemplateProvider cachedTemplateProvider;
-  private Cache<String, FlatJson> flatJsonCache;
+  private final TemplateCacheProperties properties;
+  private final TemplateCacheMetrics metrics;
+  private final Map<String, Instant> builtAt = new ConcurrentHashMap<>();
+  private Cache<String, WebTemplate> webTemplateCache;
+
+  @Autowired
+  public CompositionFlattener(ClientTemplateProvider clientTemplateProvider, TemplateCacheProperties properties,
+      TemplateCacheMetrics metrics) {
+    this.clientTemplateProvider = clientTemplateProvider;
+    this.properties = properties;
+    this.metrics = metrics;
+  }
 
+  /**
+   * Walks the composition along its web template straight into a map of flat paths and values, the flat json string
+   * produced by the sdk would only be parsed back into the same map.
+   */
   public Map<String, Object> flatten(Composition composition) {
 
     validateComposition(composition);
 
     try {
       String templateId = composition.getArchetypeDetails().getTemplateId().getValue();
-      return objectMapper.readValue(getFlatJson(templateId).marshal(composition), Map.class);
-    } catch (JsonProcessingException e) {
+      Map<String, Object> values = new LinkedHashMap<>();
+      new StdFromCompositionWalker().walk(composition, values, getWebTemplate(templateId), null, templateId);
+      values.replaceAll((path, value) -> toJsonValue(value));
+      return values;
+    } catch (IllegalArgumentException e) {
       throw new SystemException(CompositionFlattener.class, CANNOT_PARSE_RESULTS,
           String.format(CANNOT_PARSE_RESULTS, e.getMessage()));
     } catch (SdkException e) {
@@ -58,19 +85,42 @@ public class CompositionFlattener {
     }
   }
 
-  private FlatJson getFlatJson(String templateId) {
-    Optional<FlatJson> cachedFlatJson = Optional.ofNullable(flatJsonCache.get(templateId));
-
-    if (cachedFlatJson.isEmpty()) {
-      FlatJson flatJson =
-          (FlatJson) new FlatJasonProvider(cachedTemplateProvider)
-              .buildFlatJson(FlatFormat.SIM_SDT, templateId);
+  /**
+   * Values are exported as json, anything the walker emits beyond plain json values is converted the way the flat json
+   * serialization would have written it
+   */
+  private Object toJsonValue(Object value) {
+    if (value == null || value instanceof String || value instanceof Number || value instanceof Boolean) {
+      return value;
+    }
+    return FLAT_JSON_MAPPER.convertValue(value, Object.class);
+  }
 
-      flatJsonCache.put(templateId, flatJson);
-      return flatJson;
+  private WebTemplate getWebTemplate(String templateId) {
+    WebTemplate webTemplate = webTemplateCache.get(templateId);
+    if (webTemplate != null) {
+      metrics.hit();
+      return webTemplate;
     }
+    metrics.miss();
+    return buildWebTemplate(templateId);
+  }
 
-    return cachedFlatJson.get();
+  /**
+   * Fetches the operational template from EhrBase and replaces the cached web template, the previous one stays in use
+   * until the new one is built
+   */
+  private WebTemplate buildWebTemplate(String templateId) {
+    long start = System.nanoTime();
+    OPERATIONALTEMPLATE template =
+        clientTemplateProvider.find(templateId)
+                              .orElseThrow(() -> new SdkException(String.format(TEMPLATE_NOT_FOUND, templateId)));
+    WebTemplate webTemplate = new OPTParser(template).parse();
+    webTemplateCache.put(templateId, webTemplate);
+    builtAt.put(templateId, Instant.now());
+    metrics.build(System.nanoTime() - start);
+    metrics.size(builtAt.size());
+    return webTemplate;
   }
 
   private void validateComposition(Composition composition) {
@@ -81,47 +131,74 @@ public class CompositionFlattener {
     }
   }
 
+  /**
+   * Builds the web templates of the given templates that are not cached yet, templates that can not be built are
+   * skipped and built again on first use
+   *
+   * @return number of web templates built
+   */
+  public int warmUp(Collection<String> templateIds) {
+    int built = 0;
+    for (String templateId : templateIds) {
+      if (templateId == null || webTemplateCache.containsKey(templateId)) {
+        continue;
+      }
+      try {
+        buildWebTemplate(templateId);
+        built++;
+      } catch (RuntimeException e) {
+        log.warn("Could not build web template {}: {}", templateId, e.getMessage());
+      }
+    }
+    return built;
+  }
+
+  /**
+   * Builds the cached web templates again once they are older than the refresh interval, so they are replaced before
+   * they expire. A failed build keeps the cached web template until it expires.
+   */
+  @Scheduled(fixedDelay = 600000)
+  public void refreshAhead() {
+    Instant refreshBefore = Instant.now().minus(properties.getRefreshAfter());
+    builtAt.forEach((templateId, built) -> {
+      if (!webTemplateCache.containsKey(templateId)) {
+        builtAt.remove(templateId, built);
+      } else if (!built.isAfter(refreshBefore)) {
+        try {
+          buildWebTemplate(templateId);
+        } catch (RuntimeException e) {
+          log.warn("Could not refresh web template {}: {}", templateId, e.getMessage());
+        }
+      }
+    });
+    metrics.size(builtAt.size());
+  }
+
+  /**
+   * Web templates expire the time to live after they were last built, a refreshed web template is kept as long as a
+   * newly built one
+   */
   @PostConstruct
   public void initializeTemplateCache() {
     CachingProvider provider = Caching.getCachingProvider();
     CacheManager cacheManager = provider.getCacheManager();
 
-    MutableConfiguration<String, OPERATIONALTEMPLATE> templateCacheConfig =
-        new MutableConfiguration<String, OPERATIONALTEMPLATE>()
-            .setTypes(String.class, OPERATIONALTEMPLATE.class)
-            .setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(Duration.ONE_DAY))
-            .setStoreByValue(false);
-
-    Cache<String, OPERATIONALTEMPLATE> templateCache =
-        cacheManager.createCache(OPERATIONAL_TEMPLATE_CACHE, templateCacheConfig);
-
     MutableConfiguration<String, WebTemplate> introspectCacheConfig =
         new MutableConfiguration<String, WebTemplate>()
             .setTypes(String.class, WebTemplate.class)
-            .setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(Duration.ONE_DAY))
-            .setStoreByValue(false);
-
-    Cache<String, WebTemplate> introspectCache =
-        cacheManager.createCache(WEB_TEMPLATE_CACHE, introspectCacheConfig);
-
-    cachedTemplateProvider =
-        new CachedTemplateProvider(clientTemplateProvider, templateCache, introspectCache);
-
-    MutableConfiguration<String, FlatJson> flatJsonCacheConfig =
-        new MutableConfiguration<String, FlatJson>()
-            .setTypes(String.class, FlatJson.class)
-            .setExpiryPolicyFactory(CreatedExpiryPolicy.factoryOf(Duration.ONE_DAY))
+            .setExpiryPolicyFactory(ModifiedExpiryPolicy.factoryOf(
+                new Duration(TimeUnit.MILLISECONDS, properties.getTimeToLive().toMillis())))
             .setStoreByValue(false);
 
-    flatJsonCache = cacheManager.createCache(FLAT_JSON_CACHE, flatJsonCacheConfig);
+    webTemplateCache = cacheManager.createCache(WEB_TEMPLATE_CACHE, introspectCacheConfig);
   }
 
   @PreDestroy
   public void clearCaches() {
     CachingProvider provider = Caching.getCachingProvider();
     CacheManager cacheManager = provider.getCacheManager();
-    cacheManager.destroyCache(FLAT_JSON_CACHE);
     cacheManager.destroyCache(WEB_TEMPLATE_CACHE);
-    cacheManager.destroyCache(OPERATIONAL_TEMPLATE_CACHE);
+    builtAt.clear();
+    metrics.size(0);
   }
 }
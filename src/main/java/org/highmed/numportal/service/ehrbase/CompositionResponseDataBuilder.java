@@ -1,7 +1,5 @@
 package org.highmed.numportal.service.ehrbase;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nedap.archie.rm.composition.Composition;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -10,84 +8,74 @@ import org.ehrbase.openehr.sdk.serialisation.jsonencoding.CanonicalJson;
 import org.springframework.stereotype.Component;
 
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
 
 @Component
 @AllArgsConstructor
 @Slf4j
 public class CompositionResponseDataBuilder {
 
-  private static final String COLUMN_NAME = "name";
-  private static final String COLUMN_PATH = "path";
-  private final ObjectMapper mapper;
+  private static final String PSEUDONYM = "pseudonym";
   private final CompositionFlattener compositionFlattener;
 
   public QueryResponseData build(List<Map<String, Object>> compositions) {
-    List<Map<String, Object>> flatCompositionsList = createCompositionsMap(compositions);
-    Set<String> allKeys = new HashSet<>();
-    flatCompositionsList.forEach(map -> allKeys.addAll(map.keySet()));
-
-    Map<String, List<Object>> aggregatedResultsMap = new HashMap<>();
-    List<List<Object>> rows = new ArrayList<>();
-    List<Map<String, String>> columns = new ArrayList<>();
-
-    allKeys.forEach(
-        k -> {
-          aggregatedResultsMap.put(k, new ArrayList<>());
-
-          flatCompositionsList.forEach(
-              map -> aggregatedResultsMap.get(k).add(map.getOrDefault(k, null)));
-          createColumn(columns, k);
-        });
-
-    createRow(rows, aggregatedResultsMap, allKeys, flatCompositionsList.size());
-
-    QueryResponseData queryResponseData = new QueryResponseData();
-    queryResponseData.setColumns(columns);
-    queryResponseData.setRows(rows);
-
-    return queryResponseData;
+    return build(compositions, null);
   }
 
-  private void createRow(List<List<Object>> rows, Map<String, List<Object>> aggregatedResultsMap, Set<String> allKeys, int rowsCount) {
-    for (int i = 0; i < rowsCount; i++) {
-      List<Object> values = new ArrayList<>();
-      for (String k : allKeys) {
-        List<Object> cols = aggregatedResultsMap.get(k);
-        values.add(cols.get(i));
+  /**
+   * Flattens the compositions one after the other into a {@link FlatCompositionTable}, one row per composition. The
+   * pseudonyms, if given, are written to the first column of the row of their composition.
+   */
+  public QueryResponseData build(List<Map<String, Object>> compositions, List<String> pseudonyms) {
+    FlatCompositionTable table = new FlatCompositionTable();
+    Iterator<String> pseudonymIterator = pseudonyms != null ? pseudonyms.iterator() : null;
+    if (pseudonymIterator != null) {
+      table.addColumn(PSEUDONYM);
+    }
+
+    for (Map<String, Object> compositionMap : compositions) {
+      String pseudonym = pseudonymIterator != null && pseudonymIterator.hasNext() ? pseudonymIterator.next() : null;
+      Map<String, Object> values = flatten(compositionMap);
+      if (values != null) {
+        table.addRow();
+        if (pseudonymIterator != null) {
+          table.put(PSEUDONYM, pseudonym);
+        }
+        values.forEach(table::put);
       }
-      rows.add(values);
     }
-  }
 
-  private void createColumn(List<Map<String, String>> columns, String path) {
-    Map<String, String> header = new HashMap<>();
-    header.put(COLUMN_NAME, path);
-    header.put(COLUMN_PATH, path);
-    columns.add(header);
+    return table.toQueryResponseData();
   }
 
+  /**
+   * Binds each composition of the query response tree to the reference model and flattens it, without writing the
+   * tree to json text and parsing it again
+   */
   public List<Map<String, Object>> createCompositionsMap(List<Map<String, Object>> compositions) {
-    List<Map<String, Object>> compositionsMap = new ArrayList<>();
+    List<Map<String, Object>> compositionsMap = new ArrayList<>(compositions.size());
 
     compositions.forEach(
         compositionMap -> {
-          String compositionString;
-          try {
-            compositionString = mapper.writeValueAsString(compositionMap);
-            Composition composition =
-                new CanonicalJson().unmarshal(compositionString, Composition.class);
-            compositionsMap.add(compositionFlattener.flatten(composition));
-          } catch (JsonProcessingException e) {
-            log.warn("Composition mapping failed", e);
+          Map<String, Object> values = flatten(compositionMap);
+          if (values != null) {
+            compositionsMap.add(values);
           }
         });
 
     return compositionsMap;
   }
-}
 
+  private Map<String, Object> flatten(Map<String, Object> compositionMap) {
+    Composition composition;
+    try {
+      composition = CanonicalJson.MARSHAL_OM.convertValue(compositionMap, Composition.class);
+    } catch (IllegalArgumentException e) {
+      log.warn("Composition mapping failed", e);
+      return null;
+    }
+    return compositionFlattener.flatten(composition);
+  }
+}
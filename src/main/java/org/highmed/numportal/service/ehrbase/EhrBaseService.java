@@ -4,9 +4,12 @@ import org.highmed.numportal.domain.model.Aql;
 import org.highmed.numportal.properties.EhrBaseProperties;
 import org.highmed.numportal.service.exception.BadRequestException;
 import org.highmed.numportal.service.exception.SystemException;
+import org.highmed.numportal.service.executors.EhrIdSet;
+import org.highmed.numportal.service.metric.IntegrationMetrics;
 import org.highmed.numportal.service.util.AqlQueryConstants;
 
 import com.nedap.archie.rm.support.identification.UUID;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.ehrbase.openehr.sdk.aql.dto.AqlQuery;
@@ -29,14 +32,19 @@ import org.ehrbase.openehr.sdk.util.exception.ClientException;
 import org.ehrbase.openehr.sdk.util.exception.WrongStatusCodeException;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
 import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL;
@@ -66,17 +74,24 @@ public class EhrBaseService {
   private final CompositionResponseDataBuilder compositionResponseDataBuilder;
   private final Pseudonymity pseudonymity;
   private final EhrBaseProperties ehrBaseProperties;
+  private final IntegrationMetrics integrationMetrics;
+  private final ExecutorService executorService;
 
   @Autowired
   public EhrBaseService(
       DefaultRestClient restClient,
       CompositionResponseDataBuilder compositionResponseDataBuilder,
       @Lazy Pseudonymity pseudonymity,
-      EhrBaseProperties ehrBaseProperties) {
+      EhrBaseProperties ehrBaseProperties,
+      IntegrationMetrics integrationMetrics) {
     this.restClient = restClient;
     this.compositionResponseDataBuilder = compositionResponseDataBuilder;
     this.pseudonymity = pseudonymity;
     this.ehrBaseProperties = ehrBaseProperties;
+    this.integrationMetrics = integrationMetrics;
+    this.executorService =
+        Executors.newFixedThreadPool(
+            Math.max(1, ehrBaseProperties.getBatchParallelism()), new CustomizableThreadFactory("ehrbase-batch-"));
   }
 
   /**
@@ -105,11 +120,16 @@ public class EhrBaseService {
     selectExpression.setColumnExpression(ehrIdPath);
 
     dto.getSelect().setStatement(List.of(selectExpression));
-    log.info("Generated query for retrieveEligiblePatientIds {} ", AqlRenderer.render(dto));
+    String aql = AqlRenderer.render(dto);
+    log.info("Generated query for retrieveEligiblePatientIds {} ", aql);
 
     try {
-      List<Record1<UUID>> results = restClient.aqlEndpoint().execute(Query.buildNativeQuery(AqlRenderer.render(dto), UUID.class));
-      return results.stream().map(result -> result.value1().getValue()).collect(Collectors.toSet());
+      List<Record1<UUID>> results = integrationMetrics.record(IntegrationMetrics.EHRBASE, "retrieveEligiblePatientIds", aql,
+          () -> restClient.aqlEndpoint().execute(Query.buildNativeQuery(aql, UUID.class)));
+      integrationMetrics.aqlRows("retrieveEligiblePatientIds", results.size());
+      EhrIdSet.Builder ehrIds = EhrIdSet.builder(results.size());
+      results.forEach(result -> ehrIds.add(result.value1().getValue()));
+      return ehrIds.build();
     } catch (WrongStatusCodeException e) {
       log.error(INVALID_AQL_QUERY, e.getMessage(), e);
       throw new WrongStatusCodeException("EhrBaseService.class", 93, 1);
@@ -150,10 +170,12 @@ public class EhrBaseService {
     count.setIdentifiedPath(ehrIdPath);
 
     dto.getSelect().setStatement(List.of(selectExpression));
-    log.info("Generated query for retrieveNumberOfPatients {} ", AqlRenderer.render(dto));
+    String aql = AqlRenderer.render(dto);
+    log.info("Generated query for retrieveNumberOfPatients {} ", aql);
 
     try {
-      List<Record1<Integer>> results = restClient.aqlEndpoint().execute(Query.buildNativeQuery(AqlRenderer.render(dto), Integer.class));
+      List<Record1<Integer>> results = integrationMetrics.record(IntegrationMetrics.EHRBASE, "retrieveNumberOfPatients", aql,
+          () -> restClient.aqlEndpoint().execute(Query.buildNativeQuery(aql, Integer.class)));
       return results.get(0).value1();
     } catch (WrongStatusCodeException e) {
       log.error(INVALID_AQL_QUERY, e.getMessage(), e);
@@ -172,6 +194,46 @@ public class EhrBaseService {
    * @return QueryResponseData
    */
   public List<QueryResponseData> executeRawQuery(AqlQuery aqlDto, Long projectId) {
+    return flattenIfCompositionPresent(executeRaw(aqlDto), projectId);
+  }
+
+  /**
+   * Executes the batches of a query, restricted to disjoint sets of ehr ids, several at a time. The rows are merged in
+   * the order of the batches and then flattened and pseudonymized as the result of a single query.
+   *
+   * @param batches The aql queries of the batches, selecting the same columns
+   * @return QueryResponseData
+   */
+  public List<QueryResponseData> executeRawQueryInBatches(List<AqlQuery> batches, Long projectId) {
+    List<Future<QueryResponseData>> futures =
+        batches.stream()
+               .map(batch -> executorService.submit(() -> executeRaw(batch)))
+               .collect(Collectors.toList());
+    try {
+      QueryResponseData merged = null;
+      for (Future<QueryResponseData> future : futures) {
+        QueryResponseData response = await(future);
+        List<List<Object>> rows = response.getRows() != null ? response.getRows() : List.of();
+        if (merged == null) {
+          merged = response;
+          merged.setRows(new ArrayList<>(rows));
+        } else {
+          merged.getRows().addAll(rows);
+        }
+      }
+      log.info("Executed query in {} batches, {} rows", batches.size(), merged != null ? merged.getRows().size() : 0);
+      return flattenIfCompositionPresent(merged, projectId);
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executorService.shutdownNow();
+  }
+
+  private QueryResponseData executeRaw(AqlQuery aqlDto) {
 
     addSelectSecondlevelPseudonyms(aqlDto);
     String query = AqlRenderer.render(aqlDto);
@@ -186,8 +248,8 @@ public class EhrBaseService {
       }
 
       log.debug("EhrBase call to execute raw query: {}", query);
-      QueryResponseData response = restClient.aqlEndpoint().executeRaw(Query.buildNativeQuery(query));
-      return flattenIfCompositionPresent(response, projectId);
+      return countRows("executeRaw", integrationMetrics.record(IntegrationMetrics.EHRBASE, "executeRaw", query,
+          () -> restClient.aqlEndpoint().executeRaw(Query.buildNativeQuery(query))));
 
     } catch (WrongStatusCodeException e) {
       log.error(INVALID_AQL_QUERY, e.getMessage(), e);
@@ -199,13 +261,30 @@ public class EhrBaseService {
     }
   }
 
+  private QueryResponseData await(Future<QueryResponseData> batch) {
+    try {
+      return batch.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new SystemException(EhrBaseService.class, AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL,
+          String.format(AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL, e.getCause().getMessage()));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SystemException(EhrBaseService.class, AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL,
+          String.format(AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL, "query interrupted"));
+    }
+  }
+
   public QueryResponseData executePlainQuery(String queryString) {
 
     NativeQuery<Record> query = Query.buildNativeQuery(queryString);
 
     try {
       log.debug("EhrBase call to execute raw query: {}", queryString);
-      return restClient.aqlEndpoint().executeRaw(query);
+      return countRows("executePlainQuery", integrationMetrics.record(IntegrationMetrics.EHRBASE, "executePlainQuery", queryString,
+          () -> restClient.aqlEndpoint().executeRaw(query)));
     } catch (WrongStatusCodeException e) {
       log.error(INVALID_AQL_QUERY, e.getMessage(), e);
       throw new WrongStatusCodeException("EhrBaseService.class", 93, 2);
@@ -216,6 +295,13 @@ public class EhrBaseService {
     }
   }
 
+  private QueryResponseData countRows(String operation, QueryResponseData response) {
+    if (response != null && response.getRows() != null) {
+      integrationMetrics.aqlRows(operation, response.getRows().size());
+    }
+    return response;
+  }
+
   private void addSelectSecondlevelPseudonyms(AqlQuery aqlDto) {
     SelectExpression selectExpression = new SelectExpression();
     IdentifiedPath ehrIdPath = new IdentifiedPath();
@@ -240,7 +326,8 @@ public class EhrBaseService {
   public List<TemplateMetaDataDto> getAllTemplatesMetadata() {
     log.debug("EhrBase call to retrieve all templates ");
     try {
-      TemplatesResponseData templateResponseData = restClient.templateEndpoint().findAllTemplates();
+      TemplatesResponseData templateResponseData = integrationMetrics.record(IntegrationMetrics.EHRBASE, "findAllTemplates",
+          () -> restClient.templateEndpoint().findAllTemplates());
       return templateResponseData.get();
     } catch (ClientException e) {
       log.error(ERROR_MESSAGE, e.getMessage(), e);
@@ -251,15 +338,12 @@ public class EhrBaseService {
 
   private List<QueryResponseData> flattenIfCompositionPresent(QueryResponseData responseData, Long projectId) {
     List<String> ehrStatusIds = getAndRemoveEhrStatusColumn(responseData);
-    List<QueryResponseData> listOfResponseData = flattenCompositions(responseData);
-    if (projectId != null) {
-      addPseudonyms(ehrStatusIds, listOfResponseData, projectId);
-    }
-    return listOfResponseData;
+    List<String> pseudonyms = projectId != null ? pseudonymity.getPseudonyms(ehrStatusIds, projectId) : null;
+    return flattenCompositions(responseData, pseudonyms);
   }
 
-  private List<QueryResponseData> flattenCompositions(QueryResponseData responseData) {
-    Map<String, List<Map<String, Object>>> compositions = new HashMap<>();
+  private List<QueryResponseData> flattenCompositions(QueryResponseData responseData, List<String> pseudonyms) {
+    Map<String, List<Map<String, Object>>> compositions = new LinkedHashMap<>();
     responseData.setQuery(StringUtils.EMPTY);
 
     for (List<Object> row : responseData.getRows()) {
@@ -268,49 +352,45 @@ public class EhrBaseService {
         String name = responseData.getColumns().get(i).get(NAME);
 
         if (isComposition(cell)) {
-          if (compositions.containsKey(name)) {
-            compositions.get(name).add((Map<String, Object>) cell);
-          } else {
-            List<Map<String, Object>> list = new LinkedList<>();
-            list.add((Map<String, Object>) cell);
-            compositions.put(name, list);
-          }
+          compositions.computeIfAbsent(name, key -> new ArrayList<>()).add((Map<String, Object>) cell);
         } else {
           log.debug("Executing query containing mixed data types. Returning raw ehr response");
+          addPseudonyms(responseData, pseudonyms);
           return List.of(responseData);
         }
       }
     }
 
-    List<QueryResponseData> aggregatedFlattenedCompositions = new LinkedList<>();
-
     if (compositions.isEmpty()) {
       log.debug("No compositions in the response. Returning raw ehr response");
-      aggregatedFlattenedCompositions = List.of(responseData);
-    } else {
-      for (Map.Entry<String, List<Map<String, Object>>> entry : compositions.entrySet()) {
-        QueryResponseData data = compositionResponseDataBuilder.build(entry.getValue());
-        data.setName(entry.getKey());
-        aggregatedFlattenedCompositions.add(data);
-      }
+      addPseudonyms(responseData, pseudonyms);
+      return List.of(responseData);
     }
 
+    List<QueryResponseData> aggregatedFlattenedCompositions = new ArrayList<>(compositions.size());
+    for (Map.Entry<String, List<Map<String, Object>>> entry : compositions.entrySet()) {
+      QueryResponseData data = compositionResponseDataBuilder.build(entry.getValue(), pseudonyms);
+      data.setName(entry.getKey());
+      aggregatedFlattenedCompositions.add(data);
+    }
     return aggregatedFlattenedCompositions;
   }
 
-  private void addPseudonyms(List<String> secondLevelPseudos, List<QueryResponseData> listOfResponseData, Long projectId) {
-
-    List<String> pseudonyms = pseudonymity.getPseudonyms(secondLevelPseudos, projectId);
-
+  /**
+   * Adds the pseudonyms as first column of a raw response, flattened compositions get them from the
+   * {@link CompositionResponseDataBuilder}
+   */
+  private void addPseudonyms(QueryResponseData queryResponseData, List<String> pseudonyms) {
+    if (pseudonyms == null) {
+      return;
+    }
     Map<String, String> pseudonymityColumn = new HashMap<>();
     pseudonymityColumn.put(PATH, PSEUDONYM);
     pseudonymityColumn.put(NAME, PSEUDONYM);
-    for (QueryResponseData queryResponseData : listOfResponseData) {
-      queryResponseData.getColumns().add(0, pseudonymityColumn);
-      List<List<Object>> rows = queryResponseData.getRows();
-      for (int i = 0; i < rows.size(); i++) {
-        rows.get(i).add(0, pseudonyms.get(i));
-      }
+    queryResponseData.getColumns().add(0, pseudonymityColumn);
+    List<List<Object>> rows = queryResponseData.getRows();
+    for (int i = 0; i < rows.size(); i++) {
+      rows.get(i).add(0, pseudonyms.get(i));
     }
   }
 
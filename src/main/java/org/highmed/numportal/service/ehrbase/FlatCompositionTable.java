@@ -0,0 +1,146 @@
+package org.highmed.numportal.service.ehrbase;
+
+import org.ehrbase.openehr.sdk.response.dto.QueryResponseData;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sparse table of flattened compositions, filled cell by cell while the compositions are flattened. Column paths are
+ * numbered in the order they first appear and every row only keeps its non null cells as pairs of column index and
+ * value, so memory grows with the number of values instead of rows times all paths. The dense rows of the resulting
+ * response are created while they are read.
+ */
+public class FlatCompositionTable {
+
+  private static final String COLUMN_NAME = "name";
+  private static final String COLUMN_PATH = "path";
+  private static final int INITIAL_ROW_CAPACITY = 64;
+
+  private final Map<String, Integer> columnIndexes = new HashMap<>();
+  private final List<String> paths = new ArrayList<>();
+  private final List<SparseRow> rows = new ArrayList<>();
+
+  private int[] cellColumns = new int[INITIAL_ROW_CAPACITY];
+  private Object[] cellValues = new Object[INITIAL_ROW_CAPACITY];
+  private int cellCount;
+  private boolean rowStarted;
+
+  /**
+   * Adds a column at the end of the known columns, if it does not exist yet
+   */
+  public void addColumn(String path) {
+    columnIndex(path);
+  }
+
+  /**
+   * Starts a new row, the cells put afterwards belong to this row
+   */
+  public void addRow() {
+    finishRow();
+    rowStarted = true;
+  }
+
+  /**
+   * Sets a cell of the current row, null values are not stored
+   */
+  public void put(String path, Object value) {
+    if (!rowStarted) {
+      throw new IllegalStateException("No row started");
+    }
+    if (value == null) {
+      return;
+    }
+    if (cellCount == cellColumns.length) {
+      cellColumns = Arrays.copyOf(cellColumns, cellCount * 2);
+      cellValues = Arrays.copyOf(cellValues, cellCount * 2);
+    }
+    cellColumns[cellCount] = columnIndex(path);
+    cellValues[cellCount] = value;
+    cellCount++;
+  }
+
+  public int getRowCount() {
+    return rows.size() + (rowStarted ? 1 : 0);
+  }
+
+  public int getColumnCount() {
+    return paths.size();
+  }
+
+  /**
+   * Response with one column per path in order of appearance and a read only view of the rows
+   */
+  public QueryResponseData toQueryResponseData() {
+    finishRow();
+    List<Map<String, String>> columns = new ArrayList<>(paths.size());
+    for (String path : paths) {
+      Map<String, String> column = new HashMap<>();
+      column.put(COLUMN_NAME, path);
+      column.put(COLUMN_PATH, path);
+      columns.add(column);
+    }
+
+    QueryResponseData queryResponseData = new QueryResponseData();
+    queryResponseData.setColumns(columns);
+    queryResponseData.setRows(new DenseRows(List.copyOf(rows), paths.size()));
+    return queryResponseData;
+  }
+
+  private int columnIndex(String path) {
+    Integer index = columnIndexes.get(path);
+    if (index == null) {
+      index = paths.size();
+      paths.add(path);
+      columnIndexes.put(path, index);
+    }
+    return index;
+  }
+
+  private void finishRow() {
+    if (rowStarted) {
+      rows.add(new SparseRow(Arrays.copyOf(cellColumns, cellCount), Arrays.copyOf(cellValues, cellCount)));
+      Arrays.fill(cellValues, 0, cellCount, null);
+      cellCount = 0;
+      rowStarted = false;
+    }
+  }
+
+  private record SparseRow(int[] columns, Object[] values) {
+
+  }
+
+  /**
+   * Rows padded with nulls to the columns of the table
+   */
+  private static class DenseRows extends AbstractList<List<Object>> {
+
+    private final List<SparseRow> rows;
+
+    private final int columnCount;
+
+    DenseRows(List<SparseRow> rows, int columnCount) {
+      this.rows = rows;
+      this.columnCount = columnCount;
+    }
+
+    @Override
+    public List<Object> get(int index) {
+      SparseRow row = rows.get(index);
+      Object[] values = new Object[columnCount];
+      for (int i = 0; i < row.columns().length; i++) {
+        values[row.columns()[i]] = row.values()[i];
+      }
+      return Arrays.asList(values);
+    }
+
+    @Override
+    public int size() {
+      return rows.size();
+    }
+  }
+}
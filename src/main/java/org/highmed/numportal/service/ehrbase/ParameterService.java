@@ -1,10 +1,10 @@
 package org.highmed.numportal.service.ehrbase;
 
 import org.highmed.numportal.domain.dto.ParameterOptionsDto;
+import org.highmed.numportal.properties.ParameterCacheProperties;
 import org.highmed.numportal.service.UserDetailsService;
 import org.highmed.numportal.service.util.AqlQueryConstants;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.Version;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.module.SimpleModule;
@@ -21,7 +21,7 @@ import com.nedap.archie.rm.datavalues.quantity.datetime.DvDateTime;
 import com.nedap.archie.rm.datavalues.quantity.datetime.DvDuration;
 import com.nedap.archie.rm.datavalues.quantity.datetime.DvTime;
 import com.nedap.archie.rm.support.identification.ObjectVersionId;
-import lombok.RequiredArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.ehrbase.openehr.sdk.aql.dto.AqlQuery;
@@ -35,21 +35,34 @@ import org.ehrbase.openehr.sdk.aql.render.AqlRenderer;
 import org.ehrbase.openehr.sdk.client.openehrclient.defaultrestclient.TemporalAccessorDeSerializer;
 import org.ehrbase.openehr.sdk.client.openehrclient.defaultrestclient.VersionUidDeSerializer;
 import org.ehrbase.openehr.sdk.serialisation.jsonencoding.ArchieObjectMapperProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.annotation.CachePut;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.temporal.TemporalAccessor;
 import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
-
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Options of the cohort builder parameters, the distinct values of an aql path in EhrBase. The options are cached per
+ * archetype and path, served from the cache and loaded again in the background once they are older than the refresh
+ * interval, so only the first request of a parameter waits for EhrBase.
+ */
 @Slf4j
 @Service
-@RequiredArgsConstructor
 public class ParameterService {
 
   private static final String VALUE_DEFINING_CODE = "/value/defining_code/code_string";
@@ -66,12 +79,30 @@ public class ParameterService {
 
   private static final String PARAMETERS_CACHE = "aqlParameters";
 
+  private static final ObjectMapper AQL_OBJECT_MAPPER = buildAqlObjectMapper();
+
   private final CacheManager cacheManager;
 
   private final EhrBaseService ehrBaseService;
 
   private final UserDetailsService userDetailsService;
 
+  private final ParameterCacheProperties properties;
+
+  private final ExecutorService refreshExecutor;
+
+  private final Set<ParameterKey> refreshing = ConcurrentHashMap.newKeySet();
+
+  @Autowired
+  public ParameterService(CacheManager cacheManager, EhrBaseService ehrBaseService,
+      UserDetailsService userDetailsService, ParameterCacheProperties properties) {
+    this.cacheManager = cacheManager;
+    this.ehrBaseService = ehrBaseService;
+    this.userDetailsService = userDetailsService;
+    this.properties = properties;
+    this.refreshExecutor = Executors.newSingleThreadExecutor(new CustomizableThreadFactory("parameter-refresh-"));
+  }
+
   private static ObjectMapper buildAqlObjectMapper() {
     var objectMapper = ArchieObjectMapperProvider.getObjectMapper().copy();
     var module = new SimpleModule("openEHR", new Version(1, 0, 0, null, null, null));
@@ -81,9 +112,77 @@ public class ParameterService {
     return objectMapper;
   }
 
-  @CachePut(value = PARAMETERS_CACHE, key = "#aqlPath")
   public ParameterOptionsDto getParameterValues(String userId, String aqlPath, String archetypeId) {
     userDetailsService.checkIsUserApproved(userId);
+    var key = new ParameterKey(archetypeId, aqlPath);
+    var cache = cacheManager.getCache(PARAMETERS_CACHE);
+    if (cache == null) {
+      return loadParameterValues(key);
+    }
+
+    var cached = cache.get(key, CachedParameterOptions.class);
+    if (cached != null && cached.isOlderThan(properties.getTimeToLive())) {
+      cache.evict(key);
+      cached = null;
+    }
+    if (cached == null) {
+      try {
+        return cache.get(key, () -> new CachedParameterOptions(loadParameterValues(key), Instant.now())).options();
+      } catch (Cache.ValueRetrievalException e) {
+        if (e.getCause() instanceof RuntimeException runtimeException) {
+          throw runtimeException;
+        }
+        throw e;
+      }
+    }
+    if (cached.isOlderThan(properties.getRefreshAfter())) {
+      refreshAhead(cache, key);
+    }
+    return cached.options();
+  }
+
+  /**
+   * Removes the options that were loaded longer than the time to live ago. Options requested after the refresh age
+   * are reloaded in the background, so only options that stopped being requested reach the time to live.
+   */
+  @Scheduled(fixedRate = 3600000)
+  public void evictParametersCache() {
+    var cache = cacheManager.getCache(PARAMETERS_CACHE);
+    if (cache != null && cache.getNativeCache() instanceof Map<?, ?> entries) {
+      log.trace("Evicting expired aql parameters options");
+      entries.values().removeIf(value ->
+          value instanceof CachedParameterOptions options && options.isOlderThan(properties.getTimeToLive()));
+    }
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    refreshExecutor.shutdownNow();
+  }
+
+  private void refreshAhead(Cache cache, ParameterKey key) {
+    if (!refreshing.add(key)) {
+      return;
+    }
+    try {
+      refreshExecutor.execute(() -> {
+        try {
+          cache.put(key, new CachedParameterOptions(loadParameterValues(key), Instant.now()));
+        } catch (Exception e) {
+          log.warn("Could not refresh parameter options of {} {}, keeping cached options", key.archetypeId(),
+              key.aqlPath(), e);
+        } finally {
+          refreshing.remove(key);
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      refreshing.remove(key);
+    }
+  }
+
+  private ParameterOptionsDto loadParameterValues(ParameterKey key) {
+    String aqlPath = key.aqlPath();
+    String archetypeId = key.archetypeId();
     if (aqlPath.endsWith(VALUE_VALUE)) {
       return getParameters(aqlPath, archetypeId, VALUE_VALUE);
     } else if (aqlPath.endsWith(VALUE_MAGNITUDE)) {
@@ -101,15 +200,6 @@ public class ParameterService {
     }
   }
 
-  @Scheduled(fixedRate = 3600000)
-  public void evictParametersCache() {
-    var cache = cacheManager.getCache(PARAMETERS_CACHE);
-    if (cache != null) {
-      log.trace("Evicting aql parameters options cache");
-      cache.clear();
-    }
-  }
-
   private ParameterOptionsDto getParameters(String aqlPath, String archetypeId, String postfix) {
     String query;
     if (aqlPath.startsWith("/")) {
@@ -136,11 +226,9 @@ public class ParameterService {
             row -> {
               try {
                 if (row.get(0) != null) {
-                  var rowString = buildAqlObjectMapper().writeValueAsString(row.get(0));
-                  log.debug("[AQL parameter] query response data row {} ", rowString);
+                  log.debug("[AQL parameter] query response data row {} ", row.get(0));
                   var element =
-                      (SingleValuedDataValue<?>)
-                          buildAqlObjectMapper().readValue(rowString, RMObject.class);
+                      (SingleValuedDataValue<?>) AQL_OBJECT_MAPPER.convertValue(row.get(0), RMObject.class);
                   if (Objects.nonNull(element.getValue())) {
                     if (element.getValue() instanceof DvCodedText) {
                       convertDvCodedText((DvCodedText) element.getValue(), parameterOptions, postfix);
@@ -169,7 +257,7 @@ public class ParameterService {
                     }
                   }
                 }
-              } catch (JsonProcessingException e) {
+              } catch (IllegalArgumentException e) {
                 log.error("Could not retrieve parameters for aqlPath {} and archetypeId {} ", aqlPath, archetypeId, e);
               }
             });
@@ -274,4 +362,15 @@ public class ParameterService {
   private void convertTime(ParameterOptionsDto dto) {
     dto.setType("DV_TIME");
   }
+
+  private record ParameterKey(String archetypeId, String aqlPath) {
+
+  }
+
+  private record CachedParameterOptions(ParameterOptionsDto options, Instant loadedAt) {
+
+    boolean isOlderThan(Duration age) {
+      return Duration.between(loadedAt, Instant.now()).compareTo(age) >= 0;
+    }
+  }
 }
@@ -0,0 +1,92 @@
+package org.highmed.numportal.service.ehrbase;
+
+import org.highmed.numportal.properties.PseudonymityProperties;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+/**
+ * Caches the third level pseudonyms resolved by the trusted third party per project, so that repeated exports of a
+ * project do not request the same pseudonyms again within the configured time to live.
+ */
+@Component
+@RequiredArgsConstructor
+public class PseudonymCache {
+
+  private static final String PSEUDONYM_CACHE = "pseudonymCache";
+
+  private final PseudonymityProperties properties;
+
+  /**
+   * Name unique per instance, the caching provider is shared by all application contexts in the jvm
+   */
+  private final String cacheName = PSEUDONYM_CACHE + "-" + Integer.toHexString(System.identityHashCode(this));
+
+  private Cache<String, String> cache;
+
+  /**
+   * Returns the cached third level pseudonyms of the given second level pseudonyms, by second level pseudonym
+   */
+  public Map<String, String> getAll(Long projectId, Collection<String> secondLevelPseudonyms) {
+    Map<String, String> result = new HashMap<>();
+    if (!isActive()) {
+      return result;
+    }
+    for (String secondLevelPseudonym : secondLevelPseudonyms) {
+      String pseudonym = cache.get(key(projectId, secondLevelPseudonym));
+      if (pseudonym != null) {
+        result.put(secondLevelPseudonym, pseudonym);
+      }
+    }
+    return result;
+  }
+
+  public void putAll(Long projectId, Map<String, String> pseudonyms) {
+    if (!isActive()) {
+      return;
+    }
+    Map<String, String> entries = new HashMap<>();
+    pseudonyms.forEach((secondLevelPseudonym, pseudonym) -> entries.put(key(projectId, secondLevelPseudonym), pseudonym));
+    cache.putAll(entries);
+  }
+
+  @PostConstruct
+  public void initializeCache() {
+    CacheManager cacheManager = Caching.getCachingProvider().getCacheManager();
+
+    CacheConfigurationBuilder<String, String> configuration =
+        CacheConfigurationBuilder
+            .newCacheConfigurationBuilder(
+                String.class, String.class, ResourcePoolsBuilder.heap(Math.max(1, properties.getCacheMaxEntries())))
+            .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(properties.getCacheTimeToLive()));
+
+    cache = cacheManager.createCache(cacheName, Eh107Configuration.fromEhcacheCacheConfiguration(configuration));
+  }
+
+  @PreDestroy
+  public void clearCache() {
+    Caching.getCachingProvider().getCacheManager().destroyCache(cacheName);
+    cache = null;
+  }
+
+  private boolean isActive() {
+    return properties.isCacheEnabled() && cache != null;
+  }
+
+  private static String key(Long projectId, String secondLevelPseudonym) {
+    return projectId + ":" + secondLevelPseudonym;
+  }
+}
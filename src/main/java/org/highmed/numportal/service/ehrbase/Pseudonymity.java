@@ -2,13 +2,16 @@ package org.highmed.numportal.service.ehrbase;
 
 import org.highmed.numportal.properties.FttpProperties;
 import org.highmed.numportal.properties.PrivacyProperties;
+import org.highmed.numportal.properties.PseudonymityProperties;
 import org.highmed.numportal.properties.PseudonymsPsnWorkflowProperties;
 import org.highmed.numportal.service.exception.ResourceNotFound;
+import org.highmed.numportal.service.metric.IntegrationMetrics;
+import org.highmed.numportal.service.metric.PseudonymityMetrics;
 
 import ca.uhn.fhir.context.FhirContext;
-import lombok.RequiredArgsConstructor;
+import ca.uhn.fhir.parser.IParser;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.lang3.StringUtils;
@@ -16,26 +19,46 @@ import org.apache.http.HttpStatus;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.StringEntity;
+import org.apache.http.entity.ByteArrayEntity;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.util.EntityUtils;
 import org.hl7.fhir.r4.model.Identifier;
 import org.hl7.fhir.r4.model.Parameters;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.HexFormat;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+/**
+ * Resolves third level pseudonyms with the trusted third party. Chunks of pseudonyms are requested concurrently on a
+ * bounded pool and resolved pseudonyms are cached per project in the {@link PseudonymCache}.
+ */
 @Slf4j
 @Component
-@RequiredArgsConstructor
 public class Pseudonymity {
 
   private static final String ORIGINAL = "original";
@@ -47,34 +70,139 @@ public class Pseudonymity {
       "Request to retrieve pseudonyms failed";
 
   // is just a guessing...because there are also codes that start with codex_ but we do not receive the pseudonym back (example codex_A12CB2)
-  private static final String EXTERNAL_REF_ID_REGEX_GREIFSWALD_COMPLIANT = "codex_[A-Z0-9-]{6}";
+  private static final Pattern EXTERNAL_REF_ID_GREIFSWALD_COMPLIANT = Pattern.compile("codex_[A-Z0-9-]{6}");
 
   private static final String DIGEST_ALGORITHM = "SHA3-256";
+
+  private static final ThreadLocal<MessageDigest> DIGEST = ThreadLocal.withInitial(Pseudonymity::newDigest);
+
+  private static final ContentType FHIR_CONTENT = ContentType.parse(FHIR_CONTENT_TYPE);
   private final CloseableHttpClient httpClient;
   private final FttpProperties fttpProperties;
   private final FhirContext fhirContext;
   private final PseudonymsPsnWorkflowProperties pseudonymsPsnWorkflowProperties;
   private final PrivacyProperties privacyProperties;
+  private final PseudonymCache pseudonymCache;
+  private final PseudonymityMetrics metrics;
+  private final IntegrationMetrics integrationMetrics;
+  private final ExecutorService executorService;
+
+  /**
+   * Parsers are not thread safe, each thread requesting pseudonyms reuses its own
+   */
+  private final ThreadLocal<IParser> xmlParser;
 
   @Value("${pseudonymity.fake3rdPartyPseudonymEnabled:false}")
   private boolean fake3rdPartyPseudonymEnabled;
 
+  @Autowired
+  public Pseudonymity(
+      CloseableHttpClient httpClient,
+      FttpProperties fttpProperties,
+      FhirContext fhirContext,
+      PseudonymsPsnWorkflowProperties pseudonymsPsnWorkflowProperties,
+      PrivacyProperties privacyProperties,
+      PseudonymityProperties pseudonymityProperties,
+      PseudonymCache pseudonymCache,
+      PseudonymityMetrics metrics,
+      IntegrationMetrics integrationMetrics) {
+    this.httpClient = httpClient;
+    this.fttpProperties = fttpProperties;
+    this.fhirContext = fhirContext;
+    this.pseudonymsPsnWorkflowProperties = pseudonymsPsnWorkflowProperties;
+    this.privacyProperties = privacyProperties;
+    this.pseudonymCache = pseudonymCache;
+    this.metrics = metrics;
+    this.integrationMetrics = integrationMetrics;
+    this.xmlParser = ThreadLocal.withInitial(fhirContext::newXmlParser);
+    this.executorService =
+        Executors.newFixedThreadPool(
+            Math.max(1, pseudonymityProperties.getParallelism()), new CustomizableThreadFactory("pseudonymity-"));
+  }
+
   public List<String> getPseudonyms(List<String> secondLevelPseudonyms, Long projectId) {
     if (!privacyProperties.isEnabled()) {
       return secondLevelPseudonyms;
     }
-    List<String> result = new LinkedList<>();
+    Map<String, String> pseudonyms = pseudonymCache.getAll(projectId, secondLevelPseudonyms);
+    List<String> missing = secondLevelPseudonyms.stream()
+                                                .filter(original -> !pseudonyms.containsKey(original))
+                                                .distinct()
+                                                .collect(Collectors.toList());
+    metrics.hits(pseudonyms.size());
+    metrics.misses(missing.size());
+
     // I guess Greisfwald restricted the number of original params per request
-    List<List<String>> chunks = ListUtils.partition(secondLevelPseudonyms, privacyProperties.getPseudonomityChunksSize());
-    chunks.forEach(listChunks -> result.addAll(getPseudonymsData(listChunks, projectId)));
-    return result;
+    List<List<String>> chunks = ListUtils.partition(missing, privacyProperties.getPseudonomityChunksSize());
+    List<List<String>> chunkPseudonyms = requestChunks(chunks, projectId);
+    for (int c = 0; c < chunks.size(); c++) {
+      for (int i = 0; i < chunks.get(c).size(); i++) {
+        pseudonyms.put(chunks.get(c).get(i), chunkPseudonyms.get(c).get(i));
+      }
+    }
+    return secondLevelPseudonyms.stream().map(pseudonyms::get).collect(Collectors.toList());
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executorService.shutdownNow();
+  }
+
+  /**
+   * Requests the chunks concurrently, a single chunk is requested on the calling thread
+   */
+  private List<List<String>> requestChunks(List<List<String>> chunks, Long projectId) {
+    if (chunks.size() <= 1) {
+      return chunks.stream().map(chunk -> timedPseudonymsData(chunk, projectId)).collect(Collectors.toList());
+    }
+    List<Future<List<String>>> futures =
+        chunks.stream()
+              .map(chunk -> executorService.submit(() -> timedPseudonymsData(chunk, projectId)))
+              .collect(Collectors.toList());
+    try {
+      List<List<String>> result = new ArrayList<>(chunks.size());
+      for (Future<List<String>> future : futures) {
+        result.add(await(future));
+      }
+      return result;
+    } finally {
+      futures.forEach(future -> future.cancel(true));
+    }
+  }
+
+  private List<String> await(Future<List<String>> future) {
+    try {
+      return future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      log.error("Could not retrieve pseudonyms ", e.getCause());
+      throw new ResourceNotFound(Pseudonymity.class, PSEUDONYMS_COULD_NOT_BE_RETRIEVED_MESSAGE);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ResourceNotFound(Pseudonymity.class, PSEUDONYMS_COULD_NOT_BE_RETRIEVED_MESSAGE);
+    }
+  }
+
+  private List<String> timedPseudonymsData(List<String> secondLevelPseudonyms, Long projectId) {
+    boolean success = false;
+    long start = System.nanoTime();
+    try {
+      List<String> result = getPseudonymsData(secondLevelPseudonyms, projectId);
+      success = true;
+      return result;
+    } finally {
+      integrationMetrics.record(IntegrationMetrics.PSEUDONYMITY, "pseudonyms", System.nanoTime() - start, success);
+      integrationMetrics.pseudonymIds(secondLevelPseudonyms.size());
+    }
   }
 
   private List<String> getPseudonymsData(List<String> secondLevelPseudonyms, Long projectId) {
     var parameters = initParameters(projectId);
 
     secondLevelPseudonyms.forEach(original -> {
-      if (Pattern.matches(EXTERNAL_REF_ID_REGEX_GREIFSWALD_COMPLIANT, original)) {
+      if (EXTERNAL_REF_ID_GREIFSWALD_COMPLIANT.matcher(original).matches()) {
         parameters.addParameter(ORIGINAL, original);
       }
     });
@@ -93,6 +221,7 @@ public class Pseudonymity {
         }
       }
       Map<String, Parameters.ParametersParameterComponent> paramsData = groupPseudonyms(params);
+      cacheResolvedPseudonyms(paramsData, projectId);
       return secondLevelPseudonyms.stream()
                                   .map(original -> findPseudonymForOriginal(paramsData, original, projectId).get())
                                   .collect(Collectors.toList());
@@ -113,14 +242,19 @@ public class Pseudonymity {
       request.setHeader("Content-Type", FHIR_CONTENT_TYPE);
       CloseableHttpResponse response = null;
       try {
-        String requestBody = fhirContext.newXmlParser().encodeResourceToString(parameters);
-        request.setEntity(new StringEntity(requestBody, ContentType.parse(FHIR_CONTENT_TYPE)));
+        ByteArrayOutputStream requestBody = new ByteArrayOutputStream();
+        try (Writer writer = new OutputStreamWriter(requestBody, StandardCharsets.UTF_8)) {
+          xmlParser.get().encodeResourceToWriter(parameters, writer);
+        }
+        request.setEntity(new ByteArrayEntity(requestBody.toByteArray(), FHIR_CONTENT));
         response = httpClient.execute(request);
-        log.debug("Request pseudonyms with body: {} ", requestBody);
+        if (log.isDebugEnabled()) {
+          log.debug("Request pseudonyms with body: {} ", requestBody.toString(StandardCharsets.UTF_8));
+        }
         if (response.getStatusLine().getStatusCode() == HttpStatus.SC_OK) {
-          String resp = EntityUtils.toString(response.getEntity());
-          log.debug("Received pseudonyms response: {} ", resp);
-          return Optional.of(fhirContext.newXmlParser().parseResource(Parameters.class, resp));
+          try (Reader reader = responseReader(response)) {
+            return Optional.of(xmlParser.get().parseResource(Parameters.class, reader));
+          }
         } else {
           log.error("Could not retrieve pseudonyms. Expected status code 200, received {} with response body: {} ",
               response.getStatusLine().getStatusCode(), EntityUtils.toString(response.getEntity()));
@@ -160,7 +294,7 @@ public class Pseudonymity {
 
   private Optional<String> findPseudonymForOriginal(Map<String, Parameters.ParametersParameterComponent> parameters, String original,
       Long projectId) {
-    if (Pattern.matches(EXTERNAL_REF_ID_REGEX_GREIFSWALD_COMPLIANT, original) && parameters.containsKey(original)) {
+    if (EXTERNAL_REF_ID_GREIFSWALD_COMPLIANT.matcher(original).matches() && parameters.containsKey(original)) {
       var param = parameters.get(original);
       String pseudonym = getPartValue(PSEUDONYM, param);
       if (StringUtils.isNotEmpty(pseudonym)) {
@@ -189,8 +323,31 @@ public class Pseudonymity {
 
   private String generateNumThirdLevelPseudonym(String original, Long projectId) {
     log.debug("For id {} was generated fake 3rd level pseudonym", original);
-    return new DigestUtils(DIGEST_ALGORITHM)
-        .digestAsHex(original + projectId + privacyProperties.getPseudonymitySecret());
+    MessageDigest digest = DIGEST.get();
+    return HexFormat.of().formatHex(
+        digest.digest((original + projectId + privacyProperties.getPseudonymitySecret()).getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static MessageDigest newDigest() {
+    try {
+      return MessageDigest.getInstance(DIGEST_ALGORITHM);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  /**
+   * Reads the response body while parsing, it is only copied into a string to be logged
+   */
+  private static Reader responseReader(CloseableHttpResponse response) throws IOException {
+    if (log.isDebugEnabled()) {
+      String resp = EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8);
+      log.debug("Received pseudonyms response: {} ", resp);
+      return new StringReader(resp);
+    }
+    ContentType contentType = ContentType.get(response.getEntity());
+    Charset charset = contentType != null && contentType.getCharset() != null ? contentType.getCharset() : StandardCharsets.UTF_8;
+    return new InputStreamReader(response.getEntity().getContent(), charset);
   }
 
   private String getPartValue(String value, Parameters.ParametersParameterComponent param) {
@@ -203,11 +360,31 @@ public class Pseudonymity {
     return StringUtils.EMPTY;
   }
 
+  /**
+   * Caches the pseudonyms returned by the trusted third party, generated fake pseudonyms are not cached
+   */
+  private void cacheResolvedPseudonyms(Map<String, Parameters.ParametersParameterComponent> paramsData, Long projectId) {
+    Map<String, String> resolved = new HashMap<>();
+    paramsData.forEach((original, param) -> {
+      String pseudonym = getPartValue(PSEUDONYM, param);
+      if (StringUtils.isNotEmpty(pseudonym)) {
+        resolved.put(original, pseudonym);
+      }
+    });
+    pseudonymCache.putAll(projectId, resolved);
+  }
+
+  /**
+   * Groups the response by original, entries without a compliant original are skipped so they are neither used nor
+   * cached
+   */
   private Map<String, Parameters.ParametersParameterComponent> groupPseudonyms(Parameters params) {
     Map<String, Parameters.ParametersParameterComponent> paramsData = new HashMap<>();
     for (var param : params.getParameter()) {
       String org = getPartValue(ORIGINAL, param);
-      paramsData.put(org, param);
+      if (StringUtils.isNotBlank(org) && EXTERNAL_REF_ID_GREIFSWALD_COMPLIANT.matcher(org).matches()) {
+        paramsData.put(org, param);
+      }
     }
     return paramsData;
   }
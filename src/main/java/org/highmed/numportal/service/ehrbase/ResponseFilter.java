@@ -10,21 +10,35 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 import javax.annotation.PostConstruct;
 
+/**
+ * Removes columns of identifying or technical paths from query results. The keep decision is taken once per distinct
+ * column path and cached, rows are projected lazily through the mask of kept column indexes.
+ */
 @Component
 @NoArgsConstructor
 @Slf4j
 public class ResponseFilter {
 
+  /**
+   * Upper bound of cached keep decisions, paths are bounded by the templates but generated paths could grow without end
+   */
+  private static final int MAX_CACHED_DECISIONS = 100000;
+
   private HashSet<String> pathFilters;
-  private List<Pattern> regexpFilters;
+  private Pattern regexpFilter;
+  private final Map<String, Boolean> keepDecisions = new ConcurrentHashMap<>();
 
   @PostConstruct
   public void initialize() {
@@ -34,8 +48,11 @@ public class ResponseFilter {
       pathFilters = new HashSet<>(pathResource.lines().toList());
       BufferedReader regexpResource = new BufferedReader(new InputStreamReader(
           new ClassPathResource("resultfilters/regexpfilters.txt").getInputStream(), StandardCharsets.UTF_8));
-      regexpFilters = regexpResource.lines().map(Pattern::compile).collect(
-          Collectors.toList());
+      List<String> regexps = regexpResource.lines().toList();
+      regexpFilter = regexps.isEmpty()
+          ? null
+          : Pattern.compile(regexps.stream().map(regexp -> "(?:" + regexp + ")").collect(Collectors.joining("|")));
+      keepDecisions.clear();
     } catch (IOException e) {
       log.error("Failed to read project data filters, can't filter results.");
     }
@@ -45,42 +62,116 @@ public class ResponseFilter {
     if (pathFilters == null) {
       return queryResponseDataList;
     }
-    List<QueryResponseData> resultList = new ArrayList<>();
+    List<QueryResponseData> resultList = new ArrayList<>(queryResponseDataList.size());
     for (QueryResponseData queryResponseData : queryResponseDataList) {
-      List<Map<String, String>> filteredColumns = new ArrayList<>();
-      List<List<Object>> filteredRows = new ArrayList<>();
-      QueryResponseData filteredResponse = new QueryResponseData();
-      if (isValidQueryResponseData(queryResponseData)) {
-        for (int i = 0; i < queryResponseData.getRows().size(); i++) {
-          filteredRows.add(new ArrayList<>());
-        }
-        for (int c = 0; c < queryResponseData.getColumns().size(); c++) {
-          Map<String, String> column = queryResponseData.getColumns().get(c);
-          if (keepColumn(column)) {
-            filteredColumns.add(column);
-            for (int i = 0; i < queryResponseData.getRows().size(); i++) {
-              filteredRows.get(i).add(queryResponseData.getRows().get(i).get(c));
-            }
-          }
-        }
-      }
-      filteredResponse.setColumns(filteredColumns);
-      filteredResponse.setRows(filteredRows);
-      filteredResponse.setName(queryResponseData.getName());
-      resultList.add(filteredResponse);
+      resultList.add(filter(queryResponseData));
     }
     return resultList;
   }
 
+  /**
+   * Filters the columns of a single response without copying its rows, the filtered cells of a row are only selected
+   * when the row is read. Used to stream exports row by row.
+   */
+  public QueryResponseData filter(QueryResponseData queryResponseData) {
+    if (pathFilters == null) {
+      return queryResponseData;
+    }
+    QueryResponseData filteredResponse = new QueryResponseData();
+    filteredResponse.setName(queryResponseData.getName());
+    if (!isValidQueryResponseData(queryResponseData)) {
+      filteredResponse.setColumns(new ArrayList<>());
+      filteredResponse.setRows(new ArrayList<>());
+      return filteredResponse;
+    }
+
+    List<Map<String, String>> columns = queryResponseData.getColumns();
+    List<Map<String, String>> filteredColumns = new ArrayList<>(columns.size());
+    int[] keptIndexes = new int[columns.size()];
+    int kept = 0;
+    for (int c = 0; c < columns.size(); c++) {
+      Map<String, String> column = columns.get(c);
+      if (keepColumn(column)) {
+        filteredColumns.add(column);
+        keptIndexes[kept++] = c;
+      }
+    }
+    filteredResponse.setColumns(filteredColumns);
+    filteredResponse.setRows(
+        kept == columns.size()
+            ? queryResponseData.getRows()
+            : new FilteredRows(queryResponseData.getRows(), Arrays.copyOf(keptIndexes, kept)));
+    return filteredResponse;
+  }
+
   private boolean isValidQueryResponseData(QueryResponseData queryResponseData) {
     return queryResponseData.getRows() != null && queryResponseData.getColumns() != null;
   }
 
   private boolean keepColumn(Map<String, String> column) {
     String path = column.get("path");
-    if (pathFilters.contains(path)) {
-      return false;
+    if (path == null) {
+      return true;
+    }
+    Boolean keep = keepDecisions.get(path);
+    if (keep == null) {
+      keep = !pathFilters.contains(path) && (regexpFilter == null || !regexpFilter.matcher(path).matches());
+      if (keepDecisions.size() < MAX_CACHED_DECISIONS) {
+        keepDecisions.put(path, keep);
+      }
+    }
+    return keep;
+  }
+
+  /**
+   * Read only view of rows, restricted to the kept columns
+   */
+  private static class FilteredRows extends AbstractList<List<Object>> {
+
+    private final List<List<Object>> rows;
+
+    private final int[] keptIndexes;
+
+    FilteredRows(List<List<Object>> rows, int[] keptIndexes) {
+      this.rows = rows;
+      this.keptIndexes = keptIndexes;
+    }
+
+    @Override
+    public List<Object> get(int index) {
+      return filterRow(rows.get(index));
+    }
+
+    /**
+     * Iterates the underlying rows, which may be linked lists
+     */
+    @Override
+    public Iterator<List<Object>> iterator() {
+      Iterator<List<Object>> iterator = rows.iterator();
+      return new Iterator<>() {
+        @Override
+        public boolean hasNext() {
+          return iterator.hasNext();
+        }
+
+        @Override
+        public List<Object> next() {
+          return filterRow(iterator.next());
+        }
+      };
+    }
+
+    @Override
+    public int size() {
+      return rows.size();
+    }
+
+    private List<Object> filterRow(List<Object> row) {
+      List<Object> filteredRow = new ArrayList<>(keptIndexes.length);
+      for (int keptIndex : keptIndexes) {
+        filteredRow.add(row.get(keptIndex));
+      }
+      return filteredRow;
     }
-    return regexpFilters.stream().filter(regexp -> regexp.matcher(path).matches()).findFirst().isEmpty();
   }
 }
@@ -1,5 +1,7 @@
 package org.highmed.numportal.service.email;
 
+import org.highmed.numportal.service.metric.IntegrationMetrics;
+
 import jakarta.mail.MessagingException;
 import jakarta.mail.internet.MimeMessage;
 import lombok.AllArgsConstructor;
@@ -18,6 +20,7 @@ public class EmailService {
 
   private final JavaMailSender javaMailSender;
   private final EmailProperties emailProperties;
+  private final IntegrationMetrics integrationMetrics;
 
   public void sendEmail(String subject, String htmlBody, String to) {
     if (!emailProperties.isEnabled()) {
@@ -34,7 +37,7 @@ public class EmailService {
       helper.setSubject(subject);
       helper.setText(htmlBody, true);
 
-      javaMailSender.send(message);
+      integrationMetrics.run(IntegrationMetrics.SMTP, "send", () -> javaMailSender.send(message));
       log.debug("Message to {} successfully sent", to);
     } catch (MessagingException e) {
       log.error("Sending email to {} failed", to);
@@ -66,7 +69,7 @@ public class EmailService {
           filename,
           new ByteArrayResource(attachment.getBytes(StandardCharsets.UTF_8)),
           contentType);
-      javaMailSender.send(message);
+      integrationMetrics.run(IntegrationMetrics.SMTP, "send", () -> javaMailSender.send(message));
       log.debug("Message to {} successfully sent", to);
     } catch (MessagingException e) {
       log.error("Sending email to {} failed", to);
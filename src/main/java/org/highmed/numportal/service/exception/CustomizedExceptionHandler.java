@@ -265,6 +265,27 @@ public class CustomizedExceptionHandler extends ResponseEntityExceptionHandler {
     return ResponseEntity.status(HttpStatus.NOT_FOUND).body(errorDetails);
   }
 
+  @ExceptionHandler(TooManyRequestsException.class)
+  public ResponseEntity<ErrorDetails> handleTooManyRequestsErrors(
+      TooManyRequestsException exception) {
+
+    var className = nonNull(exception.getEntity()) ? exception.getEntity().getSimpleName() : null;
+    var description = exception.getMessage();
+
+    var errors = Map.of(
+        "Error Message",
+        nonNull(exception.getMessage()) ? exception.getMessage() : description);
+    ErrorDetails errorDetails = ErrorDetails
+        .builder()
+        .messageId(nonNull(errorMap.get(exception.getParamValue())) ? errorMap.get(exception.getParamValue()).getId() : -1)
+        .argumentsList(nonNull(exception.getEntity()) ? Arrays.asList(className, description) : new ArrayList<>())
+        .message(exception.getMessage())
+        .details(errors)
+        .build();
+    log.debug(exception.getMessage(), exception);
+    return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body(errorDetails);
+  }
+
   @ExceptionHandler(SystemException.class)
   public ResponseEntity<ErrorDetails> handleSystemException(
       SystemException exception) {
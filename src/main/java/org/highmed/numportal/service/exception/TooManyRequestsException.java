@@ -0,0 +1,21 @@
+package org.highmed.numportal.service.exception;
+
+import lombok.Getter;
+
+@Getter
+public class TooManyRequestsException extends RuntimeException {
+
+  private final Class<?> entity;
+
+  private final String paramValue;
+
+  private final String message;
+
+  public TooManyRequestsException(Class<?> entity, String paramValue, String message) {
+    super(message);
+    this.entity = entity;
+    this.paramValue = paramValue;
+    this.message = message;
+  }
+
+}
@@ -39,18 +39,36 @@ public class AqlExecutor {
   public Set<String> execute(
       CohortAql aql, Map<String, Object> parameters, Boolean allowUsageOutsideEu) {
 
-    if (aql != null && StringUtils.isNotEmpty(aql.getQuery())) {
-      if (BooleanUtils.isTrue(allowUsageOutsideEu) || allowUsageOutsideEu == null) {
-        applyPolicy(aql);
-      }
+    String query = prepareQuery(aql, parameters, allowUsageOutsideEu);
+    if (query == null) {
+      return SetUtils.emptySet();
+    }
+    return executePreparedQuery(query);
+  }
 
-      String query = removeNullParameters(parameters, aql.getQuery());
-      query = addParameters(parameters, query);
+  /**
+   * Applies the consent policy and the parameter values to the cohort aql, without executing it. Rewrites the query of
+   * the given aql and removes null parameters from the given map.
+   *
+   * @return The aql to be sent to EhrBase or null for an empty cohort aql
+   */
+  public String prepareQuery(
+      CohortAql aql, Map<String, Object> parameters, Boolean allowUsageOutsideEu) {
 
-      return ehrBaseService.retrieveEligiblePatientIds(query);
-    } else {
-      return SetUtils.emptySet();
+    if (aql == null || StringUtils.isEmpty(aql.getQuery())) {
+      return null;
     }
+
+    if (BooleanUtils.isTrue(allowUsageOutsideEu) || allowUsageOutsideEu == null) {
+      applyPolicy(aql);
+    }
+
+    String query = removeNullParameters(parameters, aql.getQuery());
+    return addParameters(parameters, query);
+  }
+
+  public Set<String> executePreparedQuery(String query) {
+    return ehrBaseService.retrieveEligiblePatientIds(query);
   }
 
   private void applyPolicy(CohortAql cohortAql) {
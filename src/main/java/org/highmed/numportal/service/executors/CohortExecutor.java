@@ -1,32 +1,90 @@
 package org.highmed.numportal.service.executors;
 
 import org.highmed.numportal.domain.model.Cohort;
+import org.highmed.numportal.domain.model.CohortAql;
 import org.highmed.numportal.domain.model.CohortGroup;
 import org.highmed.numportal.domain.model.Type;
-import org.highmed.numportal.service.ehrbase.EhrBaseService;
+import org.highmed.numportal.properties.CohortExecutionProperties;
+import org.highmed.numportal.service.ehrbase.AllEhrIdsCache;
 import org.highmed.numportal.service.exception.IllegalArgumentException;
+import org.highmed.numportal.service.exception.SystemException;
 
-import lombok.AllArgsConstructor;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.collections4.SetUtils;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
 
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
+import static org.highmed.numportal.domain.templates.ExceptionsTemplate.AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL;
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.CANNOT_EXECUTE_AN_EMPTY_COHORT;
 
+/**
+ * Executes a cohort tree, unless its result is still in the {@link CohortResultCache}. Subtrees that can be answered by a single aql are merged by the {@link CohortQueryPlanner},
+ * all remaining aql leaves of the tree are sent to EhrBase concurrently on a bounded pool, identical leaves (same query
+ * and parameters) are executed only once per tree, and the groups are combined once their leaves are available.
+ */
 @Slf4j
 @Service
-@AllArgsConstructor
 public class CohortExecutor {
 
+  private static final String LEAF_TIMER = "custom.metric.cohort.leaf.timer";
+
+  private static final String LEAF = "leaf";
+
+  private static final String MERGED = "merged";
+
   private final SetOperationsService setOperations;
 
   private final AqlExecutor aqlExecutor;
 
-  private final EhrBaseService ehrBaseService;
+  private final CohortQueryPlanner planner;
+
+  private final CohortResultCache resultCache;
+
+  private final AllEhrIdsCache allEhrIdsCache;
+
+  private final CohortExecutionProperties properties;
+
+  private final MeterRegistry registry;
+
+  private final ExecutorService executorService;
+
+  @Autowired
+  public CohortExecutor(
+      SetOperationsService setOperations,
+      AqlExecutor aqlExecutor,
+      CohortQueryPlanner planner,
+      CohortResultCache resultCache,
+      AllEhrIdsCache allEhrIdsCache,
+      CohortExecutionProperties properties,
+      MeterRegistry registry) {
+    this.setOperations = setOperations;
+    this.aqlExecutor = aqlExecutor;
+    this.planner = planner;
+    this.resultCache = resultCache;
+    this.allEhrIdsCache = allEhrIdsCache;
+    this.properties = properties;
+    this.registry = registry;
+    this.executorService =
+        Executors.newFixedThreadPool(
+            Math.max(1, properties.getParallelism()), new CustomizableThreadFactory("cohort-executor-"));
+  }
 
   public Set<String> execute(Cohort cohort, Boolean allowUsageOutsideEu) {
 
@@ -38,21 +96,154 @@ public class CohortExecutor {
   }
 
   public Set<String> executeGroup(CohortGroup cohortGroup, Boolean allowUsageOutsideEu) {
-    if (cohortGroup.getType() == Type.GROUP) {
+    return resultCache.get(cohortGroup, allowUsageOutsideEu, () -> executeTree(cohortGroup, allowUsageOutsideEu));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executorService.shutdownNow();
+  }
+
+  private Set<String> executeTree(CohortGroup cohortGroup, Boolean allowUsageOutsideEu) {
+    Map<CohortGroup, String> merged = planner.plan(cohortGroup, allowUsageOutsideEu);
+    Map<LeafKey, CompletableFuture<Set<String>>> leaves = new HashMap<>();
+    long deadline = System.nanoTime() + properties.getTimeout().toNanos();
+    try {
+      submitLeaves(cohortGroup, allowUsageOutsideEu, merged, leaves);
+      return evaluate(cohortGroup, merged, leaves, deadline);
+    } finally {
+      leaves.values().forEach(leaf -> leaf.cancel(true));
+    }
+  }
+
+  private void submitLeaves(
+      CohortGroup cohortGroup,
+      Boolean allowUsageOutsideEu,
+      Map<CohortGroup, String> merged,
+      Map<LeafKey, CompletableFuture<Set<String>>> leaves) {
+    String mergedQuery = merged.get(cohortGroup);
+    if (mergedQuery != null) {
+      leaves.computeIfAbsent(
+          LeafKey.of(mergedQuery),
+          key -> CompletableFuture.supplyAsync(() -> executeMerged(mergedQuery), executorService));
+    } else if (cohortGroup.getType() == Type.GROUP) {
+      cohortGroup.getChildren().forEach(child -> submitLeaves(child, allowUsageOutsideEu, merged, leaves));
+    } else if (cohortGroup.getType() == Type.AQL) {
+      leaves.computeIfAbsent(
+          LeafKey.of(cohortGroup),
+          key -> CompletableFuture.supplyAsync(() -> executeLeaf(cohortGroup, allowUsageOutsideEu), executorService));
+    }
+  }
+
+  private Set<String> evaluate(
+      CohortGroup cohortGroup,
+      Map<CohortGroup, String> merged,
+      Map<LeafKey, CompletableFuture<Set<String>>> leaves,
+      long deadline) {
+    String mergedQuery = merged.get(cohortGroup);
+    if (mergedQuery != null) {
+      return await(leaves.get(LeafKey.of(mergedQuery)), deadline);
+    } else if (cohortGroup.getType() == Type.GROUP) {
 
       List<Set<String>> sets =
           cohortGroup.getChildren().stream()
-                     .map(e -> executeGroup(e, allowUsageOutsideEu))
+                     .map(e -> evaluate(e, merged, leaves, deadline))
                      .collect(Collectors.toList());
 
       return setOperations.apply(
-          cohortGroup.getOperator(), sets, ehrBaseService.getAllPatientIds());
+          cohortGroup.getOperator(), sets, allEhrIdsCache::get);
 
     } else if (cohortGroup.getType() == Type.AQL) {
-      return aqlExecutor.execute(
-          cohortGroup.getQuery(), cohortGroup.getParameters(), allowUsageOutsideEu);
+      return await(leaves.get(LeafKey.of(cohortGroup)), deadline);
     }
 
     return SetUtils.emptySet();
   }
+
+  /**
+   * Executes a copy of the leaf, the aql executor rewrites query and parameters while executing and the originals
+   * might be shared between leaves or executed again later on.
+   */
+  private Set<String> executeLeaf(CohortGroup leaf, Boolean allowUsageOutsideEu) {
+    CohortAql aql = leaf.getQuery();
+    CohortAql aqlCopy =
+        aql == null ? null : CohortAql.builder().id(aql.getId()).name(aql.getName()).query(aql.getQuery()).build();
+    Map<String, Object> parameters = leaf.getParameters() == null ? null : new HashMap<>(leaf.getParameters());
+
+    return timed(
+        LEAF,
+        aql == null || aql.getId() == null ? "none" : String.valueOf(aql.getId()),
+        aql != null ? aql.getName() : null,
+        () -> aqlExecutor.execute(aqlCopy, parameters, allowUsageOutsideEu));
+  }
+
+  /**
+   * Executes the aql of a merged subtree, consent policy and parameters have already been applied by the planner
+   */
+  private Set<String> executeMerged(String query) {
+    return timed(MERGED, MERGED, "merged criteria", () -> aqlExecutor.executePreparedQuery(query));
+  }
+
+  /**
+   * Times the execution of a criterion, tagged by type and outcome only, so the number of series does not grow with
+   * the aql catalog. Slow criteria are logged with their aql id.
+   */
+  private Set<String> timed(String type, String aqlId, String name, Supplier<Set<String>> execution) {
+    String outcome = "error";
+    long start = System.nanoTime();
+    try {
+      Set<String> result = execution.get();
+      outcome = "success";
+      return result;
+    } finally {
+      long elapsed = System.nanoTime() - start;
+      Timer.builder(LEAF_TIMER)
+           .description("Execution time of a single cohort criterion against EhrBase")
+           .tag("type", type)
+           .tag("outcome", outcome)
+           .register(registry)
+           .record(elapsed, TimeUnit.NANOSECONDS);
+      if (elapsed >= properties.getSlowCriterionThreshold().toNanos()) {
+        log.warn("Slow cohort criterion {} (aql id {}) executed in {} ms with outcome {}",
+            name, aqlId, TimeUnit.NANOSECONDS.toMillis(elapsed), outcome);
+      } else {
+        log.debug("Cohort criterion {} (aql id {}) executed in {} ms with outcome {}",
+            name, aqlId, TimeUnit.NANOSECONDS.toMillis(elapsed), outcome);
+      }
+    }
+  }
+
+  private Set<String> await(CompletableFuture<Set<String>> leaf, long deadline) {
+    try {
+      return leaf.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw new SystemException(CohortExecutor.class, AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL,
+          String.format(AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL, e.getCause().getMessage()));
+    } catch (TimeoutException e) {
+      log.error("Cohort execution exceeded the configured timeout of {}", properties.getTimeout());
+      throw new SystemException(CohortExecutor.class, AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL,
+          String.format(AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL, "cohort execution timed out"));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new SystemException(CohortExecutor.class, AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL,
+          String.format(AN_ERROR_HAS_OCCURRED_CANNOT_EXECUTE_AQL, "cohort execution interrupted"));
+    }
+  }
+
+  private record LeafKey(String query, Map<String, Object> parameters, boolean prepared) {
+
+    static LeafKey of(CohortGroup leaf) {
+      return new LeafKey(
+          leaf.getQuery() != null ? leaf.getQuery().getQuery() : null,
+          leaf.getParameters() != null ? new HashMap<>(leaf.getParameters()) : Map.of(),
+          false);
+    }
+
+    static LeafKey of(String preparedQuery) {
+      return new LeafKey(preparedQuery, Map.of(), true);
+    }
+  }
 }
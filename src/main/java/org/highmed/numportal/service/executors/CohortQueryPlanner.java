@@ -0,0 +1,242 @@
+package org.highmed.numportal.service.executors;
+
+import org.highmed.numportal.domain.model.CohortAql;
+import org.highmed.numportal.domain.model.CohortGroup;
+import org.highmed.numportal.domain.model.Operator;
+import org.highmed.numportal.domain.model.Type;
+import org.highmed.numportal.properties.CohortExecutionProperties;
+import org.highmed.numportal.service.util.AqlQueryConstants;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.ehrbase.openehr.sdk.aql.dto.AqlQuery;
+import org.ehrbase.openehr.sdk.aql.dto.condition.ComparisonOperatorCondition;
+import org.ehrbase.openehr.sdk.aql.dto.condition.ExistsCondition;
+import org.ehrbase.openehr.sdk.aql.dto.condition.LikeCondition;
+import org.ehrbase.openehr.sdk.aql.dto.condition.LogicalOperatorCondition;
+import org.ehrbase.openehr.sdk.aql.dto.condition.LogicalOperatorCondition.ConditionLogicalOperatorSymbol;
+import org.ehrbase.openehr.sdk.aql.dto.condition.MatchesCondition;
+import org.ehrbase.openehr.sdk.aql.dto.condition.NotCondition;
+import org.ehrbase.openehr.sdk.aql.dto.condition.WhereCondition;
+import org.ehrbase.openehr.sdk.aql.dto.containment.ContainmentClassExpression;
+import org.ehrbase.openehr.sdk.aql.dto.operand.IdentifiedPath;
+import org.ehrbase.openehr.sdk.aql.dto.operand.Primitive;
+import org.ehrbase.openehr.sdk.aql.dto.operand.QueryParameter;
+import org.ehrbase.openehr.sdk.aql.dto.operand.SingleRowFunction;
+import org.ehrbase.openehr.sdk.aql.dto.operand.TerminologyFunction;
+import org.ehrbase.openehr.sdk.aql.parser.AqlQueryParser;
+import org.ehrbase.openehr.sdk.aql.render.AqlRenderer;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Finds the AND/OR subtrees of a cohort that EhrBase can answer with a single aql, so that only one id list per subtree
+ * is transferred instead of one per criterion.
+ *
+ * <p>Criteria are merged when they select from the same containment. An OR subtree becomes one query with the where
+ * clauses combined by OR. An AND subtree is only merged when the criteria differ in conditions on the ehr itself, all
+ * other conditions have to be the same: conditions on compositions or entries of different criteria may be met by
+ * different compositions and cannot be required of the same row. NOT groups and everything else are left to the in
+ * memory set operations.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class CohortQueryPlanner {
+
+  private final AqlExecutor aqlExecutor;
+
+  private final CohortExecutionProperties properties;
+
+  /**
+   * Plans the execution of a cohort tree
+   *
+   * @return The aql for the root of every merged subtree, by identity of the group; subtrees not in the map are
+   *     executed criterion by criterion
+   */
+  public Map<CohortGroup, String> plan(CohortGroup cohortGroup, Boolean allowUsageOutsideEu) {
+    Map<CohortGroup, String> merged = new IdentityHashMap<>();
+    if (!properties.isPushDown() || cohortGroup == null) {
+      return merged;
+    }
+    try {
+      merge(cohortGroup, allowUsageOutsideEu, merged);
+    } catch (Exception e) {
+      log.warn("Could not plan cohort execution, executing criteria one by one", e);
+      merged.clear();
+    }
+    return merged;
+  }
+
+  private AqlQuery merge(CohortGroup cohortGroup, Boolean allowUsageOutsideEu, Map<CohortGroup, String> merged) {
+    if (cohortGroup.getType() == Type.AQL) {
+      return prepare(cohortGroup, allowUsageOutsideEu);
+    }
+    if (cohortGroup.getType() != Type.GROUP || CollectionUtils.isEmpty(cohortGroup.getChildren())) {
+      return null;
+    }
+
+    List<AqlQuery> queries = new ArrayList<>();
+    for (CohortGroup child : cohortGroup.getChildren()) {
+      queries.add(merge(child, allowUsageOutsideEu, merged));
+    }
+    if (queries.contains(null) || !sameContainment(queries)) {
+      return null;
+    }
+
+    AqlQuery query = null;
+    if (cohortGroup.getOperator() == Operator.OR) {
+      query = mergeOr(queries);
+    } else if (cohortGroup.getOperator() == Operator.AND) {
+      query = mergeAnd(queries);
+    }
+
+    if (query != null) {
+      cohortGroup.getChildren().forEach(merged::remove);
+      merged.put(cohortGroup, AqlRenderer.render(query));
+      log.debug("Merged {} cohort criteria into one query", queries.size());
+    }
+    return query;
+  }
+
+  private AqlQuery prepare(CohortGroup leaf, Boolean allowUsageOutsideEu) {
+    CohortAql aql = leaf.getQuery();
+    if (aql == null) {
+      return null;
+    }
+    CohortAql aqlCopy = CohortAql.builder().id(aql.getId()).name(aql.getName()).query(aql.getQuery()).build();
+    Map<String, Object> parameters = leaf.getParameters() == null ? null : new HashMap<>(leaf.getParameters());
+
+    String query = aqlExecutor.prepareQuery(aqlCopy, parameters, allowUsageOutsideEu);
+    if (query == null) {
+      return null;
+    }
+    AqlQuery dto = AqlQueryParser.parse(query);
+    boolean ordered = CollectionUtils.isNotEmpty(dto.getOrderBy());
+    if (ordered || dto.getLimit() != null || dto.getOffset() != null) {
+      return null;
+    }
+    return dto;
+  }
+
+  private boolean sameContainment(List<AqlQuery> queries) {
+    return queries.stream().allMatch(query -> query.getFrom().equals(queries.get(0).getFrom()));
+  }
+
+  private AqlQuery mergeOr(List<AqlQuery> queries) {
+    List<WhereCondition> conditions = new ArrayList<>();
+    for (AqlQuery query : queries) {
+      if (query.getWhere() == null) {
+        return withWhere(queries.get(0), null);
+      }
+      conditions.add(query.getWhere());
+    }
+    return withWhere(queries.get(0), combine(ConditionLogicalOperatorSymbol.OR, new ArrayList<>(new LinkedHashSet<>(conditions))));
+  }
+
+  private AqlQuery mergeAnd(List<AqlQuery> queries) {
+    if (!(queries.get(0).getFrom() instanceof ContainmentClassExpression ehr)
+        || !AqlQueryConstants.EHR_TYPE.equalsIgnoreCase(ehr.getType())) {
+      return null;
+    }
+
+    Set<WhereCondition> shared = null;
+    Set<WhereCondition> ehrConditions = new LinkedHashSet<>();
+    for (AqlQuery query : queries) {
+      Set<WhereCondition> other = new LinkedHashSet<>();
+      for (WhereCondition condition : conjuncts(query.getWhere())) {
+        if (referencesOnly(condition, ehr.getIdentifier())) {
+          ehrConditions.add(condition);
+        } else {
+          other.add(condition);
+        }
+      }
+      if (shared == null) {
+        shared = other;
+      } else if (!new HashSet<>(shared).equals(other)) {
+        return null;
+      }
+    }
+
+    List<WhereCondition> conditions = new ArrayList<>(shared);
+    conditions.addAll(ehrConditions);
+    return withWhere(queries.get(0), combine(ConditionLogicalOperatorSymbol.AND, conditions));
+  }
+
+  private AqlQuery withWhere(AqlQuery template, WhereCondition where) {
+    AqlQuery query = new AqlQuery();
+    query.setSelect(template.getSelect());
+    query.setFrom(template.getFrom());
+    query.setWhere(where);
+    return query;
+  }
+
+  private WhereCondition combine(ConditionLogicalOperatorSymbol symbol, List<WhereCondition> conditions) {
+    if (conditions.isEmpty()) {
+      return null;
+    }
+    if (conditions.size() == 1) {
+      return conditions.get(0);
+    }
+    LogicalOperatorCondition condition = new LogicalOperatorCondition();
+    condition.setSymbol(symbol);
+    condition.setValues(conditions);
+    return condition;
+  }
+
+  private List<WhereCondition> conjuncts(WhereCondition where) {
+    List<WhereCondition> conjuncts = new ArrayList<>();
+    if (where instanceof LogicalOperatorCondition logical && logical.getSymbol() == ConditionLogicalOperatorSymbol.AND) {
+      logical.getValues().forEach(value -> conjuncts.addAll(conjuncts(value)));
+    } else if (where != null) {
+      conjuncts.add(where);
+    }
+    return conjuncts;
+  }
+
+  /**
+   * Whether all paths of the condition start at the given containment identifier. Unknown operands count as
+   * referencing something else.
+   */
+  private boolean referencesOnly(Object operand, String identifier) {
+    if (operand == null || operand instanceof Primitive || operand instanceof QueryParameter
+        || operand instanceof TerminologyFunction) {
+      return true;
+    }
+    if (operand instanceof IdentifiedPath path) {
+      return path.getRoot() != null && identifier.equals(path.getRoot().getIdentifier());
+    }
+    if (operand instanceof LogicalOperatorCondition logical) {
+      return logical.getValues().stream().allMatch(value -> referencesOnly(value, identifier));
+    }
+    if (operand instanceof NotCondition not) {
+      return referencesOnly(not.getConditionDto(), identifier);
+    }
+    if (operand instanceof ComparisonOperatorCondition comparison) {
+      return referencesOnly(comparison.getStatement(), identifier) && referencesOnly(comparison.getValue(), identifier);
+    }
+    if (operand instanceof MatchesCondition matches) {
+      return referencesOnly(matches.getStatement(), identifier)
+          && matches.getValues().stream().allMatch(value -> referencesOnly(value, identifier));
+    }
+    if (operand instanceof LikeCondition like) {
+      return referencesOnly(like.getStatement(), identifier) && referencesOnly(like.getValue(), identifier);
+    }
+    if (operand instanceof ExistsCondition exists) {
+      return referencesOnly(exists.getValue(), identifier);
+    }
+    if (operand instanceof SingleRowFunction function) {
+      return function.getOperandList().stream().allMatch(value -> referencesOnly(value, identifier));
+    }
+    return false;
+  }
+}
@@ -0,0 +1,188 @@
+package org.highmed.numportal.service.executors;
+
+import org.highmed.numportal.domain.model.CohortGroup;
+import org.highmed.numportal.domain.model.Operator;
+import org.highmed.numportal.domain.model.Type;
+import org.highmed.numportal.properties.CohortCacheProperties;
+import org.highmed.numportal.service.metric.CohortCacheMetrics;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.ehcache.config.builders.CacheConfigurationBuilder;
+import org.ehcache.config.builders.CacheEventListenerConfigurationBuilder;
+import org.ehcache.config.builders.ExpiryPolicyBuilder;
+import org.ehcache.config.builders.ResourcePoolsBuilder;
+import org.ehcache.event.EventType;
+import org.ehcache.jsr107.Eh107Configuration;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import javax.cache.Cache;
+import javax.cache.CacheManager;
+import javax.cache.Caching;
+
+/**
+ * Caches cohort results by a canonical hash of the cohort definition, so that repeated size requests and exports of the
+ * same cohort within the configured time to live are not executed against EhrBase again. Concurrent requests for the
+ * same cohort wait for the one execution in progress.
+ */
+@Component
+@RequiredArgsConstructor
+public class CohortResultCache {
+
+  private static final String COHORT_RESULT_CACHE = "cohortResultCache";
+
+  private final CohortCacheProperties properties;
+
+  private final CohortCacheMetrics metrics;
+
+  private final Map<String, CompletableFuture<EhrIdSet>> inProgress = new ConcurrentHashMap<>();
+
+  /**
+   * Name unique per instance, the caching provider is shared by all application contexts in the jvm
+   */
+  private final String cacheName = COHORT_RESULT_CACHE + "-" + Integer.toHexString(System.identityHashCode(this));
+
+  private Cache<String, EhrIdSet> cache;
+
+  public Set<String> get(CohortGroup cohortGroup, Boolean allowUsageOutsideEu, Supplier<Set<String>> execution) {
+    if (!properties.isEnabled() || cache == null) {
+      return execution.get();
+    }
+
+    String key = key(cohortGroup, allowUsageOutsideEu);
+    EhrIdSet cached = cache.get(key);
+    if (cached != null) {
+      metrics.hit();
+      return cached;
+    }
+
+    CompletableFuture<EhrIdSet> pending = new CompletableFuture<>();
+    CompletableFuture<EhrIdSet> running = inProgress.putIfAbsent(key, pending);
+    if (running != null) {
+      metrics.hit();
+      return await(running);
+    }
+
+    try {
+      EhrIdSet result = cache.get(key);
+      if (result == null) {
+        metrics.miss();
+        result = EhrIdSet.copyOf(execution.get());
+        cache.put(key, result);
+      }
+      pending.complete(result);
+      return result;
+    } catch (RuntimeException e) {
+      pending.completeExceptionally(e);
+      throw e;
+    } finally {
+      inProgress.remove(key, pending);
+    }
+  }
+
+  /**
+   * Canonical hash of the cohort definition: the aql and parameters of the criteria, the operators and whether the
+   * consent for usage outside the EU is checked. Children of AND and OR groups are ordered, names and ids are ignored.
+   */
+  public static String key(CohortGroup cohortGroup, Boolean allowUsageOutsideEu) {
+    String canonical = canonical(cohortGroup) + "|outsideEu=" + !Boolean.FALSE.equals(allowUsageOutsideEu);
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      return HexFormat.of().formatHex(digest.digest(canonical.getBytes(StandardCharsets.UTF_8)));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @PostConstruct
+  public void initializeCache() {
+    CacheManager cacheManager = Caching.getCachingProvider().getCacheManager();
+
+    CacheConfigurationBuilder<String, EhrIdSet> configuration =
+        CacheConfigurationBuilder
+            .newCacheConfigurationBuilder(
+                String.class, EhrIdSet.class, ResourcePoolsBuilder.heap(Math.max(1, properties.getMaxEntries())))
+            .withExpiry(ExpiryPolicyBuilder.timeToLiveExpiration(properties.getTimeToLive()))
+            .withService(
+                CacheEventListenerConfigurationBuilder
+                    .newEventListenerConfiguration(event -> metrics.eviction(), EventType.EVICTED)
+                    .unordered()
+                    .asynchronous());
+
+    cache = cacheManager.createCache(cacheName, Eh107Configuration.fromEhcacheCacheConfiguration(configuration));
+  }
+
+  @PreDestroy
+  public void clearCache() {
+    Caching.getCachingProvider().getCacheManager().destroyCache(cacheName);
+    cache = null;
+  }
+
+  private static EhrIdSet await(CompletableFuture<EhrIdSet> running) {
+    try {
+      return running.join();
+    } catch (CompletionException e) {
+      if (e.getCause() instanceof RuntimeException runtimeException) {
+        throw runtimeException;
+      }
+      throw e;
+    }
+  }
+
+  private static String canonical(CohortGroup cohortGroup) {
+    if (cohortGroup == null) {
+      return "null";
+    }
+    if (cohortGroup.getType() == Type.GROUP) {
+      List<String> children = new ArrayList<>();
+      if (cohortGroup.getChildren() != null) {
+        cohortGroup.getChildren().forEach(child -> children.add(canonical(child)));
+      }
+      if (cohortGroup.getOperator() == Operator.AND || cohortGroup.getOperator() == Operator.OR) {
+        Collections.sort(children);
+      }
+      return cohortGroup.getOperator() + children.toString();
+    }
+    String query = cohortGroup.getQuery() != null && cohortGroup.getQuery().getQuery() != null
+        ? cohortGroup.getQuery().getQuery().strip()
+        : "";
+    Map<String, String> parameters = new TreeMap<>();
+    if (cohortGroup.getParameters() != null) {
+      cohortGroup.getParameters().forEach((name, value) -> parameters.put(lengthPrefixed(name), canonicalValue(value)));
+    }
+    return cohortGroup.getType() + "[" + lengthPrefixed(query) + parameters + "]";
+  }
+
+  private static String canonicalValue(Object value) {
+    if (value == null) {
+      return "null";
+    }
+    if (value instanceof Collection<?> values) {
+      return values.stream().map(CohortResultCache::canonicalValue).toList().toString();
+    }
+    return value.getClass().getSimpleName() + lengthPrefixed(value.toString());
+  }
+
+  /**
+   * Prefixes free text with its length, so that separators inside queries or values cannot make two definitions equal
+   */
+  private static String lengthPrefixed(String value) {
+    return value.length() + ":" + value;
+  }
+}
@@ -0,0 +1,473 @@
+package org.highmed.numportal.service.executors;
+
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * Immutable, compact set of ehr ids used for the cohort set algebra. Ids in canonical uuid form are stored as two longs
+ * each in a sorted array, so intersection, union and complement are linear merges. Ids that are not canonical uuids
+ * are kept in a sorted string array next to it, iteration returns exactly the ids that were added.
+ */
+public final class EhrIdSet extends AbstractSet<String> {
+
+  private static final EhrIdSet EMPTY = new EhrIdSet(new long[0], 0, new String[0]);
+
+  private static final int UUID_LENGTH = 36;
+
+  private static final int INSERTION_SORT_THRESHOLD = 16;
+
+  private static final byte[] HEX_DIGITS = new byte[128];
+
+  static {
+    Arrays.fill(HEX_DIGITS, (byte) -1);
+    for (int i = 0; i < 10; i++) {
+      HEX_DIGITS['0' + i] = (byte) i;
+    }
+    for (int i = 0; i < 6; i++) {
+      HEX_DIGITS['a' + i] = (byte) (10 + i);
+    }
+  }
+
+  /**
+   * Most and least significant bits of each uuid, interleaved and sorted ascending without duplicates
+   */
+  private final long[] uuids;
+
+  private final int uuidCount;
+
+  /**
+   * Ids that are not canonical uuids, sorted ascending without duplicates
+   */
+  private final String[] others;
+
+  private EhrIdSet(long[] uuids, int uuidCount, String[] others) {
+    this.uuids = uuids;
+    this.uuidCount = uuidCount;
+    this.others = others;
+  }
+
+  public static EhrIdSet empty() {
+    return EMPTY;
+  }
+
+  public static EhrIdSet of(String... ids) {
+    return copyOf(Arrays.asList(ids));
+  }
+
+  public static EhrIdSet copyOf(Collection<String> ids) {
+    if (ids instanceof EhrIdSet ehrIdSet) {
+      return ehrIdSet;
+    }
+    if (ids == null || ids.isEmpty()) {
+      return EMPTY;
+    }
+    Builder builder = builder(ids.size());
+    ids.forEach(builder::add);
+    return builder.build();
+  }
+
+  public static Builder builder(int expectedSize) {
+    return new Builder(expectedSize);
+  }
+
+  /**
+   * Intersection of all non null sets, starting with the smallest one
+   */
+  public static EhrIdSet intersectAll(List<? extends Collection<String>> sets) {
+    List<EhrIdSet> ehrIdSets = sets.stream()
+                                   .filter(Objects::nonNull)
+                                   .map(EhrIdSet::copyOf)
+                                   .sorted(Comparator.comparingInt(EhrIdSet::size))
+                                   .toList();
+    if (ehrIdSets.isEmpty()) {
+      return EMPTY;
+    }
+    EhrIdSet result = ehrIdSets.get(0);
+    for (int i = 1; i < ehrIdSets.size() && !result.isEmpty(); i++) {
+      result = result.intersect(ehrIdSets.get(i));
+    }
+    return result;
+  }
+
+  /**
+   * Union of all non null sets
+   */
+  public static EhrIdSet unionAll(List<? extends Collection<String>> sets) {
+    EhrIdSet result = EMPTY;
+    for (Collection<String> set : sets) {
+      if (set != null) {
+        result = result.union(copyOf(set));
+      }
+    }
+    return result;
+  }
+
+  public EhrIdSet intersect(EhrIdSet other) {
+    if (isEmpty() || other.isEmpty()) {
+      return EMPTY;
+    }
+    long[] result = new long[2 * Math.min(uuidCount, other.uuidCount)];
+    int i = 0;
+    int j = 0;
+    int count = 0;
+    while (i < uuidCount && j < other.uuidCount) {
+      int comparison = compare(uuids, i, other.uuids, j);
+      if (comparison < 0) {
+        i++;
+      } else if (comparison > 0) {
+        j++;
+      } else {
+        copy(uuids, i, result, count++);
+        i++;
+        j++;
+      }
+    }
+
+    List<String> otherIds = new ArrayList<>();
+    int k = 0;
+    int l = 0;
+    while (k < others.length && l < other.others.length) {
+      int comparison = others[k].compareTo(other.others[l]);
+      if (comparison < 0) {
+        k++;
+      } else if (comparison > 0) {
+        l++;
+      } else {
+        otherIds.add(others[k]);
+        k++;
+        l++;
+      }
+    }
+    return create(result, count, otherIds.toArray(new String[0]));
+  }
+
+  public EhrIdSet union(EhrIdSet other) {
+    if (other.isEmpty()) {
+      return this;
+    }
+    if (isEmpty()) {
+      return other;
+    }
+    long[] result = new long[2 * (uuidCount + other.uuidCount)];
+    int i = 0;
+    int j = 0;
+    int count = 0;
+    while (i < uuidCount || j < other.uuidCount) {
+      int comparison;
+      if (i == uuidCount) {
+        comparison = 1;
+      } else if (j == other.uuidCount) {
+        comparison = -1;
+      } else {
+        comparison = compare(uuids, i, other.uuids, j);
+      }
+      if (comparison <= 0) {
+        copy(uuids, i++, result, count++);
+        if (comparison == 0) {
+          j++;
+        }
+      } else {
+        copy(other.uuids, j++, result, count++);
+      }
+    }
+
+    List<String> otherIds = new ArrayList<>(others.length + other.others.length);
+    int k = 0;
+    int l = 0;
+    while (k < others.length || l < other.others.length) {
+      int comparison;
+      if (k == others.length) {
+        comparison = 1;
+      } else if (l == other.others.length) {
+        comparison = -1;
+      } else {
+        comparison = others[k].compareTo(other.others[l]);
+      }
+      if (comparison <= 0) {
+        otherIds.add(others[k++]);
+        if (comparison == 0) {
+          l++;
+        }
+      } else {
+        otherIds.add(other.others[l++]);
+      }
+    }
+    return create(result, count, otherIds.toArray(new String[0]));
+  }
+
+  /**
+   * Relative complement, all ids of this set that are not contained in the other set
+   */
+  public EhrIdSet minus(EhrIdSet other) {
+    if (isEmpty() || other.isEmpty()) {
+      return this;
+    }
+    long[] result = new long[2 * uuidCount];
+    int i = 0;
+    int j = 0;
+    int count = 0;
+    while (i < uuidCount) {
+      int comparison = j == other.uuidCount ? -1 : compare(uuids, i, other.uuids, j);
+      if (comparison < 0) {
+        copy(uuids, i++, result, count++);
+      } else if (comparison > 0) {
+        j++;
+      } else {
+        i++;
+        j++;
+      }
+    }
+
+    List<String> otherIds = new ArrayList<>(others.length);
+    int k = 0;
+    int l = 0;
+    while (k < others.length) {
+      int comparison = l == other.others.length ? -1 : others[k].compareTo(other.others[l]);
+      if (comparison < 0) {
+        otherIds.add(others[k++]);
+      } else if (comparison > 0) {
+        l++;
+      } else {
+        k++;
+        l++;
+      }
+    }
+    return create(result, count, otherIds.toArray(new String[0]));
+  }
+
+  @Override
+  public int size() {
+    return uuidCount + others.length;
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (!(o instanceof String id)) {
+      return false;
+    }
+    long[] parsed = new long[2];
+    if (parseCanonicalUuid(id, parsed, 0)) {
+      return indexOf(parsed[0], parsed[1]) >= 0;
+    }
+    return Arrays.binarySearch(others, id) >= 0;
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return new Iterator<>() {
+
+      private int index;
+
+      @Override
+      public boolean hasNext() {
+        return index < size();
+      }
+
+      @Override
+      public String next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        int current = index++;
+        if (current < uuidCount) {
+          return new UUID(uuids[2 * current], uuids[2 * current + 1]).toString();
+        }
+        return others[current - uuidCount];
+      }
+    };
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (o instanceof EhrIdSet other) {
+      return uuidCount == other.uuidCount
+          && Arrays.equals(uuids, 0, 2 * uuidCount, other.uuids, 0, 2 * other.uuidCount)
+          && Arrays.equals(others, other.others);
+    }
+    return super.equals(o);
+  }
+
+  @Override
+  public int hashCode() {
+    return super.hashCode();
+  }
+
+  private int indexOf(long msb, long lsb) {
+    int low = 0;
+    int high = uuidCount - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      int comparison = Long.compare(uuids[2 * mid], msb);
+      if (comparison == 0) {
+        comparison = Long.compare(uuids[2 * mid + 1], lsb);
+      }
+      if (comparison < 0) {
+        low = mid + 1;
+      } else if (comparison > 0) {
+        high = mid - 1;
+      } else {
+        return mid;
+      }
+    }
+    return -1;
+  }
+
+  private static EhrIdSet create(long[] uuids, int uuidCount, String[] others) {
+    if (uuidCount == 0 && others.length == 0) {
+      return EMPTY;
+    }
+    return new EhrIdSet(uuids, uuidCount, others);
+  }
+
+  private static int compare(long[] a, int i, long[] b, int j) {
+    int comparison = Long.compare(a[2 * i], b[2 * j]);
+    return comparison != 0 ? comparison : Long.compare(a[2 * i + 1], b[2 * j + 1]);
+  }
+
+  private static void copy(long[] from, int i, long[] to, int j) {
+    to[2 * j] = from[2 * i];
+    to[2 * j + 1] = from[2 * i + 1];
+  }
+
+  /**
+   * Parses a lower case uuid in canonical 8-4-4-4-12 form into two longs, without allocating
+   */
+  private static boolean parseCanonicalUuid(String id, long[] target, int index) {
+    if (id.length() != UUID_LENGTH
+        || id.charAt(8) != '-' || id.charAt(13) != '-' || id.charAt(18) != '-' || id.charAt(23) != '-') {
+      return false;
+    }
+    long first = parseHex(id, 0, 8);
+    long second = parseHex(id, 9, 13);
+    long third = parseHex(id, 14, 18);
+    long fourth = parseHex(id, 19, 23);
+    long fifth = parseHex(id, 24, 36);
+    if ((first | second | third | fourth | fifth) < 0) {
+      return false;
+    }
+    target[2 * index] = first << 32 | second << 16 | third;
+    target[2 * index + 1] = fourth << 48 | fifth;
+    return true;
+  }
+
+  /**
+   * Lower case hex value of at most 12 digits or -1. Uses a table lookup instead of branching per character, random hex
+   * digits make such branches unpredictable and dominated the parsing time.
+   */
+  private static long parseHex(String id, int from, int to) {
+    long value = 0;
+    int invalid = 0;
+    for (int position = from; position < to; position++) {
+      char c = id.charAt(position);
+      int digit = HEX_DIGITS[c & 0x7f] | ((0x7f - c) >> 31);
+      invalid |= digit;
+      value = (value << 4) | (digit & 0xf);
+    }
+    return invalid < 0 ? -1 : value;
+  }
+
+  /**
+   * Collects ids in any order, sorting and removing duplicates once on build
+   */
+  public static final class Builder {
+
+    private long[] uuids;
+
+    private int uuidCount;
+
+    private final List<String> others = new ArrayList<>();
+
+    private Builder(int expectedSize) {
+      this.uuids = new long[2 * Math.max(expectedSize, 8)];
+    }
+
+    public Builder add(String id) {
+      if (id == null) {
+        return this;
+      }
+      if (2 * uuidCount == uuids.length) {
+        uuids = Arrays.copyOf(uuids, 2 * uuids.length);
+      }
+      if (parseCanonicalUuid(id, uuids, uuidCount)) {
+        uuidCount++;
+      } else {
+        others.add(id);
+      }
+      return this;
+    }
+
+    public EhrIdSet build() {
+      sort(uuids, 0, uuidCount - 1);
+      int distinct = 0;
+      for (int i = 0; i < uuidCount; i++) {
+        if (distinct == 0 || compare(uuids, i, uuids, distinct - 1) != 0) {
+          copy(uuids, i, uuids, distinct++);
+        }
+      }
+      String[] otherIds = others.stream().sorted().distinct().toArray(String[]::new);
+      long[] compact = distinct * 2 == uuids.length ? uuids : Arrays.copyOf(uuids, 2 * distinct);
+      uuids = new long[0];
+      uuidCount = 0;
+      others.clear();
+      return create(compact, distinct, otherIds);
+    }
+
+    /**
+     * Quicksort over the interleaved uuid pairs, recursing into the smaller partition only
+     */
+    private static void sort(long[] a, int low, int high) {
+      while (high - low >= INSERTION_SORT_THRESHOLD) {
+        int mid = (low + high) >>> 1;
+        long pivotMsb = a[2 * mid];
+        long pivotLsb = a[2 * mid + 1];
+        int i = low;
+        int j = high;
+        while (i <= j) {
+          while (comparePivot(a, i, pivotMsb, pivotLsb) < 0) {
+            i++;
+          }
+          while (comparePivot(a, j, pivotMsb, pivotLsb) > 0) {
+            j--;
+          }
+          if (i <= j) {
+            swap(a, i++, j--);
+          }
+        }
+        if (j - low < high - i) {
+          sort(a, low, j);
+          low = i;
+        } else {
+          sort(a, i, high);
+          high = j;
+        }
+      }
+      for (int i = low + 1; i <= high; i++) {
+        for (int j = i; j > low && compare(a, j - 1, a, j) > 0; j--) {
+          swap(a, j - 1, j);
+        }
+      }
+    }
+
+    private static int comparePivot(long[] a, int i, long pivotMsb, long pivotLsb) {
+      int comparison = Long.compare(a[2 * i], pivotMsb);
+      return comparison != 0 ? comparison : Long.compare(a[2 * i + 1], pivotLsb);
+    }
+
+    private static void swap(long[] a, int i, int j) {
+      long msb = a[2 * i];
+      long lsb = a[2 * i + 1];
+      a[2 * i] = a[2 * j];
+      a[2 * i + 1] = a[2 * j + 1];
+      a[2 * j] = msb;
+      a[2 * j + 1] = lsb;
+    }
+  }
+}
@@ -6,36 +6,37 @@ import org.highmed.numportal.service.exception.IllegalArgumentException;
 import org.apache.commons.collections4.CollectionUtils;
 import org.springframework.stereotype.Service;
 
-import java.util.HashSet;
 import java.util.List;
-import java.util.Objects;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.RELATIVE_COMPLEMENT_REQUIRES_TWO_VALID_SETS;
 
+/**
+ * Set algebra over cohort results, all results are returned as compact {@link EhrIdSet}
+ */
 @Service
 public class SetOperationsService {
 
-  public Set<String> apply(Operator operator, List<Set<String>> sets, Set<String> all) {
+  /**
+   * Applies the operator to the given sets
+   *
+   * @param all supplies the universe, only requested for the NOT operator
+   */
+  public Set<String> apply(Operator operator, List<Set<String>> sets, Supplier<Set<String>> all) {
     return switch (operator) {
       case AND -> intersection(sets);
       case OR -> union(sets);
-      case NOT -> exclude(all, sets.get(0));
+      case NOT -> exclude(all.get(), sets.get(0));
     };
   }
 
   public Set<String> intersection(List<Set<String>> listOfSets) {
-    HashSet<String> intersection = new HashSet<>();
-    listOfSets.stream().filter(Objects::nonNull).forEach(intersection::addAll);
-
-    listOfSets.stream().filter(Objects::nonNull).forEach(intersection::retainAll);
-    return intersection;
+    return EhrIdSet.intersectAll(listOfSets);
   }
 
   public Set<String> union(List<Set<String>> listOfSets) {
-    HashSet<String> union = new HashSet<>();
-    listOfSets.stream().filter(Objects::nonNull).forEach(union::addAll);
-    return union;
+    return EhrIdSet.unionAll(listOfSets);
   }
 
   public Set<String> exclude(Set<String> from, Set<String> excludeSet) {
@@ -44,8 +45,6 @@ public class SetOperationsService {
       throw new IllegalArgumentException(SetOperationsService.class, RELATIVE_COMPLEMENT_REQUIRES_TWO_VALID_SETS);
     }
 
-    Set<String> fromCopy = new HashSet<>(from);
-    fromCopy.removeAll(excludeSet);
-    return fromCopy;
+    return EhrIdSet.copyOf(from).minus(EhrIdSet.copyOf(excludeSet));
   }
 }
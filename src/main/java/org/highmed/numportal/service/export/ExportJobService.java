@@ -0,0 +1,263 @@
+package org.highmed.numportal.service.export;
+
+import org.highmed.numportal.domain.model.ExportJob;
+import org.highmed.numportal.domain.model.ExportJobStatus;
+import org.highmed.numportal.domain.model.ExportType;
+import org.highmed.numportal.domain.model.Project;
+import org.highmed.numportal.domain.repository.ExportJobRepository;
+import org.highmed.numportal.properties.ExportProperties;
+import org.highmed.numportal.service.atna.AtnaService;
+import org.highmed.numportal.service.exception.BadRequestException;
+import org.highmed.numportal.service.exception.ResourceNotFound;
+import org.highmed.numportal.service.exception.SystemException;
+import org.highmed.numportal.service.exception.TooManyRequestsException;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.io.output.ProxyOutputStream;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.highmed.numportal.domain.templates.ExceptionsTemplate.CANNOT_CREATE_EXPORT_JOB_DIRECTORY;
+import static org.highmed.numportal.domain.templates.ExceptionsTemplate.EXPORT_JOB_LIMIT_REACHED;
+import static org.highmed.numportal.domain.templates.ExceptionsTemplate.EXPORT_JOB_NOT_COMPLETED;
+import static org.highmed.numportal.domain.templates.ExceptionsTemplate.EXPORT_JOB_NOT_FOUND;
+import static org.highmed.numportal.domain.templates.ExceptionsTemplate.EXPORT_JOB_QUEUE_FULL;
+
+/**
+ * Builds exports in the background instead of in the request submitting them. A bounded pool of workers with a bounded
+ * queue writes the result of each job to a file in the job directory, from where it can be downloaded, also in ranges,
+ * until the job expires. Jobs are stored, so with a job directory shared by all instances every instance reports their
+ * status and serves their result. The progress of a running job is stored from time to time by the instance building
+ * it.
+ */
+@Slf4j
+@Service
+public class ExportJobService {
+
+  private static final String FILE_PREFIX = "export-";
+  private static final String ZIP_FILE_ENDING = ".zip";
+  private static final String JSON_FILE_ENDING = ".json";
+  private static final String PARTIAL_FILE_ENDING = ".part";
+  private static final List<ExportJobStatus> ACTIVE = List.of(ExportJobStatus.QUEUED, ExportJobStatus.RUNNING);
+  private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toNanos(10);
+
+  private final ExportProperties exportProperties;
+  private final AtnaService atnaService;
+  private final ExportJobWriter exportJobWriter;
+  private final ExportJobRepository exportJobRepository;
+  private final ExecutorService executorService;
+
+  /**
+   * Jobs queued or running on this instance, changed by their worker
+   */
+  private final Map<String, ExportJob> jobs = new ConcurrentHashMap<>();
+
+  @Autowired
+  public ExportJobService(ExportProperties exportProperties, AtnaService atnaService, ExportJobWriter exportJobWriter,
+      ExportJobRepository exportJobRepository) {
+    this.exportProperties = exportProperties;
+    this.atnaService = atnaService;
+    this.exportJobWriter = exportJobWriter;
+    this.exportJobRepository = exportJobRepository;
+    int parallelism = Math.max(1, exportProperties.getJobParallelism());
+    this.executorService =
+        new ThreadPoolExecutor(parallelism, parallelism, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(Math.max(1, exportProperties.getJobQueueCapacity())),
+            new CustomizableThreadFactory("export-job-"));
+  }
+
+  @PostConstruct
+  public void initializeJobDirectory() {
+    Path directory = exportProperties.getJobDirectory();
+    try {
+      Files.createDirectories(directory);
+    } catch (IOException e) {
+      throw new SystemException(ExportJobService.class, CANNOT_CREATE_EXPORT_JOB_DIRECTORY,
+          String.format(CANNOT_CREATE_EXPORT_JOB_DIRECTORY, directory));
+    }
+  }
+
+  /**
+   * Queues an export, the export is only created by a worker and written to the result file of the job
+   *
+   * @param project The project of the export, recorded in the audit once the job is completed
+   * @param export  Creates the export, called by the worker
+   * @return The queued job
+   * @throws TooManyRequestsException if the user has reached the limit of queued or running jobs or the queue is full
+   */
+  public synchronized ExportJob submit(String userId, Project project, ExportType format,
+      Supplier<StreamingResponseBody> export) {
+    int maxActive = exportProperties.getJobMaxActivePerUser();
+    if (exportJobRepository.countByUserIdAndStatusIn(userId, ACTIVE) >= maxActive) {
+      throw new TooManyRequestsException(ExportJobService.class, EXPORT_JOB_LIMIT_REACHED,
+          String.format(EXPORT_JOB_LIMIT_REACHED, maxActive));
+    }
+    String id = UUID.randomUUID().toString();
+    String fileEnding = format == ExportType.json ? JSON_FILE_ENDING : ZIP_FILE_ENDING;
+    ExportJob job = new ExportJob(id, userId, project.getId(), format, OffsetDateTime.now(), FILE_PREFIX + id + fileEnding);
+    exportJobRepository.save(job);
+    jobs.put(id, job);
+    try {
+      executorService.execute(() -> run(job, project, export));
+    } catch (RejectedExecutionException e) {
+      jobs.remove(id);
+      exportJobRepository.deleteById(id);
+      throw new TooManyRequestsException(ExportJobService.class, EXPORT_JOB_QUEUE_FULL, EXPORT_JOB_QUEUE_FULL);
+    }
+    log.info("Export job {} of project {} queued", id, project.getId());
+    return job;
+  }
+
+  /**
+   * Job of the user, jobs of other users are not found. Jobs built by this instance are returned with their current
+   * progress, all others as last stored.
+   */
+  public ExportJob getJob(String jobId, String userId) {
+    ExportJob job = jobs.get(jobId);
+    if (job == null) {
+      job = exportJobRepository.findById(jobId).orElse(null);
+    }
+    if (job == null || !job.getUserId().equals(userId)) {
+      throw new ResourceNotFound(ExportJobService.class, EXPORT_JOB_NOT_FOUND, String.format(EXPORT_JOB_NOT_FOUND, jobId));
+    }
+    return job;
+  }
+
+  public Resource getResult(ExportJob job) {
+    if (job.getStatus() != ExportJobStatus.COMPLETED) {
+      throw new BadRequestException(ExportJobService.class, EXPORT_JOB_NOT_COMPLETED,
+          String.format(EXPORT_JOB_NOT_COMPLETED, job.getId()));
+    }
+    Path file = file(job);
+    if (!Files.exists(file)) {
+      log.warn("Result of export job {} not found in {}", job.getId(), file);
+      throw new ResourceNotFound(ExportJobService.class, EXPORT_JOB_NOT_FOUND, String.format(EXPORT_JOB_NOT_FOUND, job.getId()));
+    }
+    return new FileSystemResource(file);
+  }
+
+  /**
+   * Removes expired jobs with their result, and jobs of instances that stopped before finishing them with their partial
+   * result
+   */
+  @Scheduled(fixedDelay = 60000)
+  public void removeExpiredJobs() {
+    OffsetDateTime now = OffsetDateTime.now();
+    List<ExportJob> expired =
+        exportJobRepository.findExpired(now, now.minus(exportProperties.getJobTimeToLive())).stream()
+                           .filter(job -> !jobs.containsKey(job.getId()))
+                           .toList();
+    if (expired.isEmpty()) {
+      return;
+    }
+    expired.forEach(job -> {
+      deleteFile(file(job));
+      deleteFile(partialFile(job));
+      log.debug("Export job {} expired", job.getId());
+    });
+    exportJobRepository.deleteAllByIdInBatch(expired.stream().map(ExportJob::getId).toList());
+  }
+
+  /**
+   * Stops the workers, jobs still waiting in the queue are stored as failed
+   */
+  @PreDestroy
+  public void shutdown() {
+    executorService.shutdownNow();
+    OffsetDateTime now = OffsetDateTime.now();
+    jobs.values().stream().filter(job -> job.getStatus() == ExportJobStatus.QUEUED).forEach(job -> {
+      job.fail(now, now.plus(exportProperties.getJobTimeToLive()));
+      store(job);
+    });
+  }
+
+  private void run(ExportJob job, Project project, Supplier<StreamingResponseBody> export) {
+    job.start();
+    store(job);
+    Path file = file(job);
+    Path partial = partialFile(job);
+    boolean successful = false;
+    try {
+      try (OutputStream out = new BufferedOutputStream(new ProxyOutputStream(Files.newOutputStream(partial)) {
+        private long storedAt = System.nanoTime();
+
+        @Override
+        protected void afterWrite(int n) {
+          job.written(n);
+          if (System.nanoTime() - storedAt > PROGRESS_INTERVAL) {
+            storedAt = System.nanoTime();
+            store(job);
+          }
+        }
+      })) {
+        exportJobWriter.write(export, out);
+      }
+      Files.move(partial, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      OffsetDateTime now = OffsetDateTime.now();
+      job.complete(Files.size(file), now, now.plus(exportProperties.getJobTimeToLive()));
+      successful = true;
+      log.info("Export job {} of project {} completed, {} bytes", job.getId(), job.getProjectId(), job.getSize());
+    } catch (Exception e) {
+      log.error("Export job {} of project {} failed", job.getId(), job.getProjectId(), e);
+      deleteFile(partial);
+      OffsetDateTime now = OffsetDateTime.now();
+      job.fail(now, now.plus(exportProperties.getJobTimeToLive()));
+    }
+    store(job);
+    jobs.remove(job.getId());
+    atnaService.logDataExport(job.getUserId(), job.getProjectId(), project, successful);
+  }
+
+  /**
+   * Stores the state of a job, a job that can not be stored is still built and reported by this instance
+   */
+  private void store(ExportJob job) {
+    try {
+      job.modified(OffsetDateTime.now());
+      exportJobRepository.save(job);
+    } catch (RuntimeException e) {
+      log.warn("Cannot store export job {}", job.getId(), e);
+    }
+  }
+
+  private Path file(ExportJob job) {
+    return exportProperties.getJobDirectory().resolve(job.getFileName());
+  }
+
+  private Path partialFile(ExportJob job) {
+    return exportProperties.getJobDirectory().resolve(job.getFileName() + PARTIAL_FILE_ENDING);
+  }
+
+  private void deleteFile(Path file) {
+    try {
+      Files.deleteIfExists(file);
+    } catch (IOException e) {
+      log.warn("Cannot delete export file {}", file, e);
+    }
+  }
+}
@@ -0,0 +1,23 @@
+package org.highmed.numportal.service.export;
+
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.function.Supplier;
+
+/**
+ * Creates and writes the export of a job on the worker of the job. Workers have no session bound like requests, so the
+ * export is created and written in a read only transaction, the lazy associations of the project and its cohort are
+ * loaded while the export is built and streamed.
+ */
+@Component
+public class ExportJobWriter {
+
+  @Transactional(readOnly = true)
+  public void write(Supplier<StreamingResponseBody> export, OutputStream out) throws IOException {
+    export.get().writeTo(out);
+  }
+}
@@ -0,0 +1,40 @@
+package org.highmed.numportal.service.metric;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Custom prometheus metric, to detect how often cohort results are served from the cohort result cache.
+ */
+@Component
+public class CohortCacheMetrics {
+
+  private final Counter hits;
+  private final Counter misses;
+  private final Counter evictions;
+
+  public CohortCacheMetrics(MeterRegistry registry) {
+    hits = Counter.builder("custom.metric.cohort.cache.hit.counter")
+                  .description("Cohort results served from the cache")
+                  .register(registry);
+    misses = Counter.builder("custom.metric.cohort.cache.miss.counter")
+                    .description("Cohort results executed against EhrBase")
+                    .register(registry);
+    evictions = Counter.builder("custom.metric.cohort.cache.eviction.counter")
+                       .description("Cohort results evicted from the cache because it was full")
+                       .register(registry);
+  }
+
+  public void hit() {
+    hits.increment();
+  }
+
+  public void miss() {
+    misses.increment();
+  }
+
+  public void eviction() {
+    evictions.increment();
+  }
+}
@@ -0,0 +1,141 @@
+package org.highmed.numportal.service.metric;
+
+import org.highmed.numportal.properties.IntegrationMetricsProperties;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Custom prometheus metric, to monitor the calls to the outbound integrations of the portal by integration, operation
+ * and outcome, the size of the aql responses of EhrBase and the number of ids per pseudonym request. Calls slower than
+ * the configured threshold are logged with the hash of their rendered query, so slow queries can be told apart
+ * without logging their content.
+ */
+@Slf4j
+@Component
+public class IntegrationMetrics {
+
+  public static final String EHRBASE = "ehrbase";
+  public static final String KEYCLOAK = "keycloak";
+  public static final String PSEUDONYMITY = "fttp";
+  public static final String CLAMAV = "clamav";
+  public static final String SMTP = "smtp";
+
+  private static final String CALL_TIMER = "custom.metric.integration.call.timer";
+  private static final String AQL_ROWS = "custom.metric.integration.aql.rows";
+  private static final String AQL_BYTES = "custom.metric.integration.aql.bytes";
+  private static final String SUCCESS = "success";
+  private static final String ERROR = "error";
+  private static final int QUERY_HASH_LENGTH = 16;
+
+  private final MeterRegistry registry;
+  private final IntegrationMetricsProperties properties;
+  private final DistributionSummary aqlBytes;
+  private final DistributionSummary pseudonymIds;
+
+  public IntegrationMetrics(MeterRegistry registry, IntegrationMetricsProperties properties) {
+    this.registry = registry;
+    this.properties = properties;
+    aqlBytes = DistributionSummary.builder(AQL_BYTES)
+                                  .description("Size of the aql responses received from EhrBase")
+                                  .baseUnit("bytes")
+                                  .register(registry);
+    pseudonymIds = DistributionSummary.builder("custom.metric.integration.pseudonymity.chunk.ids")
+                                      .description("Ids sent in a single pseudonym request to the trusted third party")
+                                      .register(registry);
+  }
+
+  public <T> T record(String integration, String operation, Supplier<T> call) {
+    return record(integration, operation, null, call);
+  }
+
+  /**
+   * Times a call of an integration, a call throwing an exception is recorded with the error outcome
+   *
+   * @param query The rendered query of the call, only logged as hash if the call is slow
+   */
+  public <T> T record(String integration, String operation, String query, Supplier<T> call) {
+    long start = System.nanoTime();
+    boolean success = false;
+    try {
+      T result = call.get();
+      success = true;
+      return result;
+    } finally {
+      record(integration, operation, query, System.nanoTime() - start, success);
+    }
+  }
+
+  public void run(String integration, String operation, Runnable call) {
+    record(integration, operation, () -> {
+      call.run();
+      return null;
+    });
+  }
+
+  /**
+   * Records a call of an integration that was timed by the caller
+   */
+  public void record(String integration, String operation, long elapsedNanos, boolean success) {
+    record(integration, operation, null, elapsedNanos, success);
+  }
+
+  public void aqlRows(String operation, int rows) {
+    DistributionSummary.builder(AQL_ROWS)
+                       .description("Rows of the aql responses received from EhrBase")
+                       .tag("operation", operation)
+                       .register(registry)
+                       .record(rows);
+  }
+
+  public void aqlBytes(long bytes) {
+    aqlBytes.record(bytes);
+  }
+
+  public void pseudonymIds(int ids) {
+    pseudonymIds.record(ids);
+  }
+
+  /**
+   * Shortened sha-256 hash of a rendered query, to correlate slow calls without logging the query
+   */
+  public static String queryHash(String query) {
+    try {
+      byte[] hash = MessageDigest.getInstance("SHA-256").digest(query.getBytes(StandardCharsets.UTF_8));
+      return HexFormat.of().formatHex(hash).substring(0, QUERY_HASH_LENGTH);
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 is not available", e);
+    }
+  }
+
+  private void record(String integration, String operation, String query, long elapsedNanos, boolean success) {
+    Timer.builder(CALL_TIMER)
+         .description("Duration of a call to an outbound integration")
+         .tag("integration", integration)
+         .tag("operation", operation)
+         .tag("outcome", success ? SUCCESS : ERROR)
+         .register(registry)
+         .record(elapsedNanos, TimeUnit.NANOSECONDS);
+
+    long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    if (elapsedMillis >= properties.getSlowCallThreshold().toMillis()) {
+      if (query != null) {
+        String hash = queryHash(query);
+        log.warn("Slow {} call {} took {} ms, query hash {}", integration, operation, elapsedMillis, hash);
+        log.debug("Query with hash {}: {}", hash, query);
+      } else {
+        log.warn("Slow {} call {} took {} ms", integration, operation, elapsedMillis);
+      }
+    }
+  }
+}
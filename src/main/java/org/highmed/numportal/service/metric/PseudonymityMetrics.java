@@ -0,0 +1,33 @@
+package org.highmed.numportal.service.metric;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+/**
+ * Custom prometheus metric, to monitor how many pseudonyms are served from the pseudonym cache. Duration and outcome
+ * of the requests to the trusted third party are recorded by the {@link IntegrationMetrics}.
+ */
+@Component
+public class PseudonymityMetrics {
+
+  private final Counter hits;
+  private final Counter misses;
+
+  public PseudonymityMetrics(MeterRegistry registry) {
+    hits = Counter.builder("custom.metric.pseudonymity.cache.hit.counter")
+                  .description("Pseudonyms served from the cache")
+                  .register(registry);
+    misses = Counter.builder("custom.metric.pseudonymity.cache.miss.counter")
+                    .description("Pseudonyms requested from the trusted third party")
+                    .register(registry);
+  }
+
+  public void hits(int count) {
+    hits.increment(count);
+  }
+
+  public void misses(int count) {
+    misses.increment(count);
+  }
+}
@@ -0,0 +1,54 @@
+package org.highmed.numportal.service.metric;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Custom prometheus metric, to monitor the size and hit rate of the web template cache used to flatten compositions
+ * and how long building a web template takes.
+ */
+@Component
+public class TemplateCacheMetrics {
+
+  private final AtomicInteger size = new AtomicInteger();
+  private final Counter hits;
+  private final Counter misses;
+  private final Timer builds;
+
+  public TemplateCacheMetrics(MeterRegistry registry) {
+    Gauge.builder("custom.metric.template.cache.size", size, AtomicInteger::get)
+         .description("Web templates in the cache")
+         .register(registry);
+    hits = Counter.builder("custom.metric.template.cache.hit.counter")
+                  .description("Web templates served from the cache")
+                  .register(registry);
+    misses = Counter.builder("custom.metric.template.cache.miss.counter")
+                    .description("Web templates missing in the cache when a composition was flattened")
+                    .register(registry);
+    builds = Timer.builder("custom.metric.template.cache.build.timer")
+                  .description("Duration of fetching a template from EhrBase and building its web template")
+                  .register(registry);
+  }
+
+  public void hit() {
+    hits.increment();
+  }
+
+  public void miss() {
+    misses.increment();
+  }
+
+  public void build(long elapsedNanos) {
+    builds.record(elapsedNanos, TimeUnit.NANOSECONDS);
+  }
+
+  public void size(int templates) {
+    size.set(templates);
+  }
+}
@@ -2,6 +2,8 @@ package org.highmed.numportal.service.util;
 
 import org.highmed.numportal.domain.model.Cohort;
 import org.highmed.numportal.properties.ConsentProperties;
+import org.highmed.numportal.properties.EhrBaseProperties;
+import org.highmed.numportal.properties.ExportProperties;
 import org.highmed.numportal.properties.PrivacyProperties;
 import org.highmed.numportal.service.CohortService;
 import org.highmed.numportal.service.ProjectService;
@@ -17,15 +19,23 @@ import org.highmed.numportal.service.policy.Policy;
 import org.highmed.numportal.service.policy.ProjectPolicyService;
 import org.highmed.numportal.service.policy.TemplatesPolicy;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.AllArgsConstructor;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.collections4.CollectionUtils;
+import org.apache.commons.collections4.ListUtils;
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.lang3.StringUtils;
 import org.ehrbase.openehr.sdk.aql.dto.AqlQuery;
+import org.ehrbase.openehr.sdk.aql.dto.operand.AggregateFunction;
+import org.ehrbase.openehr.sdk.aql.parser.AqlQueryParser;
+import org.ehrbase.openehr.sdk.aql.render.AqlRenderer;
 import org.ehrbase.openehr.sdk.response.dto.QueryResponseData;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Component;
 import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
@@ -36,21 +46,37 @@ import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.temporal.ChronoUnit;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
 
-import static org.highmed.numportal.domain.templates.ExceptionsTemplate.AN_ISSUE_HAS_OCCURRED_CANNOT_EXECUTE_AQL;
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.ERROR_CREATING_A_ZIP_FILE_FOR_DATA_EXPORT;
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.ERROR_WHILE_CREATING_THE_CSV_FILE;
+import static org.highmed.numportal.domain.templates.ExceptionsTemplate.ERROR_WHILE_RETRIEVING_DATA;
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.RESULTS_WITHHELD_FOR_PRIVACY_REASONS;
 
 @Slf4j
-@AllArgsConstructor
 @Component
 public class ExportUtil {
 
@@ -72,6 +98,44 @@ public class ExportUtil {
 
   private final ObjectMapper mapper;
 
+  private final ExportProperties exportProperties;
+
+  private final EhrBaseProperties ehrBaseProperties;
+
+  private final ExecutorService executorService;
+
+  @Autowired
+  public ExportUtil(
+      CohortService cohortService,
+      TemplateService templateService,
+      EhrBaseService ehrBaseService,
+      ResponseFilter responseFilter,
+      PrivacyProperties privacyProperties,
+      ConsentProperties consentProperties,
+      ProjectPolicyService projectPolicyService,
+      ObjectMapper mapper,
+      ExportProperties exportProperties,
+      EhrBaseProperties ehrBaseProperties) {
+    this.cohortService = cohortService;
+    this.templateService = templateService;
+    this.ehrBaseService = ehrBaseService;
+    this.responseFilter = responseFilter;
+    this.privacyProperties = privacyProperties;
+    this.consentProperties = consentProperties;
+    this.projectPolicyService = projectPolicyService;
+    this.mapper = mapper;
+    this.exportProperties = exportProperties;
+    this.ehrBaseProperties = ehrBaseProperties;
+    this.executorService =
+        Executors.newFixedThreadPool(
+            Math.max(1, exportProperties.getParallelism()), new CustomizableThreadFactory("export-"));
+  }
+
+  @PreDestroy
+  public void shutdown() {
+    executorService.shutdownNow();
+  }
+
   public String getExportFilenameBody(Long projectId) {
     return String.format(
                      "Project_%d_%s",
@@ -83,8 +147,19 @@ public class ExportUtil {
   }
 
   public List<QueryResponseData> executeDefaultConfiguration(Long projectId, Cohort cohort, Map<String, String> templates) {
+    try (Stream<QueryResponseData> response = streamDefaultConfiguration(projectId, cohort, templates)) {
+      return response.collect(Collectors.toList());
+    }
+  }
+
+  /**
+   * Executes the cohort right away, so that privacy violations are reported before an export response is committed.
+   * The data of the templates is only retrieved while the returned stream is consumed, concurrently and in the order of
+   * the templates, and each result is filtered when its rows are read. Closing the stream cancels pending retrievals.
+   */
+  public Stream<QueryResponseData> streamDefaultConfiguration(Long projectId, Cohort cohort, Map<String, String> templates) {
     if (templates == null || templates.isEmpty()) {
-      return List.of();
+      return Stream.empty();
     }
     Set<String> ehrIds = cohortService.executeCohort(cohort, false);
 
@@ -93,12 +168,11 @@ public class ExportUtil {
       throw new PrivacyException(ProjectService.class, RESULTS_WITHHELD_FOR_PRIVACY_REASONS);
     }
 
-    List<QueryResponseData> response = new LinkedList<>();
-
-    templates.forEach(
-        (templateId, v) ->
-            response.addAll(retrieveTemplateData(ehrIds, templateId, projectId, false)));
-    return responseFilter.filterResponse(response);
+    TemplateDataIterator templateData = new TemplateDataIterator(ehrIds, templates.keySet(), projectId);
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(templateData, Spliterator.ORDERED), false)
+                        .onClose(templateData::cancel)
+                        .flatMap(List::stream)
+                        .map(responseFilter::filter);
   }
 
   private List<QueryResponseData> retrieveTemplateData(
@@ -106,11 +180,15 @@ public class ExportUtil {
     try {
       AqlQuery aql = templateService.createSelectCompositionQuery(templateId);
 
-      List<Policy> policies =
-          collectProjectPolicies(ehrIds, Map.of(templateId, templateId), usedOutsideEu);
-      projectPolicyService.apply(aql, policies);
-
-      List<QueryResponseData> response = ehrBaseService.executeRawQuery(aql, projectId);
+      List<QueryResponseData> response;
+      if (requiresBatches(aql, ehrIds)) {
+        response = executeInBatches(aql, ehrIds, Map.of(templateId, templateId), usedOutsideEu, projectId);
+      } else {
+        List<Policy> policies =
+            collectProjectPolicies(ehrIds, Map.of(templateId, templateId), usedOutsideEu);
+        projectPolicyService.apply(aql, policies);
+        response = ehrBaseService.executeRawQuery(aql, projectId);
+      }
       response.forEach(data -> data.setName(templateId));
       return response;
 
@@ -120,6 +198,10 @@ public class ExportUtil {
     } catch (Exception e) {
       log.error(e.getMessage(), e);
     }
+    return emptyTemplateData(templateId);
+  }
+
+  private List<QueryResponseData> emptyTemplateData(String templateId) {
     QueryResponseData response = new QueryResponseData();
     response.setName(templateId);
     return List.of(response);
@@ -141,27 +223,65 @@ public class ExportUtil {
     return policies;
   }
 
-  public StreamingResponseBody exportJson(List<QueryResponseData> response) {
-    String json;
-    try {
-      json = mapper.writeValueAsString(response);
-    } catch (JsonProcessingException e) {
-      throw new SystemException(ProjectService.class, AN_ISSUE_HAS_OCCURRED_CANNOT_EXECUTE_AQL);
+  /**
+   * Whether the cohort is too large to be inlined into a single query. Queries with aggregates, distinct, order by,
+   * limit or offset are never split, batches would change their result.
+   */
+  public boolean requiresBatches(AqlQuery aql, Set<String> ehrIds) {
+    int batchSize = ehrBaseProperties.getEhrIdBatchSize();
+    return batchSize > 0
+        && ehrIds.size() > batchSize
+        && CollectionUtils.isEmpty(aql.getOrderBy())
+        && aql.getLimit() == null
+        && aql.getOffset() == null
+        && !aql.getSelect().isDistinct()
+        && aql.getSelect().getStatement().stream()
+              .noneMatch(select -> select.getColumnExpression() instanceof AggregateFunction);
+  }
+
+  /**
+   * Splits the cohort into batches of ehr ids and restricts a copy of the aql to each of them with the project
+   * policies, so that the size of a single query stays bounded. The batches are executed concurrently and their rows
+   * merged in order.
+   */
+  public List<QueryResponseData> executeInBatches(
+      AqlQuery aql, Set<String> ehrIds, Map<String, String> templates, boolean usedOutsideEu, Long projectId) {
+    String query = AqlRenderer.render(aql);
+    List<AqlQuery> batches = new ArrayList<>();
+    for (List<String> batchIds : ListUtils.partition(new ArrayList<>(ehrIds), ehrBaseProperties.getEhrIdBatchSize())) {
+      AqlQuery batch = AqlQueryParser.parse(query);
+      projectPolicyService.apply(batch, collectProjectPolicies(new LinkedHashSet<>(batchIds), templates, usedOutsideEu));
+      batches.add(batch);
     }
+    log.info("Cohort of {} ehr ids is queried in {} batches", ehrIds.size(), batches.size());
+    return ehrBaseService.executeRawQueryInBatches(batches, projectId);
+  }
+
+  /**
+   * Writes the responses as json array, one response at a time and row by row, without building the document in memory
+   */
+  public StreamingResponseBody exportJson(Stream<QueryResponseData> response) {
     return outputStream -> {
-      outputStream.write(json.getBytes());
-      outputStream.flush();
-      outputStream.close();
+      try (response; JsonGenerator generator = mapper.getFactory().createGenerator(outputStream, JsonEncoding.UTF8)) {
+        generator.writeStartArray();
+        for (Iterator<QueryResponseData> iterator = response.iterator(); iterator.hasNext(); ) {
+          mapper.writeValue(generator, iterator.next());
+        }
+        generator.writeEndArray();
+      }
     };
   }
 
-  public StreamingResponseBody exportCsv(List<QueryResponseData> response, Long projectId) {
-    return outputStream ->
-        streamResponseAsZip(response, getExportFilenameBody(projectId), outputStream);
+  public StreamingResponseBody exportCsv(Stream<QueryResponseData> response, Long projectId) {
+    return outputStream -> {
+      try (response) {
+        streamResponseAsZip(response::iterator, getExportFilenameBody(projectId), outputStream);
+      }
+    };
   }
 
   public void streamResponseAsZip(
-      List<QueryResponseData> queryResponseDataList,
+      Iterable<QueryResponseData> queryResponseDataList,
       String filenameStart,
       OutputStream outputStream) {
 
@@ -211,4 +331,76 @@ public class ExportUtil {
     }
   }
 
+  /**
+   * Retrieves the data of the templates on the export pool, at most parallelism templates ahead of the consumer, and
+   * returns it in the order of the templates. Templates that fail or exceed the timeout yield an empty result.
+   */
+  private class TemplateDataIterator implements Iterator<List<QueryResponseData>> {
+
+    private final Set<String> ehrIds;
+
+    private final Iterator<String> templateIds;
+
+    private final Long projectId;
+
+    private final Deque<PendingTemplate> pending = new ArrayDeque<>();
+
+    TemplateDataIterator(Set<String> ehrIds, Collection<String> templateIds, Long projectId) {
+      this.ehrIds = ehrIds;
+      this.templateIds = List.copyOf(templateIds).iterator();
+      this.projectId = projectId;
+    }
+
+    @Override
+    public boolean hasNext() {
+      submit();
+      return !pending.isEmpty();
+    }
+
+    @Override
+    public List<QueryResponseData> next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      PendingTemplate head = pending.poll();
+      submit();
+      return await(head);
+    }
+
+    void cancel() {
+      pending.forEach(template -> template.future().cancel(true));
+      pending.clear();
+    }
+
+    private void submit() {
+      while (pending.size() < Math.max(1, exportProperties.getParallelism()) && templateIds.hasNext()) {
+        String templateId = templateIds.next();
+        pending.add(new PendingTemplate(
+            templateId,
+            executorService.submit(() -> retrieveTemplateData(ehrIds, templateId, projectId, false)),
+            System.nanoTime() + exportProperties.getTemplateTimeout().toNanos()));
+      }
+    }
+
+    private List<QueryResponseData> await(PendingTemplate template) {
+      try {
+        return template.future().get(Math.max(0, template.deadline() - System.nanoTime()), TimeUnit.NANOSECONDS);
+      } catch (TimeoutException e) {
+        template.future().cancel(true);
+        log.error("Retrieving data for template {} and project {} exceeded the configured timeout of {}",
+            template.templateId(), projectId, exportProperties.getTemplateTimeout());
+      } catch (ExecutionException e) {
+        log.error("Could not retrieve data for template {} and project {}", template.templateId(), projectId, e.getCause());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        cancel();
+        throw new SystemException(ExportUtil.class, ERROR_WHILE_RETRIEVING_DATA,
+            String.format(ERROR_WHILE_RETRIEVING_DATA, "export interrupted"));
+      }
+      return emptyTemplateData(template.templateId());
+    }
+  }
+
+  private record PendingTemplate(String templateId, Future<List<QueryResponseData>> future, long deadline) {
+  }
 }
@@ -6,6 +6,7 @@ import org.highmed.numportal.domain.dto.NavigationItemDto;
 import org.highmed.numportal.domain.dto.ProjectInfoDto;
 import org.highmed.numportal.domain.model.Roles;
 import org.highmed.numportal.service.ContentService;
+import org.highmed.numportal.service.ehrbase.ClinicGraphCache;
 import org.highmed.numportal.service.exception.CustomizedExceptionHandler;
 import org.highmed.numportal.service.logger.ContextLog;
 import org.highmed.numportal.web.config.Role;
@@ -68,21 +69,24 @@ public class ContentController extends CustomizedExceptionHandler {
   @Operation(description = "Retrieves the list of participating clinics")
   @PreAuthorize(Role.MANAGER)
   public ResponseEntity<List<String>> getClinics(@AuthenticationPrincipal @NotNull Jwt principal) {
-    return ResponseEntity.ok(contentService.getClinics(principal.getSubject()));
+    ClinicGraphCache.Snapshot graphs = contentService.getClinicGraphs(principal.getSubject());
+    return ResponseEntity.ok().lastModified(graphs.computedAt()).body(graphs.clinics());
   }
 
   @GetMapping("/graph/clinic/{name}/sofaDistribution")
   @Operation(description = "Retrieves sofa distribution of a clinic")
   @PreAuthorize(Role.MANAGER)
   public ResponseEntity<Map<String, Integer>> getClinicDistributions(@PathVariable String name) {
-    return ResponseEntity.ok(contentService.getClinicDistributions(name));
+    ClinicGraphCache.Snapshot graphs = contentService.getClinicGraphs();
+    return ResponseEntity.ok().lastModified(graphs.computedAt()).body(graphs.distribution(name));
   }
 
   @GetMapping("/graph/clinic/sofaAverage")
   @PreAuthorize(Role.MANAGER)
   @Operation(description = "Retrieves the sofa averages of participating clinics", security = @SecurityRequirement(name = "security_auth"))
   public ResponseEntity<Map<String, Double>> getClinicAverages(@AuthenticationPrincipal @NotNull Jwt principal) {
-    return ResponseEntity.ok(contentService.getClinicAverages(principal.getSubject()));
+    ClinicGraphCache.Snapshot graphs = contentService.getClinicGraphs(principal.getSubject());
+    return ResponseEntity.ok().lastModified(graphs.computedAt()).body(graphs.averages());
   }
 
   @GetMapping("/latest-projects")
@@ -0,0 +1,56 @@
+package org.highmed.numportal.web.controller;
+
+import org.highmed.numportal.domain.dto.ExportJobDto;
+import org.highmed.numportal.domain.model.ExportJob;
+import org.highmed.numportal.service.exception.CustomizedExceptionHandler;
+import org.highmed.numportal.service.export.ExportJobService;
+import org.highmed.numportal.service.util.ExportHeaderUtil;
+import org.highmed.numportal.web.config.Role;
+
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import jakarta.validation.constraints.NotNull;
+import lombok.AllArgsConstructor;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@RestController
+@AllArgsConstructor
+@RequestMapping(value = "/export/job")
+@SecurityRequirement(name = "security_auth")
+public class ExportJobController extends CustomizedExceptionHandler {
+
+  private final ExportJobService exportJobService;
+  private final ExportHeaderUtil exportHeaderUtil;
+
+  @GetMapping(value = "/{jobId}", produces = MediaType.APPLICATION_JSON_VALUE)
+  @Operation(description = "Retrieves the status and progress of an export job of the logged in user")
+  @PreAuthorize(Role.MANAGER_OR_STUDY_COORDINATOR_OR_RESEARCHER)
+  public ResponseEntity<ExportJobDto> getExportJob(
+      @AuthenticationPrincipal @NotNull Jwt principal,
+      @NotNull @PathVariable String jobId) {
+    return ResponseEntity.ok(exportJobService.getJob(jobId, principal.getSubject()).toDto());
+  }
+
+  @GetMapping("/{jobId}/result")
+  @Operation(description = "Downloads the result of a completed export job, requested ranges of the result are returned "
+      + "as partial content, multiple ranges as multipart/byteranges")
+  @PreAuthorize(Role.MANAGER_OR_STUDY_COORDINATOR_OR_RESEARCHER)
+  public ResponseEntity<Resource> downloadExportJobResult(
+      @AuthenticationPrincipal @NotNull Jwt principal,
+      @NotNull @PathVariable String jobId) {
+    ExportJob job = exportJobService.getJob(jobId, principal.getSubject());
+    Resource result = exportJobService.getResult(job);
+    // ranges are served by spring from the resource, for multiple ranges the content type is set on each part
+    return new ResponseEntity<>(result, exportHeaderUtil.getExportHeaders(job.getFormat(), job.getProjectId()), HttpStatus.OK);
+  }
+}
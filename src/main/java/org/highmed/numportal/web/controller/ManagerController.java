@@ -1,5 +1,6 @@
 package org.highmed.numportal.web.controller;
 
+import org.highmed.numportal.domain.dto.ExportJobDto;
 import org.highmed.numportal.domain.dto.ManagerProjectDto;
 import org.highmed.numportal.domain.dto.QueryDto;
 import org.highmed.numportal.domain.model.ExportType;
@@ -83,4 +84,19 @@ public class ManagerController {
 
     return new ResponseEntity<>(streamingResponseBody, headers, HttpStatus.OK);
   }
+
+  @PostMapping(value = "/export/job")
+  @Operation(description = "Queues the export of the cohort default configuration as export job, its result is downloaded once the job is completed")
+  @PreAuthorize(Role.MANAGER)
+  public ResponseEntity<ExportJobDto> submitManagerExport(
+      @AuthenticationPrincipal @NotNull Jwt principal,
+      @RequestBody @Valid ManagerProjectDto managerProjectDto,
+      @RequestParam(required = false)
+      @Parameter(description = "A string defining the output format. Valid values are 'csv' and 'json'. Default is csv.")
+      ExportType format) {
+    return ResponseEntity.status(HttpStatus.ACCEPTED)
+                         .body(managerService.submitManagerExport(
+                             managerProjectDto.getCohort(), managerProjectDto.getTemplates(), principal.getSubject(),
+                             format).toDto());
+  }
 }
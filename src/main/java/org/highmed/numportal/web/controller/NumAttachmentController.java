@@ -17,6 +17,7 @@ import org.modelmapper.ModelMapper;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.http.ContentDisposition;
 import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
@@ -28,6 +29,7 @@ import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RequestPart;
@@ -97,17 +99,49 @@ public class NumAttachmentController extends CustomizedExceptionHandler {
   }
 
   @ContextLog(type = "AttachmentManagement", description = "Download attachment")
-  @Operation(description = "Download attachment with given id")
+  @Operation(description = "Download attachment with given id, a range of the attachment is returned for requests with a single range")
   @GetMapping("/{attachmentId}")
-  public ResponseEntity<StreamingResponseBody> downloadAttachment(@NotNull @PathVariable Long attachmentId) {
+  public ResponseEntity<StreamingResponseBody> downloadAttachment(@NotNull @PathVariable Long attachmentId,
+      @RequestHeader(value = HttpHeaders.RANGE, required = false) String range) {
     Attachment attachment = attachmentService.getAttachmentById(attachmentId);
+    long size = attachment.getContentSize() != null ? attachment.getContentSize() : 0;
     HttpHeaders header = new HttpHeaders();
     header.setContentDisposition(ContentDisposition.builder("attachment").filename(attachment.getName()).build());
-    StreamingResponseBody responseBody = outputStream -> {
-      outputStream.write(attachment.getContent());
-      outputStream.flush();
-      outputStream.close();
-    };
-    return new ResponseEntity<>(responseBody, header, HttpStatus.OK);
+    header.set(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+    HttpRange httpRange = singleRange(range);
+    if (httpRange == null) {
+      header.setContentLength(size);
+      StreamingResponseBody responseBody = outputStream -> attachmentService.writeContent(attachment, 0, size, outputStream);
+      return new ResponseEntity<>(responseBody, header, HttpStatus.OK);
+    }
+
+    long start = httpRange.getRangeStart(size);
+    long end = httpRange.getRangeEnd(size);
+    if (size == 0 || start >= size) {
+      header.set(HttpHeaders.CONTENT_RANGE, "bytes */" + size);
+      return new ResponseEntity<>(header, HttpStatus.REQUESTED_RANGE_NOT_SATISFIABLE);
+    }
+    long length = end - start + 1;
+    header.set(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + size);
+    header.setContentLength(length);
+    StreamingResponseBody responseBody = outputStream -> attachmentService.writeContent(attachment, start, length, outputStream);
+    return new ResponseEntity<>(responseBody, header, HttpStatus.PARTIAL_CONTENT);
+  }
+
+  /**
+   * The requested range, multiple or malformed ranges are answered with the whole attachment
+   */
+  private static HttpRange singleRange(String range) {
+    if (range == null) {
+      return null;
+    }
+    try {
+      List<HttpRange> ranges = HttpRange.parseRanges(range);
+      return ranges.size() == 1 ? ranges.get(0) : null;
+    } catch (IllegalArgumentException e) {
+      log.debug("Ignoring invalid range {}", range);
+      return null;
+    }
   }
 }
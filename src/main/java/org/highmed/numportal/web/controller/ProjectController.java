@@ -1,6 +1,7 @@
 package org.highmed.numportal.web.controller;
 
 import org.highmed.numportal.domain.dto.CommentDto;
+import org.highmed.numportal.domain.dto.ExportJobDto;
 import org.highmed.numportal.domain.dto.ProjectDto;
 import org.highmed.numportal.domain.dto.ProjectViewDto;
 import org.highmed.numportal.domain.dto.RawQueryDto;
@@ -201,6 +202,22 @@ public class ProjectController extends CustomizedExceptionHandler {
     return new ResponseEntity<>(streamingResponseBody, headers, HttpStatus.OK);
   }
 
+  @PostMapping(value = "/{projectId}/export/job")
+  @Operation(description = "Queues the export of the aql result as export job, its result is downloaded once the job is completed")
+  @PreAuthorize(Role.RESEARCHER)
+  public ResponseEntity<ExportJobDto> submitExport(
+      @AuthenticationPrincipal @NotNull Jwt principal,
+      @RequestBody @Valid RawQueryDto query,
+      @NotNull @PathVariable Long projectId,
+      @RequestParam(required = false) Boolean defaultConfiguration,
+      @RequestParam(required = false)
+      @Parameter(description = "A string defining the output format. Valid values are 'csv' and 'json'. Default is csv.")
+      ExportType format) {
+    return ResponseEntity.status(HttpStatus.ACCEPTED)
+                         .body(projectService.submitExport(
+                             query.getQuery(), projectId, principal.getSubject(), format, defaultConfiguration).toDto());
+  }
+
   @GetMapping("/{projectId}/comment")
   @Operation(description = "Retrieves the list of attached comments to a particular project")
   @PreAuthorize(Role.STUDY_COORDINATOR_OR_RESEARCHER_OR_APPROVER)
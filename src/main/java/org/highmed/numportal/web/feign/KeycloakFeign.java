@@ -12,6 +12,7 @@ import org.springframework.web.bind.annotation.PutMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestParam;
 
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -21,6 +22,9 @@ public interface KeycloakFeign {
   @GetMapping("/users/{userId}")
   User getUser(@PathVariable String userId);
 
+  @GetMapping("/users")
+  List<User> getUsers(@RequestParam("first") int first, @RequestParam("max") int max);
+
   @DeleteMapping("/users/{userId}")
   User deleteUser(@PathVariable String userId);
 
@@ -0,0 +1,48 @@
+package org.highmed.numportal.web.feign.config;
+
+import org.highmed.numportal.service.metric.IntegrationMetrics;
+
+import feign.Capability;
+import feign.Client;
+import feign.Request;
+import feign.Response;
+import lombok.AllArgsConstructor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Times every request of the feign clients with the {@link IntegrationMetrics}, by feign client and called method.
+ * Responses with an error status are recorded with the error outcome.
+ */
+@Component
+@AllArgsConstructor
+public class FeignMetricsCapability implements Capability {
+
+  private final IntegrationMetrics integrationMetrics;
+
+  @Override
+  public Client enrich(Client client) {
+    return (request, options) -> {
+      long start = System.nanoTime();
+      boolean success = false;
+      try {
+        Response response = client.execute(request, options);
+        success = response.status() < 400;
+        return response;
+      } finally {
+        integrationMetrics.record(integration(request), operation(request), System.nanoTime() - start, success);
+      }
+    };
+  }
+
+  private static String integration(Request request) {
+    return request.requestTemplate() != null && request.requestTemplate().feignTarget() != null
+        ? request.requestTemplate().feignTarget().name()
+        : IntegrationMetrics.KEYCLOAK;
+  }
+
+  private static String operation(Request request) {
+    return request.requestTemplate() != null && request.requestTemplate().methodMetadata() != null
+        ? request.requestTemplate().methodMetadata().method().getName()
+        : request.httpMethod().name();
+  }
+}
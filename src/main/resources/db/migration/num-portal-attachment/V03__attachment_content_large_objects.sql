@@ -0,0 +1,26 @@
+-- Content of attachments is kept in large objects, which are written and read in chunks instead of as a whole
+ALTER TABLE attachment ADD COLUMN IF NOT EXISTS content_oid oid;
+ALTER TABLE attachment ADD COLUMN IF NOT EXISTS content_size BIGINT;
+
+UPDATE attachment
+SET content_oid  = lo_from_bytea(0, content),
+    content_size = length(content)
+WHERE content IS NOT NULL;
+
+ALTER TABLE attachment DROP COLUMN content;
+
+-- Large objects are not removed with the rows referencing them
+CREATE OR REPLACE FUNCTION attachment_unlink_content() RETURNS trigger AS
+$$
+BEGIN
+    IF OLD.content_oid IS NOT NULL THEN
+        PERFORM lo_unlink(OLD.content_oid);
+    END IF;
+    RETURN OLD;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER attachment_unlink_content
+    AFTER DELETE ON attachment
+    FOR EACH ROW
+EXECUTE FUNCTION attachment_unlink_content();
@@ -0,0 +1,3 @@
+ALTER TABLE user_details ADD COLUMN full_name varchar(255);
+
+CREATE INDEX user_details_full_name_idx ON user_details (upper(full_name));
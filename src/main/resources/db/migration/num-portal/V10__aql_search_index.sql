@@ -0,0 +1,50 @@
+-- Full text search over name, use and purpose of the aql criteria, german for the original and english for the
+-- translated fields. The matching functions are inlined by the planner, so the expression indexes are used.
+CREATE FUNCTION aql_search_vector_de(name text, use text, purpose text) RETURNS tsvector
+    LANGUAGE sql IMMUTABLE AS
+$$
+SELECT setweight(to_tsvector('german'::regconfig, coalesce(name, '')), 'A')
+           || setweight(to_tsvector('german'::regconfig, coalesce(use, '')), 'B')
+           || setweight(to_tsvector('german'::regconfig, coalesce(purpose, '')), 'C')
+$$;
+
+CREATE FUNCTION aql_search_vector_en(name text, use text, purpose text) RETURNS tsvector
+    LANGUAGE sql IMMUTABLE AS
+$$
+SELECT setweight(to_tsvector('english'::regconfig, coalesce(name, '')), 'A')
+           || setweight(to_tsvector('english'::regconfig, coalesce(use, '')), 'B')
+           || setweight(to_tsvector('english'::regconfig, coalesce(purpose, '')), 'C')
+$$;
+
+CREATE FUNCTION aql_search_matches_de(name text, use text, purpose text, search text) RETURNS boolean
+    LANGUAGE sql IMMUTABLE AS
+$$
+SELECT aql_search_vector_de(name, use, purpose) @@ to_tsquery('german'::regconfig, search)
+$$;
+
+CREATE FUNCTION aql_search_matches_en(name text, use text, purpose text, search text) RETURNS boolean
+    LANGUAGE sql IMMUTABLE AS
+$$
+SELECT aql_search_vector_en(name, use, purpose) @@ to_tsquery('english'::regconfig, search)
+$$;
+
+CREATE FUNCTION aql_search_rank_de(name text, use text, purpose text, search text) RETURNS real
+    LANGUAGE sql IMMUTABLE AS
+$$
+SELECT ts_rank(aql_search_vector_de(name, use, purpose), to_tsquery('german'::regconfig, search))
+$$;
+
+CREATE FUNCTION aql_search_rank_en(name text, use text, purpose text, search text) RETURNS real
+    LANGUAGE sql IMMUTABLE AS
+$$
+SELECT ts_rank(aql_search_vector_en(name, use, purpose), to_tsquery('english'::regconfig, search))
+$$;
+
+CREATE INDEX aql_search_de_idx ON aql USING gin (aql_search_vector_de(name, use, purpose));
+CREATE INDEX aql_search_en_idx ON aql USING gin (aql_search_vector_en(name_translated, use_translated, purpose_translated));
+
+-- Substring search on the names, as typed in the criteria picker
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+CREATE INDEX aql_name_trgm_idx ON aql USING gin (upper(name) gin_trgm_ops);
+CREATE INDEX aql_name_translated_trgm_idx ON aql USING gin (upper(name_translated) gin_trgm_ops);
@@ -0,0 +1,18 @@
+-- Export jobs are stored, so every instance can report their status and serve their result
+CREATE TABLE export_job
+(
+    id             varchar(36) PRIMARY KEY,
+    user_id        varchar(250) NOT NULL,
+    project_id     bigint       NOT NULL,
+    format         varchar(10)  NOT NULL,
+    create_date    timestamp    NOT NULL,
+    file_name      varchar(255) NOT NULL,
+    status         varchar(20)  NOT NULL,
+    bytes_written  bigint       NOT NULL DEFAULT 0,
+    size           bigint,
+    modified_date  timestamp    NOT NULL,
+    completed_date timestamp,
+    expiry_date    timestamp
+);
+
+CREATE INDEX export_job_user_id_status_idx ON export_job (user_id, status);
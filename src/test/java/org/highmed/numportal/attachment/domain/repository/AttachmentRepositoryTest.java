@@ -1,16 +1,24 @@
 package org.highmed.numportal.attachment.domain.repository;
 
+import org.highmed.numportal.attachment.AttachmentContentStore;
 import org.highmed.numportal.attachment.domain.dto.AttachmentDto;
 import org.highmed.numportal.attachment.domain.model.Attachment;
 import org.highmed.numportal.attachment.domain.repository.AttachmentRepositoryImpl;
 import org.highmed.numportal.attachment.domain.repository.AttachmentRepositoryJpa;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.time.OffsetDateTime;
 import java.util.List;
 
@@ -20,6 +28,9 @@ public class AttachmentRepositoryTest {
     @Mock
     private AttachmentRepositoryJpa attachmentRepositoryJpa;
 
+    @Mock
+    private AttachmentContentStore attachmentContentStore;
+
     @InjectMocks
     private AttachmentRepositoryImpl attachmentRepository;
 
@@ -32,9 +43,8 @@ public class AttachmentRepositoryTest {
     }
 
     @Test
-    public void saveAttachmentTest() {
+    public void saveAttachmentTest() throws IOException {
         AttachmentDto model = AttachmentDto.builder()
-                .content("content".getBytes())
                 .name("dummyFile.pdf")
                 .type("application/pdf")
                 .authorId("authorId")
@@ -46,8 +56,27 @@ public class AttachmentRepositoryTest {
                         .name("dummyFile.pdf")
                         .authorId("authorId")
                         .build());
-        attachmentRepository.saveAttachment(model);
-        Mockito.verify(attachmentRepositoryJpa, Mockito.times(1)).save(Mockito.any(Attachment.class));
+        InputStream content = new ByteArrayInputStream("content".getBytes());
+        Mockito.when(attachmentContentStore.store(content)).thenReturn(new AttachmentContentStore.StoredContent(42L, 7L));
+        attachmentRepository.saveAttachment(model, content);
+        ArgumentCaptor<Attachment> attachmentCaptor = ArgumentCaptor.forClass(Attachment.class);
+        Mockito.verify(attachmentRepositoryJpa, Mockito.times(1)).save(attachmentCaptor.capture());
+        Assert.assertEquals(Long.valueOf(42L), attachmentCaptor.getValue().getContentOid());
+        Assert.assertEquals(Long.valueOf(7L), attachmentCaptor.getValue().getContentSize());
+    }
+
+    @Test
+    public void writeContentTest() throws IOException {
+        Attachment attachment = Attachment.builder().id(1L).contentOid(42L).contentSize(7L).build();
+        OutputStream target = new ByteArrayOutputStream();
+        attachmentRepository.writeContent(attachment, 2L, 5L, target);
+        Mockito.verify(attachmentContentStore, Mockito.times(1)).copy(42L, 2L, 5L, target);
+    }
+
+    @Test
+    public void writeContentWithoutContentTest() throws IOException {
+        attachmentRepository.writeContent(Attachment.builder().id(1L).build(), 0L, 0L, new ByteArrayOutputStream());
+        Mockito.verifyNoInteractions(attachmentContentStore);
     }
 
     @Test
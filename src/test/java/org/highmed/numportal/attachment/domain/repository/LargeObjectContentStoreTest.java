@@ -0,0 +1,107 @@
+package org.highmed.numportal.attachment.domain.repository;
+
+import org.highmed.numportal.attachment.AttachmentContentStore;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import javax.sql.DataSource;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+@RunWith(MockitoJUnitRunner.class)
+public class LargeObjectContentStoreTest {
+
+  private static final int CHUNK_SIZE = 64 * 1024;
+
+  @Mock
+  private DataSource dataSource;
+
+  @Mock
+  private Connection connection;
+
+  @Mock
+  private PreparedStatement statement;
+
+  @InjectMocks
+  private LargeObjectContentStore contentStore;
+
+  @Before
+  public void setup() throws SQLException {
+    Mockito.when(dataSource.getConnection()).thenReturn(connection);
+  }
+
+  @Test
+  public void shouldStoreContentInChunks() throws IOException, SQLException {
+    PreparedStatement create = Mockito.mock(PreparedStatement.class);
+    ResultSet created = Mockito.mock(ResultSet.class);
+    Mockito.when(connection.prepareStatement("SELECT lo_create(0)")).thenReturn(create);
+    Mockito.when(create.executeQuery()).thenReturn(created);
+    Mockito.when(created.next()).thenReturn(true);
+    Mockito.when(created.getLong(1)).thenReturn(42L);
+    Mockito.when(connection.prepareStatement("SELECT lo_put(CAST(? AS oid), ?, ?)")).thenReturn(statement);
+
+    AttachmentContentStore.StoredContent stored =
+        contentStore.store(new ByteArrayInputStream(new byte[2 * CHUNK_SIZE + 100]));
+
+    assertThat(stored.reference(), is(42L));
+    assertThat(stored.size(), is(2L * CHUNK_SIZE + 100));
+    Mockito.verify(statement, Mockito.times(3)).execute();
+    Mockito.verify(statement).setLong(2, 0L);
+    Mockito.verify(statement).setLong(2, CHUNK_SIZE);
+    Mockito.verify(statement).setLong(2, 2L * CHUNK_SIZE);
+    Mockito.verify(statement).setBytes(3, new byte[100]);
+    Mockito.verify(connection).close();
+  }
+
+  @Test
+  public void shouldCopyRangeOfContentInChunks() throws IOException, SQLException {
+    ResultSet firstChunk = chunk(CHUNK_SIZE);
+    ResultSet lastChunk = chunk(4464);
+    Mockito.when(connection.prepareStatement("SELECT lo_get(CAST(? AS oid), ?, ?)")).thenReturn(statement);
+    Mockito.when(statement.executeQuery()).thenReturn(firstChunk, lastChunk);
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+    contentStore.copy(42L, 10L, CHUNK_SIZE + 4464, target);
+
+    assertThat(target.size(), is(CHUNK_SIZE + 4464));
+    Mockito.verify(statement).setLong(2, 10L);
+    Mockito.verify(statement).setInt(3, CHUNK_SIZE);
+    Mockito.verify(statement).setLong(2, 10L + CHUNK_SIZE);
+    Mockito.verify(statement).setInt(3, 4464);
+    Mockito.verify(connection).close();
+  }
+
+  @Test
+  public void shouldStopCopyingAtEndOfContent() throws IOException, SQLException {
+    ResultSet empty = chunk(0);
+    Mockito.when(connection.prepareStatement("SELECT lo_get(CAST(? AS oid), ?, ?)")).thenReturn(statement);
+    Mockito.when(statement.executeQuery()).thenReturn(empty);
+    ByteArrayOutputStream target = new ByteArrayOutputStream();
+
+    contentStore.copy(42L, 0L, 100L, target);
+
+    assertThat(target.size(), is(0));
+    Mockito.verify(statement, Mockito.times(1)).executeQuery();
+  }
+
+  private static ResultSet chunk(int size) throws SQLException {
+    ResultSet chunk = Mockito.mock(ResultSet.class);
+    Mockito.when(chunk.next()).thenReturn(true);
+    Mockito.when(chunk.getBytes(1)).thenReturn(new byte[size]);
+    return chunk;
+  }
+}
@@ -25,7 +25,9 @@ import org.highmed.numportal.service.exception.BadRequestException;
 import org.highmed.numportal.service.exception.ForbiddenException;
 import org.highmed.numportal.service.exception.ResourceNotFound;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Optional;
@@ -53,7 +55,8 @@ public class AttachmentServiceTest {
                 .id(1L)
                 .name("dummyFile.pdf")
                 .authorId("author-id")
-                .content("content".getBytes())
+                .contentOid(42L)
+                .contentSize(7L)
                 .build()));
         Mockito.when(attachmentRepository.findById(2L)).thenReturn(Optional.empty());
     }
@@ -91,7 +94,15 @@ public class AttachmentServiceTest {
         ReflectionTestUtils.setField(attachmentService, "pdfFileSize", 10485760);
         MultipartFile mockFile = new MockMultipartFile("testFile", "testFile.pdf", "application/pdf", "%PDF-1.5content".getBytes());
         attachmentService.saveAttachment(mockFile, null, "author-id", 1L);
-        Mockito.verify(attachmentRepository, Mockito.times(1)).saveAttachment(Mockito.any(AttachmentDto.class));
+        Mockito.verify(attachmentRepository, Mockito.times(1)).saveAttachment(Mockito.any(AttachmentDto.class), Mockito.any(InputStream.class));
+    }
+
+    @Test
+    public void writeContentTest() throws IOException {
+        Attachment attachment = attachmentService.getAttachmentById(1L);
+        ByteArrayOutputStream target = new ByteArrayOutputStream();
+        attachmentService.writeContent(attachment, 0L, 7L, target);
+        Mockito.verify(attachmentRepository, Mockito.times(1)).writeContent(attachment, 0L, 7L, target);
     }
 
     @Test
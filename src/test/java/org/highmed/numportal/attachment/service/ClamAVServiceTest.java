@@ -1,5 +1,6 @@
 package org.highmed.numportal.attachment.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.highmed.numportal.integrationtesting.config.ClamAVContainer;
 import org.junit.Assert;
 import org.junit.Before;
@@ -9,8 +10,11 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.highmed.numportal.properties.ClamAVProperties;
+import org.highmed.numportal.properties.IntegrationMetricsProperties;
+import org.highmed.numportal.service.metric.IntegrationMetrics;
 
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
@@ -25,6 +29,9 @@ public class ClamAVServiceTest {
     @Mock
     private ClamAVProperties clamAVProperties;
 
+    @Spy
+    private IntegrationMetrics integrationMetrics = new IntegrationMetrics(new SimpleMeterRegistry(), new IntegrationMetricsProperties());
+
     @InjectMocks
     private ClamAVService clamAVService;
 
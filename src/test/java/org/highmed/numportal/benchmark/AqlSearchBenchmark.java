@@ -0,0 +1,255 @@
+package org.highmed.numportal.benchmark;
+
+import org.highmed.numportal.domain.dto.Language;
+import org.highmed.numportal.domain.dto.SearchCriteria;
+import org.highmed.numportal.domain.dto.SearchFilter;
+import org.highmed.numportal.domain.model.Aql;
+import org.highmed.numportal.domain.repository.AqlRepository;
+import org.highmed.numportal.domain.specification.AqlSpecification;
+import org.highmed.numportal.integrationtesting.config.PostgresqlContainer;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.flywaydb.core.Flyway;
+import org.hibernate.boot.model.naming.CamelCaseToUnderscoresNamingStrategy;
+import org.hibernate.cfg.AvailableSettings;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.boot.orm.jpa.hibernate.SpringImplicitNamingStrategy;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.jpa.repository.support.JpaRepositoryFactory;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.hibernate5.SpringBeanContainer;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares searching a catalog of 50000 aql criteria with the name substring search and with the ranked full text
+ * search, each as one page of 20 criteria and the total count, with and without the search indexes. The repository
+ * search runs the query generated from the aql specification, as the aql search of the portal does, the other two
+ * only the single search predicates. The catalog is seeded into a postgres container migrated with the portal
+ * migrations. Run with mvn verify -Pbenchmark -Dbenchmark.includes=AqlSearchBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1)
+public class AqlSearchBenchmark {
+
+  private static final int SIZE = 50000;
+
+  private static final int PAGE_SIZE = 20;
+
+  private static final String OWNER_ID = "aql-search-benchmark";
+
+  private static final String[] WORDS = {
+      "Blutdruck", "Herzfrequenz", "Körpergewicht", "Körpergröße", "Diagnose", "Laborbefund", "Blutbild", "Leukozyten",
+      "Sauerstoffsättigung", "Beatmung", "Intensivstation", "Symptome", "Fieber", "Impfstatus", "Medikation", "Allergie",
+      "Raucherstatus", "Schwangerschaft", "Entlassung", "Aufnahme", "Patienten", "Kohorte", "Verlauf", "Befund"};
+
+  private static final String SUBSTRING_PAGE =
+      "SELECT id FROM aql WHERE upper(name) LIKE ? ORDER BY create_date DESC LIMIT " + PAGE_SIZE;
+
+  private static final String SUBSTRING_COUNT = "SELECT count(*) FROM aql WHERE upper(name) LIKE ?";
+
+  private static final String FULL_TEXT_PAGE =
+      "SELECT id FROM aql WHERE aql_search_matches_de(name, use, purpose, ?) "
+          + "ORDER BY aql_search_rank_de(name, use, purpose, ?) DESC, create_date DESC LIMIT " + PAGE_SIZE;
+
+  private static final String FULL_TEXT_COUNT = "SELECT count(*) FROM aql WHERE aql_search_matches_de(name, use, purpose, ?)";
+
+  private static final String[] INDEXES = {
+      "aql_search_de_idx", "aql_search_en_idx", "aql_name_trgm_idx", "aql_name_translated_trgm_idx"};
+
+  @Param({"true", "false"})
+  private boolean indexed;
+
+  @Param({"blutdr", "fieber intensiv"})
+  private String search;
+
+  private Connection connection;
+
+  private LocalContainerEntityManagerFactoryBean entityManagerFactory;
+
+  private EntityManager entityManager;
+
+  private AqlRepository aqlRepository;
+
+  @Setup
+  public void setup() throws SQLException {
+    PostgresqlContainer container = PostgresqlContainer.getInstance("num");
+    container.start();
+    Flyway.configure()
+          .dataSource(container.getJdbcUrl(), container.getUsername(), container.getPassword())
+          .locations("classpath:db/migration/num-portal")
+          .load()
+          .migrate();
+    connection = DriverManager.getConnection(container.getJdbcUrl(), container.getUsername(), container.getPassword());
+    seed();
+    if (!indexed) {
+      try (Statement statement = connection.createStatement()) {
+        for (String index : INDEXES) {
+          statement.execute("DROP INDEX IF EXISTS " + index);
+        }
+      }
+    }
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("ANALYZE aql");
+    }
+    entityManagerFactory = entityManagerFactory(container);
+    entityManager = entityManagerFactory.getObject().createEntityManager();
+    aqlRepository = new JpaRepositoryFactory(entityManager).getRepository(AqlRepository.class);
+  }
+
+  @TearDown
+  public void tearDown() throws SQLException {
+    entityManager.close();
+    entityManagerFactory.destroy();
+    connection.close();
+  }
+
+  @Benchmark
+  public Page<Aql> repositorySearch() {
+    AqlSpecification specification = AqlSpecification.builder()
+                                                      .loggedInUserId(OWNER_ID)
+                                                      .language(Language.de)
+                                                      .filter(Map.of(
+                                                          SearchCriteria.FILTER_SEARCH_BY_KEY, search,
+                                                          SearchCriteria.FILTER_BY_TYPE_KEY, SearchFilter.ALL.name()))
+                                                      .build();
+    try {
+      return aqlRepository.findAll(specification, PageRequest.of(0, PAGE_SIZE));
+    } finally {
+      entityManager.clear();
+    }
+  }
+
+  @Benchmark
+  public List<Long> substringSearch() throws SQLException {
+    String pattern = "%" + search.toUpperCase() + "%";
+    List<Long> page = query(SUBSTRING_PAGE, pattern);
+    page.add(count(SUBSTRING_COUNT, pattern));
+    return page;
+  }
+
+  @Benchmark
+  public List<Long> fullTextSearch() throws SQLException {
+    String textQuery = AqlSpecification.toPrefixTextQuery(search);
+    List<Long> page = query(FULL_TEXT_PAGE, textQuery, textQuery);
+    page.add(count(FULL_TEXT_COUNT, textQuery));
+    return page;
+  }
+
+  private List<Long> query(String sql, String... parameters) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      for (int i = 0; i < parameters.length; i++) {
+        statement.setString(i + 1, parameters[i]);
+      }
+      List<Long> ids = new ArrayList<>(PAGE_SIZE + 1);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        while (resultSet.next()) {
+          ids.add(resultSet.getLong(1));
+        }
+      }
+      return ids;
+    }
+  }
+
+  private long count(String sql, String parameter) throws SQLException {
+    try (PreparedStatement statement = connection.prepareStatement(sql)) {
+      statement.setString(1, parameter);
+      try (ResultSet resultSet = statement.executeQuery()) {
+        resultSet.next();
+        return resultSet.getLong(1);
+      }
+    }
+  }
+
+  /**
+   * Entity manager factory of the portal database, configured like the one of the portal
+   */
+  private static LocalContainerEntityManagerFactoryBean entityManagerFactory(PostgresqlContainer container) {
+    DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+    beanFactory.registerSingleton("objectMapper", new ObjectMapper());
+    LocalContainerEntityManagerFactoryBean factory = new LocalContainerEntityManagerFactoryBean();
+    factory.setDataSource(
+        new DriverManagerDataSource(container.getJdbcUrl(), container.getUsername(), container.getPassword()));
+    factory.setPackagesToScan("org.highmed.numportal.domain");
+    factory.setPersistenceUnitName("aqlSearchBenchmark");
+    factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+    factory.getJpaPropertyMap().put(AvailableSettings.BEAN_CONTAINER, new SpringBeanContainer(beanFactory));
+    factory.getJpaPropertyMap().put(AvailableSettings.IMPLICIT_NAMING_STRATEGY, new SpringImplicitNamingStrategy());
+    factory.getJpaPropertyMap().put(AvailableSettings.PHYSICAL_NAMING_STRATEGY, new CamelCaseToUnderscoresNamingStrategy());
+    factory.getJpaPropertyMap().put("hibernate.order_by.default_null_ordering", "last");
+    factory.afterPropertiesSet();
+    return factory;
+  }
+
+  private void seed() throws SQLException {
+    try (Statement statement = connection.createStatement()) {
+      statement.execute("DELETE FROM aql WHERE owner_id = '" + OWNER_ID + "'");
+      statement.execute("INSERT INTO user_details(user_id, approved) VALUES ('" + OWNER_ID + "', true) ON CONFLICT DO NOTHING");
+    }
+    Random random = new Random(42);
+    String insert = "INSERT INTO aql(name, query, public_aql, create_date, modified_date, use, purpose, owner_id, "
+        + "name_translated, use_translated, purpose_translated) VALUES (?, 'SELECT e/ehr_id/value FROM EHR e', true, "
+        + "now() - make_interval(mins => ?), now(), ?, ?, ?, ?, ?, ?)";
+    try (PreparedStatement statement = connection.prepareStatement(insert)) {
+      for (int i = 0; i < SIZE; i++) {
+        String name = words(random, 3) + " " + i;
+        String use = "Patienten mit " + words(random, 6);
+        String purpose = "Auswertung von " + words(random, 8);
+        statement.setString(1, name);
+        statement.setInt(2, i);
+        statement.setString(3, use);
+        statement.setString(4, purpose);
+        statement.setString(5, OWNER_ID);
+        statement.setString(6, name);
+        statement.setString(7, use);
+        statement.setString(8, purpose);
+        statement.addBatch();
+        if (i % 1000 == 999) {
+          statement.executeBatch();
+        }
+      }
+      statement.executeBatch();
+    }
+  }
+
+  private static String words(Random random, int count) {
+    StringBuilder words = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      if (i > 0) {
+        words.append(' ');
+      }
+      words.append(WORDS[random.nextInt(WORDS.length)]);
+    }
+    return words.toString();
+  }
+}
@@ -0,0 +1,112 @@
+package org.highmed.numportal.benchmark;
+
+import org.highmed.numportal.properties.TemplateCacheProperties;
+import org.highmed.numportal.service.ehrbase.CompositionFlattener;
+import org.highmed.numportal.service.ehrbase.CompositionResponseDataBuilder;
+import org.highmed.numportal.service.metric.TemplateCacheMetrics;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nedap.archie.rm.composition.Composition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.xmlbeans.XmlException;
+import org.ehrbase.openehr.sdk.client.templateprovider.ClientTemplateProvider;
+import org.ehrbase.openehr.sdk.serialisation.flatencoding.FlatFormat;
+import org.ehrbase.openehr.sdk.serialisation.flatencoding.FlatJasonProvider;
+import org.ehrbase.openehr.sdk.serialisation.flatencoding.FlatJson;
+import org.ehrbase.openehr.sdk.serialisation.jsonencoding.CanonicalJson;
+import org.openehr.schemas.v1.OPERATIONALTEMPLATE;
+import org.openehr.schemas.v1.TemplateDocument;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the conversion of 1000 compositions of a query response into flat paths and values. The former chain wrote
+ * each composition tree to json text, parsed it into the reference model, marshalled it to flat json and parsed that
+ * again, the current path binds the tree to the reference model and walks it straight into the flat map. Run with
+ * mvn verify -Pbenchmark -Dbenchmark.includes=CompositionFlatteningBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class CompositionFlatteningBenchmark {
+
+  private static final int SIZE = 1000;
+
+  private static final String TEMPLATE_ID = "Corona_Anamnese";
+
+  private final ObjectMapper objectMapper = new ObjectMapper();
+
+  private List<Map<String, Object>> compositions;
+
+  private CompositionFlattener flattener;
+
+  private CompositionResponseDataBuilder builder;
+
+  private FlatJson flatJson;
+
+  @Setup
+  @SuppressWarnings("unchecked")
+  public void setup() throws IOException, XmlException {
+    OPERATIONALTEMPLATE template;
+    try (InputStream opt = getClass().getResourceAsStream("/testdata/corona_anamnese.opt")) {
+      template = TemplateDocument.Factory.parse(opt).getTemplate();
+    }
+    Map<String, Object> composition;
+    try (InputStream json = getClass().getResourceAsStream("/testdata/corona.json")) {
+      composition = objectMapper.readValue(json, Map.class);
+    }
+    compositions = Collections.nCopies(SIZE, composition);
+
+    flattener = new CompositionFlattener(new ClientTemplateProvider(null) {
+      @Override
+      public Optional<OPERATIONALTEMPLATE> find(String templateId) {
+        return Optional.of(template);
+      }
+    }, new TemplateCacheProperties(), new TemplateCacheMetrics(new SimpleMeterRegistry()));
+    flattener.initializeTemplateCache();
+    builder = new CompositionResponseDataBuilder(flattener);
+    flatJson = (FlatJson) new FlatJasonProvider(templateId -> Optional.of(template)).buildFlatJson(FlatFormat.SIM_SDT, TEMPLATE_ID);
+  }
+
+  @TearDown
+  public void tearDown() {
+    flattener.clearCaches();
+  }
+
+  @Benchmark
+  public List<Map<String, Object>> jsonRoundTrips() throws JsonProcessingException {
+    List<Map<String, Object>> result = new ArrayList<>(compositions.size());
+    for (Map<String, Object> composition : compositions) {
+      Composition rmComposition = new CanonicalJson().unmarshal(objectMapper.writeValueAsString(composition), Composition.class);
+      result.add(objectMapper.readValue(flatJson.marshal(rmComposition), Map.class));
+    }
+    return result;
+  }
+
+  @Benchmark
+  public List<Map<String, Object>> directConversion() {
+    return builder.createCompositionsMap(compositions);
+  }
+}
@@ -0,0 +1,115 @@
+package org.highmed.numportal.benchmark;
+
+import org.highmed.numportal.service.executors.EhrIdSet;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cohort set algebra on compact {@link EhrIdSet} with the former HashSet of uuid strings. Two cohorts of
+ * the given size overlapping by half are combined. Run with mvn verify -Pbenchmark -Dbenchmark.includes=EhrIdSetBenchmark,
+ * add -prof gc to the jmh arguments to compare allocations.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class EhrIdSetBenchmark {
+
+  @Param({"100000", "1000000", "5000000"})
+  private int size;
+
+  private List<String> firstIds;
+
+  private Set<String> firstHashSet;
+
+  private Set<String> secondHashSet;
+
+  private EhrIdSet firstEhrIdSet;
+
+  private EhrIdSet secondEhrIdSet;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    firstIds = new ArrayList<>(size);
+    List<String> secondIds = new ArrayList<>(size);
+    for (int i = 0; i < size; i++) {
+      String id = new UUID(random.nextLong(), random.nextLong()).toString();
+      firstIds.add(id);
+      secondIds.add(i % 2 == 0 ? id : new UUID(random.nextLong(), random.nextLong()).toString());
+    }
+    firstHashSet = new HashSet<>(firstIds);
+    secondHashSet = new HashSet<>(secondIds);
+    firstEhrIdSet = EhrIdSet.copyOf(firstHashSet);
+    secondEhrIdSet = EhrIdSet.copyOf(secondHashSet);
+  }
+
+  @Benchmark
+  public Set<String> hashSetBuild() {
+    return new HashSet<>(firstIds);
+  }
+
+  @Benchmark
+  public Set<String> ehrIdSetBuild() {
+    return EhrIdSet.copyOf(firstIds);
+  }
+
+  @Benchmark
+  public Set<String> hashSetIntersection() {
+    Set<String> intersection = new HashSet<>();
+    intersection.addAll(firstHashSet);
+    intersection.addAll(secondHashSet);
+    intersection.retainAll(firstHashSet);
+    intersection.retainAll(secondHashSet);
+    return intersection;
+  }
+
+  @Benchmark
+  public Set<String> ehrIdSetIntersection() {
+    return firstEhrIdSet.intersect(secondEhrIdSet);
+  }
+
+  @Benchmark
+  public Set<String> hashSetUnion() {
+    Set<String> union = new HashSet<>();
+    union.addAll(firstHashSet);
+    union.addAll(secondHashSet);
+    return union;
+  }
+
+  @Benchmark
+  public Set<String> ehrIdSetUnion() {
+    return firstEhrIdSet.union(secondEhrIdSet);
+  }
+
+  @Benchmark
+  public Set<String> hashSetExclude() {
+    Set<String> difference = new HashSet<>(firstHashSet);
+    difference.removeAll(secondHashSet);
+    return difference;
+  }
+
+  @Benchmark
+  public Set<String> ehrIdSetExclude() {
+    return firstEhrIdSet.minus(secondEhrIdSet);
+  }
+}
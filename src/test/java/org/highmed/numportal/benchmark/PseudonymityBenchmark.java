@@ -0,0 +1,211 @@
+package org.highmed.numportal.benchmark;
+
+import org.highmed.numportal.properties.FttpProperties;
+import org.highmed.numportal.properties.IntegrationMetricsProperties;
+import org.highmed.numportal.properties.PrivacyProperties;
+import org.highmed.numportal.properties.PseudonymityProperties;
+import org.highmed.numportal.properties.PseudonymsPsnWorkflowProperties;
+import org.highmed.numportal.service.ehrbase.PseudonymCache;
+import org.highmed.numportal.service.ehrbase.Pseudonymity;
+import org.highmed.numportal.service.metric.IntegrationMetrics;
+import org.highmed.numportal.service.metric.PseudonymityMetrics;
+
+import ca.uhn.fhir.context.FhirContext;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpRequest;
+import org.apache.http.HttpStatus;
+import org.apache.http.HttpVersion;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.hl7.fhir.r4.model.Identifier;
+import org.hl7.fhir.r4.model.Parameters;
+import org.hl7.fhir.r4.model.StringType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cpu time spent by {@link Pseudonymity} to resolve the pseudonyms of an export of 100k patients, on a
+ * single thread with the pseudonym cache disabled. The trusted third party is replaced by an in memory client answering
+ * each chunk with a prepared response, so request encoding, response parsing and matching are measured without network.
+ * The fake pseudonym benchmark measures the generated pseudonyms used for ids the trusted third party does not know.
+ * Run with mvn verify -Pbenchmark -Dbenchmark.includes=PseudonymityBenchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+public class PseudonymityBenchmark {
+
+  private static final int SIZE = 100000;
+
+  private static final int CHUNK_SIZE = 50;
+
+  private static final long PROJECT_ID = 7L;
+
+  private static final String ORIGINAL_VALUE = "value=\"";
+
+  private List<String> codexIds;
+
+  private List<String> unknownIds;
+
+  private Pseudonymity pseudonymity;
+
+  private Pseudonymity fakePseudonymity;
+
+  @Setup
+  public void setup() {
+    FhirContext fhirContext = FhirContext.forR4();
+    codexIds = new ArrayList<>(SIZE);
+    unknownIds = new ArrayList<>(SIZE);
+    for (int i = 0; i < SIZE; i++) {
+      String suffix = "000000" + Integer.toString(i, 36).toUpperCase(Locale.ROOT);
+      codexIds.add("codex_" + suffix.substring(suffix.length() - 6));
+      unknownIds.add(UUID.nameUUIDFromBytes(String.valueOf(i).getBytes(StandardCharsets.UTF_8)).toString());
+    }
+
+    Map<String, byte[]> responses = new HashMap<>();
+    for (int from = 0; from < SIZE; from += CHUNK_SIZE) {
+      Parameters parameters = new Parameters();
+      for (String original : codexIds.subList(from, Math.min(SIZE, from + CHUNK_SIZE))) {
+        Parameters.ParametersParameterComponent pseudonym = new Parameters.ParametersParameterComponent(new StringType("pseudonym"));
+        pseudonym.addPart().setName("original").setValue(new Identifier().setValue(original));
+        pseudonym.addPart().setName("pseudonym").setValue(new Identifier().setValue("extern_" + PROJECT_ID + "_" + original.substring(6)));
+        parameters.addParameter(pseudonym);
+      }
+      responses.put(codexIds.get(from), fhirContext.newXmlParser().encodeResourceToString(parameters).getBytes(StandardCharsets.UTF_8));
+    }
+
+    pseudonymity = pseudonymity(fhirContext, new TrustedThirdPartyClient(responses), false);
+    fakePseudonymity = pseudonymity(fhirContext, new TrustedThirdPartyClient(responses), true);
+  }
+
+  @TearDown
+  public void tearDown() {
+    pseudonymity.shutdown();
+    fakePseudonymity.shutdown();
+  }
+
+  @Benchmark
+  public List<String> trustedThirdParty() {
+    return pseudonymity.getPseudonyms(codexIds, PROJECT_ID);
+  }
+
+  @Benchmark
+  public List<String> fakePseudonyms() {
+    return fakePseudonymity.getPseudonyms(unknownIds, PROJECT_ID);
+  }
+
+  private Pseudonymity pseudonymity(FhirContext fhirContext, CloseableHttpClient httpClient, boolean fake) {
+    FttpProperties fttpProperties = new FttpProperties();
+    fttpProperties.setUrl("http://localhost/ttp-fhir/fhir/dispatcher/$requestPsnWorkflow");
+    PseudonymsPsnWorkflowProperties workflowProperties = new PseudonymsPsnWorkflowProperties();
+    workflowProperties.setStudy("num");
+    workflowProperties.setSource("codex");
+    workflowProperties.setTarget("extern_");
+    workflowProperties.setApiKey("key");
+    workflowProperties.setEvent("num.get_extern_psn");
+    PrivacyProperties privacyProperties = new PrivacyProperties();
+    privacyProperties.setPseudonomityChunksSize(CHUNK_SIZE);
+    privacyProperties.setPseudonymitySecret("benchmarkSecret");
+    PseudonymityProperties pseudonymityProperties = new PseudonymityProperties();
+    pseudonymityProperties.setParallelism(1);
+    pseudonymityProperties.setCacheEnabled(false);
+
+    Pseudonymity result =
+        new Pseudonymity(
+            httpClient,
+            fttpProperties,
+            fhirContext,
+            workflowProperties,
+            privacyProperties,
+            pseudonymityProperties,
+            new PseudonymCache(pseudonymityProperties),
+            new PseudonymityMetrics(new SimpleMeterRegistry()),
+            new IntegrationMetrics(new SimpleMeterRegistry(), new IntegrationMetricsProperties()));
+    ReflectionTestUtils.setField(result, "fake3rdPartyPseudonymEnabled", fake);
+    return result;
+  }
+
+  /**
+   * Answers a pseudonym request with the prepared response of the chunk starting with the first original of the request
+   */
+  private static class TrustedThirdPartyClient extends CloseableHttpClient {
+
+    private final Map<String, byte[]> responses;
+
+    TrustedThirdPartyClient(Map<String, byte[]> responses) {
+      this.responses = responses;
+    }
+
+    @Override
+    protected CloseableHttpResponse doExecute(HttpHost target, HttpRequest request, HttpContext context) throws IOException {
+      String body = EntityUtils.toString(((HttpPost) request).getEntity(), StandardCharsets.UTF_8);
+      int originalStart = body.indexOf(ORIGINAL_VALUE + "codex_") + ORIGINAL_VALUE.length();
+      String firstOriginal = body.substring(originalStart, originalStart + 12);
+
+      Response response = new Response();
+      response.setEntity(new ByteArrayEntity(responses.get(firstOriginal), ContentType.create("application/fhir+xml", StandardCharsets.UTF_8)));
+      return response;
+    }
+
+    @Override
+    public void close() {
+      // nothing to release
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public HttpParams getParams() {
+      throw new UnsupportedOperationException();
+    }
+
+    @Override
+    @SuppressWarnings("deprecation")
+    public ClientConnectionManager getConnectionManager() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  private static class Response extends BasicHttpResponse implements CloseableHttpResponse {
+
+    Response() {
+      super(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK");
+    }
+
+    @Override
+    public void close() {
+      // nothing to release
+    }
+  }
+}
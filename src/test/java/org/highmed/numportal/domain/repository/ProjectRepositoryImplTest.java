@@ -59,6 +59,8 @@ public class ProjectRepositoryImplTest {
         TypedQuery resultQuery = Mockito.mock(TypedQuery.class);
         Mockito.when(entityManager.createQuery(Mockito.any(CriteriaQuery.class))).thenReturn(resultQuery);
         Mockito.when(root.get("id")).thenReturn(Mockito.mock(Path.class));
+        Path coordinator = Mockito.mock(Path.class);
+        Mockito.when(root.get("coordinator")).thenReturn(coordinator);
         CriteriaQuery select = Mockito.mock(CriteriaQuery.class);
         Mockito.when(selectProjectQuery.select(Mockito.any())).thenReturn(select);
         CriteriaQuery where = Mockito.mock(CriteriaQuery.class);
@@ -75,5 +77,8 @@ public class ProjectRepositoryImplTest {
                 .sortOrder(Sort.Order.asc("status"))
                 .build();
         projectRepositoryImpl.findProjects(ps, PageRequest.of(0, 100));
+        Mockito.verify(criteriaBuilder, Mockito.times(1)).construct(Mockito.eq(Project.class), Mockito.any(Selection[].class));
+        Mockito.verify(coordinator, Mockito.times(1)).get("userId");
+        Mockito.verify(root, Mockito.never()).fetch(Mockito.anyString());
     }
 }
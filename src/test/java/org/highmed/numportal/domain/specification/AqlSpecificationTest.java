@@ -1,6 +1,7 @@
 package org.highmed.numportal.domain.specification;
 
 import jakarta.persistence.criteria.*;
+import org.junit.Assert;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
@@ -10,6 +11,7 @@ import org.springframework.data.domain.Sort;
 import org.highmed.numportal.domain.dto.Language;
 import org.highmed.numportal.domain.dto.SearchFilter;
 import org.highmed.numportal.domain.model.Aql;
+import org.highmed.numportal.domain.model.AqlCategory;
 
 import java.util.HashMap;
 import java.util.HashSet;
@@ -50,9 +52,9 @@ public class AqlSpecificationTest {
         Mockito.when(root.join("owner", JoinType.INNER)).thenReturn(owner);
         Path publicAql = Mockito.mock(Path.class);
         Mockito.when(root.get("publicAql")).thenReturn(publicAql);
-        Join aqlCategory = Mockito.mock(Join.class);
-        Mockito.when(root.join("category", JoinType.LEFT)).thenReturn(aqlCategory);
         Mockito.when(owner.get("userId")).thenReturn(Mockito.mock(Path.class));
+        Root<Aql> matching = mockSearchSubqueries();
+        Root<AqlCategory> category = mockCategorySubquery();
         Map<String, String> filter = new HashMap<>();
         filter.put("search", "some search input");
         Set<String> usersUUID = new HashSet<>();
@@ -69,18 +71,22 @@ public class AqlSpecificationTest {
         Mockito.verify(root, Mockito.times(1)).get("publicAql");
         Mockito.verify(owner, Mockito.times(2)).get("userId");
         Mockito.verify(root, Mockito.times(1)).get("nameTranslated");
-        Mockito.verify(root, Mockito.never()).get("name");
-        Mockito.verify(aqlCategory, Mockito.times(1)).get("name");
+        Mockito.verify(matching, Mockito.times(2)).get("nameTranslated");
+        Mockito.verify(matching, Mockito.times(1)).get("useTranslated");
+        Mockito.verify(matching, Mockito.never()).get("name");
+        Mockito.verify(category, Mockito.times(1)).get("name");
+        Mockito.verify(root, Mockito.never()).join("category", JoinType.LEFT);
     }
+
     @Test
     public void searchByGermanNameSpecificationTest() {
         Join owner = Mockito.mock(Join.class);
         Mockito.when(root.join("owner", JoinType.INNER)).thenReturn(owner);
         Path publicAql = Mockito.mock(Path.class);
         Mockito.when(root.get("publicAql")).thenReturn(publicAql);
-        Join aqlCategory = Mockito.mock(Join.class);
-        Mockito.when(root.join("category", JoinType.LEFT)).thenReturn(aqlCategory);
         Mockito.when(owner.get("userId")).thenReturn(Mockito.mock(Path.class));
+        Root<Aql> matching = mockSearchSubqueries();
+        Root<AqlCategory> category = mockCategorySubquery();
         Map<String, String> filter = new HashMap<>();
         filter.put("search", "some search input");
         AqlSpecification ps = AqlSpecification.builder()
@@ -90,9 +96,62 @@ public class AqlSpecificationTest {
                 .filter(filter)
                 .build();
         ps.toPredicate(root, query, criteriaBuilder);
-        Mockito.verify(root, Mockito.times(1)).get("name");
-        Mockito.verify(root, Mockito.never()).get("nameTranslated");
-        Mockito.verify(aqlCategory, Mockito.times(1)).get("name");
+        Mockito.verify(matching, Mockito.times(2)).get("name");
+        Mockito.verify(matching, Mockito.times(1)).get("purpose");
+        Mockito.verify(matching, Mockito.never()).get("nameTranslated");
+        Mockito.verify(criteriaBuilder, Mockito.times(1))
+                .function(Mockito.eq("aql_search_matches_de"), Mockito.eq(Boolean.class), Mockito.any(Expression[].class));
+        Mockito.verify(category, Mockito.times(1)).get("name");
+    }
+
+    @Test
+    public void searchRankedByFullTextSpecificationTest() {
+        Join owner = Mockito.mock(Join.class);
+        Mockito.when(root.join("owner", JoinType.INNER)).thenReturn(owner);
+        mockSearchSubqueries();
+        mockCategorySubquery();
+        Map<String, String> filter = new HashMap<>();
+        filter.put("search", "blood pres");
+        AqlSpecification ps = AqlSpecification.builder()
+                .loggedInUserId("userId")
+                .language(Language.en)
+                .filter(filter)
+                .build();
+        ps.toPredicate(root, query, criteriaBuilder);
+        Mockito.verify(criteriaBuilder, Mockito.times(1))
+                .function(Mockito.eq("aql_search_rank_en"), Mockito.eq(Float.class), Mockito.any(Expression[].class));
+        Mockito.verify(criteriaBuilder, Mockito.times(2)).literal("blood:* & pres:*");
+        Mockito.verify(root, Mockito.times(1)).get("createDate");
+        Mockito.verify(query, Mockito.times(1)).orderBy(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void searchSortedByNameIsNotRankedSpecificationTest() {
+        Join owner = Mockito.mock(Join.class);
+        Mockito.when(root.join("owner", JoinType.INNER)).thenReturn(owner);
+        mockSearchSubqueries();
+        mockCategorySubquery();
+        Map<String, String> filter = new HashMap<>();
+        filter.put("search", "blood");
+        AqlSpecification ps = AqlSpecification.builder()
+                .loggedInUserId("userId")
+                .language(Language.de)
+                .filter(filter)
+                .sortOrder(Sort.Order.asc("name"))
+                .build();
+        ps.toPredicate(root, query, criteriaBuilder);
+        Mockito.verify(criteriaBuilder, Mockito.never())
+                .function(Mockito.eq("aql_search_rank_de"), Mockito.eq(Float.class), Mockito.any(Expression[].class));
+        Mockito.verify(query, Mockito.never()).orderBy(Mockito.any(), Mockito.any());
+    }
+
+    @Test
+    public void toPrefixTextQueryTest() {
+        Assert.assertEquals("Blut:* & druck:*", AqlSpecification.toPrefixTextQuery(" Blut-druck "));
+        Assert.assertEquals("größe:* & 2:*", AqlSpecification.toPrefixTextQuery("größe & 2 :*"));
+        Assert.assertNull(AqlSpecification.toPrefixTextQuery("  "));
+        Assert.assertNull(AqlSpecification.toPrefixTextQuery("!&|"));
+        Assert.assertNull(AqlSpecification.toPrefixTextQuery(null));
     }
 
     @Test
@@ -160,4 +219,28 @@ public class AqlSpecificationTest {
         Mockito.verify(aqlCategory, Mockito.times(1)).get("name");
         Mockito.verify(query, Mockito.times(1)).orderBy(criteriaBuilder.desc(Mockito.any()));
     }
+
+    private Subquery<Long> subquery;
+
+    @SuppressWarnings("unchecked")
+    private Root<Aql> mockSearchSubqueries() {
+        Path id = Mockito.mock(Path.class);
+        Mockito.when(root.get("id")).thenReturn(id);
+        Path category = Mockito.mock(Path.class);
+        Mockito.when(root.get("category")).thenReturn(category);
+        Mockito.when(category.get("id")).thenReturn(Mockito.mock(Path.class));
+        subquery = Mockito.mock(Subquery.class);
+        Mockito.when(query.subquery(Long.class)).thenReturn(subquery);
+        Mockito.when(subquery.select(Mockito.any())).thenReturn(subquery);
+        Root<Aql> matching = Mockito.mock(Root.class);
+        Mockito.when(subquery.from(Aql.class)).thenReturn(matching);
+        return matching;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Root<AqlCategory> mockCategorySubquery() {
+        Root<AqlCategory> category = Mockito.mock(Root.class);
+        Mockito.when(subquery.from(AqlCategory.class)).thenReturn(category);
+        return category;
+    }
 }
@@ -0,0 +1,173 @@
+package org.highmed.numportal.integrationtesting.tests;
+
+import org.highmed.numportal.domain.dto.Language;
+import org.highmed.numportal.domain.dto.SearchCriteria;
+import org.highmed.numportal.domain.model.Aql;
+import org.highmed.numportal.domain.model.Project;
+import org.highmed.numportal.domain.model.ProjectStatus;
+import org.highmed.numportal.domain.model.Roles;
+import org.highmed.numportal.domain.model.admin.UserDetails;
+import org.highmed.numportal.domain.repository.AqlRepository;
+import org.highmed.numportal.domain.repository.ProjectRepository;
+import org.highmed.numportal.domain.repository.UserDetailsRepository;
+import org.highmed.numportal.domain.specification.AqlSpecification;
+import org.highmed.numportal.domain.specification.ProjectSpecification;
+
+import org.hamcrest.Matcher;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+
+/**
+ * Projects and aql queries sorted by author are ordered case insensitive by the full name stored in the database,
+ * authors without a name come last in both directions
+ */
+public class AuthorSortIT extends IntegrationTest {
+
+  private static final String SEARCH = "authorsortcheck";
+
+  private static final String NO_NAME_ONE = "author-sort-no-name-1";
+
+  private static final String NO_NAME_TWO = "author-sort-no-name-2";
+
+  private static final int PAGE_SIZE = 3;
+
+  @Autowired
+  private ProjectRepository projectRepository;
+
+  @Autowired
+  private AqlRepository aqlRepository;
+
+  @Autowired
+  private UserDetailsRepository userDetailsRepository;
+
+  private final List<UserDetails> authors = new ArrayList<>();
+
+  private final List<Project> projects = new ArrayList<>();
+
+  private final List<Aql> aqls = new ArrayList<>();
+
+  @Before
+  public void setupAuthors() {
+    authors.add(author("author-sort-dora", "Dora"));
+    authors.add(author(NO_NAME_ONE, null));
+    authors.add(author("author-sort-anna", "anna"));
+    authors.add(author("author-sort-carl", "carl"));
+    authors.add(author(NO_NAME_TWO, null));
+    authors.add(author("author-sort-bert", "Bert"));
+
+    for (UserDetails author : authors) {
+      projects.add(projectRepository.save(Project.builder()
+                                                 .name(SEARCH + " project " + author.getUserId())
+                                                 .goal("Default")
+                                                 .startDate(LocalDate.now())
+                                                 .endDate(LocalDate.now())
+                                                 .createDate(OffsetDateTime.now())
+                                                 .modifiedDate(OffsetDateTime.now())
+                                                 .coordinator(author)
+                                                 .status(ProjectStatus.APPROVED)
+                                                 .build()));
+      aqls.add(aqlRepository.save(Aql.builder()
+                                     .name(SEARCH + " aql " + author.getUserId())
+                                     .query("SELECT e/ehr_id/value FROM EHR e")
+                                     .publicAql(true)
+                                     .owner(author)
+                                     .createDate(OffsetDateTime.now())
+                                     .modifiedDate(OffsetDateTime.now())
+                                     .build()));
+    }
+  }
+
+  @After
+  public void cleanUp() {
+    projectRepository.deleteAll(projects);
+    aqlRepository.deleteAll(aqls);
+    userDetailsRepository.deleteAll(authors);
+  }
+
+  @Test
+  public void shouldPageProjectsByAuthorAscending() {
+    Sort.Order sortOrder = Sort.Order.asc(ProjectSpecification.COORDINATOR_NAME);
+    List<String> secondPage = projectAuthors(sortOrder, 1);
+
+    assertThat(projectAuthors(sortOrder, 0), contains("author-sort-anna", "author-sort-bert", "author-sort-carl"));
+    assertThat(secondPage.subList(0, 1), contains("author-sort-dora"));
+    assertThat(secondPage.subList(1, 3), containsNoNameAuthors());
+  }
+
+  @Test
+  public void shouldPageProjectsByAuthorDescending() {
+    Sort.Order sortOrder = Sort.Order.desc(ProjectSpecification.COORDINATOR_NAME);
+    List<String> secondPage = projectAuthors(sortOrder, 1);
+
+    assertThat(projectAuthors(sortOrder, 0), contains("author-sort-dora", "author-sort-carl", "author-sort-bert"));
+    assertThat(secondPage.subList(0, 1), contains("author-sort-anna"));
+    assertThat(secondPage.subList(1, 3), containsNoNameAuthors());
+  }
+
+  @Test
+  public void shouldPageAqlsByAuthorAscending() {
+    Sort.Order sortOrder = Sort.Order.asc("author");
+    List<String> secondPage = aqlAuthors(sortOrder, 1);
+
+    assertThat(aqlAuthors(sortOrder, 0), contains("author-sort-anna", "author-sort-bert", "author-sort-carl"));
+    assertThat(secondPage.subList(0, 1), contains("author-sort-dora"));
+    assertThat(secondPage.subList(1, 3), containsNoNameAuthors());
+  }
+
+  @Test
+  public void shouldPageAqlsByAuthorDescending() {
+    Sort.Order sortOrder = Sort.Order.desc("author");
+    List<String> secondPage = aqlAuthors(sortOrder, 1);
+
+    assertThat(aqlAuthors(sortOrder, 0), contains("author-sort-dora", "author-sort-carl", "author-sort-bert"));
+    assertThat(secondPage.subList(0, 1), contains("author-sort-anna"));
+    assertThat(secondPage.subList(1, 3), containsNoNameAuthors());
+  }
+
+  private UserDetails author(String userId, String fullName) {
+    return userDetailsRepository.save(UserDetails.builder().userId(userId).fullName(fullName).approved(true).build());
+  }
+
+  private List<String> projectAuthors(Sort.Order sortOrder, int page) {
+    ProjectSpecification specification = ProjectSpecification.builder()
+                                                              .roles(List.of(Roles.STUDY_COORDINATOR))
+                                                              .loggedInUserId("author-sort-dora")
+                                                              .filter(Map.of(SearchCriteria.FILTER_SEARCH_BY_KEY, SEARCH))
+                                                              .sortOrder(sortOrder)
+                                                              .language(Language.de)
+                                                              .build();
+    return projectRepository.findProjects(specification, PageRequest.of(page, PAGE_SIZE)).getContent().stream()
+                            .map(project -> project.getCoordinator().getUserId())
+                            .toList();
+  }
+
+  private List<String> aqlAuthors(Sort.Order sortOrder, int page) {
+    AqlSpecification specification = AqlSpecification.builder()
+                                                     .loggedInUserId("author-sort-dora")
+                                                     .filter(Map.of(SearchCriteria.FILTER_SEARCH_BY_KEY, SEARCH))
+                                                     .sortOrder(sortOrder)
+                                                     .language(Language.de)
+                                                     .build();
+    return aqlRepository.findAll(specification, PageRequest.of(page, PAGE_SIZE)).getContent().stream()
+                        .map(aql -> aql.getOwner().getUserId())
+                        .toList();
+  }
+
+  private static Matcher<Iterable<? extends String>> containsNoNameAuthors() {
+    return containsInAnyOrder(NO_NAME_ONE, NO_NAME_TWO);
+  }
+}
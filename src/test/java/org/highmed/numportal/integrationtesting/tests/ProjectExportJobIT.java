@@ -0,0 +1,134 @@
+package org.highmed.numportal.integrationtesting.tests;
+
+import org.highmed.numportal.domain.model.Cohort;
+import org.highmed.numportal.domain.model.CohortAql;
+import org.highmed.numportal.domain.model.CohortGroup;
+import org.highmed.numportal.domain.model.ExportJob;
+import org.highmed.numportal.domain.model.ExportJobStatus;
+import org.highmed.numportal.domain.model.ExportType;
+import org.highmed.numportal.domain.model.Operator;
+import org.highmed.numportal.domain.model.Organization;
+import org.highmed.numportal.domain.model.Project;
+import org.highmed.numportal.domain.model.ProjectStatus;
+import org.highmed.numportal.domain.model.Type;
+import org.highmed.numportal.domain.model.admin.UserDetails;
+import org.highmed.numportal.domain.repository.ExportJobRepository;
+import org.highmed.numportal.domain.repository.OrganizationRepository;
+import org.highmed.numportal.domain.repository.ProjectRepository;
+import org.highmed.numportal.domain.repository.UserDetailsRepository;
+import org.highmed.numportal.service.ProjectService;
+import org.highmed.numportal.service.export.ExportJobService;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockserver.model.HttpRequest;
+import org.mockserver.model.HttpResponse;
+import org.mockserver.model.HttpStatusCode;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.core.Is.is;
+
+public class ProjectExportJobIT extends IntegrationTest {
+
+  private static final String RESEARCHER_ID = "export-job-researcher";
+
+  private static final String EHR_IDS_QUERY = "SELECT e/ehr_id/value FROM EHR e";
+
+  @Autowired
+  private ProjectService projectService;
+
+  @Autowired
+  private ExportJobService exportJobService;
+
+  @Autowired
+  private ExportJobRepository exportJobRepository;
+
+  @Autowired
+  private ProjectRepository projectRepository;
+
+  @Autowired
+  private UserDetailsRepository userDetailsRepository;
+
+  @Autowired
+  private OrganizationRepository organizationRepository;
+
+  private Project project;
+
+  @Before
+  public void setupProject() throws Exception {
+    ehrClient
+        .when(HttpRequest.request().withMethod("POST").withHeaders(AUTH_HEADER).withPath("/ehrbase/rest/openehr/v1/query/aql/"))
+        .respond(HttpResponse.response().withStatusCode(HttpStatusCode.OK_200.code()).withBody(IOUtils.toString(Objects.requireNonNull(getClass().getResourceAsStream("/testdata/ehr_id_response.json")), StandardCharsets.UTF_8), org.mockserver.model.MediaType.JSON_UTF_8));
+
+    Organization organization = organizationRepository.findByName("Organization A").orElseThrow();
+    UserDetails researcher = userDetailsRepository.save(
+        UserDetails.builder().userId(RESEARCHER_ID).approved(true).organization(organization).build());
+
+    CohortGroup root = CohortGroup.builder().type(Type.GROUP).operator(Operator.AND).children(new ArrayList<>()).build();
+    CohortGroup nested = CohortGroup.builder().type(Type.GROUP).operator(Operator.OR).parent(root).children(new ArrayList<>()).build();
+    root.getChildren().add(leaf(root, 1L));
+    root.getChildren().add(nested);
+    nested.getChildren().add(leaf(nested, 2L));
+    nested.getChildren().add(leaf(nested, 3L));
+
+    project = projectRepository.save(Project.builder()
+                                            .name("export job project")
+                                            .goal("Default")
+                                            .startDate(LocalDate.now())
+                                            .endDate(LocalDate.now())
+                                            .createDate(OffsetDateTime.now())
+                                            .modifiedDate(OffsetDateTime.now())
+                                            .coordinator(researcher)
+                                            .researchers(new ArrayList<>(List.of(researcher)))
+                                            .templates(Map.of("Corona_Anamnese", "Corona_Anamnese"))
+                                            .cohort(Cohort.builder().name("export job cohort").cohortGroup(root).build())
+                                            .status(ProjectStatus.PUBLISHED)
+                                            .build());
+  }
+
+  @After
+  public void cleanUp() {
+    exportJobRepository.deleteAll();
+    projectRepository.deleteById(project.getId());
+  }
+
+  @Test
+  public void shouldCompleteExportJobOfProjectWithNestedCohort() throws Exception {
+    ExportJob job = projectService.submitExport(
+        "SELECT c FROM EHR e CONTAINS COMPOSITION c", project.getId(), RESEARCHER_ID, ExportType.json, false);
+
+    long deadline = System.currentTimeMillis() + 30000;
+    while (!isFinished(exportJobRepository.findById(job.getId()).orElseThrow()) && System.currentTimeMillis() < deadline) {
+      Thread.sleep(100);
+    }
+
+    assertThat(job.getStatus(), is(ExportJobStatus.COMPLETED));
+    assertThat(Files.size(exportJobService.getResult(job).getFile().toPath()), greaterThan(0L));
+    assertThat(exportJobRepository.findById(job.getId()).orElseThrow().getSize(), is(job.getSize()));
+  }
+
+  private static boolean isFinished(ExportJob job) {
+    return job.getStatus() == ExportJobStatus.COMPLETED || job.getStatus() == ExportJobStatus.FAILED;
+  }
+
+  private static CohortGroup leaf(CohortGroup parent, Long aqlId) {
+    return CohortGroup.builder()
+                      .type(Type.AQL)
+                      .parent(parent)
+                      .query(CohortAql.builder().id(aqlId).name("aql " + aqlId).query(EHR_IDS_QUERY).build())
+                      .build();
+  }
+}
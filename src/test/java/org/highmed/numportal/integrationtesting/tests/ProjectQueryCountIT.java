@@ -0,0 +1,119 @@
+package org.highmed.numportal.integrationtesting.tests;
+
+import org.highmed.numportal.domain.dto.Language;
+import org.highmed.numportal.domain.model.Organization;
+import org.highmed.numportal.domain.model.Project;
+import org.highmed.numportal.domain.model.ProjectStatus;
+import org.highmed.numportal.domain.model.Roles;
+import org.highmed.numportal.domain.model.admin.UserDetails;
+import org.highmed.numportal.domain.repository.OrganizationRepository;
+import org.highmed.numportal.domain.repository.ProjectRepository;
+import org.highmed.numportal.domain.repository.UserDetailsRepository;
+import org.highmed.numportal.domain.specification.ProjectSpecification;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.test.context.TestPropertySource;
+
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.hamcrest.core.Is.is;
+
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+public class ProjectQueryCountIT extends IntegrationTest {
+
+  private static final int PROJECTS = 50;
+
+  private static final String COORDINATOR_ID = "query-count-coordinator";
+
+  @Autowired
+  private ProjectRepository projectRepository;
+
+  @Autowired
+  private UserDetailsRepository userDetailsRepository;
+
+  @Autowired
+  private OrganizationRepository organizationRepository;
+
+  @Autowired
+  private EntityManagerFactory entityManagerFactory;
+
+  private final List<Project> projects = new ArrayList<>();
+
+  private Statistics statistics;
+
+  @Before
+  public void setupProjects() {
+    Organization organizationA = organizationRepository.findByName("Organization A").orElseThrow();
+    Organization organizationB = organizationRepository.findByName("Organization B").orElseThrow();
+    UserDetails coordinator = userDetailsRepository.save(
+        UserDetails.builder().userId(COORDINATOR_ID).approved(true).organization(organizationA).build());
+    List<UserDetails> researchers = new ArrayList<>();
+    for (int i = 0; i < 3; i++) {
+      researchers.add(userDetailsRepository.save(UserDetails.builder()
+                                                            .userId("query-count-researcher-" + i)
+                                                            .approved(true)
+                                                            .organization(i % 2 == 0 ? organizationA : organizationB)
+                                                            .build()));
+    }
+    for (int i = 0; i < PROJECTS; i++) {
+      projects.add(projectRepository.save(Project.builder()
+                                                 .name("query count project " + i)
+                                                 .goal("Default")
+                                                 .startDate(LocalDate.now())
+                                                 .endDate(LocalDate.now())
+                                                 .createDate(OffsetDateTime.now())
+                                                 .modifiedDate(OffsetDateTime.now())
+                                                 .coordinator(coordinator)
+                                                 .researchers(new ArrayList<>(researchers))
+                                                 .status(ProjectStatus.DRAFT)
+                                                 .build()));
+    }
+    statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    statistics.clear();
+  }
+
+  @After
+  public void cleanUp() {
+    projectRepository.deleteAll(projects);
+  }
+
+  @Test
+  public void shouldListPageOfProjectsInTwoStatements() {
+    ProjectSpecification specification = ProjectSpecification.builder()
+                                                              .roles(List.of(Roles.STUDY_COORDINATOR))
+                                                              .loggedInUserId(COORDINATOR_ID)
+                                                              .sortOrder(Sort.Order.desc("modifiedDate"))
+                                                              .language(Language.de)
+                                                              .build();
+
+    Page<Project> page = projectRepository.findProjects(specification, PageRequest.of(0, PROJECTS));
+
+    assertThat(page.getContent().size(), is(PROJECTS));
+    assertThat(page.getContent().get(0).getCoordinator().getUserId(), is(COORDINATOR_ID));
+    assertThat(statistics.getPrepareStatementCount(), lessThanOrEqualTo(2L));
+  }
+
+  @Test
+  public void shouldLoadProjectDetailsInOneStatement() {
+    Project project = projectRepository.findDetailById(projects.get(0).getId()).orElseThrow();
+
+    assertThat(project.getResearchers().size(), is(3));
+    assertThat(project.getResearchers().stream().map(researcher -> researcher.getOrganization().getName()).distinct().count(), is(2L));
+    assertThat(project.getCoordinator().getOrganization().getName(), is("Organization A"));
+    assertThat(statistics.getPrepareStatementCount(), is(1L));
+  }
+}
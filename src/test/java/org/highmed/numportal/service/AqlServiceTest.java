@@ -151,8 +151,6 @@ public class AqlServiceTest {
             .build();
     Mockito.when(aqlRepository.findAll(Mockito.any(AqlSpecification.class), Mockito.any(Pageable.class)))
             .thenReturn(new PageImpl<>(Arrays.asList(aqlOne, aqlTwo)));
-    when(userService.getOwner("approvedUserId")).thenReturn(User.builder().id("approvedUserId").firstName("Approver first name").lastName("Doe").build());
-    when(userService.getOwner("2ndApprovedUserId")).thenReturn(User.builder().id("2ndApprovedUserId").firstName("Second approver first name").lastName("Doe").build());
     when(privacyProperties.getMinHits()).thenReturn(2);
     Mockito.when(aqlEditorAqlService.validateAql(Mockito.any(Result.class)))
             .thenReturn(QueryValidationResponse.builder()
@@ -544,6 +542,21 @@ public class AqlServiceTest {
     Assert.assertNull(aqlSpecification.getFilter());
   }
 
+  @Test
+  public void getVisibleAqlsRankedBySearch() {
+    Pageable pageRequest = PageRequest.of(0, 100);
+    ArgumentCaptor<AqlSpecification> specArgumentCaptor = ArgumentCaptor.forClass(AqlSpecification.class);
+    ArgumentCaptor<Pageable> pageableCapture = ArgumentCaptor.forClass(Pageable.class);
+    Map<String, String> filter = new HashMap<>();
+    filter.put(SearchCriteria.FILTER_SEARCH_BY_KEY, "blood pressure");
+    aqlService.getVisibleAqls("approvedCriteriaEditorId", pageRequest, SearchCriteria.builder()
+            .filter(filter)
+            .build());
+    Mockito.verify(aqlRepository, Mockito.times(1)).findAll(specArgumentCaptor.capture(), pageableCapture.capture());
+    Assert.assertEquals(pageRequest, pageableCapture.getValue());
+    Assert.assertNull(specArgumentCaptor.getValue().getSortOrder());
+  }
+
   @Test(expected = BadRequestException.class)
   public void shouldHandleInvalidSortTest() {
     Pageable pageable = PageRequest.of(0,50);
@@ -581,33 +594,33 @@ public class AqlServiceTest {
 
   @Test
   public void getVisibleAqlsWithPaginationAndSortByAuthorAsc() {
-    List<Aql> filteredAql = getVisibleAqlsWithSortByAuthor("ASC");
-    Assert.assertEquals(Long.valueOf(1L), filteredAql.get(0).getId());
+    AqlSpecification aqlSpecification = getVisibleAqlsWithSortByAuthor("ASC");
+    Assert.assertEquals(Sort.Order.asc("author"), aqlSpecification.getSortOrder());
   }
   @Test
   public void getVisibleAqlsWithPaginationAndSortByAuthorDesc() {
-    List<Aql> filteredAql = getVisibleAqlsWithSortByAuthor("DESC");
-    Assert.assertEquals(Long.valueOf(2L), filteredAql.get(0).getId());
+    AqlSpecification aqlSpecification = getVisibleAqlsWithSortByAuthor("DESC");
+    Assert.assertEquals(Sort.Order.desc("author"), aqlSpecification.getSortOrder());
   }
 
-  private List<Aql> getVisibleAqlsWithSortByAuthor(String sortDir) {
+  private AqlSpecification getVisibleAqlsWithSortByAuthor(String sortDir) {
     Pageable pageRequest = PageRequest.of(0, 100);
     ArgumentCaptor<AqlSpecification> specArgumentCaptor = ArgumentCaptor.forClass(AqlSpecification.class);
     ArgumentCaptor<Pageable> pageableCapture = ArgumentCaptor.forClass(Pageable.class);
     Map<String, String> filter = new HashMap<>();
     filter.put(SearchCriteria.FILTER_SEARCH_BY_KEY, "search dummy");
-    Mockito.when(aqlRepository.count()).thenReturn(100L);
-    Page<Aql> aqlPage = aqlService.getVisibleAqls("approvedCriteriaEditorId", pageRequest, SearchCriteria.builder()
+    aqlService.getVisibleAqls("approvedCriteriaEditorId", pageRequest, SearchCriteria.builder()
             .sortBy("author")
             .sort(sortDir)
             .filter(filter)
             .build());
     Mockito.verify(aqlRepository, Mockito.times(1)).findAll(specArgumentCaptor.capture(), pageableCapture.capture());
+    Mockito.verify(aqlRepository, Mockito.never()).count();
     Pageable capturedInput = pageableCapture.getValue();
     Assert.assertEquals(pageRequest, capturedInput);
     AqlSpecification aqlSpecification = specArgumentCaptor.getValue();
     Assert.assertEquals("approvedCriteriaEditorId", aqlSpecification.getLoggedInUserId());
-    return aqlPage.getContent();
+    return aqlSpecification;
   }
 
   @Test
@@ -17,6 +17,7 @@ import org.highmed.numportal.domain.model.admin.UserDetails;
 import org.highmed.numportal.domain.repository.CohortRepository;
 import org.highmed.numportal.domain.repository.ProjectRepository;
 import org.highmed.numportal.domain.templates.ExceptionsTemplate;
+import org.highmed.numportal.properties.CohortDistributionProperties;
 import org.highmed.numportal.properties.PrivacyProperties;
 import org.highmed.numportal.service.ehrbase.EhrBaseService;
 import org.highmed.numportal.service.executors.CohortExecutor;
@@ -75,6 +76,9 @@ public class CohortServiceTest {
     @Mock
     private PrivacyProperties privacyProperties;
 
+    @Spy
+    private CohortDistributionProperties distributionProperties = new CohortDistributionProperties();
+
     @Captor
     ArgumentCaptor<Cohort> cohortCaptor;
 
@@ -503,21 +507,47 @@ public class CohortServiceTest {
         CohortAqlDto cohortAqlDto = CohortAqlDto.builder().id(1L).name(NAME1).query(Q1).build();
         CohortGroupDto groupDto = CohortGroupDto.builder().type(Type.AQL).query(cohortAqlDto).build();
         Mockito.when(contentService.getClinics(approvedUser.getUserId())).thenReturn(List.of("clinic one"));
-        QueryResponseData responseData1 = new QueryResponseData();
-        responseData1.setRows(  List.of(
-                new ArrayList<>(List.of("ehr-id-1", Map.of("_type", "OBSERVATION", "uuid", "12"))),
-                new ArrayList<>(List.of("ehr-id-2", Map.of("_type", "OBSERVATION", "uuid", "123")))));
-        String sizePerHopitalQuery = String.format(CohortService.GET_PATIENTS_PER_CLINIC, "clinic one", "'test1','test2'");
-        when(ehrBaseService.executePlainQuery(Mockito.eq(sizePerHopitalQuery))).thenReturn(responseData1);
-        QueryResponseData responseData2 = new QueryResponseData();
-        responseData2.setRows( List.of(new ArrayList<>(List.of(10))));
-        for (int age = 0; age < 122; age += 10) {
-            String sizePerAgeQuery = String.format(CohortService.GET_PATIENTS_PER_AGE_INTERVAL, age, age+10, "'test1','test2'");
-            when(ehrBaseService.executePlainQuery(Mockito.eq(sizePerAgeQuery))).thenReturn(responseData2);
-        }
+        QueryResponseData facilities = new QueryResponseData();
+        facilities.setRows(List.of(
+                new ArrayList<>(List.of("clinic one")),
+                new ArrayList<>(List.of("clinic one")),
+                new ArrayList<>(List.of("clinic two"))));
+        when(ehrBaseService.executePlainQuery(String.format(CohortService.GET_COMPOSITION_FACILITIES, "'test1','test2'")))
+                .thenReturn(facilities);
+        QueryResponseData ages = new QueryResponseData();
+        ages.setRows(List.of(
+                new ArrayList<>(List.of("P9Y11M")),
+                new ArrayList<>(List.of("P10Y")),
+                new ArrayList<>(List.of("P45Y6M12DT3H")),
+                new ArrayList<>(Collections.singletonList(null))));
+        when(ehrBaseService.executePlainQuery(String.format(CohortService.GET_PATIENT_AGES, "'test1','test2'")))
+                .thenReturn(ages);
         CohortSizeDto cohortSizeDto = cohortService.getCohortGroupSizeWithDistribution(groupDto, approvedUser.getUserId(), false);
         Assert.assertNotNull(cohortSizeDto);
-        Assert.assertEquals(1, cohortSizeDto.getHospitals().size());
+        Assert.assertEquals(Map.of("clinic one", 2), cohortSizeDto.getHospitals());
+        Assert.assertEquals(13, cohortSizeDto.getAges().size());
+        Assert.assertEquals(Integer.valueOf(1), cohortSizeDto.getAges().get("0-10"));
+        Assert.assertEquals(Integer.valueOf(1), cohortSizeDto.getAges().get("10-20"));
+        Assert.assertEquals(Integer.valueOf(1), cohortSizeDto.getAges().get("40-50"));
+        Assert.assertEquals(Integer.valueOf(0), cohortSizeDto.getAges().get("120-130"));
+        verify(ehrBaseService, times(2)).executePlainQuery(any());
+    }
+
+    @Test
+    public void getCohortGroupSizeWithConfiguredAgeBucketsTest() {
+        distributionProperties.setAgeBuckets(List.of(0, 18, 65, 150));
+        CohortAqlDto cohortAqlDto = CohortAqlDto.builder().id(1L).name(NAME1).query(Q1).build();
+        CohortGroupDto groupDto = CohortGroupDto.builder().type(Type.AQL).query(cohortAqlDto).build();
+        QueryResponseData ages = new QueryResponseData();
+        ages.setRows(List.of(
+                new ArrayList<>(List.of("P17Y")),
+                new ArrayList<>(List.of("P65Y")),
+                new ArrayList<>(List.of("P70Y"))));
+        when(ehrBaseService.executePlainQuery(String.format(CohortService.GET_PATIENT_AGES, "'test1','test2'")))
+                .thenReturn(ages);
+        CohortSizeDto cohortSizeDto = cohortService.getCohortGroupSizeWithDistribution(groupDto, approvedUser.getUserId(), false);
+        Assert.assertEquals(List.of("0-18", "18-65", "65-150"), new ArrayList<>(cohortSizeDto.getAges().keySet()));
+        Assert.assertEquals(List.of(1, 0, 2), new ArrayList<>(cohortSizeDto.getAges().values()));
     }
 
     @Test
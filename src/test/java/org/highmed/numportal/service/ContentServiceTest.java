@@ -4,7 +4,6 @@ import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.apache.logging.log4j.util.Strings;
-import org.ehrbase.openehr.sdk.response.dto.QueryResponseData;
 import org.highmed.numportal.service.*;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -19,11 +18,12 @@ import org.highmed.numportal.domain.model.ContentType;
 import org.highmed.numportal.domain.model.Roles;
 import org.highmed.numportal.domain.model.admin.UserDetails;
 import org.highmed.numportal.domain.repository.ContentItemRepository;
-import org.highmed.numportal.service.ehrbase.EhrBaseService;
+import org.highmed.numportal.service.ehrbase.ClinicGraphCache;
 import org.highmed.numportal.service.exception.SystemException;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.time.Instant;
 import java.util.*;
 
 import static org.hamcrest.MatcherAssert.assertThat;
@@ -54,10 +54,12 @@ public class ContentServiceTest {
   private UserDetailsService userDetailsService;
 
   @Mock
-  private EhrBaseService ehrBaseService;
+  private ClinicGraphCache clinicGraphCache;
 
   @InjectMocks private ContentService contentService;
 
+  private static final Instant COMPUTED_AT = Instant.parse("2024-01-01T10:00:00Z");
+
   private NavigationItemDto navigation1 =
       NavigationItemDto.builder().title("Link 11").url(new URL("https://www.google1.de")).build();
   private NavigationItemDto navigation2 =
@@ -220,49 +222,49 @@ public class ContentServiceTest {
 
   @Test
   public void shouldGetClinics() {
-    mockGetClinicsData();
+    mockClinicGraphs();
     List<String> clinics = contentService.getClinics("approvedUserId");
     assertEquals(2, clinics.size());
   }
 
   @Test
   public void shouldGetClinicDistributions() {
-    QueryResponseData responseData = new QueryResponseData();
-    responseData.setColumns(
-            new ArrayList<>(List.of(Map.of("path", "/count(r/data[at0001]/events[at0002]/data[at0003]/items[at0041]/value/magnitude)"),
-                    Map.of("name", "sofa_score"))));
-    responseData.setRows(List.of(new ArrayList<>(List.of(25))));
-    Mockito.when(ehrBaseService.executePlainQuery(Mockito.contains("openEHR-EHR-OBSERVATION.sofa_score.v0"))).thenReturn(responseData);
-    Map<String, Integer> distribution = contentService.getClinicDistributions("dummy clinic");
+    mockClinicGraphs();
+    Map<String, Integer> distribution = contentService.getClinicGraphs().distribution("Hospital");
     assertTrue(distribution.containsKey("0-4"));
     assertEquals(25, distribution.get("0-4"));
   }
 
+  @Test
+  public void shouldGetEmptyDistributionOfUnknownClinic() {
+    mockClinicGraphs();
+    Map<String, Integer> distribution = contentService.getClinicGraphs().distribution("dummy clinic");
+    assertEquals(ClinicGraphCache.emptyDistribution(), distribution);
+    assertEquals(0, distribution.get("0-4"));
+  }
+
   @Test
   public void shouldGetClinicAverages() {
-    QueryResponseData responseData = new QueryResponseData();
-    responseData.setColumns(
-            new ArrayList<>(List.of(Map.of("path", "/avg(r/data[at0001]/events[at0002]/data[at0003]/items[at0041]/value/magnitude)"),
-                    Map.of("name", "sofa_avg"))));
-    responseData.setRows(List.of(new ArrayList<>(List.of(12.33))));
-    Mockito.when(ehrBaseService.executePlainQuery(Mockito.contains("avg(r/data[at0001]/events[at0002]/data[at0003]/items[at0041]/value/magnitude) as sofa_avg"))).thenReturn(responseData);
-    mockGetClinicsData();
-    Map<String, Double> clinicAverages = contentService.getClinicAverages("approvedUserId");
+    mockClinicGraphs();
+    ClinicGraphCache.Snapshot graphs = contentService.getClinicGraphs("approvedUserId");
+    Map<String, Double> clinicAverages = graphs.averages();
     assertTrue(clinicAverages.containsKey("Hospital"));
     assertEquals(12.33, clinicAverages.get("Hospital"));
+    assertEquals(COMPUTED_AT, graphs.computedAt());
   }
 
-  private void mockGetClinicsData () {
-    Mockito.when(userDetailsService.checkIsUserApproved("approvedUserId"))
+  private void mockClinicGraphs() {
+    Mockito.lenient().when(userDetailsService.checkIsUserApproved("approvedUserId"))
             .thenReturn(UserDetails.builder()
                     .userId("approvedUserId")
                     .approved(true)
                     .build());
-    QueryResponseData responseData = new QueryResponseData();
-    responseData.setColumns(
-            new ArrayList<>(List.of(Map.of("path", "/context/health_care_facility/name"), Map.of("name", "health_care_facility"))));
-    responseData.setRows(List.of(new ArrayList<>(List.of("Hospital")),
-            new ArrayList<>(List.of("Medizinische Hochschule Hannover"))));
-    Mockito.when(ehrBaseService.executePlainQuery(Mockito.eq(ContentService.LIST_CLINICS))).thenReturn(responseData);
+    Map<String, Integer> distribution = new LinkedHashMap<>(ClinicGraphCache.emptyDistribution());
+    distribution.put("0-4", 25);
+    Mockito.when(clinicGraphCache.get()).thenReturn(new ClinicGraphCache.Snapshot(
+            List.of("Hospital", "Medizinische Hochschule Hannover"),
+            Map.of("Hospital", 12.33, "Medizinische Hochschule Hannover", 0.0),
+            Map.of("Hospital", distribution),
+            COMPUTED_AT));
   }
 }
@@ -13,6 +13,8 @@ import org.ehrbase.openehr.sdk.response.dto.ehrscape.TemplateMetaDataDto;
 import org.ehrbase.openehr.sdk.util.exception.ClientException;
 import org.ehrbase.openehr.sdk.util.exception.WrongStatusCodeException;
 import org.highmed.numportal.properties.EhrBaseProperties;
+import org.highmed.numportal.properties.IntegrationMetricsProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -20,12 +22,14 @@ import org.mockito.Answers;
 import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.highmed.numportal.domain.model.Aql;
 import org.highmed.numportal.service.ehrbase.CompositionResponseDataBuilder;
 import org.highmed.numportal.service.ehrbase.EhrBaseService;
 import org.highmed.numportal.service.ehrbase.Pseudonymity;
 import org.highmed.numportal.service.exception.SystemException;
+import org.highmed.numportal.service.metric.IntegrationMetrics;
 
 import java.util.ArrayList;
 import java.util.Collections;
@@ -56,6 +60,9 @@ public class EhrBaseServiceTest {
   @Mock
   private EhrBaseProperties ehrBaseProperties;
 
+  @Spy
+  private IntegrationMetrics integrationMetrics = new IntegrationMetrics(new SimpleMeterRegistry(), new IntegrationMetricsProperties());
+
   @InjectMocks
   private EhrBaseService ehr;
 
@@ -121,10 +128,10 @@ public class EhrBaseServiceTest {
     when(restClient.aqlEndpoint().executeRaw(Query.buildNativeQuery(any())))
             .thenReturn(compositionsQueryResponseData);
 
-    when(compositionResponseDataBuilder.build(any())).thenReturn(compositionsQueryResponseData);
+    when(compositionResponseDataBuilder.build(any(), any())).thenReturn(compositionsQueryResponseData);
 
     ehr.executeRawQuery(AqlQueryParser.parse(GOOD_QUERY), 1L);
-    verify(compositionResponseDataBuilder, times(1)).build(any());
+    verify(compositionResponseDataBuilder, times(1)).build(any(), eq(List.of("codex_43DG23", "codex_43DG22")));
   }
 
   @Test
@@ -142,7 +149,33 @@ public class EhrBaseServiceTest {
             .thenReturn(response);
 
     ehr.executeRawQuery(AqlQueryParser.parse(GOOD_QUERY), 1L);
-    verify(compositionResponseDataBuilder, times(0)).build(any());
+    verify(compositionResponseDataBuilder, times(0)).build(any(), any());
+  }
+
+  @Test
+  public void shouldMergeBatchesInOrderBeforePseudonymization() {
+    when(ehrBaseProperties.getIdPath()).thenReturn("ehr_status/subject/external_ref/id/value");
+    when(restClient.aqlEndpoint().executeRaw(any(NativeQuery.class))).thenAnswer(invocation -> {
+      String query = invocation.getArgument(0, NativeQuery.class).buildAql();
+      String ehrId = query.contains("ehr-1") ? "testehrid1" : "testehrid2";
+      QueryResponseData response = new QueryResponseData();
+      response.setColumns(
+              new ArrayList<>(List.of(Map.of("path", "/ehr_status/subject/external_ref/id/value"), Map.of("path", "o/uuid"))));
+      response.setRows(List.of(new ArrayList<>(List.of(ehrId, Map.of("_type", "OBSERVATION", "uuid", ehrId)))));
+      return response;
+    });
+
+    List<QueryResponseData> result = ehr.executeRawQueryInBatches(
+            List.of(
+                    AqlQueryParser.parse(GOOD_QUERY + " WHERE e/ehr_id/value MATCHES {'ehr-1'}"),
+                    AqlQueryParser.parse(GOOD_QUERY + " WHERE e/ehr_id/value MATCHES {'ehr-2'}")),
+            1L);
+
+    verify(pseudonymity, times(1)).getPseudonyms(List.of("testehrid1", "testehrid2"), 1L);
+    assertThat(result.size(), is(1));
+    assertThat(result.get(0).getRows().size(), is(2));
+    assertThat(result.get(0).getRows().get(0).get(0), is("codex_43DG23"));
+    assertThat(result.get(0).getRows().get(1).get(0), is("codex_43DG22"));
   }
 
   @Test(expected = SystemException.class)
@@ -24,6 +24,7 @@ import org.highmed.numportal.service.atna.AtnaService;
 import org.highmed.numportal.service.ehrbase.EhrBaseService;
 import org.highmed.numportal.service.ehrbase.ResponseFilter;
 import org.highmed.numportal.service.exception.*;
+import org.highmed.numportal.service.export.ExportJobService;
 import org.highmed.numportal.service.metric.ProjectsMetrics;
 import org.highmed.numportal.service.notification.NotificationService;
 import org.highmed.numportal.service.notification.dto.Notification;
@@ -50,10 +51,12 @@ import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.util.MultiValueMap;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.io.IOException;
 import java.time.OffsetDateTime;
 import java.util.*;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -151,6 +154,8 @@ public class ProjectServiceTest {
 
   @Mock private ExportUtil exportUtil;
 
+  @Mock private ExportJobService exportJobService;
+
   @Spy private AqlEditorAqlService aqlEditorAqlService;
 
   @Captor ArgumentCaptor<List<Notification>> notificationCaptor;
@@ -809,18 +814,17 @@ public class ProjectServiceTest {
   @Test
   public void getAllProjectsWithPaginationAndSortByAuthor() {
     setupDataForProjectsWithPagination();
-    when(userService.getOwner("approvedCoordinatorId")).thenReturn(User.builder().id("approvedCoordinatorId").firstName("AA Coordinator first name").build());
-    Mockito.when(projectRepository.count()).thenReturn(50L);
     Pageable pageable = PageRequest.of(0,100);
-    Page<Project> filteredProjects = projectService.getProjects("approvedCoordinatorId", List.of(STUDY_COORDINATOR),
+    ArgumentCaptor<ProjectSpecification> specificationArgumentCaptor = ArgumentCaptor.forClass(ProjectSpecification.class);
+    projectService.getProjects("approvedCoordinatorId", List.of(STUDY_COORDINATOR),
             SearchCriteria.builder()
                     .sort("DESC")
                     .sortBy("author")
                     .build(), pageable);
-    Pageable authorPageable = PageRequest.of(0,50);
-    Mockito.verify(projectRepository, times(1)).findProjects(Mockito.any(ProjectSpecification.class), Mockito.eq(authorPageable));
-    List<Project> projects = filteredProjects.getContent();
-    Assert.assertEquals(Long.valueOf(2L), projects.get(0).getId());
+    Mockito.verify(projectRepository, times(1)).findProjects(specificationArgumentCaptor.capture(), Mockito.eq(pageable));
+    Mockito.verify(projectRepository, never()).count();
+    Mockito.verify(userService, never()).getOwner(Mockito.anyString());
+    Assert.assertEquals(Sort.Order.desc("author").ignoreCase(), specificationArgumentCaptor.getValue().getSortOrder());
   }
 
   @Test(expected = BadRequestException.class)
@@ -915,7 +919,6 @@ public class ProjectServiceTest {
             .status(PUBLISHED)
             .coordinator(anotherCoordinator)
             .build();
-    when(userService.getOwner("anotherCoordinatorId")).thenReturn(User.builder().id("anotherCoordinatorId").firstName("Coordinator first name").build());
     Mockito.when(projectRepository.findProjects(Mockito.any(ProjectSpecification.class), Mockito.any(Pageable.class))).thenReturn(new PageImpl<>(Arrays.asList(pr1, pr2, pr3)));
   }
 
@@ -1755,6 +1758,27 @@ public class ProjectServiceTest {
         Mockito.verify(cohortService, times(1)).executeCohort(Mockito.eq(2L), Mockito.eq(false));
     }
 
+  @Test
+  public void shouldQueueExportJobWithoutExecutingTheExport() {
+    projectService.submitExport(QUERY_5, 2L, "approvedCoordinatorId", ExportType.csv, false);
+    Mockito.verify(exportJobService, times(1))
+           .submit(Mockito.eq("approvedCoordinatorId"), Mockito.any(Project.class), Mockito.eq(ExportType.csv), Mockito.any());
+    Mockito.verify(cohortService, never()).executeCohort(Mockito.anyLong(), Mockito.anyBoolean());
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldLeaveAuditOfCustomConfigurationExportToTheJob() {
+    projectService.submitExport(QUERY_5, 2L, "approvedCoordinatorId", ExportType.json, false);
+    ArgumentCaptor<Supplier<StreamingResponseBody>> export = ArgumentCaptor.forClass(Supplier.class);
+    Mockito.verify(exportJobService).submit(any(), any(Project.class), any(), export.capture());
+
+    export.getValue().get();
+
+    Mockito.verify(ehrBaseService).executeRawQuery(any(AqlQuery.class), eq(2L));
+    Mockito.verify(atnaService, never()).logDataExport(any(), any(), any(), anyBoolean());
+  }
+
   @Test
   public void existsTest() {
     projectService.exists(5L);
@@ -0,0 +1,141 @@
+package org.highmed.numportal.service;
+
+import org.highmed.numportal.domain.dto.OrganizationDto;
+import org.highmed.numportal.domain.model.Organization;
+import org.highmed.numportal.domain.model.admin.Role;
+import org.highmed.numportal.domain.model.admin.User;
+import org.highmed.numportal.domain.model.admin.UserDetails;
+import org.highmed.numportal.mapper.OrganizationMapper;
+import org.highmed.numportal.properties.UserCacheProperties;
+import org.highmed.numportal.web.feign.KeycloakFeign;
+
+import feign.FeignException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class UserCacheLoaderTest {
+
+  @Mock
+  private KeycloakFeign keycloakFeign;
+
+  @Mock
+  private UserDetailsService userDetailsService;
+
+  @Mock
+  private OrganizationMapper organizationMapper;
+
+  private ConcurrentMapCacheManager cacheManager;
+
+  private UserSearchIndex userSearchIndex;
+
+  private UserCacheLoader userCacheLoader;
+
+  private final Organization organization = Organization.builder().id(1L).name("org 1").domains(Set.of()).build();
+
+  @Before
+  public void setup() {
+    UserCacheProperties properties = new UserCacheProperties();
+    properties.setPageSize(2);
+    properties.setParallelism(2);
+    cacheManager = new ConcurrentMapCacheManager(UserService.USERS_CACHE);
+    userSearchIndex = new UserSearchIndex();
+    userCacheLoader =
+        new UserCacheLoader(keycloakFeign, userDetailsService, organizationMapper, cacheManager, properties, userSearchIndex);
+
+    UserDetails named = new UserDetails("3", null, true);
+    named.setFullName("first 3 last 3");
+    when(userDetailsService.getAllUserDetails()).thenReturn(List.of(
+        new UserDetails("1", organization, true),
+        new UserDetails("2", organization, false),
+        named));
+    when(keycloakFeign.getUsers(0, 2)).thenReturn(List.of(user("1"), user("2")));
+    when(keycloakFeign.getUsers(2, 2)).thenReturn(List.of(user("3"), user("not-in-portal")));
+    when(keycloakFeign.getUsers(4, 2)).thenReturn(List.of());
+    when(keycloakFeign.getRolesOfUser("1")).thenReturn(Set.of(new Role("R1", "RESEARCHER")));
+    when(keycloakFeign.getRolesOfUser("2")).thenReturn(Set.of());
+    when(keycloakFeign.getRolesOfUser("3")).thenReturn(Set.of(new Role("R2", "SUPER_ADMIN")));
+    when(organizationMapper.convertToDto(organization)).thenReturn(OrganizationDto.builder().id(1L).name("org 1").build());
+  }
+
+  @After
+  public void tearDown() {
+    userCacheLoader.shutdown();
+  }
+
+  @Test
+  public void shouldLoadPortalUsersPageByPage() {
+    assertThat(userCacheLoader.load(), is(3));
+
+    User user = cacheManager.getCache(UserService.USERS_CACHE).get("1", User.class);
+    assertThat(user.getRoles(), is(Set.of("RESEARCHER")));
+    assertThat(user.isApproved(), is(true));
+    assertThat(user.getOrganization().getName(), is("org 1"));
+    assertThat(cacheManager.getCache(UserService.USERS_CACHE).get("3", User.class).getOrganization(), nullValue());
+    assertThat(cacheManager.getCache(UserService.USERS_CACHE).get("not-in-portal"), nullValue());
+    verify(keycloakFeign, times(3)).getUsers(any(Integer.class), any(Integer.class));
+    verify(organizationMapper, times(1)).convertToDto(organization);
+    assertThat(userCacheLoader.getProgress(), is(new UserCacheLoader.Progress(UserCacheLoader.State.COMPLETED, 3, 3)));
+    assertThat(userSearchIndex.isComplete(), is(true));
+    assertThat(userSearchIndex.size(), is(3));
+  }
+
+  @Test
+  @SuppressWarnings("unchecked")
+  public void shouldStoreChangedNamesInOneBatch() {
+    userCacheLoader.load();
+
+    ArgumentCaptor<List<UserDetails>> renamed = ArgumentCaptor.forClass(List.class);
+    verify(userDetailsService, times(1)).saveFullNames(renamed.capture());
+    assertThat(renamed.getValue().stream().map(UserDetails::getUserId).toList(), is(List.of("1", "2")));
+    assertThat(renamed.getValue().get(0).getFullName(), is("first 1 last 1"));
+    verify(userDetailsService, never()).updateFullName(any(), any());
+  }
+
+  @Test
+  public void shouldSkipUsersWithoutRolesAndRemoveStaleUsers() {
+    cacheManager.getCache(UserService.USERS_CACHE).put("deleted", user("deleted"));
+    when(keycloakFeign.getRolesOfUser("2")).thenThrow(FeignException.InternalServerError.class);
+
+    assertThat(userCacheLoader.load(), is(2));
+
+    assertThat(cacheManager.getCache(UserService.USERS_CACHE).get("2"), nullValue());
+    assertThat(cacheManager.getCache(UserService.USERS_CACHE).get("deleted"), nullValue());
+    assertThat(userCacheLoader.getProgress().loaded(), is(2));
+  }
+
+  @Test
+  public void shouldReportFailedLoad() {
+    when(keycloakFeign.getUsers(2, 2)).thenThrow(FeignException.InternalServerError.class);
+
+    try {
+      userCacheLoader.load();
+    } catch (FeignException e) {
+      assertThat(userCacheLoader.getProgress().state(), is(UserCacheLoader.State.FAILED));
+      return;
+    }
+    throw new AssertionError("Expected load to fail");
+  }
+
+  private User user(String id) {
+    return User.builder().id(id).firstName("first " + id).lastName("last " + id).build();
+  }
+}
@@ -96,6 +96,25 @@ public class UserDetailsServiceTest {
     verify(userDetailsRepository, times(1)).findByUserId(any());
   }
 
+  @Test
+  public void shouldStoreChangedFullName() {
+    userDetailsService.updateFullName("existingUserId", "John Doe");
+
+    ArgumentCaptor<UserDetails> captor = ArgumentCaptor.forClass(UserDetails.class);
+    verify(userDetailsRepository, times(1)).save(captor.capture());
+    assertThat(captor.getValue().getFullName(), is("John Doe"));
+  }
+
+  @Test
+  public void shouldNotStoreUnchangedFullName() {
+    when(userDetailsRepository.findByUserId("existingUserId"))
+        .thenReturn(Optional.of(UserDetails.builder().userId("existingUserId").fullName("John Doe").build()));
+
+    userDetailsService.updateFullName("existingUserId", "John Doe");
+
+    verify(userDetailsRepository, never()).save(any());
+  }
+
   @Test(expected = ResourceNotFound.class)
   public void shouldHandleMissingUserWhenSettingOrganization() {
     userDetailsService.setOrganization("existingUserId", "nonExistingUserId", any());
@@ -146,6 +165,7 @@ public class UserDetailsServiceTest {
     userDetailsService.approveUser("1", "2");
 
     verify(userDetailsRepository, times(1)).save(any());
+    verify(userService, times(1)).addUserToCache("2");
     verify(notificationService, times(1)).send(notificationCaptor.capture());
     List<Notification> notificationSent = notificationCaptor.getValue();
 
@@ -153,6 +173,27 @@ public class UserDetailsServiceTest {
     assertThat(notificationSent.get(0).getClass(), is(AccountApprovalNotification.class));
   }
 
+  @Test
+  public void shouldListUserAsApprovedOnceApproved() {
+    UserSearchIndex index = new UserSearchIndex();
+    index.replaceAll(List.of(User.builder().id("2").approved(false).build()));
+    when(userDetailsRepository.findByUserId("1"))
+        .thenReturn(Optional.of(UserDetails.builder().userId("1").approved(true).build()));
+    when(userDetailsRepository.findByUserId("2"))
+        .thenReturn(Optional.of(UserDetails.builder().userId("2").approved(false).build()));
+    when(userService.addUserToCache("2")).thenAnswer(invocation -> {
+      User approved = User.builder().id("2").approved(true).build();
+      index.put(approved);
+      return approved;
+    });
+
+    userDetailsService.approveUser("1", "2");
+
+    UserSearchIndex.Query.QueryBuilder query = UserSearchIndex.Query.builder();
+    assertThat(index.search(query.approved(true).build(), PageRequest.of(0, 10)).getTotalElements(), is(1L));
+    assertThat(index.search(query.approved(false).build(), PageRequest.of(0, 10)).getTotalElements(), is(0L));
+  }
+
   @Test
   public void shouldSendNotificationWhenCreateUserDetails() {
     String userEmail = "dummyUser@highmed.org";
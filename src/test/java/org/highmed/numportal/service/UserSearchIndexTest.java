@@ -0,0 +1,125 @@
+package org.highmed.numportal.service;
+
+import org.highmed.numportal.domain.dto.OrganizationDto;
+import org.highmed.numportal.domain.model.Roles;
+import org.highmed.numportal.domain.model.admin.User;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class UserSearchIndexTest {
+
+  private UserSearchIndex index;
+
+  @Before
+  public void setup() {
+    index = new UserSearchIndex();
+    index.replaceAll(List.of(
+        user("1", "John", "Doe", "john.doe@highmed.org", 1L, "org b", Set.of(Roles.RESEARCHER), true, 300L),
+        user("2", "Ana", "Doe", "ana-maria.doe@highmed.org", 2L, "org a", Set.of(Roles.ORGANIZATION_ADMIN), true, 100L),
+        user("3", "Elena", "Smith", "elena@highmed.org", 1L, "org b", Set.of(Roles.RESEARCHER), false, 200L),
+        user("4", "Mike", "Miller", "mike@example.org", null, null, Set.of(Roles.STUDY_COORDINATOR), true, 400L)));
+  }
+
+  @Test
+  public void shouldBeCompleteOnceReplaced() {
+    assertThat(new UserSearchIndex().isComplete(), is(false));
+    assertThat(index.isComplete(), is(true));
+    assertThat(index.size(), is(4));
+  }
+
+  @Test
+  public void shouldSearchBySubstringOfNameOrEmail() {
+    assertThat(ids(index.search(query().filtered(true).search("doe").build(), PageRequest.of(0, 10))), is(List.of("1", "2")));
+    assertThat(ids(index.search(query().filtered(true).search("EXAMPLE").build(), PageRequest.of(0, 10))), is(List.of("4")));
+    assertThat(ids(index.search(query().filtered(true).search("n D").build(), PageRequest.of(0, 10))), is(List.of("1")));
+  }
+
+  @Test
+  public void shouldSearchByTranslatedRoles() {
+    Page<User> users =
+        index.search(query().filtered(true).search("forscher").searchRoles(Set.of(Roles.RESEARCHER)).build(), PageRequest.of(0, 10));
+
+    assertThat(ids(users), is(List.of("1", "3")));
+  }
+
+  @Test
+  public void shouldFilterByRolesActiveApprovalAndOrganization() {
+    assertThat(ids(index.search(query().filtered(true).roles(List.of(Roles.RESEARCHER)).build(), PageRequest.of(0, 10))),
+        is(List.of("1", "3")));
+    assertThat(ids(index.search(query().filtered(true).roles(List.of(Roles.RESEARCHER)).enabled(false).build(), PageRequest.of(0, 10))),
+        is(List.of("3")));
+    assertThat(ids(index.search(query().approved(false).build(), PageRequest.of(0, 10))), is(List.of("4")));
+    assertThat(ids(index.search(query().organizationId(1L).build(), PageRequest.of(0, 10))), is(List.of("1", "3")));
+  }
+
+  @Test
+  public void shouldMatchNoUserWithoutAnyFilterValue() {
+    assertThat(index.search(query().filtered(true).search("").build(), PageRequest.of(0, 10)).getTotalElements(), is(0L));
+  }
+
+  @Test
+  public void shouldRestrictProjectLeadsToResearchers() {
+    Page<User> users = index.search(query().filtered(true).search("highmed").researchersOnly(true).build(), PageRequest.of(0, 10));
+
+    assertThat(ids(users), is(List.of("1", "3")));
+  }
+
+  @Test
+  public void shouldSortAndPage() {
+    Page<User> byLastName = index.search(
+        query().sortBy("lastName").direction(Sort.Direction.ASC).build(), PageRequest.of(1, 2));
+    assertThat(ids(byLastName), is(List.of("4", "3")));
+    assertThat(byLastName.getTotalElements(), is(4L));
+
+    assertThat(ids(index.search(query().sortBy("organization").direction(Sort.Direction.ASC).build(), PageRequest.of(0, 2))),
+        is(List.of("4", "2")));
+    assertThat(ids(index.search(query().sortBy("email").direction(Sort.Direction.DESC).build(), PageRequest.of(0, 1))),
+        is(List.of("4")));
+    assertThat(ids(index.search(query().sortBy("firstName").direction(Sort.Direction.DESC).build(), PageRequest.of(0, 4))),
+        is(List.of("4", "1", "3", "2")));
+    assertThat(ids(index.search(query().build(), PageRequest.of(0, 4))), is(List.of("4", "1", "3", "2")));
+  }
+
+  @Test
+  public void shouldUpdateIncrementally() {
+    index.put(user("2", "Ana", "Brown", "ana@highmed.org", 2L, "org a", Set.of(Roles.RESEARCHER), true, 100L));
+    index.remove("1");
+
+    assertThat(ids(index.search(query().filtered(true).search("doe").build(), PageRequest.of(0, 10))), is(List.of()));
+    assertThat(ids(index.search(query().filtered(true).roles(List.of(Roles.RESEARCHER)).build(), PageRequest.of(0, 10))),
+        is(List.of("3", "2")));
+  }
+
+  private UserSearchIndex.Query.QueryBuilder query() {
+    return UserSearchIndex.Query.builder().direction(Sort.Direction.DESC);
+  }
+
+  private List<String> ids(Page<User> users) {
+    return users.getContent().stream().map(User::getId).toList();
+  }
+
+  private User user(String id, String firstName, String lastName, String email, Long organizationId, String organizationName,
+      Set<String> roles, boolean enabled, Long createdTimestamp) {
+    return User.builder()
+               .id(id)
+               .firstName(firstName)
+               .lastName(lastName)
+               .email(email)
+               .organization(organizationId != null ? OrganizationDto.builder().id(organizationId).name(organizationName).build() : null)
+               .roles(roles)
+               .approved(organizationId != null)
+               .enabled(enabled)
+               .createdTimestamp(createdTimestamp)
+               .build();
+  }
+}
@@ -16,6 +16,7 @@ import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Sort;
 import org.highmed.numportal.domain.model.EntityGroup;
 import org.highmed.numportal.domain.model.Organization;
 import org.highmed.numportal.domain.model.Roles;
@@ -80,6 +81,12 @@ public class UserServiceTest {
     @Mock
     private OrganizationMapper organizationMapper;
 
+    @Mock
+    private UserCacheLoader userCacheLoader;
+
+    @Mock
+    private UserSearchIndex userSearchIndex;
+
     @InjectMocks
     private UserService userService;
 
@@ -902,6 +909,41 @@ public class UserServiceTest {
         Assert.assertEquals("Mike", firstUser.getFirstName());
     }
 
+    @Test
+    public void searchUsersFromCompleteSearchIndex() {
+        Pageable pageable = PageRequest.of(0, 50);
+        Map<String, String> filter = new HashMap<>();
+        filter.put(SearchCriteria.FILTER_SEARCH_BY_KEY, "research");
+        filter.put(SearchCriteria.FILTER_BY_ROLES, "RESEARCHER");
+        SearchCriteria searchCriteria = SearchCriteria.builder()
+                .filter(filter)
+                .sort("asc")
+                .sortBy("lastName")
+                .language(Language.en)
+                .build();
+        initializeTranslationCache();
+        Mockito.when(userDetailsService.checkIsUserApproved("user-55")).thenReturn(UserDetails.builder()
+                .userId("user-55")
+                .organization(Organization.builder().id(99L).build())
+                .build());
+        Mockito.when(userSearchIndex.isComplete()).thenReturn(true);
+        Mockito.when(userSearchIndex.search(Mockito.any(), Mockito.eq(pageable))).thenReturn(Page.empty(pageable));
+        ArgumentCaptor<UserSearchIndex.Query> queryCaptor = ArgumentCaptor.forClass(UserSearchIndex.Query.class);
+
+        userService.searchUsers("user-55", List.of(Roles.ORGANIZATION_ADMIN), searchCriteria, pageable);
+
+        Mockito.verify(userSearchIndex).search(queryCaptor.capture(), Mockito.eq(pageable));
+        Mockito.verify(userDetailsService, Mockito.never()).getUsers(Mockito.any(), Mockito.any(UserDetailsSpecification.class));
+        Mockito.verify(keycloakFeign, Mockito.never()).getRolesOfUser(Mockito.anyString());
+        UserSearchIndex.Query query = queryCaptor.getValue();
+        Assert.assertTrue(query.filtered());
+        Assert.assertEquals(99L, query.organizationId().longValue());
+        Assert.assertEquals(Set.of(Roles.RESEARCHER), query.searchRoles());
+        Assert.assertEquals(List.of(Roles.RESEARCHER), query.roles());
+        Assert.assertEquals("lastName", query.sortBy());
+        Assert.assertEquals(Sort.Direction.ASC, query.direction());
+    }
+
     @Test
     public void searchUsersWithPaginationByRole() {
         Pageable pageable = PageRequest.of(0, 50);
@@ -1059,15 +1101,8 @@ public class UserServiceTest {
 
     @Test
     public void initializeUsersCacheTest() {
-        List<String> usersUUID = Arrays.asList("4", "5","99");
-        ConcurrentMapCache usersCache = new ConcurrentMapCache("users", false);
-        Mockito.when(userDetailsService.getAllUsersUUID()).thenReturn(usersUUID);
-        Mockito.when(cacheManager.getCache("users")).thenReturn(usersCache);
-        Mockito.when(keycloakFeign.getUser("99"))
-                .thenThrow(new FeignException.NotFound("user not found",
-                        Request.create(Request.HttpMethod.GET, "dummyURL", Collections.emptyMap(), Request.Body.empty(), null), null, null));
         userService.initializeUsersCache();
-        Assert.assertEquals(2, usersCache.getNativeCache().size());
+        Mockito.verify(userCacheLoader, Mockito.times(1)).load();
     }
 
     @Test
@@ -1098,20 +1133,9 @@ public class UserServiceTest {
 
     @Test
     public void refreshUsersCacheTest() {
-        ConcurrentMapCache usersCache = new ConcurrentMapCache("users", false);
-        usersCache.put("userId-one", User.builder()
-                .id("userId-one")
-                .firstName("John")
-                .lastName("doe")
-                .email("john.doe@highmed.org")
-                .createdTimestamp(System.currentTimeMillis())
-                .build());
-        Mockito.when(cacheManager.getCache("users")).thenReturn(usersCache);
-        Mockito.when(userDetailsService.getAllUsersUUID()).thenReturn(Arrays.asList("4","5","6"));
         userService.refreshUsersCache();
-        Assert.assertNull(usersCache.getNativeCache().get("userId-one"));
-        Assert.assertNotNull(usersCache.getNativeCache().get("4"));
-        Mockito.verify(userDetailsService, Mockito.times(1)).getAllUsersUUID();
+        Mockito.verify(userCacheLoader, Mockito.times(1)).load();
+        Mockito.verify(cacheManager, Mockito.never()).getCache("users");
     }
 
     private boolean testAddRole(Role role, String userRole) {
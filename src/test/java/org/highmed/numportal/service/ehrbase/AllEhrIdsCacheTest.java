@@ -0,0 +1,86 @@
+package org.highmed.numportal.service.ehrbase;
+
+import org.highmed.numportal.properties.CohortExecutionProperties;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AllEhrIdsCacheTest {
+
+  @Mock
+  private EhrBaseService ehrBaseService;
+
+  private CohortExecutionProperties properties;
+
+  private AllEhrIdsCache allEhrIdsCache;
+
+  @Before
+  public void setup() {
+    properties = new CohortExecutionProperties();
+    allEhrIdsCache = new AllEhrIdsCache(ehrBaseService, properties);
+  }
+
+  @Test
+  public void shouldLoadAllEhrIdsOnlyOnFirstUse() {
+    when(ehrBaseService.getAllPatientIds()).thenReturn(new HashSet<>(Set.of("1", "2")));
+
+    allEhrIdsCache.refreshIfStale();
+    verify(ehrBaseService, never()).getAllPatientIds();
+
+    assertThat(allEhrIdsCache.get(), is(Set.of("1", "2")));
+    assertThat(allEhrIdsCache.get(), is(Set.of("1", "2")));
+    verify(ehrBaseService, times(1)).getAllPatientIds();
+  }
+
+  @Test
+  public void shouldRefreshStaleSnapshotInBackground() {
+    properties.setAllEhrIdsRefreshAfter(Duration.ZERO);
+    when(ehrBaseService.getAllPatientIds())
+        .thenReturn(new HashSet<>(Set.of("1", "2")))
+        .thenReturn(new HashSet<>(Set.of("1", "2", "3")));
+
+    assertThat(allEhrIdsCache.get(), is(Set.of("1", "2")));
+    allEhrIdsCache.refreshIfStale();
+
+    assertThat(allEhrIdsCache.get(), is(Set.of("1", "2", "3")));
+    verify(ehrBaseService, times(2)).getAllPatientIds();
+  }
+
+  @Test
+  public void shouldKeepSnapshotWhenRefreshFails() {
+    properties.setAllEhrIdsRefreshAfter(Duration.ZERO);
+    when(ehrBaseService.getAllPatientIds())
+        .thenReturn(new HashSet<>(Set.of("1", "2")))
+        .thenThrow(new RuntimeException("EhrBase not reachable"));
+
+    allEhrIdsCache.get();
+    allEhrIdsCache.refreshIfStale();
+
+    assertThat(allEhrIdsCache.get(), is(Set.of("1", "2")));
+  }
+
+  @Test
+  public void shouldReloadSnapshotOlderThanMaxAge() {
+    properties.setAllEhrIdsMaxAge(Duration.ZERO);
+    when(ehrBaseService.getAllPatientIds())
+        .thenReturn(new HashSet<>(Set.of("1")))
+        .thenReturn(new HashSet<>(Set.of("1", "2")));
+
+    assertThat(allEhrIdsCache.get(), is(Set.of("1")));
+    assertThat(allEhrIdsCache.get(), is(Set.of("1", "2")));
+  }
+}
@@ -0,0 +1,106 @@
+package org.highmed.numportal.service.ehrbase;
+
+import org.highmed.numportal.properties.ContentGraphProperties;
+
+import org.ehrbase.openehr.sdk.response.dto.QueryResponseData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.contains;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ClinicGraphCacheTest {
+
+  @Mock
+  private EhrBaseService ehrBaseService;
+
+  private ContentGraphProperties properties;
+
+  private ClinicGraphCache clinicGraphCache;
+
+  @Before
+  public void setup() {
+    properties = new ContentGraphProperties();
+    clinicGraphCache = new ClinicGraphCache(ehrBaseService, properties);
+    when(ehrBaseService.executePlainQuery(eq(ClinicGraphCache.LIST_CLINICS)))
+        .thenReturn(response(List.of("Hospital"), List.of("Medizinische Hochschule Hannover")));
+    when(ehrBaseService.executePlainQuery(contains("sofa_avg"))).thenReturn(response(List.of(12.33)));
+    when(ehrBaseService.executePlainQuery(contains("as sofa_score"))).thenReturn(response(List.of(25)));
+  }
+
+  @After
+  public void tearDown() {
+    clinicGraphCache.shutdown();
+  }
+
+  @Test
+  public void shouldComputeGraphsOfAllClinics() {
+    ClinicGraphCache.Snapshot snapshot = clinicGraphCache.get();
+
+    assertThat(snapshot.clinics(), is(List.of("Hospital", "Medizinische Hochschule Hannover")));
+    assertThat(snapshot.averages().get("Hospital"), is(12.33));
+    assertThat(snapshot.distributions().get("Medizinische Hochschule Hannover").keySet(),
+        is(ClinicGraphCache.emptyDistribution().keySet()));
+    assertThat(snapshot.distributions().get("Hospital").get("0-4"), is(25));
+    verify(ehrBaseService, times(2)).executePlainQuery(contains("sofa_avg"));
+    verify(ehrBaseService, times(10)).executePlainQuery(contains("as sofa_score"));
+  }
+
+  @Test
+  public void shouldServeSnapshotFromMemory() {
+    ClinicGraphCache.Snapshot snapshot = clinicGraphCache.get();
+
+    clinicGraphCache.refreshIfStale();
+
+    assertThat(clinicGraphCache.get(), sameInstance(snapshot));
+    verify(ehrBaseService, times(1)).executePlainQuery(ClinicGraphCache.LIST_CLINICS);
+  }
+
+  @Test
+  public void shouldRefreshStaleSnapshot() {
+    properties.setRefreshAfter(Duration.ZERO);
+    ClinicGraphCache.Snapshot snapshot = clinicGraphCache.get();
+
+    clinicGraphCache.refreshIfStale();
+
+    assertThat(clinicGraphCache.get() == snapshot, is(false));
+    verify(ehrBaseService, times(2)).executePlainQuery(ClinicGraphCache.LIST_CLINICS);
+  }
+
+  @Test
+  public void shouldKeepSnapshotWhenRefreshFails() {
+    properties.setRefreshAfter(Duration.ZERO);
+    ClinicGraphCache.Snapshot snapshot = clinicGraphCache.get();
+    when(ehrBaseService.executePlainQuery(contains("sofa_avg"))).thenThrow(new IllegalStateException("EhrBase unavailable"));
+
+    clinicGraphCache.refreshIfStale();
+
+    assertThat(clinicGraphCache.get(), sameInstance(snapshot));
+  }
+
+  @SafeVarargs
+  private QueryResponseData response(List<Object>... rows) {
+    QueryResponseData response = new QueryResponseData();
+    List<List<Object>> responseRows = new ArrayList<>();
+    for (List<Object> row : rows) {
+      responseRows.add(new ArrayList<>(row));
+    }
+    response.setRows(responseRows);
+    return response;
+  }
+}
@@ -1,32 +1,50 @@
 package org.highmed.numportal.service.ehrbase;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nedap.archie.rm.archetyped.Archetyped;
 import com.nedap.archie.rm.composition.Composition;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import lombok.SneakyThrows;
 import org.apache.xmlbeans.XmlException;
 import org.ehrbase.openehr.sdk.client.templateprovider.ClientTemplateProvider;
+import org.ehrbase.openehr.sdk.serialisation.flatencoding.FlatFormat;
+import org.ehrbase.openehr.sdk.serialisation.flatencoding.FlatJasonProvider;
 import org.ehrbase.openehr.sdk.serialisation.jsonencoding.CanonicalJson;
+import org.ehrbase.openehr.sdk.webtemplate.model.WebTemplate;
 import org.highmed.numportal.service.ehrbase.CompositionFlattener;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.openehr.schemas.v1.OPERATIONALTEMPLATE;
 import org.openehr.schemas.v1.TemplateDocument;
 import org.testcontainers.shaded.org.apache.commons.io.IOUtils;
+import org.highmed.numportal.properties.TemplateCacheProperties;
 import org.highmed.numportal.service.exception.SystemException;
+import org.highmed.numportal.service.metric.TemplateCacheMetrics;
+
+import javax.cache.Caching;
+import javax.cache.configuration.CompleteConfiguration;
+import javax.cache.expiry.ExpiryPolicy;
+import javax.cache.expiry.ModifiedExpiryPolicy;
 
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.highmed.numportal.domain.templates.ExceptionsTemplate.CANNOT_PARSE_RESULTS_COMPOSITION_MISSING_TEMPLATE_ID;
 
@@ -36,13 +54,20 @@ public class CompositionFlattenerTest {
   @Mock
   ClientTemplateProvider clientTemplateProvider;
 
-  @InjectMocks private CompositionFlattener flattener;
+  private CompositionFlattener flattener;
+
+  private TemplateCacheProperties properties;
+
+  private SimpleMeterRegistry registry;
 
   private final String CORONA_PATH = "/testdata/corona.json";
   private final String CORONA_OTP = "/testdata/corona_anamnese.opt";
 
   @Before
   public void setup() throws IOException, XmlException {
+    properties = new TemplateCacheProperties();
+    registry = new SimpleMeterRegistry();
+    flattener = new CompositionFlattener(clientTemplateProvider, properties, new TemplateCacheMetrics(registry));
     flattener.clearCaches();
     flattener.initializeTemplateCache();
 
@@ -93,6 +118,103 @@ public class CompositionFlattenerTest {
             "bericht/risikogebiet/reisefall:0/beliebiges_intervallereignis:0/bestimmte_reise:0/bestimmtes_reiseziel:0/bundesland_region"));
   }
 
+  @Test
+  @SneakyThrows
+  public void shouldFlattenLikeFlatJson() {
+    Composition composition =
+        new CanonicalJson()
+            .unmarshal(
+                IOUtils.toString(
+                    getClass().getResourceAsStream(CORONA_PATH), StandardCharsets.UTF_8),
+                Composition.class);
+    OPERATIONALTEMPLATE template =
+        TemplateDocument.Factory.parse(getClass().getResourceAsStream(CORONA_OTP)).getTemplate();
+    String flatJson =
+        new FlatJasonProvider(templateId -> Optional.of(template))
+            .buildFlatJson(FlatFormat.SIM_SDT, "Corona_Anamnese")
+            .marshal(composition);
+
+    Map<String, Object> values = flattener.flatten(composition);
+
+    assertEquals(new ObjectMapper().readValue(flatJson, Map.class), values);
+  }
+
+  @Test
+  @SneakyThrows
+  public void shouldServeWebTemplateFromCache() {
+    flattener.flatten(coronaComposition());
+    flattener.flatten(coronaComposition());
+
+    verify(clientTemplateProvider, times(1)).find("Corona_Anamnese");
+    assertThat(registry.counter("custom.metric.template.cache.miss.counter").count(), is(1.0));
+    assertThat(registry.counter("custom.metric.template.cache.hit.counter").count(), is(1.0));
+    assertThat(registry.timer("custom.metric.template.cache.build.timer").count(), is(1L));
+  }
+
+  @Test
+  @SneakyThrows
+  public void shouldWarmUpWebTemplates() {
+    when(clientTemplateProvider.find("Missing")).thenReturn(Optional.empty());
+
+    assertThat(flattener.warmUp(List.of("Corona_Anamnese", "Missing")), is(1));
+    flattener.flatten(coronaComposition());
+
+    verify(clientTemplateProvider, times(1)).find("Corona_Anamnese");
+    assertThat(registry.counter("custom.metric.template.cache.miss.counter").count(), is(0.0));
+    assertThat(registry.get("custom.metric.template.cache.size").gauge().value(), is(1.0));
+  }
+
+  @Test
+  @SneakyThrows
+  public void shouldRefreshWebTemplatesAhead() {
+    flattener.warmUp(List.of("Corona_Anamnese"));
+
+    flattener.refreshAhead();
+    verify(clientTemplateProvider, times(1)).find("Corona_Anamnese");
+
+    properties.setRefreshAfter(Duration.ZERO);
+    flattener.refreshAhead();
+    verify(clientTemplateProvider, times(2)).find("Corona_Anamnese");
+  }
+
+  @Test
+  public void shouldExpireWebTemplatesTheTimeToLiveAfterTheyWereLastBuilt() {
+    flattener.clearCaches();
+    properties.setTimeToLive(Duration.ofHours(2));
+    flattener.initializeTemplateCache();
+
+    CompleteConfiguration<?, ?> configuration = Caching.getCachingProvider().getCacheManager()
+                                                       .getCache("webTemplateCache", String.class, WebTemplate.class)
+                                                       .getConfiguration(CompleteConfiguration.class);
+    ExpiryPolicy expiryPolicy = configuration.getExpiryPolicyFactory().create();
+
+    javax.cache.expiry.Duration timeToLive = new javax.cache.expiry.Duration(TimeUnit.MILLISECONDS, 7200000);
+    assertThat(expiryPolicy instanceof ModifiedExpiryPolicy, is(true));
+    assertThat(expiryPolicy.getExpiryForCreation(), is(timeToLive));
+    assertThat(expiryPolicy.getExpiryForUpdate(), is(timeToLive));
+  }
+
+  @Test
+  @SneakyThrows
+  public void shouldKeepWebTemplateWhenRefreshFails() {
+    flattener.warmUp(List.of("Corona_Anamnese"));
+    properties.setRefreshAfter(Duration.ZERO);
+    when(clientTemplateProvider.find(anyString())).thenThrow(new IllegalStateException("EhrBase unavailable"));
+
+    flattener.refreshAhead();
+
+    assertThat(flattener.flatten(coronaComposition()), notNullValue());
+    assertThat(registry.counter("custom.metric.template.cache.hit.counter").count(), is(1.0));
+  }
+
+  @SneakyThrows
+  private Composition coronaComposition() {
+    return new CanonicalJson()
+        .unmarshal(
+            IOUtils.toString(getClass().getResourceAsStream(CORONA_PATH), StandardCharsets.UTF_8),
+            Composition.class);
+  }
+
   @Test(expected = SystemException.class)
   @SneakyThrows
   public void shouldHandleMissingTemplateId() {
@@ -1,17 +1,21 @@
 package org.highmed.numportal.service.ehrbase;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nedap.archie.rm.composition.Composition;
 import lombok.SneakyThrows;
 import org.apache.commons.io.IOUtils;
 import org.ehrbase.openehr.sdk.response.dto.QueryResponseData;
 import org.highmed.numportal.service.ehrbase.CompositionResponseDataBuilder;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.InjectMocks;
+import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -19,17 +23,21 @@ import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.IsNull.notNullValue;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.mockito.ArgumentMatchers.any;
-import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
 public class CompositionResponseDataBuilderTest {
   @Spy public ObjectMapper mapper;
 
+  @Mock
+  private CompositionFlattener compositionFlattener;
+
   @Spy @InjectMocks
   CompositionResponseDataBuilder builder;
 
-  private static final Map COMP_1 =
-      Map.of(
+  private static final Map<String, Object> COMP_1 =
+      ordered(
           "c1/k1", "c1v1",
           "c1/k2", "c1v2",
           "c1/k3", "c1v3",
@@ -38,8 +46,8 @@ public class CompositionResponseDataBuilderTest {
           "c1/k6", "c1v6",
           "c1/only/in/composition/1", "only in composition one");
 
-  private static final Map COMP_2 =
-      Map.of(
+  private static final Map<String, Object> COMP_2 =
+      ordered(
           "c1/k1", "c2v1",
           "c1/k2", "c2v2",
           "c1/k3", "c2v3",
@@ -49,8 +57,8 @@ public class CompositionResponseDataBuilderTest {
           "c1/only/in/composition/2/and/3", "only in composition two and three",
           "c1/only/in/composition/2", "only in composition two");
 
-  private static final Map COMP_3 =
-      Map.of(
+  private static final Map<String, Object> COMP_3 =
+      ordered(
           "c1/k1", "c3v1",
           "c1/k2", "c3v2",
           "c1/k3", "c3v3",
@@ -65,10 +73,9 @@ public class CompositionResponseDataBuilderTest {
   @SneakyThrows
   @Test
   public void shouldCorrectlyComputeQueryResponseData() {
-    doReturn(createCompositionsList()).when(builder).createCompositionsMap(any());
+    when(compositionFlattener.flatten(any())).thenReturn(COMP_1, COMP_2, COMP_3);
 
-    QueryResponseData response = builder.build(List.of(Map.of()));
-    assertThat(response, notNullValue());
+    QueryResponseData response = builder.build(List.of(compositionTree(), compositionTree(), compositionTree()));
     assertThat(response, notNullValue());
     assertEquals(10, (response.getColumns().size()));
     assertEquals(3, response.getRows().size());
@@ -80,7 +87,43 @@ public class CompositionResponseDataBuilderTest {
         result);
   }
 
-  private List<Map<String, String>> createCompositionsList() {
-    return List.of(COMP_1, COMP_2, COMP_3);
+  @Test
+  public void shouldWritePseudonymsToFirstColumn() {
+    when(compositionFlattener.flatten(any())).thenReturn(COMP_1, COMP_2);
+
+    QueryResponseData response =
+        builder.build(List.of(compositionTree(), Map.of("_type", "UNKNOWN"), compositionTree()), List.of("p1", "p2", "p3"));
+
+    assertEquals("pseudonym", response.getColumns().get(0).get(PATH));
+    assertEquals(2, response.getRows().size());
+    assertEquals(List.of("p1", "c1v1"), response.getRows().get(0).subList(0, 2));
+    assertEquals(List.of("p3", "c2v1"), response.getRows().get(1).subList(0, 2));
+  }
+
+  @SneakyThrows
+  @Test
+  public void shouldBindCompositionTreeToReferenceModel() {
+    Map<String, Object> tree = compositionTree();
+    when(compositionFlattener.flatten(any())).thenReturn(Map.of("c1/k1", "c1v1"));
+
+    List<Map<String, Object>> result = builder.createCompositionsMap(List.of(tree, Map.of("_type", "UNKNOWN")));
+
+    ArgumentCaptor<Composition> composition = ArgumentCaptor.forClass(Composition.class);
+    verify(compositionFlattener).flatten(composition.capture());
+    assertEquals("Corona_Anamnese", composition.getValue().getArchetypeDetails().getTemplateId().getValue());
+    assertEquals(List.of(Map.of("c1/k1", "c1v1")), result);
+  }
+
+  @SneakyThrows
+  private Map<String, Object> compositionTree() {
+    return mapper.readValue(getClass().getResourceAsStream("/testdata/corona.json"), Map.class);
+  }
+
+  private static Map<String, Object> ordered(String... pathsAndValues) {
+    Map<String, Object> values = new LinkedHashMap<>();
+    for (int i = 0; i < pathsAndValues.length; i += 2) {
+      values.put(pathsAndValues[i], pathsAndValues[i + 1]);
+    }
+    return values;
   }
 }
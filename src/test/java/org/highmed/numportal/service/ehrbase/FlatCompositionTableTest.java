@@ -0,0 +1,73 @@
+package org.highmed.numportal.service.ehrbase;
+
+import org.ehrbase.openehr.sdk.response.dto.QueryResponseData;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class FlatCompositionTableTest {
+
+  @Test
+  public void shouldKeepColumnsInOrderOfAppearance() {
+    FlatCompositionTable table = new FlatCompositionTable();
+    table.addRow();
+    table.put("c/b", 1);
+    table.put("c/a", 2);
+    table.addRow();
+    table.put("c/c", 3);
+    table.put("c/a", 4);
+
+    QueryResponseData response = table.toQueryResponseData();
+
+    assertThat(response.getColumns().stream().map(column -> column.get("path")).toList(), is(List.of("c/b", "c/a", "c/c")));
+    assertThat(response.getColumns().get(0), is(Map.of("path", "c/b", "name", "c/b")));
+    assertThat(response.getRows(), is(List.of(Arrays.asList(1, 2, null), Arrays.asList(null, 4, 3))));
+  }
+
+  @Test
+  public void shouldOnlyStoreNonNullCells() {
+    FlatCompositionTable table = new FlatCompositionTable();
+    table.addColumn("pseudonym");
+    for (int i = 0; i < 200; i++) {
+      table.addRow();
+      table.put("pseudonym", "p" + i);
+      table.put("c/" + i, i);
+      table.put("c/empty", null);
+    }
+
+    QueryResponseData response = table.toQueryResponseData();
+
+    assertThat(table.getRowCount(), is(200));
+    assertThat(table.getColumnCount(), is(201));
+    assertThat(response.getRows().get(150).get(0), is("p150"));
+    assertThat(response.getRows().get(150).get(151), is(150));
+    assertThat(response.getRows().get(150).stream().filter(value -> value != null).count(), is(2L));
+  }
+
+  @Test
+  public void shouldGrowRowsBeyondInitialCapacity() {
+    FlatCompositionTable table = new FlatCompositionTable();
+    table.addRow();
+    for (int i = 0; i < 500; i++) {
+      table.put("c/" + i, i);
+    }
+    table.addRow();
+    table.put("c/499", "last");
+
+    List<List<Object>> rows = table.toQueryResponseData().getRows();
+
+    assertThat(rows.get(0).get(499), is(499));
+    assertThat(rows.get(1).get(499), is("last"));
+    assertThat(rows.get(1).get(0), is((Object) null));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void shouldRequireRowBeforeCells() {
+    new FlatCompositionTable().put("c/a", 1);
+  }
+}
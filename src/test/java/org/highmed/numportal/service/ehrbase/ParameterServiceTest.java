@@ -3,22 +3,25 @@ package org.highmed.numportal.service.ehrbase;
 import org.ehrbase.openehr.sdk.response.dto.QueryResponseData;
 import org.highmed.numportal.service.ehrbase.EhrBaseService;
 import org.highmed.numportal.service.ehrbase.ParameterService;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.jupiter.params.provider.MethodSource;
 import org.junit.runner.RunWith;
 import org.junit.runners.Parameterized;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.MockitoAnnotations;
 import org.springframework.cache.CacheManager;
 import org.springframework.cache.concurrent.ConcurrentMapCache;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
 import org.highmed.numportal.domain.dto.ParameterOptionsDto;
 import org.highmed.numportal.domain.model.admin.UserDetails;
+import org.highmed.numportal.properties.ParameterCacheProperties;
 import org.highmed.numportal.service.UserDetailsService;
 
+import java.time.Duration;
 import java.util.*;
 
 import static org.mockito.Mockito.when;
@@ -26,16 +29,16 @@ import static org.mockito.Mockito.when;
 @RunWith(Parameterized.class)
 public class ParameterServiceTest {
 
-    @Mock
     private CacheManager cacheManager;
 
+    private ParameterCacheProperties properties;
+
     @Mock
     private EhrBaseService ehrBaseService;
 
     @Mock
     private UserDetailsService userDetailsService;
 
-    @InjectMocks
     private ParameterService parameterService;
 
     private static final String ARCHETYPE_ID_CODE = "openEHR-EHR-EVALUATION.gender.v1";
@@ -73,6 +76,9 @@ public class ParameterServiceTest {
     @Before
     public void setup() {
         MockitoAnnotations.openMocks(this);
+        cacheManager = new ConcurrentMapCacheManager("aqlParameters");
+        properties = new ParameterCacheProperties();
+        parameterService = new ParameterService(cacheManager, ehrBaseService, userDetailsService, properties);
         UserDetails approvedUser =
                 UserDetails.builder().userId("approvedUserId").approved(true).build();
         when(userDetailsService.checkIsUserApproved("approvedUserId")).thenReturn(approvedUser);
@@ -253,12 +259,61 @@ public class ParameterServiceTest {
         });
     }
 
+    @After
+    public void tearDown() {
+        parameterService.shutdown();
+    }
+
+    @Test
+    public void shouldServeParameterValuesFromCache() {
+        setupMagnitudeResponseData();
+
+        ParameterOptionsDto first = parameterService.getParameterValues("approvedUserId", AQL_PATH_VALUE_MAGNITUDE, ARCHETYPE_ID_VALUE_MAGNITUDE);
+        ParameterOptionsDto second = parameterService.getParameterValues("approvedUserId", AQL_PATH_VALUE_MAGNITUDE, ARCHETYPE_ID_VALUE_MAGNITUDE);
+
+        Assert.assertSame(first, second);
+        Assert.assertEquals("DV_QUANTITY", second.getType());
+        Assert.assertEquals("cm", second.getUnit());
+        Mockito.verify(ehrBaseService, Mockito.times(1)).executePlainQuery(AQL_MAGNITUDE_QUERY);
+        Mockito.verify(userDetailsService, Mockito.times(2)).checkIsUserApproved("approvedUserId");
+    }
+
+    @Test
+    public void shouldCacheParameterValuesPerArchetype() {
+        setupValueUnitsResponseData();
+        setupValueValueQuestionnaireResponse();
+
+        ParameterOptionsDto units = parameterService.getParameterValues("approvedUserId", "/items[at0001]/value/value", ARCHETYPE_ID_VALUE_UNITS);
+        ParameterOptionsDto birthDate = parameterService.getParameterValues("approvedUserId", "/items[at0001]/value/value", ARCHETYPE_ID_VALUE_VALUE);
+
+        Assert.assertEquals(ARCHETYPE_ID_VALUE_UNITS, units.getArchetypeId());
+        Assert.assertEquals("DV_QUANTITY", units.getType());
+        Assert.assertEquals(ARCHETYPE_ID_VALUE_VALUE, birthDate.getArchetypeId());
+        Assert.assertEquals("DV_DATE", birthDate.getType());
+    }
+
+    @Test
+    public void shouldRefreshParameterValuesAhead() {
+        setupMagnitudeResponseData();
+        parameterService.getParameterValues("approvedUserId", AQL_PATH_VALUE_MAGNITUDE, ARCHETYPE_ID_VALUE_MAGNITUDE);
+        properties.setRefreshAfter(Duration.ZERO);
+
+        ParameterOptionsDto cached = parameterService.getParameterValues("approvedUserId", AQL_PATH_VALUE_MAGNITUDE, ARCHETYPE_ID_VALUE_MAGNITUDE);
+
+        Assert.assertEquals("DV_QUANTITY", cached.getType());
+        Mockito.verify(ehrBaseService, Mockito.timeout(5000).times(2)).executePlainQuery(AQL_MAGNITUDE_QUERY);
+    }
+
     @Test
     public void evictParametersCache() {
-        ConcurrentMapCache paramsCache = new ConcurrentMapCache("aqlParameters", false);
-        paramsCache.putIfAbsent("aqlPath1", ParameterOptionsDto.builder().aqlPath("aqlPath1").type("DV_BOOLEAN").build());
-        paramsCache.putIfAbsent("aqlPath2", ParameterOptionsDto.builder().aqlPath("aqlPath2").type("DV_ORDINAL").build());
-        Mockito.when(cacheManager.getCache("aqlParameters")).thenReturn(paramsCache);
+        setupMagnitudeResponseData();
+        parameterService.getParameterValues("approvedUserId", AQL_PATH_VALUE_MAGNITUDE, ARCHETYPE_ID_VALUE_MAGNITUDE);
+
+        parameterService.evictParametersCache();
+        ConcurrentMapCache paramsCache = (ConcurrentMapCache) cacheManager.getCache("aqlParameters");
+        Assert.assertEquals(1, paramsCache.getNativeCache().size());
+
+        properties.setTimeToLive(Duration.ZERO);
         parameterService.evictParametersCache();
         Assert.assertTrue(paramsCache.getNativeCache().isEmpty());
     }
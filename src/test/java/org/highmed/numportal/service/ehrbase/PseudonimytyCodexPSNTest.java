@@ -1,5 +1,6 @@
 package org.highmed.numportal.service.ehrbase;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.apache.commons.io.IOUtils;
 import org.highmed.numportal.service.ehrbase.Pseudonymity;
 import org.junit.Ignore;
@@ -13,7 +14,9 @@ import org.springframework.test.context.junit4.SpringRunner;
 import org.highmed.numportal.config.FttpClientConfig;
 import org.highmed.numportal.properties.FttpProperties;
 import org.highmed.numportal.properties.PrivacyProperties;
+import org.highmed.numportal.properties.PseudonymityProperties;
 import org.highmed.numportal.properties.PseudonymsPsnWorkflowProperties;
+import org.highmed.numportal.service.metric.PseudonymityMetrics;
 
 import java.io.*;
 import java.time.LocalDateTime;
@@ -23,8 +26,8 @@ import java.util.ArrayList;
 import java.util.List;
 
 @RunWith(SpringRunner.class)
-@SpringBootTest(classes = {Pseudonymity.class, FttpClientConfig.class})
-@EnableConfigurationProperties(value = {FttpProperties.class, PseudonymsPsnWorkflowProperties.class, PrivacyProperties.class})
+@SpringBootTest(classes = {Pseudonymity.class, PseudonymCache.class, PseudonymityMetrics.class, SimpleMeterRegistry.class, FttpClientConfig.class})
+@EnableConfigurationProperties(value = {FttpProperties.class, PseudonymsPsnWorkflowProperties.class, PrivacyProperties.class, PseudonymityProperties.class})
 @ActiveProfiles("pseudo")
 public class PseudonimytyCodexPSNTest {
 
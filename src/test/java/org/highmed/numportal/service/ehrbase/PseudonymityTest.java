@@ -15,24 +15,33 @@ import org.highmed.numportal.service.ehrbase.Pseudonymity;
 import org.hl7.fhir.r4.model.Identifier;
 import org.hl7.fhir.r4.model.Parameters;
 import org.hl7.fhir.r4.model.StringType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.test.util.ReflectionTestUtils;
 import org.highmed.numportal.properties.FttpProperties;
+import org.highmed.numportal.properties.IntegrationMetricsProperties;
 import org.highmed.numportal.properties.PrivacyProperties;
+import org.highmed.numportal.properties.PseudonymityProperties;
 import org.highmed.numportal.properties.PseudonymsPsnWorkflowProperties;
 import org.highmed.numportal.service.exception.ResourceNotFound;
+import org.highmed.numportal.service.metric.IntegrationMetrics;
+import org.highmed.numportal.service.metric.PseudonymityMetrics;
 
 import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
 import java.util.Arrays;
 import java.util.List;
 
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -53,9 +62,12 @@ public class PseudonymityTest {
   @Mock
   private CloseableHttpClient closeableHttpClient;
 
-  @InjectMocks
   private Pseudonymity pseudonymity;
 
+  private PseudonymCache pseudonymCache;
+
+  private SimpleMeterRegistry registry;
+
   private static final String REQUEST_BODY = "<Parameters xmlns=\"http://hl7.org/fhir\"><parameter><name value=\"study\"/><valueString value=\"num\"/></parameter><parameter><name value=\"source\"/><valueString value=\"codex\"/></parameter><parameter><name value=\"target\"/><valueString value=\"extern_0\"/></parameter><parameter><name value=\"apikey\"/><valueString value=\"iCZdh7ZWuf8ms)vvBgU-IaLi4\"/></parameter><parameter><name value=\"event\"/><valueString value=\"num.get_extern_psn\"/></parameter><parameter><name value=\"original\"/><valueString value=\"codex_WX6QAM\"/></parameter></Parameters>";
 
   private static final String RESPONSE_BODY = "<Parameters xmlns=\"http://hl7.org/fhir\"><parameter><name value=\"pseudonym\"/><part><name value=\"original\"/><valueIdentifier><system value=\"https://ths-greifswald.de/dispatcher\"/><value value=\"codex_WX6QAM\"/></valueIdentifier></part><part><name value=\"target\"/><valueIdentifier><system value=\"https://ths-greifswald.de/dispatcher\"/><value value=\"extern_0\"/></valueIdentifier></part><part><name value=\"pseudonym\"/><valueIdentifier><system value=\"https://ths-greifswald.de/dispatcher\"/><value value=\"extern_0_E2F4D9\"/></valueIdentifier></part></parameter></Parameters>";
@@ -88,11 +100,11 @@ public class PseudonymityTest {
     }
 
     private void setupTestDataWithMissingPseudonym() throws IOException {
-        when(xmlParser.encodeResourceToString(Mockito.any(Parameters.class))).thenReturn(REQUEST_BODY);
+        mockRequestBody();
         when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"));
         StringEntity entity = new StringEntity(RESPONSE_BODY, ContentType.parse("application/fhir+xml;charset=utf-8"));
         when(response.getEntity()).thenReturn(entity);
-        when(xmlParser.parseResource(Mockito.any(), Mockito.any(String.class))).thenReturn(mockOkParameters());
+        when(xmlParser.parseResource(Mockito.eq(Parameters.class), Mockito.any(Reader.class))).thenReturn(mockOkParameters());
         when(closeableHttpClient.execute(Mockito.any(HttpPost.class))).thenReturn(response);
         pseudonymity.getPseudonyms(Arrays.asList("codex_WX6QAM", "codex_ABCDE1", "123"), 100L);
     }
@@ -122,11 +134,11 @@ public class PseudonymityTest {
     }
 
     private void setupTestForResponseWithError() throws IOException {
-        when(xmlParser.encodeResourceToString(Mockito.any(Parameters.class))).thenReturn(REQUEST_BODY);
+        mockRequestBody();
         when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"));
         StringEntity entity = new StringEntity(RESPONSE_BODY_WITH_ERROR, ContentType.parse("application/fhir+xml;charset=utf-8"));
         when(response.getEntity()).thenReturn(entity);
-        when(xmlParser.parseResource(Mockito.any(), Mockito.any(String.class))).thenReturn(mockErrorParameters());
+        when(xmlParser.parseResource(Mockito.eq(Parameters.class), Mockito.any(Reader.class))).thenReturn(mockErrorParameters());
         when(closeableHttpClient.execute(Mockito.any(HttpPost.class))).thenReturn(response);
         pseudonymity.getPseudonyms(List.of("codex_AB1234"), 100L);
     }
@@ -134,7 +146,7 @@ public class PseudonymityTest {
     @Test(expected = ResourceNotFound.class)
     public void getPseudonymsMissingParamsBadRequest() throws IOException {
         ReflectionTestUtils.setField(pseudonymity, "fake3rdPartyPseudonymEnabled", false);
-        when(xmlParser.encodeResourceToString(Mockito.any(Parameters.class))).thenReturn(REQUEST_BODY);
+        mockRequestBody();
         when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_BAD_REQUEST, "Missing params"));
         StringEntity entity = new StringEntity(RESPONSE_BODY_BAD_REQUEST_ERROR, ContentType.parse("application/fhir+xml;charset=utf-8"));
         when(response.getEntity()).thenReturn(entity);
@@ -142,8 +154,97 @@ public class PseudonymityTest {
         pseudonymity.getPseudonyms(List.of("codex_AB1234"), 100L);
     }
 
+    @Test
+    public void getPseudonymsFromCacheForSameProject() throws IOException {
+        mockRequestBody();
+        when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"));
+        when(response.getEntity()).thenReturn(new StringEntity(RESPONSE_BODY, ContentType.parse("application/fhir+xml;charset=utf-8")));
+        when(xmlParser.parseResource(Mockito.eq(Parameters.class), Mockito.any(Reader.class))).thenReturn(mockOkParameters());
+        when(closeableHttpClient.execute(Mockito.any(HttpPost.class))).thenReturn(response);
+
+        Assert.assertEquals(List.of("extern_0_E2F4D9"), pseudonymity.getPseudonyms(List.of("codex_WX6QAM"), 100L));
+        Assert.assertEquals(List.of("extern_0_E2F4D9", "extern_0_E2F4D9"),
+                pseudonymity.getPseudonyms(List.of("codex_WX6QAM", "codex_WX6QAM"), 100L));
+
+        verify(closeableHttpClient, times(1)).execute(Mockito.any(HttpPost.class));
+        Assert.assertEquals(1.0, registry.get("custom.metric.pseudonymity.cache.hit.counter").counter().count(), 0);
+        Assert.assertEquals(1.0, registry.get("custom.metric.pseudonymity.cache.miss.counter").counter().count(), 0);
+        Assert.assertEquals(1, pseudonymCalls("success"));
+    }
+
+    @Test
+    public void getPseudonymsIgnoresNonCompliantOriginalsInResponse() throws IOException {
+        ReflectionTestUtils.setField(pseudonymity, "fake3rdPartyPseudonymEnabled", true);
+        mockRequestBody();
+        when(response.getStatusLine()).thenReturn(new BasicStatusLine(HttpVersion.HTTP_1_1, HttpStatus.SC_OK, "OK"));
+        when(response.getEntity()).thenReturn(new StringEntity(RESPONSE_BODY, ContentType.parse("application/fhir+xml;charset=utf-8")));
+        Parameters parameters = mockOkParameters();
+        Parameters.ParametersParameterComponent nonCompliant = new Parameters.ParametersParameterComponent(new StringType("pseudonym"));
+        nonCompliant.addPart(mockParamComponent("original", "123"));
+        nonCompliant.addPart(mockParamComponent("pseudonym", "extern_0_123456"));
+        Parameters.ParametersParameterComponent withoutOriginal = new Parameters.ParametersParameterComponent(new StringType("pseudonym"));
+        withoutOriginal.addPart(mockParamComponent("pseudonym", "extern_0_000000"));
+        parameters.addParameter(nonCompliant);
+        parameters.addParameter(withoutOriginal);
+        when(xmlParser.parseResource(Mockito.eq(Parameters.class), Mockito.any(Reader.class))).thenReturn(parameters);
+        when(closeableHttpClient.execute(Mockito.any(HttpPost.class))).thenReturn(response);
+
+        List<String> pseudonyms = pseudonymity.getPseudonyms(List.of("codex_WX6QAM", "123"), 100L);
+
+        Assert.assertEquals("extern_0_E2F4D9", pseudonyms.get(0));
+        Assert.assertNotEquals("extern_0_123456", pseudonyms.get(1));
+        Assert.assertEquals(pseudonyms.get(1), pseudonymity.getPseudonyms(List.of("123"), 100L).get(0));
+    }
+
+    @Test
+    public void getPseudonymsInOrderForConcurrentChunks() {
+        ReflectionTestUtils.setField(pseudonymity, "fake3rdPartyPseudonymEnabled", true);
+        when(privacyProperties.getPseudonomityChunksSize()).thenReturn(2);
+        List<String> ids = List.of("1", "2", "3", "4", "5", "1");
+
+        List<String> pseudonyms = pseudonymity.getPseudonyms(ids, 100L);
+
+        Assert.assertEquals(6, pseudonyms.size());
+        Assert.assertEquals(pseudonyms.get(0), pseudonyms.get(5));
+        Assert.assertEquals(pseudonymity.getPseudonyms(List.of("3"), 100L).get(0), pseudonyms.get(2));
+        Assert.assertEquals(4, pseudonymCalls("success"));
+    }
+
+    @Test
+    public void getPseudonymsCountsFailures() {
+        ReflectionTestUtils.setField(pseudonymity, "fake3rdPartyPseudonymEnabled", false);
+        try {
+            pseudonymity.getPseudonyms(Arrays.asList("123"), 100L);
+            Assert.fail();
+        } catch (ResourceNotFound e) {
+            Assert.assertEquals(1, pseudonymCalls("error"));
+        }
+    }
+
+    private long pseudonymCalls(String outcome) {
+        return registry.get("custom.metric.integration.call.timer")
+                       .tag("integration", IntegrationMetrics.PSEUDONYMITY)
+                       .tag("operation", "pseudonyms")
+                       .tag("outcome", outcome)
+                       .timer()
+                       .count();
+    }
+
+    @After
+    public void tearDown() {
+        pseudonymCache.clearCache();
+        pseudonymity.shutdown();
+    }
+
     @Before
     public void setup() {
+        PseudonymityProperties pseudonymityProperties = new PseudonymityProperties();
+        pseudonymCache = new PseudonymCache(pseudonymityProperties);
+        pseudonymCache.initializeCache();
+        registry = new SimpleMeterRegistry();
+        pseudonymity = new Pseudonymity(closeableHttpClient, fttpProperties, fhirContext, pseudonymsPsnWorkflowProperties,
+                privacyProperties, pseudonymityProperties, pseudonymCache, new PseudonymityMetrics(registry),
+                new IntegrationMetrics(registry, new IntegrationMetricsProperties()));
         response = Mockito.mock(CloseableHttpResponse.class);
         when(fttpProperties.getUrl()).thenReturn("http://url.com");
         xmlParser = Mockito.mock(XmlParser.class);
@@ -153,6 +254,13 @@ public class PseudonymityTest {
         when(privacyProperties.isEnabled()).thenReturn(true);
     }
 
+    private void mockRequestBody() throws IOException {
+        Mockito.doAnswer(invocation -> {
+            invocation.getArgument(1, Writer.class).write(REQUEST_BODY);
+            return null;
+        }).when(xmlParser).encodeResourceToWriter(Mockito.any(Parameters.class), Mockito.any(Writer.class));
+    }
+
     private Parameters mockErrorParameters() {
         Parameters parameters = new Parameters();
         parameters.addParameter("error", "NULL");
@@ -9,10 +9,12 @@ import org.mockito.InjectMocks;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
 
 @RunWith(MockitoJUnitRunner.class)
 public class ResponseFilterTest {
@@ -69,4 +71,26 @@ public class ResponseFilterTest {
     assertEquals("r2c7", output.get(1).getRows().get(1).get(1));
     assertEquals("r3c7", output.get(1).getRows().get(2).get(1));
   }
+
+  @Test
+  public void shouldFilterSingleResponseWhenRowsAreRead(){
+    QueryResponseData output = filter.filter(testResponses.get(0));
+    assertEquals(2, output.getColumns().size());
+    assertEquals(3, output.getRows().size());
+    assertEquals(List.of("r1c2", "r1c7"), output.getRows().get(0));
+    List<List<Object>> rows = new ArrayList<>();
+    output.getRows().forEach(rows::add);
+    assertEquals(List.of(List.of("r1c2", "r1c7"), List.of("r2c2", "r2c7"), List.of("r3c2", "r3c7")), rows);
+  }
+
+  @Test
+  public void shouldKeepRowsWhenNoColumnIsFiltered(){
+    QueryResponseData response = new QueryResponseData();
+    response.setColumns(List.of(Map.of("path","covid-19-diagnose/context/start_time"), Map.of("path","covid-19-diagnose/test|code")));
+    List<List<Object>> rows = List.of(List.of("r1c1", "r1c2"));
+    response.setRows(rows);
+    QueryResponseData output = filter.filter(response);
+    assertEquals(2, output.getColumns().size());
+    assertSame(rows, output.getRows());
+  }
 }
@@ -4,8 +4,11 @@ import jakarta.mail.Message;
 import jakarta.mail.MessagingException;
 import jakarta.mail.Session;
 import jakarta.mail.internet.MimeMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.highmed.numportal.properties.IntegrationMetricsProperties;
 import org.highmed.numportal.service.email.EmailProperties;
 import org.highmed.numportal.service.email.EmailService;
+import org.highmed.numportal.service.metric.IntegrationMetrics;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
@@ -13,6 +16,7 @@ import org.junit.runner.RunWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.mail.javamail.JavaMailSender;
 
@@ -23,6 +27,8 @@ public class EmailServiceTest {
     private JavaMailSender javaMailSender;
     @Mock
     private EmailProperties emailProperties;
+    @Spy
+    private IntegrationMetrics integrationMetrics = new IntegrationMetrics(new SimpleMeterRegistry(), new IntegrationMetricsProperties());
 
     @InjectMocks
     private EmailService emailService;
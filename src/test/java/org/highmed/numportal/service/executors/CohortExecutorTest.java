@@ -1,17 +1,22 @@
 package org.highmed.numportal.service.executors;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.highmed.numportal.domain.model.*;
+import org.highmed.numportal.properties.CohortCacheProperties;
+import org.highmed.numportal.properties.CohortExecutionProperties;
+import org.highmed.numportal.service.exception.SystemException;
+import org.highmed.numportal.service.metric.CohortCacheMetrics;
 import org.highmed.numportal.service.executors.AqlExecutor;
 import org.highmed.numportal.service.executors.CohortExecutor;
 import org.highmed.numportal.service.executors.SetOperationsService;
+import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.Spy;
 import org.mockito.junit.MockitoJUnitRunner;
-import org.highmed.numportal.service.ehrbase.EhrBaseService;
+import org.highmed.numportal.service.ehrbase.AllEhrIdsCache;
 import org.highmed.numportal.service.exception.IllegalArgumentException;
 
 import java.util.List;
@@ -21,6 +26,11 @@ import java.util.Set;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.core.Is.is;
 import static org.hamcrest.core.IsNull.notNullValue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -29,26 +39,42 @@ public class CohortExecutorTest {
   private final String COHORT_NAME = "Cohort name";
   private final String AQL_NAME = "AQL query name";
   private final String AQL_QUERY = "SELECT A ... FROM E ... WHERE ...";
+  private final String AQL_QUERY_2 = "SELECT B ... FROM E ... WHERE ...";
   @Spy
   private SetOperationsService setOperations;
   @Mock
-  private EhrBaseService ehrBaseService;
+  private AllEhrIdsCache allEhrIdsCache;
   @Mock
   private AqlExecutor aqlExecutor;
-  @InjectMocks
+  @Mock
+  private CohortQueryPlanner planner;
+  private SimpleMeterRegistry registry;
   private CohortExecutor cohortExecutor;
 
   @Before
   public void setup() {
-    when(ehrBaseService.getAllPatientIds())
-        .thenReturn(Set.of("1", "2", "3", "4", "5", "6", "7", "8", "9", "10"));
+    registry = new SimpleMeterRegistry();
+    cohortExecutor =
+        new CohortExecutor(
+            setOperations,
+            aqlExecutor,
+            planner,
+            new CohortResultCache(new CohortCacheProperties(), new CohortCacheMetrics(registry)),
+            allEhrIdsCache,
+            new CohortExecutionProperties(),
+            registry);
+  }
+
+  @After
+  public void tearDown() {
+    cohortExecutor.shutdown();
   }
 
   @Test
   public void shouldCorrectlyExecuteAndCohort() {
 
     CohortAql cohortAql1 = CohortAql.builder().id(1L).name(AQL_NAME).query(AQL_QUERY).build();
-    CohortAql cohortAql2 = CohortAql.builder().id(2L).name(AQL_NAME).query(AQL_QUERY).build();
+    CohortAql cohortAql2 = CohortAql.builder().id(2L).name(AQL_NAME).query(AQL_QUERY_2).build();
 
     when(aqlExecutor.execute(cohortAql1, Map.of("p1", 1), false))
         .thenReturn(Set.of("1", "2", "5", "10"));
@@ -73,12 +99,39 @@ public class CohortExecutorTest {
 
     assertThat(result, notNullValue());
     assertThat(result.equals(Set.of("1", "2", "5", "10")), is(true));
+    verify(allEhrIdsCache, never()).get();
+  }
+
+  @Test
+  public void shouldCorrectlyExecuteNotCohort() {
+    CohortAql cohortAql1 = CohortAql.builder().id(1L).name(AQL_NAME).query(AQL_QUERY).build();
+
+    when(allEhrIdsCache.get()).thenReturn(Set.of("1", "2", "3", "4", "5", "6", "7", "8", "9", "10"));
+    when(aqlExecutor.execute(cohortAql1, Map.of("p1", 1), false))
+        .thenReturn(Set.of("1", "2", "5", "10"));
+
+    CohortGroup first =
+        CohortGroup.builder().type(Type.AQL).query(cohortAql1).parameters(Map.of("p1", 1)).build();
+
+    CohortGroup notCohort =
+        CohortGroup.builder()
+            .type(Type.GROUP)
+            .operator(Operator.NOT)
+            .children(List.of(first))
+            .build();
+
+    Cohort cohort = Cohort.builder().name(COHORT_NAME).cohortGroup(notCohort).build();
+
+    Set<String> result = cohortExecutor.execute(cohort, false);
+
+    assertThat(result.equals(Set.of("3", "4", "6", "7", "8", "9")), is(true));
+    verify(allEhrIdsCache, times(1)).get();
   }
 
   @Test
   public void shouldCorrectlyExecuteOrCohort() {
     CohortAql cohortAql1 = CohortAql.builder().id(1L).name(AQL_NAME).query(AQL_QUERY).build();
-    CohortAql cohortAql2 = CohortAql.builder().id(2L).name(AQL_NAME).query(AQL_QUERY).build();
+    CohortAql cohortAql2 = CohortAql.builder().id(2L).name(AQL_NAME).query(AQL_QUERY_2).build();
 
     when(aqlExecutor.execute(cohortAql1, Map.of("p1", 1), false))
         .thenReturn(Set.of("1", "2", "5", "10"));
@@ -115,4 +168,70 @@ public class CohortExecutorTest {
     Cohort cohort = Cohort.builder().name(COHORT_NAME).cohortGroup(null).build();
     cohortExecutor.execute(cohort, false);
   }
+
+  @Test
+  public void shouldExecuteIdenticalCriteriaOnlyOnce() {
+    CohortAql cohortAql1 = CohortAql.builder().id(1L).name(AQL_NAME).query(AQL_QUERY).build();
+    CohortAql cohortAql2 = CohortAql.builder().id(1L).name(AQL_NAME).query(AQL_QUERY).build();
+
+    when(aqlExecutor.execute(cohortAql1, Map.of("p1", 1), false))
+        .thenReturn(Set.of("1", "2", "5", "10"));
+
+    CohortGroup first =
+        CohortGroup.builder().type(Type.AQL).query(cohortAql1).parameters(Map.of("p1", 1)).build();
+    CohortGroup second =
+        CohortGroup.builder().type(Type.AQL).query(cohortAql2).parameters(Map.of("p1", 1)).build();
+
+    CohortGroup orCohort =
+        CohortGroup.builder()
+            .type(Type.GROUP)
+            .operator(Operator.OR)
+            .children(List.of(first, second))
+            .build();
+
+    Set<String> result = cohortExecutor.executeGroup(orCohort, false);
+
+    assertThat(result.equals(Set.of("1", "2", "5", "10")), is(true));
+    verify(aqlExecutor, times(1)).execute(any(), any(), anyBoolean());
+    assertThat(registry.get("custom.metric.cohort.leaf.timer").tag("type", "leaf").timer().count(), is(1L));
+  }
+
+  @Test
+  public void shouldExecuteMergedSubtreeAsSingleQuery() {
+    CohortAql cohortAql1 = CohortAql.builder().id(1L).name(AQL_NAME).query(AQL_QUERY).build();
+    CohortAql cohortAql2 = CohortAql.builder().id(2L).name(AQL_NAME).query(AQL_QUERY_2).build();
+    CohortAql cohortAql3 = CohortAql.builder().id(3L).name(AQL_NAME).query("SELECT C ... FROM E ... WHERE ...").build();
+
+    CohortGroup first = CohortGroup.builder().type(Type.AQL).query(cohortAql1).build();
+    CohortGroup second = CohortGroup.builder().type(Type.AQL).query(cohortAql2).build();
+    CohortGroup third = CohortGroup.builder().type(Type.AQL).query(cohortAql3).build();
+    CohortGroup orCohort =
+        CohortGroup.builder().type(Type.GROUP).operator(Operator.OR).children(List.of(first, second)).build();
+    CohortGroup andCohort =
+        CohortGroup.builder().type(Type.GROUP).operator(Operator.AND).children(List.of(orCohort, third)).build();
+
+    when(planner.plan(andCohort, false)).thenReturn(Map.of(orCohort, "merged aql"));
+    when(aqlExecutor.executePreparedQuery("merged aql")).thenReturn(Set.of("1", "2", "3"));
+    when(aqlExecutor.execute(cohortAql3, null, false)).thenReturn(Set.of("2", "3", "4"));
+
+    Set<String> result = cohortExecutor.executeGroup(andCohort, false);
+
+    assertThat(result, is(Set.of("2", "3")));
+    verify(aqlExecutor, times(1)).execute(any(), any(), anyBoolean());
+    verify(aqlExecutor, times(1)).executePreparedQuery("merged aql");
+    assertThat(registry.get("custom.metric.cohort.leaf.timer").tag("type", "merged").timer().count(), is(1L));
+  }
+
+  @Test(expected = SystemException.class)
+  public void shouldPropagateCriterionFailure() {
+    CohortAql cohortAql1 = CohortAql.builder().id(1L).name(AQL_NAME).query(AQL_QUERY).build();
+
+    when(aqlExecutor.execute(cohortAql1, Map.of("p1", 1), false))
+        .thenThrow(new SystemException(AqlExecutor.class, "EhrBase not reachable"));
+
+    CohortGroup first =
+        CohortGroup.builder().type(Type.AQL).query(cohortAql1).parameters(Map.of("p1", 1)).build();
+
+    cohortExecutor.executeGroup(first, false);
+  }
 }
@@ -0,0 +1,143 @@
+package org.highmed.numportal.service.executors;
+
+import org.highmed.numportal.domain.model.CohortAql;
+import org.highmed.numportal.domain.model.CohortGroup;
+import org.highmed.numportal.domain.model.Operator;
+import org.highmed.numportal.domain.model.Type;
+import org.highmed.numportal.properties.CohortExecutionProperties;
+import org.highmed.numportal.properties.ConsentProperties;
+import org.highmed.numportal.service.ehrbase.EhrBaseService;
+import org.highmed.numportal.service.policy.ProjectPolicyService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+
+@RunWith(MockitoJUnitRunner.class)
+public class CohortQueryPlannerTest {
+
+  private static final String BLOOD_PRESSURE =
+      "SELECT e/ehr_id/value FROM EHR e CONTAINS COMPOSITION c0 CONTAINS OBSERVATION o[openEHR-EHR-OBSERVATION.blood_pressure.v2] ";
+
+  private static final String SYSTOLIC_ABOVE =
+      BLOOD_PRESSURE + "WHERE o/data[at0001]/events[at0006]/data[at0003]/items[at0004]/value/magnitude > $systolic";
+
+  private static final String DIASTOLIC_ABOVE =
+      BLOOD_PRESSURE + "WHERE o/data[at0001]/events[at0006]/data[at0003]/items[at0005]/value/magnitude > $diastolic";
+
+  private static final String HEART_RATE =
+      "SELECT e/ehr_id/value FROM EHR e CONTAINS COMPOSITION c0 CONTAINS OBSERVATION o[openEHR-EHR-OBSERVATION.pulse.v2] "
+          + "WHERE o/data[at0002]/events[at0003]/data[at0001]/items[at0004]/value/magnitude > 100";
+
+  private static final String EHR_CREATED_AFTER =
+      "SELECT e/ehr_id/value FROM EHR e WHERE e/time_created/value > '2020-01-01'";
+
+  private static final String EHR_SYSTEM =
+      "SELECT e/ehr_id/value FROM EHR e WHERE e/system_id/value = 'num'";
+
+  @Mock
+  private EhrBaseService ehrBaseService;
+
+  @Mock
+  private ProjectPolicyService projectPolicyService;
+
+  private CohortExecutionProperties properties;
+
+  private CohortQueryPlanner planner;
+
+  @Before
+  public void setup() {
+    properties = new CohortExecutionProperties();
+    AqlExecutor aqlExecutor = new AqlExecutor(ehrBaseService, projectPolicyService, new ConsentProperties());
+    planner = new CohortQueryPlanner(aqlExecutor, properties);
+  }
+
+  @Test
+  public void shouldMergeOrOfCriteriaWithSameContainment() {
+    CohortGroup systolic = leaf(SYSTOLIC_ABOVE, Map.of("systolic", 140));
+    CohortGroup diastolic = leaf(DIASTOLIC_ABOVE, Map.of("diastolic", 90));
+    CohortGroup or = group(Operator.OR, systolic, diastolic);
+
+    Map<CohortGroup, String> plan = planner.plan(or, false);
+
+    assertThat(plan.size(), is(1));
+    String query = plan.get(or);
+    assertThat(query, containsString("OBSERVATION o[openEHR-EHR-OBSERVATION.blood_pressure.v2]"));
+    assertThat(query, containsString("items[at0004]/value/magnitude > 140 OR"));
+    assertThat(query, containsString("items[at0005]/value/magnitude > 90"));
+  }
+
+  @Test
+  public void shouldNotMergeAndOfConditionsOnEntries() {
+    CohortGroup and =
+        group(Operator.AND, leaf(SYSTOLIC_ABOVE, Map.of("systolic", 140)), leaf(DIASTOLIC_ABOVE, Map.of("diastolic", 90)));
+
+    assertThat(planner.plan(and, false).isEmpty(), is(true));
+  }
+
+  @Test
+  public void shouldMergeAndOfConditionsOnEhr() {
+    CohortGroup and = group(Operator.AND, leaf(EHR_CREATED_AFTER, null), leaf(EHR_SYSTEM, null));
+
+    String query = planner.plan(and, false).get(and);
+
+    assertThat(query, containsString("e/time_created/value > '2020-01-01' AND e/system_id/value = 'num'"));
+  }
+
+  @Test
+  public void shouldOnlyMergeSubtreesWithSameContainment() {
+    CohortGroup or =
+        group(Operator.OR, leaf(SYSTOLIC_ABOVE, Map.of("systolic", 140)), leaf(DIASTOLIC_ABOVE, Map.of("diastolic", 90)));
+    CohortGroup heartRate = leaf(HEART_RATE, null);
+    CohortGroup root = group(Operator.OR, or, heartRate);
+
+    Map<CohortGroup, String> plan = planner.plan(root, false);
+
+    assertThat(plan.size(), is(1));
+    assertThat(plan.get(or), not(containsString("pulse")));
+  }
+
+  @Test
+  public void shouldKeepNotGroupsInMemory() {
+    CohortGroup or =
+        group(Operator.OR, leaf(SYSTOLIC_ABOVE, Map.of("systolic", 140)), leaf(SYSTOLIC_ABOVE, Map.of("systolic", 160)));
+    CohortGroup notGroup = group(Operator.NOT, or);
+
+    Map<CohortGroup, String> plan = planner.plan(notGroup, false);
+
+    assertThat(plan.size(), is(1));
+    assertThat(plan.get(or), containsString("> 140 OR"));
+    assertThat(plan.get(or), containsString("> 160"));
+  }
+
+  @Test
+  public void shouldNotMergeWhenDisabled() {
+    properties.setPushDown(false);
+    CohortGroup or =
+        group(Operator.OR, leaf(SYSTOLIC_ABOVE, Map.of("systolic", 140)), leaf(DIASTOLIC_ABOVE, Map.of("diastolic", 90)));
+
+    assertThat(planner.plan(or, false).isEmpty(), is(true));
+  }
+
+  private CohortGroup leaf(String query, Map<String, Object> parameters) {
+    return CohortGroup.builder()
+                      .type(Type.AQL)
+                      .query(CohortAql.builder().query(query).build())
+                      .parameters(parameters)
+                      .build();
+  }
+
+  private CohortGroup group(Operator operator, CohortGroup... children) {
+    return CohortGroup.builder().type(Type.GROUP).operator(operator).children(List.of(children)).build();
+  }
+}
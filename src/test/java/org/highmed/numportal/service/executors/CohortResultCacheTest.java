@@ -0,0 +1,135 @@
+package org.highmed.numportal.service.executors;
+
+import org.highmed.numportal.domain.model.CohortAql;
+import org.highmed.numportal.domain.model.CohortGroup;
+import org.highmed.numportal.domain.model.Operator;
+import org.highmed.numportal.domain.model.Type;
+import org.highmed.numportal.properties.CohortCacheProperties;
+import org.highmed.numportal.service.metric.CohortCacheMetrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.hamcrest.core.IsNot.not;
+
+public class CohortResultCacheTest {
+
+  private static final String QUERY_1 = "SELECT e/ehr_id/value FROM EHR e WHERE e/system_id/value = 'a'";
+  private static final String QUERY_2 = "SELECT e/ehr_id/value FROM EHR e WHERE e/system_id/value = 'b'";
+
+  private CohortCacheProperties properties;
+
+  private SimpleMeterRegistry registry;
+
+  private CohortResultCache cache;
+
+  @Before
+  public void setup() {
+    properties = new CohortCacheProperties();
+    registry = new SimpleMeterRegistry();
+    cache = new CohortResultCache(properties, new CohortCacheMetrics(registry));
+    cache.initializeCache();
+  }
+
+  @After
+  public void tearDown() {
+    cache.clearCache();
+  }
+
+  @Test
+  public void shouldExecuteSameCohortOnlyOnce() {
+    AtomicInteger executions = new AtomicInteger();
+    CohortGroup cohort = group(Operator.AND, leaf(QUERY_1, Map.of("p", 1)), leaf(QUERY_2, null));
+
+    for (int i = 0; i < 3; i++) {
+      Set<String> result = cache.get(cohort, false, () -> {
+        executions.incrementAndGet();
+        return Set.of("1", "2");
+      });
+      assertThat(result, is(Set.of("1", "2")));
+    }
+
+    assertThat(executions.get(), is(1));
+    assertThat(registry.get("custom.metric.cohort.cache.miss.counter").counter().count(), is(1.0));
+    assertThat(registry.get("custom.metric.cohort.cache.hit.counter").counter().count(), is(2.0));
+  }
+
+  @Test
+  public void shouldUseCanonicalKey() {
+    CohortGroup first = group(Operator.OR, leaf(QUERY_1, Map.of("p", 1)), leaf(QUERY_2, null));
+    CohortGroup reordered = group(Operator.OR, leaf(QUERY_2, null), leaf("  " + QUERY_1, Map.of("p", 1)));
+
+    assertThat(CohortResultCache.key(first, false), is(CohortResultCache.key(reordered, false)));
+    assertThat(CohortResultCache.key(first, null), is(CohortResultCache.key(first, true)));
+    assertThat(CohortResultCache.key(first, false), not(CohortResultCache.key(first, true)));
+    assertThat(
+        CohortResultCache.key(leaf(QUERY_1, Map.of("p", 1)), false),
+        not(CohortResultCache.key(leaf(QUERY_1, Map.of("p", "1")), false)));
+    assertThat(
+        CohortResultCache.key(group(Operator.AND, leaf(QUERY_1, null), leaf(QUERY_2, null)), false),
+        not(CohortResultCache.key(group(Operator.OR, leaf(QUERY_1, null), leaf(QUERY_2, null)), false)));
+  }
+
+  @Test
+  public void shouldExpireResults() throws InterruptedException {
+    cache.clearCache();
+    properties.setTimeToLive(Duration.ofMillis(50));
+    cache.initializeCache();
+    AtomicInteger executions = new AtomicInteger();
+    CohortGroup cohort = leaf(QUERY_1, null);
+
+    cache.get(cohort, false, () -> Set.of(String.valueOf(executions.incrementAndGet())));
+    Thread.sleep(100);
+    Set<String> result = cache.get(cohort, false, () -> Set.of(String.valueOf(executions.incrementAndGet())));
+
+    assertThat(result, is(Set.of("2")));
+  }
+
+  @Test
+  public void shouldEvictWhenFull() throws InterruptedException {
+    cache.clearCache();
+    properties.setMaxEntries(1);
+    cache.initializeCache();
+
+    cache.get(leaf(QUERY_1, null), false, () -> Set.of("1"));
+    cache.get(leaf(QUERY_2, null), false, () -> Set.of("2"));
+
+    for (int i = 0; i < 50 && registry.get("custom.metric.cohort.cache.eviction.counter").counter().count() == 0; i++) {
+      Thread.sleep(10);
+    }
+    assertThat(registry.get("custom.metric.cohort.cache.eviction.counter").counter().count(), is(1.0));
+  }
+
+  @Test
+  public void shouldNotCacheWhenDisabled() {
+    properties.setEnabled(false);
+    AtomicInteger executions = new AtomicInteger();
+
+    cache.get(leaf(QUERY_1, null), false, () -> Set.of(String.valueOf(executions.incrementAndGet())));
+    cache.get(leaf(QUERY_1, null), false, () -> Set.of(String.valueOf(executions.incrementAndGet())));
+
+    assertThat(executions.get(), is(2));
+  }
+
+  private CohortGroup leaf(String query, Map<String, Object> parameters) {
+    return CohortGroup.builder()
+                      .type(Type.AQL)
+                      .query(CohortAql.builder().query(query).build())
+                      .parameters(parameters)
+                      .build();
+  }
+
+  private CohortGroup group(Operator operator, CohortGroup... children) {
+    return CohortGroup.builder().type(Type.GROUP).operator(operator).children(List.of(children)).build();
+  }
+}
@@ -0,0 +1,86 @@
+package org.highmed.numportal.service.executors;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class EhrIdSetTest {
+
+  private static final String UUID_1 = "0b9f6d5e-8f3a-4c2b-9d1e-2a7c4b6e8f01";
+  private static final String UUID_2 = "f7a1c3e5-0b2d-4f68-8a9c-1e3b5d7f9a02";
+  private static final String UUID_3 = "7c5e3a1f-9d8b-4a6c-b2e0-4f6a8c0e2b03";
+
+  @Test
+  public void shouldKeepIdsAsAdded() {
+    EhrIdSet set = EhrIdSet.of(UUID_2, UUID_1, "not-a-uuid", UUID_2, UUID_1.toUpperCase());
+
+    assertThat(set.size(), is(4));
+    assertThat(set, is(Set.of(UUID_1, UUID_2, "not-a-uuid", UUID_1.toUpperCase())));
+    assertThat(set.contains(UUID_1), is(true));
+    assertThat(set.contains(UUID_1.toUpperCase()), is(true));
+    assertThat(set.contains(UUID_3), is(false));
+    assertThat(set.contains(1), is(false));
+  }
+
+  @Test
+  public void shouldComputeSetOperations() {
+    EhrIdSet first = EhrIdSet.of(UUID_1, UUID_2, "a");
+    EhrIdSet second = EhrIdSet.of(UUID_2, UUID_3, "a", "b");
+
+    assertThat(first.intersect(second), is(Set.of(UUID_2, "a")));
+    assertThat(first.union(second), is(Set.of(UUID_1, UUID_2, UUID_3, "a", "b")));
+    assertThat(first.minus(second), is(Set.of(UUID_1)));
+    assertThat(second.minus(first), is(Set.of(UUID_3, "b")));
+    assertThat(first.intersect(EhrIdSet.empty()).isEmpty(), is(true));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void shouldBeImmutable() {
+    EhrIdSet.of(UUID_1).add(UUID_2);
+  }
+
+  @Test
+  public void shouldMatchHashSetResultsForRandomIds() {
+    Random random = new Random(42);
+    List<String> universe = new ArrayList<>();
+    for (int i = 0; i < 5000; i++) {
+      universe.add(new UUID(random.nextLong(), random.nextLong()).toString());
+    }
+    Set<String> first = new HashSet<>();
+    Set<String> second = new HashSet<>();
+    for (String id : universe) {
+      if (random.nextInt(3) == 0) {
+        first.add(id);
+      }
+      if (random.nextInt(2) == 0) {
+        second.add(id);
+      }
+    }
+
+    Set<String> intersection = new HashSet<>(first);
+    intersection.retainAll(second);
+    Set<String> union = new HashSet<>(first);
+    union.addAll(second);
+    Set<String> difference = new HashSet<>(first);
+    difference.removeAll(second);
+
+    EhrIdSet compactFirst = EhrIdSet.copyOf(first);
+    EhrIdSet compactSecond = EhrIdSet.copyOf(second);
+
+    assertThat(compactFirst, is(first));
+    assertThat(compactFirst.intersect(compactSecond), is(intersection));
+    assertThat(compactFirst.union(compactSecond), is(union));
+    assertThat(compactFirst.minus(compactSecond), is(difference));
+    assertThat(EhrIdSet.intersectAll(List.of(first, second)), is(intersection));
+    assertThat(EhrIdSet.unionAll(List.of(first, second)), is(union));
+    assertThat(compactFirst.hashCode(), is(first.hashCode()));
+  }
+}
@@ -154,7 +154,7 @@ public class SetOperationsServiceTest {
 
     Set<String> results =
         setOperations.apply(
-            Operator.AND, List.of(Set.of("1", "2", "3"), Set.of("1", "2", "4")), Set.of());
+            Operator.AND, List.of(Set.of("1", "2", "3"), Set.of("1", "2", "4")), Set::of);
 
     assertThat(results, notNullValue());
     assertThat(results.equals(Set.of("1", "2")), is(true));
@@ -166,7 +166,7 @@ public class SetOperationsServiceTest {
         setOperations.apply(
             Operator.OR,
             List.of(Set.of("1abc", "2abc", "3abc"), Set.of("4abc", "5abc", "6abc", "7abc")),
-            Set.of());
+            Set::of);
 
     assertThat(results, notNullValue());
     assertThat(
@@ -176,7 +176,7 @@ public class SetOperationsServiceTest {
   @Test
   public void shouldCorrectlyApplyNotOperation() {
     Set<String> results =
-        setOperations.apply(Operator.NOT, List.of(Set.of("1abc", "2abc", "3abc")), Set.of("4abc"));
+        setOperations.apply(Operator.NOT, List.of(Set.of("1abc", "2abc", "3abc")), () -> Set.of("4abc"));
 
     assertThat(results, notNullValue());
     assertThat(results.equals(Set.of("4abc")), is(true));
@@ -0,0 +1,305 @@
+package org.highmed.numportal.service.export;
+
+import org.highmed.numportal.domain.model.ExportJob;
+import org.highmed.numportal.domain.model.ExportJobStatus;
+import org.highmed.numportal.domain.model.ExportType;
+import org.highmed.numportal.domain.model.Project;
+import org.highmed.numportal.domain.repository.ExportJobRepository;
+import org.highmed.numportal.properties.ExportProperties;
+import org.highmed.numportal.service.atna.AtnaService;
+import org.highmed.numportal.service.exception.BadRequestException;
+import org.highmed.numportal.service.exception.ResourceNotFound;
+import org.highmed.numportal.service.exception.TooManyRequestsException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.core.io.Resource;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExportJobServiceTest {
+
+  private static final String USER_ID = "researcher";
+
+  private static final byte[] RESULT = "pseudonym,value\ncodex-1,42\n".getBytes(StandardCharsets.UTF_8);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Mock
+  private AtnaService atnaService;
+
+  @Mock
+  private ExportJobRepository exportJobRepository;
+
+  private final Map<String, ExportJob> storedJobs = new ConcurrentHashMap<>();
+
+  private ExportProperties exportProperties;
+
+  private ExportJobService exportJobService;
+
+  private Project project;
+
+  @Before
+  public void setup() throws IOException {
+    exportProperties = new ExportProperties();
+    exportProperties.setJobDirectory(folder.newFolder("exports").toPath());
+    project = Project.builder().id(3L).build();
+    lenient().when(exportJobRepository.save(any(ExportJob.class))).thenAnswer(invocation -> {
+      ExportJob job = invocation.getArgument(0);
+      storedJobs.put(job.getId(), job);
+      return job;
+    });
+    lenient().when(exportJobRepository.findById(anyString()))
+             .thenAnswer(invocation -> Optional.ofNullable(storedJobs.get(invocation.<String>getArgument(0))));
+    lenient().when(exportJobRepository.countByUserIdAndStatusIn(anyString(), anyCollection()))
+             .thenAnswer(invocation -> storedJobs.values().stream()
+                                                 .filter(job -> job.getUserId().equals(invocation.getArgument(0)))
+                                                 .filter(job -> invocation.<List<ExportJobStatus>>getArgument(1).contains(job.getStatus()))
+                                                 .count());
+    createService();
+  }
+
+  @After
+  public void tearDown() {
+    exportJobService.shutdown();
+  }
+
+  @Test
+  public void shouldWriteResultOfCompletedJob() throws IOException, InterruptedException {
+    ExportJob job = exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> out.write(RESULT));
+    awaitCompletion(job);
+
+    assertThat(job.getStatus(), is(ExportJobStatus.COMPLETED));
+    assertThat(job.getSize(), is((long) RESULT.length));
+    assertThat(job.getBytesWritten(), is((long) RESULT.length));
+    assertThat(job.getFileName().endsWith(".zip"), is(true));
+    Resource result = exportJobService.getResult(exportJobService.getJob(job.getId(), USER_ID));
+    assertThat(result.getContentAsByteArray(), is(RESULT));
+    verify(atnaService, timeout(5000)).logDataExport(eq(USER_ID), eq(3L), eq(project), eq(true));
+  }
+
+  @Test
+  public void shouldFailJobAndRemovePartialResult() throws InterruptedException, IOException {
+    ExportJob job = exportJobService.submit(USER_ID, project, ExportType.json, () -> out -> {
+      out.write(RESULT);
+      throw new IOException("ehrbase not available");
+    });
+    awaitCompletion(job);
+
+    assertThat(job.getStatus(), is(ExportJobStatus.FAILED));
+    assertThrows(BadRequestException.class, () -> exportJobService.getResult(job));
+    try (var files = Files.list(exportProperties.getJobDirectory())) {
+      assertThat(files.count(), is(0L));
+    }
+    verify(atnaService, timeout(5000)).logDataExport(eq(USER_ID), eq(3L), eq(project), eq(false));
+  }
+
+  @Test
+  public void shouldNotFindJobOfOtherUser() throws InterruptedException {
+    ExportJob job = exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> out.write(RESULT));
+    awaitCompletion(job);
+
+    assertThrows(ResourceNotFound.class, () -> exportJobService.getJob(job.getId(), "otherResearcher"));
+    assertThrows(ResourceNotFound.class, () -> exportJobService.getJob("unknown", USER_ID));
+  }
+
+  @Test
+  public void shouldNotReturnResultOfRunningJob() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    ExportJob job = exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> {
+      try {
+        release.await();
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+      out.write(RESULT);
+    });
+
+    assertThrows(BadRequestException.class, () -> exportJobService.getResult(job));
+    release.countDown();
+    awaitCompletion(job);
+    assertThat(job.getStatus(), is(ExportJobStatus.COMPLETED));
+  }
+
+  @Test
+  public void shouldRemoveExpiredJobsWithTheirResult() throws InterruptedException {
+    exportProperties.setJobTimeToLive(Duration.ZERO);
+    ExportJob job = exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> out.write(RESULT));
+    awaitCompletion(job);
+    verify(atnaService, timeout(5000)).logDataExport(eq(USER_ID), eq(3L), eq(project), eq(true));
+    Path result = exportProperties.getJobDirectory().resolve(job.getFileName());
+    assertThat(Files.exists(result), is(true));
+    when(exportJobRepository.findExpired(any(), any())).thenReturn(List.of(job));
+
+    exportJobService.removeExpiredJobs();
+
+    assertThat(Files.exists(result), is(false));
+    verify(exportJobRepository).deleteAllByIdInBatch(List.of(job.getId()));
+  }
+
+  @Test
+  public void shouldRemoveJobsAbandonedByTheirInstanceWithPartialResult() throws IOException {
+    ExportJob abandoned = new ExportJob("abandoned", USER_ID, 3L, ExportType.csv, OffsetDateTime.now().minusDays(2),
+        "export-abandoned.zip");
+    abandoned.start();
+    Path partial = Files.write(exportProperties.getJobDirectory().resolve("export-abandoned.zip.part"), RESULT);
+    Path unrelated = Files.write(exportProperties.getJobDirectory().resolve("unrelated.txt"), RESULT);
+    when(exportJobRepository.findExpired(any(), any())).thenReturn(List.of(abandoned));
+
+    exportJobService.removeExpiredJobs();
+
+    assertThat(Files.exists(partial), is(false));
+    assertThat(Files.exists(unrelated), is(true));
+    verify(exportJobRepository).deleteAllByIdInBatch(List.of("abandoned"));
+  }
+
+  @Test
+  public void shouldKeepJobsBuiltByThisInstance() throws InterruptedException {
+    CountDownLatch release = new CountDownLatch(1);
+    ExportJob job = exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> {
+      awaitRelease(release);
+      out.write(RESULT);
+    });
+    when(exportJobRepository.findExpired(any(), any())).thenReturn(List.of(job));
+
+    exportJobService.removeExpiredJobs();
+
+    verify(exportJobRepository, never()).deleteAllByIdInBatch(any());
+    release.countDown();
+    awaitCompletion(job);
+  }
+
+  @Test
+  public void shouldFindJobBuiltByOtherInstance() throws IOException {
+    OffsetDateTime now = OffsetDateTime.now();
+    ExportJob job = new ExportJob("other", USER_ID, 3L, ExportType.json, now, "export-other.json");
+    job.complete(RESULT.length, now, now.plusDays(1));
+    storedJobs.put(job.getId(), job);
+    Files.write(exportProperties.getJobDirectory().resolve("export-other.json"), RESULT);
+
+    ExportJob found = exportJobService.getJob("other", USER_ID);
+
+    assertThat(found.getStatus(), is(ExportJobStatus.COMPLETED));
+    assertThat(exportJobService.getResult(found).getContentAsByteArray(), is(RESULT));
+  }
+
+  @Test
+  public void shouldNotFindResultMissingInJobDirectory() {
+    OffsetDateTime now = OffsetDateTime.now();
+    ExportJob job = new ExportJob("missing", USER_ID, 3L, ExportType.json, now, "export-missing.json");
+    job.complete(RESULT.length, now, now.plusDays(1));
+
+    assertThrows(ResourceNotFound.class, () -> exportJobService.getResult(job));
+  }
+
+  @Test
+  public void shouldRejectJobsBeyondLimitOfUser() throws InterruptedException {
+    exportProperties.setJobMaxActivePerUser(1);
+    CountDownLatch release = new CountDownLatch(1);
+    ExportJob running = exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> {
+      awaitRelease(release);
+      out.write(RESULT);
+    });
+
+    assertThrows(TooManyRequestsException.class,
+        () -> exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> out.write(RESULT)));
+    ExportJob otherUser = exportJobService.submit("otherResearcher", project, ExportType.csv, () -> out -> out.write(RESULT));
+
+    release.countDown();
+    awaitCompletion(running);
+    awaitCompletion(otherUser);
+    ExportJob next = exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> out.write(RESULT));
+    awaitCompletion(next);
+    assertThat(next.getStatus(), is(ExportJobStatus.COMPLETED));
+  }
+
+  @Test
+  public void shouldRejectJobsWhenQueueIsFull() throws InterruptedException {
+    exportJobService.shutdown();
+    exportProperties.setJobParallelism(1);
+    exportProperties.setJobQueueCapacity(1);
+    exportProperties.setJobMaxActivePerUser(10);
+    createService();
+    CountDownLatch release = new CountDownLatch(1);
+    ExportJob running = exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> {
+      awaitRelease(release);
+      out.write(RESULT);
+    });
+    ExportJob queued = exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> out.write(RESULT));
+
+    assertThrows(TooManyRequestsException.class,
+        () -> exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> out.write(RESULT)));
+    verify(exportJobRepository).deleteById(anyString());
+
+    release.countDown();
+    awaitCompletion(running);
+    awaitCompletion(queued);
+    assertThat(queued.getStatus(), is(ExportJobStatus.COMPLETED));
+  }
+
+  @Test
+  public void shouldStoreStateOfJob() throws InterruptedException {
+    ExportJob job = exportJobService.submit(USER_ID, project, ExportType.csv, () -> out -> out.write(RESULT));
+    awaitCompletion(job);
+    verify(atnaService, timeout(5000)).logDataExport(eq(USER_ID), eq(3L), eq(project), eq(true));
+
+    ExportJob stored = storedJobs.get(job.getId());
+    assertThat(stored.getStatus(), is(ExportJobStatus.COMPLETED));
+    assertThat(stored.getModifiedDate().isBefore(stored.getCreateDate()), is(false));
+  }
+
+  private void createService() {
+    exportJobService = new ExportJobService(exportProperties, atnaService, new ExportJobWriter(), exportJobRepository);
+    exportJobService.initializeJobDirectory();
+  }
+
+  private static void awaitRelease(CountDownLatch release) {
+    try {
+      release.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private static void awaitCompletion(ExportJob job) throws InterruptedException {
+    long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+    while (job.getStatus() != ExportJobStatus.COMPLETED && job.getStatus() != ExportJobStatus.FAILED) {
+      if (System.nanoTime() > deadline) {
+        throw new IllegalStateException("Export job not finished");
+      }
+      Thread.sleep(10);
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package org.highmed.numportal.service.metric;
+
+import org.highmed.numportal.properties.IntegrationMetricsProperties;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThrows;
+
+public class IntegrationMetricsTest {
+
+  private static final String CALL_TIMER = "custom.metric.integration.call.timer";
+
+  private SimpleMeterRegistry registry;
+
+  private IntegrationMetrics integrationMetrics;
+
+  @Before
+  public void setup() {
+    registry = new SimpleMeterRegistry();
+    integrationMetrics = new IntegrationMetrics(registry, new IntegrationMetricsProperties());
+  }
+
+  @Test
+  public void shouldRecordSuccessfulCallByIntegrationAndOperation() {
+    String result = integrationMetrics.record(IntegrationMetrics.EHRBASE, "executeRaw", "SELECT e FROM EHR e", () -> "rows");
+
+    assertThat(result, is("rows"));
+    assertThat(registry.get(CALL_TIMER)
+                       .tag("integration", IntegrationMetrics.EHRBASE)
+                       .tag("operation", "executeRaw")
+                       .tag("outcome", "success")
+                       .timer()
+                       .count(), is(1L));
+  }
+
+  @Test
+  public void shouldRecordFailedCallAsError() {
+    assertThrows(IllegalStateException.class, () -> integrationMetrics.run(IntegrationMetrics.SMTP, "send", () -> {
+      throw new IllegalStateException("mail server not available");
+    }));
+
+    assertThat(registry.get(CALL_TIMER)
+                       .tag("integration", IntegrationMetrics.SMTP)
+                       .tag("outcome", "error")
+                       .timer()
+                       .count(), is(1L));
+  }
+
+  @Test
+  public void shouldRecordAqlRowsAndBytes() {
+    integrationMetrics.aqlRows("executeRaw", 20);
+    integrationMetrics.aqlRows("executeRaw", 10);
+    integrationMetrics.aqlBytes(4096);
+
+    assertThat(registry.get("custom.metric.integration.aql.rows").tag("operation", "executeRaw").summary().totalAmount(),
+        is(30.0));
+    assertThat(registry.get("custom.metric.integration.aql.bytes").summary().totalAmount(), is(4096.0));
+  }
+
+  @Test
+  public void shouldHashQueriesWithoutContent() {
+    String hash = IntegrationMetrics.queryHash("SELECT e/ehr_id/value FROM EHR e");
+
+    assertThat(hash.length(), is(16));
+    assertThat(hash, is(IntegrationMetrics.queryHash("SELECT e/ehr_id/value FROM EHR e")));
+    assertThat(hash, not(IntegrationMetrics.queryHash("SELECT c FROM EHR e CONTAINS COMPOSITION c")));
+  }
+}
@@ -0,0 +1,255 @@
+package org.highmed.numportal.service.util;
+
+import org.highmed.numportal.domain.model.Cohort;
+import org.highmed.numportal.properties.ConsentProperties;
+import org.highmed.numportal.properties.EhrBaseProperties;
+import org.highmed.numportal.properties.ExportProperties;
+import org.highmed.numportal.properties.PrivacyProperties;
+import org.highmed.numportal.service.CohortService;
+import org.highmed.numportal.service.TemplateService;
+import org.highmed.numportal.service.ehrbase.EhrBaseService;
+import org.highmed.numportal.service.ehrbase.ResponseFilter;
+import org.highmed.numportal.service.exception.PrivacyException;
+import org.highmed.numportal.service.policy.ProjectPolicyService;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.ehrbase.openehr.sdk.aql.dto.AqlQuery;
+import org.ehrbase.openehr.sdk.aql.parser.AqlQueryParser;
+import org.ehrbase.openehr.sdk.response.dto.QueryResponseData;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.core.Is.is;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExportUtilTest {
+
+  private static final String TEMPLATE_1 = "Corona_Anamnese";
+  private static final String TEMPLATE_2 = "Laborbefund";
+
+  @Mock
+  private CohortService cohortService;
+
+  @Mock
+  private TemplateService templateService;
+
+  @Mock
+  private EhrBaseService ehrBaseService;
+
+  @Mock
+  private ProjectPolicyService projectPolicyService;
+
+  private PrivacyProperties privacyProperties;
+
+  private ExportProperties exportProperties;
+
+  private EhrBaseProperties ehrBaseProperties;
+
+  private ExportUtil exportUtil;
+
+  private Cohort cohort;
+
+  private Map<String, String> templates;
+
+  @Before
+  public void setup() {
+    ResponseFilter responseFilter = new ResponseFilter();
+    responseFilter.initialize();
+    privacyProperties = new PrivacyProperties();
+    privacyProperties.setMinHits(2);
+    exportProperties = new ExportProperties();
+    ehrBaseProperties = new EhrBaseProperties();
+    exportUtil =
+        new ExportUtil(
+            cohortService,
+            templateService,
+            ehrBaseService,
+            responseFilter,
+            privacyProperties,
+            new ConsentProperties(),
+            projectPolicyService,
+            new ObjectMapper(),
+            exportProperties,
+            ehrBaseProperties);
+
+    cohort = Cohort.builder().id(1L).build();
+    templates = new LinkedHashMap<>();
+    templates.put(TEMPLATE_1, TEMPLATE_1);
+    templates.put(TEMPLATE_2, TEMPLATE_2);
+    when(cohortService.executeCohort(cohort, false)).thenReturn(Set.of("ehr1", "ehr2"));
+  }
+
+  @After
+  public void tearDown() {
+    exportUtil.shutdown();
+  }
+
+  @Test
+  public void shouldRetrieveTemplatesOnlyWhenStreamIsConsumed() {
+    mockTemplateData();
+
+    Stream<QueryResponseData> response = exportUtil.streamDefaultConfiguration(1L, cohort, templates);
+
+    verify(ehrBaseService, never()).executeRawQuery(any(), any());
+    List<QueryResponseData> result = response.toList();
+    assertThat(result.size(), is(2));
+    assertThat(result.get(0).getName(), is(TEMPLATE_1));
+    assertThat(result.get(1).getName(), is(TEMPLATE_2));
+  }
+
+  @Test(expected = PrivacyException.class)
+  public void shouldCheckMinHitsBeforeStreaming() {
+    privacyProperties.setMinHits(3);
+    exportUtil.streamDefaultConfiguration(1L, cohort, templates);
+  }
+
+  @Test
+  public void shouldStreamFilteredJsonArray() throws IOException {
+    mockTemplateData();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    exportUtil.exportJson(exportUtil.streamDefaultConfiguration(1L, cohort, templates)).writeTo(out);
+
+    String json = out.toString(StandardCharsets.UTF_8);
+    assertThat(json, is(new ObjectMapper().writeValueAsString(exportUtil.executeDefaultConfiguration(1L, cohort, templates))));
+    assertThat(json, containsString("\"name\":\"" + TEMPLATE_2 + "\""));
+    assertThat(json, containsString("r1c2"));
+    assertThat(json, not(containsString("r1c1")));
+  }
+
+  @Test
+  public void shouldStreamOneCsvEntryPerTemplate() throws IOException {
+    mockTemplateData();
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+    exportUtil.exportCsv(exportUtil.streamDefaultConfiguration(1L, cohort, templates), 1L).writeTo(out);
+
+    ZipInputStream zipInputStream = new ZipInputStream(new ByteArrayInputStream(out.toByteArray()));
+    List<String> entries = new ArrayList<>();
+    for (ZipEntry entry = zipInputStream.getNextEntry(); entry != null; entry = zipInputStream.getNextEntry()) {
+      entries.add(entry.getName());
+      String csv = new String(zipInputStream.readAllBytes(), StandardCharsets.UTF_8);
+      assertThat(csv, containsString("covid-19-diagnose/context/start_time"));
+      assertThat(csv, not(containsString("laborbefund/ehr_id")));
+    }
+    String filenameBody = exportUtil.getExportFilenameBody(1L);
+    assertThat(entries, is(List.of(filenameBody + "_" + TEMPLATE_1 + ".csv", filenameBody + "_" + TEMPLATE_2 + ".csv")));
+  }
+
+  @Test
+  public void shouldRetrieveTemplatesConcurrentlyInTemplateOrder() {
+    templates.put("Template_3", "Template_3");
+    AqlQuery slow = AqlQueryParser.parse("SELECT c FROM EHR e CONTAINS COMPOSITION c");
+    AqlQuery fast = AqlQueryParser.parse("SELECT c FROM EHR e CONTAINS COMPOSITION c LIMIT 1");
+    when(templateService.createSelectCompositionQuery(TEMPLATE_1)).thenReturn(slow);
+    when(templateService.createSelectCompositionQuery(TEMPLATE_2)).thenReturn(fast);
+    when(templateService.createSelectCompositionQuery("Template_3")).thenReturn(fast);
+    CountDownLatch fastTemplatesDone = new CountDownLatch(2);
+    when(ehrBaseService.executeRawQuery(any(), eq(1L))).thenAnswer(invocation -> {
+      if (invocation.getArgument(0) == slow) {
+        assertThat(fastTemplatesDone.await(5, TimeUnit.SECONDS), is(true));
+      } else {
+        fastTemplatesDone.countDown();
+      }
+      return List.of(response());
+    });
+
+    List<QueryResponseData> result = exportUtil.executeDefaultConfiguration(1L, cohort, templates);
+
+    assertThat(result.stream().map(QueryResponseData::getName).toList(), is(List.of(TEMPLATE_1, TEMPLATE_2, "Template_3")));
+    assertThat(result.get(0).getRows().size(), is(2));
+  }
+
+  @Test
+  public void shouldExportEmptyResultForTemplateExceedingTimeout() {
+    exportProperties.setTemplateTimeout(Duration.ofMillis(100));
+    AqlQuery slow = AqlQueryParser.parse("SELECT c FROM EHR e CONTAINS COMPOSITION c");
+    AqlQuery fast = AqlQueryParser.parse("SELECT c FROM EHR e CONTAINS COMPOSITION c LIMIT 1");
+    when(templateService.createSelectCompositionQuery(TEMPLATE_1)).thenReturn(slow);
+    when(templateService.createSelectCompositionQuery(TEMPLATE_2)).thenReturn(fast);
+    when(ehrBaseService.executeRawQuery(any(), eq(1L))).thenAnswer(invocation -> {
+      if (invocation.getArgument(0) == slow) {
+        Thread.sleep(5000);
+      }
+      return List.of(response());
+    });
+
+    List<QueryResponseData> result = exportUtil.executeDefaultConfiguration(1L, cohort, templates);
+
+    assertThat(result.get(0).getName(), is(TEMPLATE_1));
+    assertThat(result.get(0).getRows().isEmpty(), is(true));
+    assertThat(result.get(1).getName(), is(TEMPLATE_2));
+    assertThat(result.get(1).getRows().size(), is(2));
+  }
+
+  @Test
+  public void shouldQueryLargeCohortsInBatches() {
+    ehrBaseProperties.setEhrIdBatchSize(1);
+    AqlQuery aql = AqlQueryParser.parse("SELECT c FROM EHR e CONTAINS COMPOSITION c");
+    when(templateService.createSelectCompositionQuery(TEMPLATE_1)).thenReturn(aql);
+    when(ehrBaseService.executeRawQueryInBatches(any(), eq(1L))).thenAnswer(invocation -> List.of(response()));
+
+    List<QueryResponseData> result = exportUtil.executeDefaultConfiguration(1L, cohort, Map.of(TEMPLATE_1, TEMPLATE_1));
+
+    ArgumentCaptor<List<AqlQuery>> batches = ArgumentCaptor.forClass(List.class);
+    verify(ehrBaseService).executeRawQueryInBatches(batches.capture(), eq(1L));
+    verify(projectPolicyService, times(2)).apply(any(), any());
+    assertThat(batches.getValue().size(), is(2));
+    assertThat(result.get(0).getName(), is(TEMPLATE_1));
+  }
+
+  @Test
+  public void shouldNotSplitQueriesWithLimit() {
+    ehrBaseProperties.setEhrIdBatchSize(1);
+
+    assertThat(exportUtil.requiresBatches(AqlQueryParser.parse("SELECT c FROM EHR e CONTAINS COMPOSITION c"), Set.of("1", "2")), is(true));
+    assertThat(exportUtil.requiresBatches(AqlQueryParser.parse("SELECT c FROM EHR e CONTAINS COMPOSITION c LIMIT 10"), Set.of("1", "2")), is(false));
+    assertThat(exportUtil.requiresBatches(AqlQueryParser.parse("SELECT COUNT(c) FROM EHR e CONTAINS COMPOSITION c"), Set.of("1", "2")), is(false));
+    assertThat(exportUtil.requiresBatches(AqlQueryParser.parse("SELECT c FROM EHR e CONTAINS COMPOSITION c"), Set.of("1")), is(false));
+  }
+
+  private void mockTemplateData() {
+    AqlQuery aql = AqlQueryParser.parse("SELECT c FROM EHR e CONTAINS COMPOSITION c");
+    when(templateService.createSelectCompositionQuery(anyString())).thenReturn(aql);
+    when(ehrBaseService.executeRawQuery(any(), eq(1L))).thenAnswer(invocation -> List.of(response()));
+  }
+
+  private QueryResponseData response() {
+    QueryResponseData response = new QueryResponseData();
+    response.setColumns(
+        new ArrayList<>(List.of(Map.of("path", "laborbefund/ehr_id"), Map.of("path", "covid-19-diagnose/context/start_time"))));
+    response.setRows(new ArrayList<>(List.of(new ArrayList<>(List.of("r1c1", "r1c2")), new ArrayList<>(List.of("r2c1", "r2c2")))));
+    return response;
+  }
+}
@@ -0,0 +1,159 @@
+package org.highmed.numportal.web.controller;
+
+import org.highmed.numportal.domain.dto.ExportJobDto;
+import org.highmed.numportal.domain.model.ExportJob;
+import org.highmed.numportal.domain.model.ExportJobStatus;
+import org.highmed.numportal.domain.model.ExportType;
+import org.highmed.numportal.service.exception.BadRequestException;
+import org.highmed.numportal.service.exception.ResourceNotFound;
+import org.highmed.numportal.service.export.ExportJobService;
+import org.highmed.numportal.service.util.ExportHeaderUtil;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import org.springframework.security.web.method.annotation.AuthenticationPrincipalArgumentResolver;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.startsWith;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ExportJobControllerTest {
+
+  private static final String USER_ID = "export-user";
+
+  private static final String JOB_ID = "job-1";
+
+  private static final byte[] RESULT = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+  @Mock
+  private ExportJobService exportJobService;
+
+  @Mock
+  private ExportHeaderUtil exportHeaderUtil;
+
+  private MockMvc mockMvc;
+
+  private ExportJob job;
+
+  @Before
+  public void setup() {
+    mockMvc = MockMvcBuilders.standaloneSetup(new ExportJobController(exportJobService, exportHeaderUtil))
+                             .setCustomArgumentResolvers(new AuthenticationPrincipalArgumentResolver())
+                             .build();
+    Jwt jwt = Jwt.withTokenValue("token").header("alg", "none").subject(USER_ID).build();
+    SecurityContextHolder.getContext().setAuthentication(new JwtAuthenticationToken(jwt));
+    job = mock(ExportJob.class);
+  }
+
+  @After
+  public void tearDown() {
+    SecurityContextHolder.clearContext();
+  }
+
+  @Test
+  public void shouldGetStatusOfJob() throws Exception {
+    when(exportJobService.getJob(JOB_ID, USER_ID)).thenReturn(job);
+    when(job.toDto()).thenReturn(ExportJobDto.builder().id(JOB_ID).projectId(1L).status(ExportJobStatus.RUNNING)
+                                             .bytesWritten(5).build());
+
+    mockMvc.perform(get("/export/job/" + JOB_ID))
+           .andExpect(status().isOk())
+           .andExpect(jsonPath("$.id").value(JOB_ID))
+           .andExpect(jsonPath("$.status").value("RUNNING"))
+           .andExpect(jsonPath("$.bytesWritten").value(5));
+  }
+
+  @Test
+  public void shouldNotFindJobOfOtherUser() throws Exception {
+    when(exportJobService.getJob(JOB_ID, USER_ID))
+        .thenThrow(new ResourceNotFound(ExportJobService.class, "Export job not found"));
+
+    mockMvc.perform(get("/export/job/" + JOB_ID)).andExpect(status().isNotFound());
+    mockMvc.perform(get("/export/job/" + JOB_ID + "/result")).andExpect(status().isNotFound());
+  }
+
+  @Test
+  public void shouldRejectDownloadOfJobNotCompleted() throws Exception {
+    when(exportJobService.getJob(JOB_ID, USER_ID)).thenReturn(job);
+    when(exportJobService.getResult(job)).thenThrow(new BadRequestException(ExportJobService.class, "Export job not completed"));
+
+    mockMvc.perform(get("/export/job/" + JOB_ID + "/result")).andExpect(status().isBadRequest());
+  }
+
+  @Test
+  public void shouldDownloadWholeResult() throws Exception {
+    mockCompletedJob();
+
+    mockMvc.perform(get("/export/job/" + JOB_ID + "/result"))
+           .andExpect(status().isOk())
+           .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/zip"))
+           .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+           .andExpect(content().bytes(RESULT));
+  }
+
+  @Test
+  public void shouldDownloadRangeOfResult() throws Exception {
+    mockCompletedJob();
+
+    mockMvc.perform(get("/export/job/" + JOB_ID + "/result").header(HttpHeaders.RANGE, "bytes=4-"))
+           .andExpect(status().isPartialContent())
+           .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 4-9/10"))
+           .andExpect(header().string(HttpHeaders.CONTENT_TYPE, "application/zip"))
+           .andExpect(content().string("456789"));
+  }
+
+  @Test
+  public void shouldDownloadMultipleRangesOfResultAsByteRanges() throws Exception {
+    mockCompletedJob();
+
+    mockMvc.perform(get("/export/job/" + JOB_ID + "/result").header(HttpHeaders.RANGE, "bytes=0-1,4-5"))
+           .andExpect(status().isPartialContent())
+           .andExpect(header().string(HttpHeaders.CONTENT_TYPE, startsWith("multipart/byteranges; boundary=")))
+           .andExpect(content().string(allOf(
+               containsString("Content-Type: application/zip\r\nContent-Range: bytes 0-1/10\r\n\r\n01"),
+               containsString("Content-Type: application/zip\r\nContent-Range: bytes 4-5/10\r\n\r\n45"))));
+  }
+
+  @Test
+  public void shouldRejectRangeBeyondResult() throws Exception {
+    mockCompletedJob();
+
+    mockMvc.perform(get("/export/job/" + JOB_ID + "/result").header(HttpHeaders.RANGE, "bytes=10-"))
+           .andExpect(status().isRequestedRangeNotSatisfiable())
+           .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+  }
+
+  private void mockCompletedJob() {
+    when(exportJobService.getJob(JOB_ID, USER_ID)).thenReturn(job);
+    when(exportJobService.getResult(job)).thenReturn(new ByteArrayResource(RESULT));
+    when(job.getFormat()).thenReturn(ExportType.csv);
+    when(job.getProjectId()).thenReturn(1L);
+    MultiValueMap<String, String> headers = new LinkedMultiValueMap<>();
+    headers.add(HttpHeaders.CONTENT_TYPE, "application/zip");
+    headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=Project_1.zip");
+    when(exportHeaderUtil.getExportHeaders(ExportType.csv, 1L)).thenReturn(headers);
+  }
+}
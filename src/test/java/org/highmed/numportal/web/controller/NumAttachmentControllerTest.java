@@ -0,0 +1,127 @@
+package org.highmed.numportal.web.controller;
+
+import org.highmed.numportal.attachment.domain.model.Attachment;
+import org.highmed.numportal.attachment.service.AttachmentService;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.modelmapper.ModelMapper;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@RunWith(MockitoJUnitRunner.class)
+public class NumAttachmentControllerTest {
+
+  private static final byte[] CONTENT = "0123456789".getBytes(StandardCharsets.UTF_8);
+
+  @Mock
+  private AttachmentService attachmentService;
+
+  @Mock
+  private ModelMapper modelMapper;
+
+  private MockMvc mockMvc;
+
+  private Attachment attachment;
+
+  @Before
+  public void setup() {
+    mockMvc = MockMvcBuilders.standaloneSetup(new NumAttachmentController(modelMapper, attachmentService)).build();
+    attachment = Attachment.builder().id(1L).name("attachment.pdf").contentSize((long) CONTENT.length).build();
+    when(attachmentService.getAttachmentById(1L)).thenReturn(attachment);
+  }
+
+  @Test
+  public void shouldDownloadWholeAttachment() throws Exception {
+    mockContent();
+
+    MvcResult result = mockMvc.perform(get("/attachment/1"))
+                              .andExpect(request().asyncStarted())
+                              .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+           .andExpect(status().isOk())
+           .andExpect(header().string(HttpHeaders.ACCEPT_RANGES, "bytes"))
+           .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 10))
+           .andExpect(header().doesNotExist(HttpHeaders.CONTENT_RANGE))
+           .andExpect(content().bytes(CONTENT));
+  }
+
+  @Test
+  public void shouldDownloadSingleRange() throws Exception {
+    mockContent();
+
+    MvcResult result = mockMvc.perform(get("/attachment/1").header(HttpHeaders.RANGE, "bytes=2-5"))
+                              .andExpect(request().asyncStarted())
+                              .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+           .andExpect(status().isPartialContent())
+           .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 2-5/10"))
+           .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, 4))
+           .andExpect(content().string("2345"));
+  }
+
+  @Test
+  public void shouldDownloadSuffixRange() throws Exception {
+    mockContent();
+
+    MvcResult result = mockMvc.perform(get("/attachment/1").header(HttpHeaders.RANGE, "bytes=-3"))
+                              .andExpect(request().asyncStarted())
+                              .andReturn();
+
+    mockMvc.perform(asyncDispatch(result))
+           .andExpect(status().isPartialContent())
+           .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes 7-9/10"))
+           .andExpect(content().string("789"));
+  }
+
+  @Test
+  public void shouldRejectRangeBeyondAttachment() throws Exception {
+    mockMvc.perform(get("/attachment/1").header(HttpHeaders.RANGE, "bytes=10-20"))
+           .andExpect(status().isRequestedRangeNotSatisfiable())
+           .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */10"));
+
+    verify(attachmentService, never()).writeContent(any(), anyLong(), anyLong(), any());
+  }
+
+  @Test
+  public void shouldRejectRangeOfEmptyAttachment() throws Exception {
+    attachment.setContentSize(0L);
+
+    mockMvc.perform(get("/attachment/1").header(HttpHeaders.RANGE, "bytes=-3"))
+           .andExpect(status().isRequestedRangeNotSatisfiable())
+           .andExpect(header().string(HttpHeaders.CONTENT_RANGE, "bytes */0"));
+  }
+
+  private void mockContent() throws Exception {
+    doAnswer(invocation -> {
+      long offset = invocation.getArgument(1);
+      long length = invocation.getArgument(2);
+      invocation.getArgument(3, OutputStream.class).write(CONTENT, (int) offset, (int) length);
+      return null;
+    }).when(attachmentService).writeContent(eq(attachment), anyLong(), anyLong(), any());
+  }
+}